@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+/**
+ * What MouseFeed did about an action invocation. Is recorded in the event
+ * traces, so the decisions of different MouseFeed versions can be compared.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public enum FeedbackOutcome {
+    /**
+     * No action description could be generated for the event.
+     */
+    UNDESCRIBED,
+
+    /**
+     * The action is ignored, e.g. the action configuring the invocation
+     * modes.
+     */
+    IGNORED,
+
+    /**
+     * The invocation control is disabled.
+     */
+    CONTROL_DISABLED,
+
+    /**
+     * The action has no accelerator. The invocation was counted, but no
+     * pop-up was shown.
+     */
+    COUNTED,
+
+    /**
+     * The action has no accelerator and was invoked often, so the user was
+     * offered to configure a keyboard shortcut.
+     */
+    CONFIGURE_SHORTCUT,
+
+    /**
+     * {@link OnWrongInvocationMode#DO_NOTHING} was applied.
+     */
+    DO_NOTHING,
+
+    /**
+     * {@link OnWrongInvocationMode#PRESENTATION} was applied.
+     */
+    PRESENTATION,
+
+    /**
+     * {@link OnWrongInvocationMode#REMIND} was applied.
+     */
+    REMIND,
+
+    /**
+     * {@link OnWrongInvocationMode#ENFORCE} was applied.
+     */
+    ENFORCE;
+
+    /**
+     * Whether the invocation is counted to decide when to offer the user to
+     * configure a keyboard shortcut.
+     *
+     * @return <code>true</code> for {@link #COUNTED} and
+     *         {@link #CONFIGURE_SHORTCUT}.
+     */
+    public boolean isCounted() {
+        return this == COUNTED || this == CONFIGURE_SHORTCUT;
+    }
+
+    /**
+     * The outcome of applying the mode.
+     *
+     * @param mode
+     *            the applied mode. Not <code>null</code>.
+     * @return the outcome. Never <code>null</code>.
+     */
+    public static FeedbackOutcome of(final OnWrongInvocationMode mode) {
+        notNull(mode);
+        switch (mode) {
+        case DO_NOTHING:
+            return DO_NOTHING;
+        case PRESENTATION:
+            return PRESENTATION;
+        case REMIND:
+            return REMIND;
+        case ENFORCE:
+            return ENFORCE;
+        default:
+            throw new AssertionError(mode);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds key chords, a modifier combination plus a key, which are not used by
+ * any key binding. The chord space is the candidate modifier combinations
+ * multiplied by the candidate keys. The used chords are kept as a bit set
+ * per binding context, so checking the whole chord space for a context takes
+ * a few hundred bit tests.
+ * <p>
+ * A chord is free in a context if it is not bound in the context, in its
+ * ancestors, which are active together with the context, and in its
+ * descendants, where a binding of the context would be shadowed.
+ * </p>
+ * <p>
+ * The modifiers and the keys are plain integers, e.g. the SWT modifier masks
+ * and natural keys used by the Eclipse key strokes.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class FreeChordFinder {
+    /**
+     * The value returned when there is no free chord.
+     */
+    public static final int NO_CHORD = -1;
+
+    /**
+     * The candidate modifier combinations, most preferred first.
+     */
+    private final int[] modifiers;
+
+    /**
+     * The candidate keys, most preferred first.
+     */
+    private final int[] keys;
+
+    /**
+     * The chord bit sets of the used chords. Keys - the context ids.
+     */
+    private final Map<String, BitSet> used = new HashMap<String, BitSet>();
+
+    /**
+     * The parent contexts. Keys - the context ids, values - the parent
+     * context ids.
+     */
+    private final Map<String, String> parents = new HashMap<String, String>();
+
+    /**
+     * The chords which can't be used in a context. Keys - the context ids.
+     * Computed on demand, cleared on any change.
+     */
+    private final Map<String, BitSet> blocked = new HashMap<String, BitSet>();
+
+    /**
+     * Constructor.
+     *
+     * @param modifiers
+     *            the candidate modifier combinations, most preferred first.
+     *            Not empty.
+     * @param keys
+     *            the candidate keys, most preferred first. Not empty.
+     */
+    public FreeChordFinder(final int[] modifiers, final int[] keys) {
+        notNull(modifiers);
+        notNull(keys);
+        isTrue(modifiers.length > 0);
+        isTrue(keys.length > 0);
+        this.modifiers = modifiers.clone();
+        this.keys = keys.clone();
+    }
+
+    /**
+     * The chord of the modifiers and the key.
+     *
+     * @param modifierMask
+     *            the modifier combination.
+     * @param key
+     *            the key.
+     * @return the chord. {@link #NO_CHORD} if the modifiers or the key are
+     *         not candidates.
+     */
+    public int getChord(final int modifierMask, final int key) {
+        final int m = indexOf(modifiers, modifierMask);
+        final int k = indexOf(keys, key);
+        return m < 0 || k < 0 ? NO_CHORD : m * keys.length + k;
+    }
+
+    /**
+     * The modifier combination of the chord.
+     *
+     * @param chord
+     *            the chord. Not {@link #NO_CHORD}.
+     * @return the modifier combination.
+     */
+    public int getModifiers(final int chord) {
+        return modifiers[chord / keys.length];
+    }
+
+    /**
+     * The key of the chord.
+     *
+     * @param chord
+     *            the chord. Not {@link #NO_CHORD}.
+     * @return the key.
+     */
+    public int getKey(final int chord) {
+        return keys[chord % keys.length];
+    }
+
+    /**
+     * Marks the chord as used in the context. Ignores the chords outside of
+     * the candidate chord space.
+     *
+     * @param contextId
+     *            the binding context id. Not <code>null</code>.
+     * @param modifierMask
+     *            the modifier combination.
+     * @param key
+     *            the key.
+     */
+    public void use(final String contextId, final int modifierMask, final int key) {
+        notNull(contextId);
+        final int chord = getChord(modifierMask, key);
+        if (chord == NO_CHORD) {
+            return;
+        }
+        BitSet chords = used.get(contextId);
+        if (chords == null) {
+            chords = new BitSet(modifiers.length * keys.length);
+            used.put(contextId, chords);
+        }
+        chords.set(chord);
+        blocked.clear();
+    }
+
+    /**
+     * Defines the context hierarchy.
+     *
+     * @param contextId
+     *            the context id. Not <code>null</code>.
+     * @param parentId
+     *            the parent context id. <code>null</code> for a root context.
+     */
+    public void setParent(final String contextId, final String parentId) {
+        notNull(contextId);
+        if (parentId == null) {
+            parents.remove(contextId);
+        } else {
+            parents.put(contextId, parentId);
+        }
+        blocked.clear();
+    }
+
+    /**
+     * Finds the most preferred free chord in the context. The keys contained
+     * in the hint are preferred, in the order of the hint, so e.g. the letters
+     * of the action label are tried first.
+     *
+     * @param contextId
+     *            the context to find the chord in. Not <code>null</code>.
+     * @param hint
+     *            the preferred keys, e.g. the action label upper-cased. Not
+     *            <code>null</code>, can be empty.
+     * @param excluded
+     *            the chords not to propose, e.g. reserved for other actions.
+     *            Can be <code>null</code>.
+     * @return the free chord. {@link #NO_CHORD} if all the chords are used.
+     */
+    public int find(final String contextId, final String hint, final BitSet excluded) {
+        notNull(contextId);
+        notNull(hint);
+        final BitSet unavailable = (BitSet) getBlocked(contextId).clone();
+        if (excluded != null) {
+            unavailable.or(excluded);
+        }
+        for (int m = 0; m < modifiers.length; m++) {
+            for (int i = 0; i < hint.length(); i++) {
+                final int k = indexOf(keys, hint.charAt(i));
+                if (k >= 0 && !unavailable.get(m * keys.length + k)) {
+                    return m * keys.length + k;
+                }
+            }
+        }
+        final int chord = unavailable.nextClearBit(0);
+        return chord < modifiers.length * keys.length ? chord : NO_CHORD;
+    }
+
+    /**
+     * The chords which can't be bound in the context.
+     *
+     * @param contextId
+     *            the context id. Assumed not <code>null</code>.
+     * @return the chords used in the context, its ancestors or descendants.
+     *         Must not be changed. Never <code>null</code>.
+     */
+    private BitSet getBlocked(final String contextId) {
+        BitSet chords = blocked.get(contextId);
+        if (chords != null) {
+            return chords;
+        }
+        chords = new BitSet(modifiers.length * keys.length);
+        final List<String> related = new ArrayList<String>();
+        for (String id = contextId; id != null && !related.contains(id); id = parents.get(id)) {
+            related.add(id);
+        }
+        for (String id : used.keySet()) {
+            if (isDescendant(id, contextId)) {
+                related.add(id);
+            }
+        }
+        for (String id : related) {
+            final BitSet contextChords = used.get(id);
+            if (contextChords != null) {
+                chords.or(contextChords);
+            }
+        }
+        blocked.put(contextId, chords);
+        return chords;
+    }
+
+    /**
+     * Whether the context is a descendant of the ancestor context.
+     *
+     * @param contextId
+     *            the context to check. Assumed not <code>null</code>.
+     * @param ancestorId
+     *            the ancestor context. Assumed not <code>null</code>.
+     * @return <code>true</code> if the ancestor is a parent of the context or
+     *         of any of the context ancestors.
+     */
+    private boolean isDescendant(final String contextId, final String ancestorId) {
+        int depth = 0;
+        for (String id = parents.get(contextId); id != null && depth <= parents.size(); id = parents.get(id)) {
+            if (id.equals(ancestorId)) {
+                return true;
+            }
+            depth++;
+        }
+        return false;
+    }
+
+    /**
+     * Linear search in a short array.
+     *
+     * @param values
+     *            the array. Assumed not <code>null</code>.
+     * @param value
+     *            the value to find.
+     * @return the value index. -1 if not found.
+     */
+    private static int indexOf(final int[] values, final int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
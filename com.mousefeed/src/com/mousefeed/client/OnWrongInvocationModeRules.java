@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Action-specific {@link OnWrongInvocationMode} rules compiled for fast
+ * lookup. Besides the exact action ids a rule can specify:
+ * <ul>
+ * <li>an action id prefix, e.g. <code>org.eclipse.jdt.ui.edit.text.java.*</code>
+ * </li>
+ * <li>a command category, e.g. <code>category:org.eclipse.ui.category.edit</code>
+ * </li>
+ * </ul>
+ * The most specific rule wins: the exact id, then the longest prefix, then the
+ * category, then the catch-all prefix <code>*</code>. Only a locked category
+ * rule overrides the more specific rules, unless they are locked too: the
+ * actions of a category are not known until the actions are resolved. The
+ * prefix rules are
+ * stored in a trie, so resolving a mode takes time proportional to the action
+ * id length, no matter how many rules there are. Immutable.
+ * 
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class OnWrongInvocationModeRules {
+    /**
+     * The suffix of the prefix rules.
+     */
+    public static final String WILDCARD = "*";
+
+    /**
+     * The prefix of the category rules.
+     */
+    public static final String CATEGORY_PREFIX = "category:";
+
+    /**
+     * The rules without any entries.
+     */
+    public static final OnWrongInvocationModeRules EMPTY =
+            new OnWrongInvocationModeRules(new HashMap<String, OnWrongInvocationMode>());
+
+    /**
+     * The trie root. Corresponds to the empty action id prefix.
+     */
+    private final Node root;
+
+    /**
+     * The category modes. Keys - category ids.
+     */
+    private final Map<String, OnWrongInvocationMode> categoryModes = new HashMap<String, OnWrongInvocationMode>();
+
+    /**
+     * The ids of the categories with the locked rules.
+     */
+    private final Set<String> lockedCategories = new HashSet<String>();
+
+    /**
+     * Compiles the rules.
+     * 
+     * @param rules
+     *            the rules. Keys - the exact action ids, the prefix rules
+     *            ending with {@link #WILDCARD} or the category rules starting
+     *            with {@link #CATEGORY_PREFIX}. Not <code>null</code>.
+     */
+    public OnWrongInvocationModeRules(final Map<String, OnWrongInvocationMode> rules) {
+        this(rules, Collections.<String>emptySet());
+    }
+
+    /**
+     * Compiles the rules, some of them locked.
+     * 
+     * @param rules
+     *            the rules. Keys - the exact action ids, the prefix rules
+     *            ending with {@link #WILDCARD} or the category rules starting
+     *            with {@link #CATEGORY_PREFIX}. Not <code>null</code>.
+     * @param locked
+     *            the ids of the locked rules. Not <code>null</code>.
+     */
+    public OnWrongInvocationModeRules(final Map<String, OnWrongInvocationMode> rules, final Set<String> locked) {
+        notNull(rules);
+        notNull(locked);
+        final BuilderNode builderRoot = new BuilderNode();
+        for (Map.Entry<String, OnWrongInvocationMode> rule : rules.entrySet()) {
+            final String ruleId = rule.getKey();
+            final OnWrongInvocationMode mode = rule.getValue();
+            notNull(ruleId);
+            notNull(mode);
+            final boolean ruleLocked = locked.contains(ruleId);
+            if (isCategoryRule(ruleId)) {
+                final String categoryId = ruleId.substring(CATEGORY_PREFIX.length());
+                categoryModes.put(categoryId, mode);
+                if (ruleLocked) {
+                    lockedCategories.add(categoryId);
+                }
+            } else if (isPrefixRule(ruleId)) {
+                final BuilderNode node = builderRoot.add(ruleId, ruleId.length() - WILDCARD.length());
+                node.prefixMode = mode;
+                node.prefixLocked = ruleLocked;
+            } else {
+                final BuilderNode node = builderRoot.add(ruleId, ruleId.length());
+                node.exactMode = mode;
+                node.exactLocked = ruleLocked;
+            }
+        }
+        root = builderRoot.compile();
+    }
+
+    /**
+     * Whether the rule id is a pattern rather than an exact action id.
+     * 
+     * @param ruleId
+     *            the rule id. Not <code>null</code>.
+     * @return <code>true</code> for the prefix and the category rules.
+     */
+    public static boolean isPattern(final String ruleId) {
+        return isPrefixRule(ruleId) || isCategoryRule(ruleId);
+    }
+
+    /**
+     * Whether the rule is a prefix rule.
+     * 
+     * @param ruleId
+     *            the rule id. Not <code>null</code>.
+     * @return <code>true</code> if the rule id ends with {@link #WILDCARD}.
+     */
+    public static boolean isPrefixRule(final String ruleId) {
+        return ruleId.endsWith(WILDCARD);
+    }
+
+    /**
+     * Whether the rule is a category rule.
+     * 
+     * @param ruleId
+     *            the rule id. Not <code>null</code>.
+     * @return <code>true</code> if the rule id starts with
+     *         {@link #CATEGORY_PREFIX}.
+     */
+    public static boolean isCategoryRule(final String ruleId) {
+        return ruleId.startsWith(CATEGORY_PREFIX);
+    }
+
+    /**
+     * Finds the mode of the most specific rule matching the action.
+     * 
+     * @param actionId
+     *            the action id. Not <code>null</code>.
+     * @param categoryId
+     *            the id of the action command category. Can be
+     *            <code>null</code>.
+     * @return the mode. <code>null</code> if no rule matches the action.
+     */
+    public OnWrongInvocationMode resolve(final String actionId, final String categoryId) {
+        notNull(actionId);
+        OnWrongInvocationMode prefixMode = null;
+        OnWrongInvocationMode lockedPrefixMode = null;
+        Node node = root;
+        for (int i = 0; i < actionId.length() && node != null; i++) {
+            node = node.getChild(actionId.charAt(i));
+            if (node != null && node.prefixMode != null) {
+                prefixMode = node.prefixMode;
+                if (node.prefixLocked) {
+                    lockedPrefixMode = node.prefixMode;
+                }
+            }
+        }
+        final OnWrongInvocationMode categoryMode = categoryId == null ? null : categoryModes.get(categoryId);
+        if (categoryMode != null && lockedCategories.contains(categoryId)) {
+            if (node != null && node.exactMode != null && node.exactLocked) {
+                return node.exactMode;
+            }
+            return lockedPrefixMode == null ? categoryMode : lockedPrefixMode;
+        }
+        if (node != null && node.exactMode != null) {
+            return node.exactMode;
+        }
+        if (prefixMode != null) {
+            return prefixMode;
+        }
+        return categoryMode == null ? root.prefixMode : categoryMode;
+    }
+
+    /**
+     * A compiled trie node. The children are sorted by their characters.
+     */
+    private static final class Node {
+        /**
+         * The sorted characters of the child nodes.
+         */
+        private final char[] keys;
+
+        /**
+         * The child nodes in the order of {@link #keys}.
+         */
+        private final Node[] children;
+
+        /**
+         * The mode of the exact id ending at this node. Can be
+         * <code>null</code>.
+         */
+        private final OnWrongInvocationMode exactMode;
+
+        /**
+         * The mode of the prefix ending at this node. Can be
+         * <code>null</code>.
+         */
+        private final OnWrongInvocationMode prefixMode;
+
+        /**
+         * Whether the exact id rule is locked.
+         */
+        private final boolean exactLocked;
+
+        /**
+         * Whether the prefix rule is locked.
+         */
+        private final boolean prefixLocked;
+
+        /**
+         * Constructor.
+         * 
+         * @param keys
+         *            the sorted child characters. Assumed not
+         *            <code>null</code>.
+         * @param children
+         *            the child nodes. Assumed not <code>null</code>.
+         * @param builder
+         *            the node being compiled, provides the modes. Assumed not
+         *            <code>null</code>.
+         */
+        Node(final char[] keys, final Node[] children, final BuilderNode builder) {
+            this.keys = keys;
+            this.children = children;
+            this.exactMode = builder.exactMode;
+            this.prefixMode = builder.prefixMode;
+            this.exactLocked = builder.exactLocked;
+            this.prefixLocked = builder.prefixLocked;
+        }
+
+        /**
+         * The child node for the character.
+         * 
+         * @param c
+         *            the next id character.
+         * @return the child node. <code>null</code> if there is none.
+         */
+        Node getChild(final char c) {
+            final int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+    }
+
+    /**
+     * A mutable trie node used while compiling the rules.
+     */
+    private static final class BuilderNode {
+        /**
+         * The child nodes. Keys - the next id characters.
+         */
+        private final Map<Character, BuilderNode> children = new TreeMap<Character, BuilderNode>();
+
+        /**
+         * @see Node#exactMode
+         */
+        private OnWrongInvocationMode exactMode;
+
+        /**
+         * @see Node#prefixMode
+         */
+        private OnWrongInvocationMode prefixMode;
+
+        /**
+         * @see Node#exactLocked
+         */
+        private boolean exactLocked;
+
+        /**
+         * @see Node#prefixLocked
+         */
+        private boolean prefixLocked;
+
+        /**
+         * Adds the path for the id prefix.
+         * 
+         * @param id
+         *            the id. Assumed not <code>null</code>.
+         * @param length
+         *            the prefix length.
+         * @return the node of the prefix end. Never <code>null</code>.
+         */
+        BuilderNode add(final String id, final int length) {
+            isTrue(length >= 0);
+            BuilderNode node = this;
+            for (int i = 0; i < length; i++) {
+                final Character c = Character.valueOf(id.charAt(i));
+                BuilderNode child = node.children.get(c);
+                if (child == null) {
+                    child = new BuilderNode();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            return node;
+        }
+
+        /**
+         * Creates the compiled node for this node and its children.
+         * 
+         * @return the compiled node. Never <code>null</code>.
+         */
+        Node compile() {
+            final char[] keys = new char[children.size()];
+            final Node[] compiled = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, BuilderNode> child : children.entrySet()) {
+                keys[i] = child.getKey().charValue();
+                compiled[i] = child.getValue().compile();
+                i++;
+            }
+            return new Node(keys, compiled, this);
+        }
+    }
+}
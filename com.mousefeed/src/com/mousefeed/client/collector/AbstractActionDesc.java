@@ -21,29 +21,63 @@ package com.mousefeed.client.collector;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.apache.commons.lang.Validate.isTrue;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import org.eclipse.swt.graphics.Point;
+import java.util.Arrays;
 
 /**
- * Information about an action invoked by the user.
+ * Information about an action invoked by the user. The descriptions are
+ * shared between the action invocations, so the description is frozen after
+ * it is generated, see {@link #freeze()}. The data specific for a single
+ * invocation is provided by {@link ActionInvocation}.
  * 
  * @author Andriy Palamarchuk
  * @author Rabea Gransberger (@rgransberger)
  */
 public abstract class AbstractActionDesc {
 
-    public static String DEFAULT_ACCELERATOR_KEY = "default";
+    /**
+     * The key of the accelerator in the currently active scheme.
+     * @see SchemeRegistry#DEFAULT_ORDINAL
+     */
+    public static final String DEFAULT_ACCELERATOR_KEY = "default";
+
+    /**
+     * The id of the descriptions carrying only the label of the selected
+     * widget, because the action could not be described in time. Such an id
+     * does not identify the action, so its invocations are not counted.
+     */
+    public static final String LABEL_ONLY_ID = "com.mousefeed.labelOnly";
+
+    /**
+     * The accelerators of an action without any accelerators.
+     */
+    private static final String[] NO_ACCELERATORS = new String[0];
 
     /**
      * @see #getLabel()
      */
     private String label;
 
-    private final Map<String, String> accelerators = new HashMap<String, String>();
+    /**
+     * @see #getCategoryId()
+     */
+    private String categoryId;
+
+    /**
+     * The accelerators indexed by the scheme ordinals.
+     * @see #getAccelerator(int)
+     */
+    private String[] accelerators = NO_ACCELERATORS;
+
+    /**
+     * @see #isFrozen()
+     */
+    private boolean frozen;
 
-    private Point caretLocation;
+    /**
+     * The ordinal of the id assigned when the description is frozen.
+     * @see #getOrdinal()
+     */
+    private int ordinal = ActionIdDictionary.NO_ORDINAL;
 
     /**
      * The id of the user action.
@@ -56,6 +90,17 @@ public abstract class AbstractActionDesc {
         return getLabel();
     }
 
+    /**
+     * The ordinal of the action id in {@link ActionIdDictionary}. Is looked
+     * up once, when the description is frozen.
+     * 
+     * @return the id ordinal. Not negative.
+     */
+    public int getOrdinal() {
+        return ordinal == ActionIdDictionary.NO_ORDINAL
+                ? ActionIdDictionary.getInstance().getOrdinal(getId()) : ordinal;
+    }
+
     /**
      * The action human-readable label.
      * 
@@ -72,18 +117,49 @@ public abstract class AbstractActionDesc {
      * @see #getLabel()
      */
     public void setLabel(final String label) {
+        checkNotFrozen();
         isTrue(isNotBlank(label));
         this.label = label.replace("&", "");
     }
 
+    /**
+     * The id of the command category the action belongs to.
+     * 
+     * @return the category id. <code>null</code> if the action is not
+     *         associated with a command category.
+     */
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    /**
+     * @param categoryId
+     *            the new category id. Can be <code>null</code>.
+     * @see #getCategoryId()
+     */
+    public void setCategoryId(final String categoryId) {
+        checkNotFrozen();
+        this.categoryId = categoryId;
+    }
+
     /**
      * Indicates whether the action has a keyboard shortcut.
      * 
      * @return <code>true</code> if the action description has keyboard
-     *         shortcut.
+     *         shortcut in the active scheme.
      */
     public boolean hasAccelerator() {
-        return !accelerators.isEmpty();
+        return getAccelerator() != null;
+    }
+
+    /**
+     * The keyboard shortcut in the active scheme.
+     * 
+     * @return the shortcut text. <code>null</code> if the action has no
+     *         keyboard shortcut.
+     */
+    public String getAccelerator() {
+        return getAccelerator(SchemeRegistry.DEFAULT_ORDINAL);
     }
 
     /**
@@ -92,25 +168,70 @@ public abstract class AbstractActionDesc {
      * @see #getAccelerator()
      */
     public void setAccelerator(final String accelerator) {
-        this.accelerators.put(DEFAULT_ACCELERATOR_KEY, accelerator);
+        setAccelerator(SchemeRegistry.DEFAULT_ORDINAL, accelerator);
     }
 
-    public void setAccelerators(String accelerator,
-            Map<String, String> accelerators) {
-        setAccelerator(accelerator);
-        this.accelerators.putAll(accelerators);
+    /**
+     * The keyboard shortcut in the specified scheme.
+     * 
+     * @param schemeOrdinal
+     *            the scheme ordinal from {@link SchemeRegistry}.
+     * @return the shortcut text. <code>null</code> if the action has no
+     *         keyboard shortcut in the scheme or the scheme is not known.
+     */
+    public String getAccelerator(final int schemeOrdinal) {
+        return schemeOrdinal >= 0 && schemeOrdinal < accelerators.length ? accelerators[schemeOrdinal] : null;
+    }
 
+    /**
+     * @param schemeOrdinal
+     *            the scheme ordinal from {@link SchemeRegistry}. Not
+     *            negative.
+     * @param accelerator
+     *            the shortcut text in the scheme. Can be <code>null</code>.
+     * @see #getAccelerator(int)
+     */
+    public void setAccelerator(final int schemeOrdinal, final String accelerator) {
+        checkNotFrozen();
+        isTrue(schemeOrdinal >= 0);
+        if (schemeOrdinal >= accelerators.length) {
+            if (accelerator == null) {
+                return;
+            }
+            final int length = Math.max(schemeOrdinal + 1, SchemeRegistry.getInstance().size());
+            accelerators = Arrays.copyOf(accelerators, length);
+        }
+        accelerators[schemeOrdinal] = accelerator;
     }
 
-    public Map<String, String> getAccelerators() {
-        return Collections.unmodifiableMap(accelerators);
+    /**
+     * Whether the description is frozen. A frozen description can't be
+     * changed any more and can be shared between the action invocations.
+     * 
+     * @return <code>true</code> if {@link #freeze()} was called.
+     */
+    public boolean isFrozen() {
+        return frozen;
     }
 
-    public Point getCaretLocation() {
-        return caretLocation;
+    /**
+     * Makes this description read-only. Must be called after the description
+     * is populated, before it is shared.
+     */
+    public void freeze() {
+        frozen = true;
+        if (getId() != null) {
+            ordinal = ActionIdDictionary.getInstance().getOrdinal(getId());
+        }
     }
 
-    public void setCaretLocation(Point location) {
-        this.caretLocation = location;
+    /**
+     * Throws {@link IllegalStateException} if the description is frozen.
+     * Subclasses must call it from the setters.
+     */
+    protected void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("The action description is frozen: " + getId());
+        }
     }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+
+import java.util.Arrays;
+
+/**
+ * Per-action counters indexed by the {@link ActionIdDictionary} ordinals.
+ * Must be accessed from a single thread at a time.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class ActionCounts {
+    /**
+     * The counters indexed by the action ordinals. Grows as the new actions
+     * are counted.
+     */
+    private int[] counts = new int[64];
+
+    /**
+     * The count of the action.
+     *
+     * @param ordinal
+     *            the action ordinal. Not negative.
+     * @return the count. 0 if the action was not counted.
+     */
+    public int get(final int ordinal) {
+        isTrue(ordinal >= 0);
+        return ordinal < counts.length ? counts[ordinal] : 0;
+    }
+
+    /**
+     * Increases the count of the action.
+     *
+     * @param ordinal
+     *            the action ordinal. Not negative.
+     * @return the new count.
+     */
+    public int increment(final int ordinal) {
+        isTrue(ordinal >= 0);
+        if (ordinal >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(ordinal + 1, counts.length * 2));
+        }
+        return ++counts[ordinal];
+    }
+}
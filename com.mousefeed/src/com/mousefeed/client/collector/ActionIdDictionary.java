@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns the action ids dense ordinals, so the per-action data can be kept
+ * in arrays indexed by the ordinals instead of maps hashing the long dotted
+ * ids on each event. An id is looked up once, when its description is frozen,
+ * see {@link AbstractActionDesc#getOrdinal()}. The ordinals are never reused
+ * and are valid for the session only, the persisted data stores the ids.
+ * Singleton. Thread-safe.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class ActionIdDictionary {
+    /**
+     * The value returned for the unknown ids.
+     */
+    public static final int NO_ORDINAL = -1;
+
+    /**
+     * The singleton instance.
+     */
+    private static final ActionIdDictionary INSTANCE = new ActionIdDictionary();
+
+    /**
+     * The id ordinals. Keys - action ids.
+     */
+    private final Map<String, Integer> ordinals = new HashMap<String, Integer>();
+
+    /**
+     * The action ids indexed by their ordinals.
+     */
+    private final List<String> ids = new ArrayList<String>();
+
+    /**
+     * Creates new dictionary. Because this class is a singleton, the
+     * constructor normally should not be used. It is exposed for testing
+     * purposes only.
+     */
+    ActionIdDictionary() {
+    }
+
+    /**
+     * The singleton instance.
+     *
+     * @return the singleton instance. Never <code>null</code>.
+     */
+    public static ActionIdDictionary getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The ordinal of the id. Assigns the next ordinal to a new id.
+     *
+     * @param actionId
+     *            the action id. Not <code>null</code>.
+     * @return the id ordinal. Not negative.
+     */
+    public synchronized int getOrdinal(final String actionId) {
+        notNull(actionId);
+        final Integer ordinal = ordinals.get(actionId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        final int newOrdinal = ids.size();
+        ids.add(actionId);
+        ordinals.put(actionId, newOrdinal);
+        return newOrdinal;
+    }
+
+    /**
+     * The ordinal of the id, without assigning one to a new id.
+     *
+     * @param actionId
+     *            the action id. Not <code>null</code>.
+     * @return the id ordinal. {@link #NO_ORDINAL} if the id has no ordinal
+     *         yet.
+     */
+    public synchronized int find(final String actionId) {
+        notNull(actionId);
+        final Integer ordinal = ordinals.get(actionId);
+        return ordinal == null ? NO_ORDINAL : ordinal;
+    }
+
+    /**
+     * The id with the ordinal.
+     *
+     * @param ordinal
+     *            the id ordinal. Not negative, smaller than {@link #size()}.
+     * @return the action id. Not <code>null</code>.
+     */
+    public synchronized String getId(final int ordinal) {
+        isTrue(ordinal >= 0 && ordinal < ids.size());
+        return ids.get(ordinal);
+    }
+
+    /**
+     * The number of ordinals assigned so far. All ordinals are smaller than
+     * this number.
+     *
+     * @return the ordinals number.
+     */
+    public synchronized int size() {
+        return ids.size();
+    }
+}
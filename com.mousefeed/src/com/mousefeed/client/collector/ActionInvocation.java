@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * A single invocation of an action by the user. Lightweight holder of the
+ * data specific to the invocation. The action data, which is the same for
+ * all the invocations, is provided by the shared {@link AbstractActionDesc}.
+ * Must be accessed from the display thread only.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class ActionInvocation {
+    /**
+     * @see #getActionDesc()
+     */
+    private final AbstractActionDesc actionDesc;
+
+    /**
+     * Finds the caret location. <code>null</code> after the location was
+     * found.
+     */
+    private CaretLocator caretLocator;
+
+    /**
+     * @see #getCaretLocation()
+     */
+    private Point caretLocation;
+
+    /**
+     * @see #isKeyboard()
+     */
+    private final boolean keyboard;
+
+    /**
+     * Creates an invocation with the mouse.
+     *
+     * @param actionDesc
+     *            the invoked action. Not <code>null</code>.
+     * @param caretLocator
+     *            finds the caret location when it is requested the first
+     *            time. Can be <code>null</code> if the action was not
+     *            invoked from a text control.
+     */
+    public ActionInvocation(final AbstractActionDesc actionDesc, final CaretLocator caretLocator) {
+        this(actionDesc, caretLocator, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param actionDesc
+     *            the invoked action. Not <code>null</code>.
+     * @param caretLocator
+     *            finds the caret location when it is requested the first
+     *            time. Can be <code>null</code> if the action was not
+     *            invoked from a text control.
+     * @param keyboard
+     *            whether the action was invoked with a key binding.
+     */
+    public ActionInvocation(final AbstractActionDesc actionDesc, final CaretLocator caretLocator,
+            final boolean keyboard) {
+        notNull(actionDesc);
+        this.actionDesc = actionDesc;
+        this.caretLocator = caretLocator;
+        this.keyboard = keyboard;
+    }
+
+    /**
+     * The invoked action.
+     *
+     * @return the action description. Never <code>null</code>.
+     */
+    public AbstractActionDesc getActionDesc() {
+        return actionDesc;
+    }
+
+    /**
+     * Whether the action was invoked with the keyboard.
+     *
+     * @return <code>true</code> if the action was invoked with a key
+     *         binding, <code>false</code> if with the mouse.
+     */
+    public boolean isKeyboard() {
+        return keyboard;
+    }
+
+    /**
+     * The location of the text caret when the action was invoked. The caret
+     * is located on the first call only, so the invocations not showing the
+     * caret location to the user do not pay for it. Must be called while the
+     * action is being invoked.
+     *
+     * @return the caret location in display coordinates. <code>null</code>
+     *         if the action was not invoked from a text control.
+     */
+    public Point getCaretLocation() {
+        if (caretLocator != null) {
+            caretLocation = caretLocator.findCaretLocation();
+            caretLocator = null;
+        }
+        return caretLocation;
+    }
+}
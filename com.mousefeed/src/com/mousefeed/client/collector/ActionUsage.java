@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+/**
+ * The usage statistics of a single action, maintained by
+ * {@link ActionUsageAggregator}. Must be accessed from the display thread
+ * only.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class ActionUsage {
+    /**
+     * @see #getActionId()
+     */
+    private final String actionId;
+
+    /**
+     * @see #getLabel()
+     */
+    private String label;
+
+    /**
+     * @see #getMouseCount()
+     */
+    private int mouseCount;
+
+    /**
+     * @see #getKeyboardCount()
+     */
+    private int keyboardCount;
+
+    /**
+     * @see #getRecentMouseShare()
+     */
+    private double recentMouseShare;
+
+    /**
+     * Constructor.
+     *
+     * @param actionId
+     *            the action id. Assumed not <code>null</code>.
+     * @param label
+     *            the action label. Assumed not <code>null</code>.
+     */
+    ActionUsage(final String actionId, final String label) {
+        this.actionId = actionId;
+        this.label = label;
+    }
+
+    /**
+     * Counts invocations of the action.
+     *
+     * @param label
+     *            the current action label. Assumed not <code>null</code>.
+     * @param keyboard
+     *            whether the action was invoked with the keyboard.
+     * @param count
+     *            the number of the invocations the record stands for.
+     *            Assumed positive.
+     * @param smoothing
+     *            the weight of the invocations in
+     *            {@link #getRecentMouseShare()}.
+     */
+    void record(final String label, final boolean keyboard, final int count, final double smoothing) {
+        this.label = label;
+        final double sample = keyboard ? 0 : 1;
+        if (mouseCount + keyboardCount == 0) {
+            recentMouseShare = sample;
+        } else {
+            recentMouseShare += smoothing * (sample - recentMouseShare);
+        }
+        if (keyboard) {
+            keyboardCount += count;
+        } else {
+            mouseCount += count;
+        }
+    }
+
+    /**
+     * The action id.
+     *
+     * @return the action id. Never <code>null</code>.
+     */
+    public String getActionId() {
+        return actionId;
+    }
+
+    /**
+     * The action label.
+     *
+     * @return the label of the latest invocation. Never <code>null</code>.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * The number of the invocations with the mouse.
+     *
+     * @return the mouse invocations number.
+     */
+    public int getMouseCount() {
+        return mouseCount;
+    }
+
+    /**
+     * The number of the invocations with the keyboard.
+     *
+     * @return the keyboard invocations number.
+     */
+    public int getKeyboardCount() {
+        return keyboardCount;
+    }
+
+    /**
+     * The share of the mouse invocations among the recent invocations. An
+     * exponentially weighted moving average, so the recent invocations weigh
+     * more.
+     *
+     * @return the recent mouse share, from 0 to 1.
+     */
+    public double getRecentMouseShare() {
+        return recentMouseShare;
+    }
+
+    /**
+     * The trend of the mouse usage.
+     *
+     * @return the difference between {@link #getRecentMouseShare()} and the
+     *         share of the mouse invocations among all invocations. Negative
+     *         if the user switches to the keyboard.
+     */
+    public double getTrend() {
+        final int count = mouseCount + keyboardCount;
+        return count == 0 ? 0 : recentMouseShare - (double) mouseCount / count;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aggregates the action invocations into the per-action usage statistics.
+ * Each invocation updates a few counters of a single action in constant time,
+ * the history is never rescanned. Must be accessed from the display thread
+ * only.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class ActionUsageAggregator {
+    /**
+     * The default weight of the latest invocation in the recent mouse shares.
+     */
+    public static final double DEFAULT_SMOOTHING = 0.1;
+
+    /**
+     * The weight of the latest invocation in the recent mouse shares.
+     */
+    private final double smoothing;
+
+    /**
+     * The action statistics indexed by the action ordinals, see
+     * {@link ActionIdDictionary}. Grows as the new actions are invoked.
+     */
+    private ActionUsage[] usages = new ActionUsage[64];
+
+    /**
+     * The action statistics in the order of the first invocation.
+     */
+    private final List<ActionUsage> ordered = new ArrayList<ActionUsage>();
+
+    /**
+     * @see #getMouseCount()
+     */
+    private int mouseCount;
+
+    /**
+     * @see #getKeyboardCount()
+     */
+    private int keyboardCount;
+
+    /**
+     * @see #getRecentMouseShare()
+     */
+    private double recentMouseShare;
+
+    /**
+     * @see #getVersion()
+     */
+    private int version;
+
+    /**
+     * Creates an aggregator with {@link #DEFAULT_SMOOTHING}.
+     */
+    public ActionUsageAggregator() {
+        this(DEFAULT_SMOOTHING);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param smoothing
+     *            the weight of the latest invocation in the recent mouse
+     *            shares. Greater than 0, not greater than 1.
+     */
+    public ActionUsageAggregator(final double smoothing) {
+        isTrue(smoothing > 0 && smoothing <= 1);
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Counts the action invocation.
+     *
+     * @param action
+     *            the invoked action. Not <code>null</code>.
+     * @param keyboard
+     *            whether the action was invoked with the keyboard.
+     */
+    public void onAction(final AbstractActionDesc action, final boolean keyboard) {
+        onAction(action, keyboard, 1);
+    }
+
+    /**
+     * Counts a sampled action invocation. The counts grow by the sample
+     * weight, and the recent mouse shares change as if the invocation was
+     * repeated that many times, so the statistics stay unbiased estimates of
+     * the statistics of all the invocations.
+     *
+     * @param action
+     *            the invoked action. Not <code>null</code>.
+     * @param keyboard
+     *            whether the action was invoked with the keyboard.
+     * @param weight
+     *            the number of the invocations the sample stands for.
+     *            Positive.
+     */
+    public void onAction(final AbstractActionDesc action, final boolean keyboard, final int weight) {
+        notNull(action);
+        isTrue(weight > 0);
+        final int ordinal = action.getOrdinal();
+        if (ordinal >= usages.length) {
+            usages = Arrays.copyOf(usages, Math.max(ordinal + 1, usages.length * 2));
+        }
+        ActionUsage usage = usages[ordinal];
+        if (usage == null) {
+            usage = new ActionUsage(action.getId(), action.getLabel());
+            usages[ordinal] = usage;
+            ordered.add(usage);
+        }
+        // applying the smoothing weight times in a row
+        final double weightedSmoothing = weight == 1 ? smoothing : 1 - Math.pow(1 - smoothing, weight);
+        usage.record(action.getLabel(), keyboard, weight, weightedSmoothing);
+
+        final double sample = keyboard ? 0 : 1;
+        if (mouseCount + keyboardCount == 0) {
+            recentMouseShare = sample;
+        } else {
+            recentMouseShare += weightedSmoothing * (sample - recentMouseShare);
+        }
+        if (keyboard) {
+            keyboardCount += weight;
+        } else {
+            mouseCount += weight;
+        }
+        version++;
+    }
+
+    /**
+     * The statistics of the invoked actions.
+     *
+     * @return a new array of the statistics, in the order of the first
+     *         invocation. The statistics are live, they keep changing.
+     *         Never <code>null</code>.
+     */
+    public ActionUsage[] getUsages() {
+        return ordered.toArray(new ActionUsage[ordered.size()]);
+    }
+
+    /**
+     * The statistics of the action.
+     *
+     * @param actionId
+     *            the action id. Not <code>null</code>.
+     * @return the action statistics. <code>null</code> if the action was not
+     *         invoked.
+     */
+    public ActionUsage getUsage(final String actionId) {
+        final int ordinal = ActionIdDictionary.getInstance().find(actionId);
+        return ordinal == ActionIdDictionary.NO_ORDINAL || ordinal >= usages.length ? null : usages[ordinal];
+    }
+
+    /**
+     * The number of all the invocations with the mouse.
+     *
+     * @return the mouse invocations number.
+     */
+    public int getMouseCount() {
+        return mouseCount;
+    }
+
+    /**
+     * The number of all the invocations with the keyboard.
+     *
+     * @return the keyboard invocations number.
+     */
+    public int getKeyboardCount() {
+        return keyboardCount;
+    }
+
+    /**
+     * The share of the mouse invocations among the recent invocations of all
+     * the actions.
+     *
+     * @return the recent mouse share, from 0 to 1.
+     * @see ActionUsage#getRecentMouseShare()
+     */
+    public double getRecentMouseShare() {
+        return recentMouseShare;
+    }
+
+    /**
+     * Is increased on each invocation. Lets the views skip the repaint when
+     * nothing changed.
+     *
+     * @return the statistics version.
+     */
+    public int getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * Finds the location of the text caret at the time of an action invocation.
+ * Finding the caret can be expensive, so {@link ActionInvocation} calls the
+ * locator only when the location is actually needed.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public interface CaretLocator {
+    /**
+     * Finds the caret location.
+     *
+     * @return the caret location in display coordinates. <code>null</code>
+     *         if the action was not invoked from a text control.
+     */
+    Point findCaretLocation();
+}
@@ -18,19 +18,45 @@
  */
 package com.mousefeed.client.collector;
 
+import static org.apache.commons.lang.Validate.isTrue;
 import static org.apache.commons.lang.Validate.notNull;
 
 /**
  * Collects user activity data.
+ * <p>
+ * The mouse invocations are always recorded. The keyboard invocations, which
+ * are the bulk of the invocations of a keyboard-savvy user, can be sampled,
+ * see {@link #setKeyboardSampling(int)}.
+ * </p>
  * @author Andriy Palamarchuk
  */
 public class Collector {
+    /**
+     * The default value of {@link #getKeyboardSampling()}: all the keyboard
+     * invocations are recorded.
+     */
+    public static final int DEFAULT_KEYBOARD_SAMPLING = 1;
 
     /**
      * @see #getLastAction()
      */
     private AbstractActionDesc lastAction;
 
+    /**
+     * @see #getUsage()
+     */
+    private final ActionUsageAggregator usage = new ActionUsageAggregator();
+
+    /**
+     * The number of the keyboard invocations of each action, recorded or not.
+     */
+    private final ActionCounts keyboardInvocations = new ActionCounts();
+
+    /**
+     * @see #getKeyboardSampling()
+     */
+    private volatile int keyboardSampling = DEFAULT_KEYBOARD_SAMPLING;
+
     /**
      * Default constructor. Does nothing.
      */
@@ -49,11 +75,71 @@ public class Collector {
     }
 
     /**
-     * Must be called on user action. 
+     * The usage statistics of the actions provided to the collector.
+     * @return the usage statistics. Never <code>null</code>.
+     */
+    public ActionUsageAggregator getUsage() {
+        return usage;
+    }
+
+    /**
+     * Must be called on user action invoked with the mouse.
      * @param action the action. Not be <code>null</code>.
      */
     public void onAction(final AbstractActionDesc action) {
+        onAction(action, false);
+    }
+
+    /**
+     * Must be called on user action. 
+     * @param action the action. Not be <code>null</code>.
+     * @param keyboard whether the action was invoked with the keyboard.
+     * @return the number of the invocations the recorded sample stands for.
+     * 0 if the invocation was skipped by the keyboard sampling.
+     */
+    public int onAction(final AbstractActionDesc action, final boolean keyboard) {
         notNull(action);
         lastAction = action;
+        final int weight = keyboard ? sampleKeyboard(action) : 1;
+        if (weight > 0) {
+            usage.onAction(action, keyboard, weight);
+        }
+        return weight;
+    }
+
+    /**
+     * Decides whether the keyboard invocation is recorded. Records the
+     * invocations of each action at a fixed interval, starting at an offset
+     * derived from the action ordinal. Over the actions the offsets are
+     * spread evenly, so the weighted counts are unbiased estimates of the
+     * actual counts, while each decision stays deterministic.
+     * @param action the action. Assumed not <code>null</code>.
+     * @return the sample weight. 0 if the invocation is not recorded.
+     */
+    private int sampleKeyboard(final AbstractActionDesc action) {
+        final int sampling = keyboardSampling;
+        final int ordinal = action.getOrdinal();
+        final int invocation = keyboardInvocations.increment(ordinal);
+        return (invocation + ordinal) % sampling == 0 ? sampling : 0;
+    }
+
+    /**
+     * Only one of this number of the keyboard invocations of each action is
+     * recorded, with the weight of this number. The mouse invocations are
+     * always recorded.
+     * @return the keyboard sampling interval. 1 if all the keyboard
+     * invocations are recorded.
+     */
+    public int getKeyboardSampling() {
+        return keyboardSampling;
+    }
+
+    /**
+     * @param keyboardSampling the new value for
+     * {@link #getKeyboardSampling()}. Positive.
+     */
+    public void setKeyboardSampling(final int keyboardSampling) {
+        isTrue(keyboardSampling > 0);
+        this.keyboardSampling = keyboardSampling;
     }
 }
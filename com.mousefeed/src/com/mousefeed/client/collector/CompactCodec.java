@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compact encoding of the persisted files: variable-length numbers and
+ * strings written once per string table. A number is written in 7 bit groups,
+ * the least significant first, the high bit set in all the groups but the
+ * last. A string is written as a reference: 0 for <code>null</code>, the table
+ * index plus one for a string written before, or the table size plus one
+ * followed by the new string in the modified UTF-8. The table is shared by all
+ * the strings written until {@link Encoder#reset()}, so the action, category
+ * and scheme ids repeated across the records are stored once.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class CompactCodec {
+    private CompactCodec() {
+    }
+
+    /**
+     * Writes the compact encoding. Must be accessed from a single thread at a
+     * time.
+     */
+    public static final class Encoder {
+        /**
+         * The output.
+         */
+        private final DataOutputStream out;
+
+        /**
+         * The string table. Values - the string references.
+         */
+        private final Map<String, Integer> references = new HashMap<String, Integer>();
+
+        /**
+         * Constructor.
+         *
+         * @param out
+         *            the output. Not <code>null</code>.
+         */
+        public Encoder(final DataOutputStream out) {
+            notNull(out);
+            this.out = out;
+        }
+
+        /**
+         * Writes a non-negative number.
+         *
+         * @param value
+         *            the number. Not negative.
+         * @throws IOException
+         *             if the output could not be written.
+         */
+        public void writeVarLong(final long value) throws IOException {
+            isTrue(value >= 0);
+            long v = value;
+            while ((v & ~0x7FL) != 0) {
+                out.writeByte((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.writeByte((int) v);
+        }
+
+        /**
+         * Writes a reference to the string, and the string itself when it is
+         * not in the table yet.
+         *
+         * @param s
+         *            the string. Can be <code>null</code>.
+         * @throws IOException
+         *             if the output could not be written.
+         */
+        public void writeString(final String s) throws IOException {
+            if (s == null) {
+                writeVarLong(0);
+                return;
+            }
+            final Integer reference = references.get(s);
+            if (reference != null) {
+                writeVarLong(reference);
+                return;
+            }
+            final int newReference = references.size() + 1;
+            references.put(s, newReference);
+            writeVarLong(newReference);
+            out.writeUTF(s);
+        }
+
+        /**
+         * Empties the string table, e.g. when a new session starts.
+         */
+        public void reset() {
+            references.clear();
+        }
+    }
+
+    /**
+     * Reads the compact encoding. Must be accessed from a single thread at a
+     * time.
+     */
+    public static final class Decoder {
+        /**
+         * The input.
+         */
+        private final DataInputStream in;
+
+        /**
+         * The string table.
+         */
+        private final List<String> strings = new ArrayList<String>();
+
+        /**
+         * Constructor.
+         *
+         * @param in
+         *            the input. Not <code>null</code>.
+         */
+        public Decoder(final DataInputStream in) {
+            notNull(in);
+            this.in = in;
+        }
+
+        /**
+         * Reads a number written by {@link Encoder#writeVarLong(long)}.
+         *
+         * @return the number. Not negative.
+         * @throws IOException
+         *             if the input could not be read or the number is too
+         *             long.
+         */
+        public long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                final int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Damaged data, number too long");
+        }
+
+        /**
+         * Reads a number written by {@link Encoder#writeVarLong(long)} which
+         * must fit into an int.
+         *
+         * @return the number. Not negative.
+         * @throws IOException
+         *             if the input could not be read or the number is too
+         *             big.
+         */
+        public int readVarInt() throws IOException {
+            final long value = readVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("Damaged data, number too big " + value);
+            }
+            return (int) value;
+        }
+
+        /**
+         * Reads a string written by {@link Encoder#writeString(String)}.
+         *
+         * @return the string. Can be <code>null</code>.
+         * @throws IOException
+         *             if the input could not be read or the reference is
+         *             invalid.
+         */
+        public String readString() throws IOException {
+            final long reference = readVarLong();
+            if (reference == 0) {
+                return null;
+            } else if (reference <= strings.size()) {
+                return strings.get((int) reference - 1);
+            } else if (reference == strings.size() + 1) {
+                final String s = in.readUTF();
+                strings.add(s);
+                return s;
+            }
+            throw new IOException("Damaged data, unknown string reference " + reference);
+        }
+
+        /**
+         * Empties the string table.
+         * @see Encoder#reset()
+         */
+        public void reset() {
+            strings.clear();
+        }
+    }
+}
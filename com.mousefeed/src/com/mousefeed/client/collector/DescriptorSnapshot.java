@@ -0,0 +1,439 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The resolved command descriptions, persisted between the sessions, so the
+ * command accelerators in all the schemes do not have to be resolved again
+ * after a restart.
+ * <p>
+ * The snapshot is valid for a single binding configuration, identified by
+ * {@link #getConfigHash()}. The active bindings also depend on the active
+ * contexts, so each entry is stored with a key of the contexts it was
+ * resolved for. The accelerators are stored by the scheme ids, because the
+ * {@link SchemeRegistry} ordinals are not stable between the sessions.
+ * </p>
+ * <p>
+ * The file starts with {@link #MAGIC}, the format version and the
+ * configuration hash, followed by the number of the entries and the entries
+ * written with {@link CompactCodec}, so each command, category and scheme id
+ * and each accelerator text is stored once. It is written to a temporary file renamed over
+ * the previous snapshot, and read with a single channel read. The file is not
+ * memory-mapped, because a mapped file can't be replaced on Windows until the
+ * mapping is garbage collected, and the snapshot read on startup is written
+ * again on shutdown. Thread-safe.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class DescriptorSnapshot {
+    /**
+     * The file signature, "MFDS".
+     */
+    public static final int MAGIC = 0x4D464453;
+
+    /**
+     * The version of the file format.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    /**
+     * The maximal number of the entries kept. The further entries are not
+     * recorded.
+     */
+    static final int MAX_ENTRIES = 8192;
+
+    /**
+     * @see #getConfigHash()
+     */
+    private final long configHash;
+
+    /**
+     * The entries. Keys - see {@link #toKey(int, int)}.
+     */
+    private final Map<Long, Entry> entries = new LinkedHashMap<Long, Entry>();
+
+    /**
+     * Whether the entries changed since the snapshot was read or written.
+     */
+    private boolean dirty;
+
+    /**
+     * A resolved command description.
+     */
+    public static class Entry {
+        /**
+         * @see #getLabel()
+         */
+        private final String label;
+
+        /**
+         * @see #getCategoryId()
+         */
+        private final String categoryId;
+
+        /**
+         * @see #getAccelerators()
+         */
+        private final Map<String, String> accelerators;
+
+        /**
+         * Constructor.
+         *
+         * @param label
+         *            the command label. Not <code>null</code>.
+         * @param categoryId
+         *            the command category id. Can be <code>null</code>.
+         * @param accelerators
+         *            the accelerators. Keys - the scheme ids,
+         *            {@link AbstractActionDesc#DEFAULT_ACCELERATOR_KEY} for
+         *            the active scheme. Not <code>null</code>, is copied.
+         */
+        public Entry(final String label, final String categoryId, final Map<String, String> accelerators) {
+            notNull(label);
+            notNull(accelerators);
+            this.label = label;
+            this.categoryId = categoryId;
+            this.accelerators = Collections.unmodifiableMap(new HashMap<String, String>(accelerators));
+        }
+
+        /**
+         * The command label.
+         *
+         * @return the label. Not <code>null</code>.
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * The command category id.
+         *
+         * @return the category id. <code>null</code> if the command has no
+         *         category.
+         */
+        public String getCategoryId() {
+            return categoryId;
+        }
+
+        /**
+         * The command accelerators.
+         *
+         * @return the unmodifiable accelerators. Keys - the scheme ids,
+         *         {@link AbstractActionDesc#DEFAULT_ACCELERATOR_KEY} for the
+         *         active scheme. Not <code>null</code>.
+         */
+        public Map<String, String> getAccelerators() {
+            return accelerators;
+        }
+    }
+
+    /**
+     * Creates an empty snapshot.
+     *
+     * @param configHash
+     *            the hash of the binding configuration the entries are
+     *            resolved for.
+     */
+    public DescriptorSnapshot(final long configHash) {
+        this.configHash = configHash;
+    }
+
+    /**
+     * Reads the snapshot.
+     *
+     * @param file
+     *            the snapshot file. Not <code>null</code>.
+     * @param configHash
+     *            the hash of the current binding configuration.
+     * @return the snapshot. <code>null</code> if the file does not exist, is
+     *         damaged or was written for another binding configuration.
+     * @throws IOException
+     *             if the file can't be read.
+     */
+    public static DescriptorSnapshot read(final File file, final long configHash) throws IOException {
+        notNull(file);
+        if (!file.isFile()) {
+            return null;
+        }
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // until the buffer is full
+            }
+            buffer.flip();
+            return parse(buffer, configHash);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Parses the snapshot.
+     *
+     * @param buffer
+     *            the file contents. Assumed not <code>null</code>.
+     * @param configHash
+     *            the hash of the current binding configuration.
+     * @return the snapshot. <code>null</code> if the contents are damaged or
+     *         were written for another binding configuration.
+     */
+    private static DescriptorSnapshot parse(final ByteBuffer buffer, final long configHash) {
+        final DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != configHash) {
+                return null;
+            }
+            final DescriptorSnapshot snapshot = new DescriptorSnapshot(configHash);
+            final CompactCodec.Decoder codec = new CompactCodec.Decoder(in);
+            final int count = codec.readVarInt();
+            for (int i = 0; i < count; i++) {
+                final String commandId = readNotNull(codec);
+                final int contextKey = in.readInt();
+                final String label = readNotNull(codec);
+                final String categoryId = codec.readString();
+                final int acceleratorCount = codec.readVarInt();
+                final Map<String, String> accelerators = new HashMap<String, String>();
+                for (int j = 0; j < acceleratorCount; j++) {
+                    accelerators.put(readNotNull(codec), readNotNull(codec));
+                }
+                snapshot.entries.put(toKey(ActionIdDictionary.getInstance().getOrdinal(commandId), contextKey),
+                        new Entry(label, categoryId, accelerators));
+            }
+            return snapshot;
+        } catch (final IOException e) {
+            // truncated or damaged
+            return null;
+        }
+    }
+
+    /**
+     * Reads a string which must not be <code>null</code>.
+     *
+     * @param codec
+     *            the snapshot input. Assumed not <code>null</code>.
+     * @return the string. Not <code>null</code>.
+     * @throws IOException
+     *             if the input could not be read or the string is
+     *             <code>null</code>.
+     */
+    private static String readNotNull(final CompactCodec.Decoder codec) throws IOException {
+        final String s = codec.readString();
+        if (s == null) {
+            throw new IOException("Damaged descriptor snapshot, missing string");
+        }
+        return s;
+    }
+
+    /**
+     * Writes the snapshot, replacing the existing file.
+     *
+     * @param file
+     *            the snapshot file. Not <code>null</code>.
+     * @throws IOException
+     *             if the snapshot can't be written.
+     */
+    public synchronized void write(final File file) throws IOException {
+        notNull(file);
+        final File temp = new File(file.getPath() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(configHash);
+            final CompactCodec.Encoder codec = new CompactCodec.Encoder(out);
+            codec.writeVarLong(entries.size());
+            for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+                final long key = e.getKey();
+                codec.writeString(ActionIdDictionary.getInstance().getId((int) (key >>> Integer.SIZE)));
+                out.writeInt((int) key);
+                final Entry entry = e.getValue();
+                codec.writeString(entry.getLabel());
+                codec.writeString(entry.getCategoryId());
+                codec.writeVarLong(entry.getAccelerators().size());
+                for (Map.Entry<String, String> accelerator : entry.getAccelerators().entrySet()) {
+                    codec.writeString(accelerator.getKey());
+                    codec.writeString(accelerator.getValue());
+                }
+            }
+        } finally {
+            out.close();
+        }
+        // File.renameTo does not replace the existing file on all platforms
+        if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        dirty = false;
+    }
+
+    /**
+     * The hash of the binding configuration the entries are resolved for.
+     *
+     * @return the configuration hash.
+     */
+    public long getConfigHash() {
+        return configHash;
+    }
+
+    /**
+     * The entry resolved for the command in the contexts.
+     *
+     * @param commandId
+     *            the command id. Not <code>null</code>.
+     * @param contextKey
+     *            the key of the active contexts.
+     * @return the entry. <code>null</code> if there is no entry resolved for
+     *         the command in the contexts.
+     */
+    public synchronized Entry get(final String commandId, final int contextKey) {
+        notNull(commandId);
+        final int ordinal = ActionIdDictionary.getInstance().find(commandId);
+        return ordinal == ActionIdDictionary.NO_ORDINAL ? null : entries.get(toKey(ordinal, contextKey));
+    }
+
+    /**
+     * Records the entry resolved for the command in the contexts. Does
+     * nothing if the snapshot already contains {@link #MAX_ENTRIES}.
+     *
+     * @param commandId
+     *            the command id. Not <code>null</code>.
+     * @param contextKey
+     *            the key of the active contexts.
+     * @param entry
+     *            the entry. Not <code>null</code>.
+     */
+    public synchronized void put(final String commandId, final int contextKey, final Entry entry) {
+        notNull(commandId);
+        notNull(entry);
+        final Long key = toKey(ActionIdDictionary.getInstance().getOrdinal(commandId), contextKey);
+        if (entries.size() >= MAX_ENTRIES && !entries.containsKey(key)) {
+            return;
+        }
+        entries.put(key, entry);
+        dirty = true;
+    }
+
+    /**
+     * The number of the entries.
+     *
+     * @return the number of the entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Whether the snapshot changed since it was read or written.
+     *
+     * @return <code>true</code> if the snapshot should be written.
+     */
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Calculates a 64-bit FNV-1a hash of the binding configuration
+     * description.
+     *
+     * @param config
+     *            the configuration description. Not <code>null</code>.
+     * @return the hash.
+     */
+    public static long hash(final CharSequence config) {
+        notNull(config);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < config.length(); i++) {
+            hash ^= config.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * The key of the entry.
+     *
+     * @param commandOrdinal
+     *            the ordinal of the command id in {@link ActionIdDictionary}.
+     * @param contextKey
+     *            the key of the active contexts.
+     * @return the entry key, the ordinal in the high half and the context key
+     *         in the low half. Not <code>null</code>.
+     */
+    private static Long toKey(final int commandOrdinal, final int contextKey) {
+        return (long) commandOrdinal << Integer.SIZE | contextKey & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Reads the file contents.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        /**
+         * The buffer to read.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Constructor.
+         *
+         * @param buffer
+         *            the buffer to read. Assumed not <code>null</code>.
+         */
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            isTrue(len >= 0);
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
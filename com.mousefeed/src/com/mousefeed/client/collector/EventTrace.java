@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.FeedbackOutcome;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compact binary trace of the events processed by MouseFeed, recorded to
+ * tune MouseFeed against the real usage and replayed by
+ * {@link com.mousefeed.tools.TraceReplay}.
+ * <p>
+ * Each {@link Writer} appends a session: {@link #SESSION_TAG},
+ * {@link #MAGIC}, {@link #FORMAT_VERSION} and the session start time,
+ * followed by the events. An event is {@link #EVENT_TAG}, the time since the
+ * previous event as a variable-length number, the source and the item type
+ * packed into a byte, the outcome, the flags and the action and the category
+ * ids. The ids are written with {@link CompactCodec}, the string table is
+ * reset for each session.
+ * </p>
+ * <p>
+ * The trace is anonymized: the ids which are not plain identifiers, such as
+ * the labels of the actions without an id, are replaced with their hashes, see
+ * {@link #anonymize(String)}.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class EventTrace {
+    /**
+     * The session signature, "MFT1".
+     */
+    public static final int MAGIC = 0x4D465431;
+
+    /**
+     * The version of the trace format.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * Starts a session.
+     */
+    static final int SESSION_TAG = 'S';
+
+    /**
+     * Starts an event.
+     */
+    static final int EVENT_TAG = 'E';
+
+    /**
+     * The event flag of {@link TraceEvent#hasAccelerator()}.
+     */
+    private static final int ACCELERATOR_FLAG = 1;
+
+    /**
+     * The event flag of {@link TraceEvent#isKeyboard()}.
+     */
+    private static final int KEYBOARD_FLAG = 2;
+
+    /**
+     * The event flag of {@link TraceEvent#isConfigurable()}.
+     */
+    private static final int CONFIGURABLE_FLAG = 4;
+
+    /**
+     * The prefix of the anonymized ids.
+     */
+    private static final String HASH_PREFIX = "#";
+
+    /**
+     * Receives the trace events.
+     */
+    public interface Visitor {
+        /**
+         * Is called for each event of the trace.
+         *
+         * @param event
+         *            the event. Not <code>null</code>.
+         */
+        void onEvent(TraceEvent event);
+    }
+
+    private EventTrace() {
+    }
+
+    /**
+     * Appends the events to a trace file. Must be accessed from a single
+     * thread at a time.
+     */
+    public static final class Writer {
+        /**
+         * The buffered trace output.
+         */
+        private final DataOutputStream out;
+
+        /**
+         * Writes the numbers and the ids.
+         */
+        private final CompactCodec.Encoder codec;
+
+        /**
+         * The time of the last event.
+         */
+        private long lastTime;
+
+        /**
+         * Opens the trace file and starts a new session.
+         *
+         * @param file
+         *            the trace file. Is created if it does not exist. Not
+         *            <code>null</code>.
+         * @param startTime
+         *            the session start time, in milliseconds since the
+         *            epoch.
+         * @throws IOException
+         *             if the file could not be opened.
+         */
+        public Writer(final File file, final long startTime) throws IOException {
+            this(new FileOutputStream(file, true), startTime);
+        }
+
+        /**
+         * Starts a new session.
+         *
+         * @param out
+         *            the trace output. Is closed by {@link #close()}. Not
+         *            <code>null</code>.
+         * @param startTime
+         *            the session start time, in milliseconds since the
+         *            epoch.
+         * @throws IOException
+         *             if the output could not be written.
+         */
+        public Writer(final OutputStream out, final long startTime) throws IOException {
+            notNull(out);
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.codec = new CompactCodec.Encoder(this.out);
+            this.out.writeByte(SESSION_TAG);
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(FORMAT_VERSION);
+            this.out.writeLong(startTime);
+            lastTime = startTime;
+        }
+
+        /**
+         * Appends the event. The event is buffered, see {@link #flush()}.
+         *
+         * @param event
+         *            the event. Not <code>null</code>.
+         * @throws IOException
+         *             if the trace could not be written.
+         */
+        public void write(final TraceEvent event) throws IOException {
+            notNull(event);
+            out.writeByte(EVENT_TAG);
+            codec.writeVarLong(Math.max(0, event.getTime() - lastTime));
+            lastTime = Math.max(lastTime, event.getTime());
+            out.writeByte(event.getSource().ordinal() << 4 | event.getItemType().ordinal());
+            out.writeByte(event.getOutcome().ordinal());
+            out.writeByte((event.hasAccelerator() ? ACCELERATOR_FLAG : 0) | (event.isKeyboard() ? KEYBOARD_FLAG : 0)
+                    | (event.isConfigurable() ? CONFIGURABLE_FLAG : 0));
+            codec.writeString(anonymize(event.getActionId()));
+            codec.writeString(event.getCategoryId());
+        }
+
+        /**
+         * Writes the buffered events to the file.
+         *
+         * @throws IOException
+         *             if the trace could not be written.
+         */
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Writes the buffered events and closes the file.
+         *
+         * @throws IOException
+         *             if the trace could not be written.
+         */
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the trace events one by one, without loading the whole trace.
+     * Stops at an event cut off by a crash.
+     *
+     * @param in
+     *            the trace content. Is not closed. Not <code>null</code>.
+     * @param visitor
+     *            receives the events. Not <code>null</code>.
+     * @return the number of the events read.
+     * @throws IOException
+     *             if the input could not be read or is not a trace of a
+     *             supported version.
+     */
+    public static int read(final InputStream in, final Visitor visitor) throws IOException {
+        notNull(in);
+        notNull(visitor);
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        final CompactCodec.Decoder codec = new CompactCodec.Decoder(data);
+        long time = 0;
+        int count = 0;
+        while (true) {
+            final int tag = data.read();
+            if (tag == -1) {
+                return count;
+            }
+            try {
+                if (tag == SESSION_TAG) {
+                    if (data.readInt() != MAGIC || data.readUnsignedByte() != FORMAT_VERSION) {
+                        throw new IOException("Not an event trace of version " + FORMAT_VERSION);
+                    }
+                    time = data.readLong();
+                    codec.reset();
+                } else if (tag == EVENT_TAG) {
+                    time += codec.readVarLong();
+                    final int types = data.readUnsignedByte();
+                    final FeedbackOutcome outcome = FeedbackOutcome.values()[data.readUnsignedByte()];
+                    final int flags = data.readUnsignedByte();
+                    final String actionId = codec.readString();
+                    final String categoryId = codec.readString();
+                    visitor.onEvent(new TraceEvent(time, TraceEvent.Source.values()[types >>> 4],
+                            TraceEvent.ItemType.values()[types & 0xF], actionId, categoryId,
+                            (flags & ACCELERATOR_FLAG) != 0, (flags & KEYBOARD_FLAG) != 0,
+                            (flags & CONFIGURABLE_FLAG) != 0, outcome));
+                    count++;
+                } else {
+                    throw new IOException("Damaged event trace, unexpected tag " + tag);
+                }
+            } catch (final EOFException e) {
+                return count;
+            } catch (final ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Damaged event trace", e);
+            }
+        }
+    }
+
+    /**
+     * Anonymizes the action id. The ids consisting of the identifier
+     * characters and dots, e.g. the command ids, are kept. Any other ids,
+     * e.g. the labels of the dynamic menu items which may contain file names,
+     * are replaced with their hashes.
+     *
+     * @param id
+     *            the id. Can be <code>null</code>.
+     * @return the id or its hash prefixed with "#". <code>null</code> if the
+     *         id is <code>null</code>.
+     */
+    public static String anonymize(final String id) {
+        if (id == null || isPlainId(id)) {
+            return id;
+        }
+        return HASH_PREFIX + Long.toHexString(DescriptorSnapshot.hash(id));
+    }
+
+    /**
+     * Whether the id consists of the identifier characters and dots only.
+     *
+     * @param id
+     *            the id. Assumed not <code>null</code>.
+     * @return <code>true</code> if the id is a plain identifier.
+     */
+    private static boolean isPlainId(final String id) {
+        if (id.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            final char c = id.charAt(i);
+            if (c != '.' && c != '-' && !Character.isJavaIdentifierPart(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
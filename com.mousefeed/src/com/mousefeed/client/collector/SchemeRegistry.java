@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+import static org.apache.commons.lang.Validate.isTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns the key binding schemes stable ordinals. The action descriptions
+ * store the accelerators of the schemes in arrays indexed by the ordinals.
+ * Ordinals of the removed schemes are not reused, so they stay valid as long
+ * as the registry lives. Singleton. Thread-safe.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class SchemeRegistry {
+    /**
+     * The ordinal of the accelerator in the currently active scheme.
+     * Corresponds to {@link AbstractActionDesc#DEFAULT_ACCELERATOR_KEY}.
+     */
+    public static final int DEFAULT_ORDINAL = 0;
+
+    /**
+     * The value returned for the unknown schemes.
+     */
+    public static final int NO_ORDINAL = -1;
+
+    /**
+     * The singleton instance.
+     */
+    private static final SchemeRegistry INSTANCE = new SchemeRegistry();
+
+    /**
+     * The scheme ordinals. Keys - scheme ids.
+     */
+    private final Map<String, Integer> ordinals = new HashMap<String, Integer>();
+
+    /**
+     * The scheme ids indexed by their ordinals.
+     */
+    private final List<String> schemeIds = new ArrayList<String>();
+
+    /**
+     * The ordinals of the schemes currently registered.
+     */
+    private final BitSet registered = new BitSet();
+
+    /**
+     * Creates new registry. Because this class is a singleton, the constructor
+     * normally should not be used. It is exposed for testing purposes only.
+     */
+    SchemeRegistry() {
+        register(AbstractActionDesc.DEFAULT_ACCELERATOR_KEY);
+    }
+
+    /**
+     * The singleton instance.
+     *
+     * @return the singleton instance. Never <code>null</code>.
+     */
+    public static SchemeRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the scheme, e.g. when a bundle contributing the scheme is
+     * installed.
+     *
+     * @param schemeId
+     *            the scheme id. Not blank.
+     * @return the scheme ordinal. If the scheme was registered before, even if
+     *         it was removed later, returns the same ordinal as before.
+     */
+    public synchronized int register(final String schemeId) {
+        isTrue(isNotBlank(schemeId));
+        final Integer ordinal = ordinals.get(schemeId);
+        if (ordinal != null) {
+            registered.set(ordinal);
+            return ordinal;
+        }
+        final int newOrdinal = schemeIds.size();
+        schemeIds.add(schemeId);
+        ordinals.put(schemeId, newOrdinal);
+        registered.set(newOrdinal);
+        return newOrdinal;
+    }
+
+    /**
+     * Removes the scheme, e.g. when a bundle contributing the scheme is
+     * uninstalled. Keeps the scheme ordinal reserved.
+     *
+     * @param schemeId
+     *            the scheme id. Not <code>null</code>.
+     */
+    public synchronized void unregister(final String schemeId) {
+        final Integer ordinal = ordinals.get(schemeId);
+        if (ordinal != null && ordinal != DEFAULT_ORDINAL) {
+            registered.clear(ordinal);
+        }
+    }
+
+    /**
+     * The ordinal of the registered scheme.
+     *
+     * @param schemeId
+     *            the scheme id. Not <code>null</code>.
+     * @return the scheme ordinal. {@link #NO_ORDINAL} if the scheme is not
+     *         registered.
+     */
+    public synchronized int getOrdinal(final String schemeId) {
+        final Integer ordinal = ordinals.get(schemeId);
+        return ordinal == null || !registered.get(ordinal) ? NO_ORDINAL : ordinal;
+    }
+
+    /**
+     * The id of the scheme with the ordinal.
+     *
+     * @param ordinal
+     *            the scheme ordinal. Not negative, smaller than
+     *            {@link #size()}.
+     * @return the scheme id, even if the scheme was removed. Not
+     *         <code>null</code>.
+     */
+    public synchronized String getSchemeId(final int ordinal) {
+        isTrue(ordinal >= 0 && ordinal < schemeIds.size());
+        return schemeIds.get(ordinal);
+    }
+
+    /**
+     * Whether the scheme with the ordinal is registered.
+     *
+     * @param ordinal
+     *            the scheme ordinal.
+     * @return <code>true</code> if the scheme is registered.
+     */
+    public synchronized boolean isRegistered(final int ordinal) {
+        return ordinal >= 0 && registered.get(ordinal);
+    }
+
+    /**
+     * The number of ordinals assigned so far, including the removed schemes.
+     * All ordinals are smaller than this number.
+     *
+     * @return the ordinals number. Is at least 1, for
+     *         {@link #DEFAULT_ORDINAL}.
+     */
+    public synchronized int size() {
+        return schemeIds.size();
+    }
+}
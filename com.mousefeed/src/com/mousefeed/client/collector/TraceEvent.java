@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.FeedbackOutcome;
+
+/**
+ * An event processed by MouseFeed, as recorded in an {@link EventTrace}.
+ * Contains only what the MouseFeed decisions depend on: no labels, no
+ * locations, and the action ids anonymized by {@link EventTrace}. Immutable.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class TraceEvent {
+    /**
+     * Where the event came from.
+     */
+    public enum Source {
+        /** A menu item was selected. */
+        MENU_ITEM,
+        /** A tool bar item was selected. */
+        TOOL_ITEM,
+        /** A command was executed, e.g. by a key binding. */
+        COMMAND
+    }
+
+    /**
+     * The type of the contribution item of the selected widget.
+     */
+    public enum ItemType {
+        /** The event has no contribution item, e.g. a command execution. */
+        NONE,
+        /** An action contribution item. */
+        ACTION,
+        /** A command contribution item. */
+        COMMAND,
+        /** An E4 handled contribution item. */
+        HANDLED,
+        /** Any other contribution item. */
+        OTHER
+    }
+
+    /**
+     * @see #getTime()
+     */
+    private final long time;
+
+    /**
+     * @see #getSource()
+     */
+    private final Source source;
+
+    /**
+     * @see #getItemType()
+     */
+    private final ItemType itemType;
+
+    /**
+     * @see #getActionId()
+     */
+    private final String actionId;
+
+    /**
+     * @see #getCategoryId()
+     */
+    private final String categoryId;
+
+    /**
+     * @see #hasAccelerator()
+     */
+    private final boolean accelerator;
+
+    /**
+     * @see #isKeyboard()
+     */
+    private final boolean keyboard;
+
+    /**
+     * @see #isConfigurable()
+     */
+    private final boolean configurable;
+
+    /**
+     * @see #getOutcome()
+     */
+    private final FeedbackOutcome outcome;
+
+    /**
+     * Constructor.
+     *
+     * @param time
+     *            see {@link #getTime()}.
+     * @param source
+     *            see {@link #getSource()}. Not <code>null</code>.
+     * @param itemType
+     *            see {@link #getItemType()}. Not <code>null</code>.
+     * @param actionId
+     *            see {@link #getActionId()}. Can be <code>null</code>.
+     * @param categoryId
+     *            see {@link #getCategoryId()}. Can be <code>null</code>.
+     * @param accelerator
+     *            see {@link #hasAccelerator()}.
+     * @param keyboard
+     *            see {@link #isKeyboard()}.
+     * @param configurable
+     *            see {@link #isConfigurable()}.
+     * @param outcome
+     *            see {@link #getOutcome()}. Not <code>null</code>.
+     */
+    public TraceEvent(final long time, final Source source, final ItemType itemType, final String actionId,
+            final String categoryId, final boolean accelerator, final boolean keyboard, final boolean configurable,
+            final FeedbackOutcome outcome) {
+        notNull(source);
+        notNull(itemType);
+        notNull(outcome);
+        this.time = time;
+        this.source = source;
+        this.itemType = itemType;
+        this.actionId = actionId;
+        this.categoryId = categoryId;
+        this.accelerator = accelerator;
+        this.keyboard = keyboard;
+        this.configurable = configurable;
+        this.outcome = outcome;
+    }
+
+    /**
+     * @return the event time, in milliseconds since the epoch.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return where the event came from. Never <code>null</code>.
+     */
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * @return the contribution item type. Never <code>null</code>.
+     */
+    public ItemType getItemType() {
+        return itemType;
+    }
+
+    /**
+     * @return the action or command id. <code>null</code> if the action
+     *         could not be described.
+     */
+    public String getActionId() {
+        return actionId;
+    }
+
+    /**
+     * @return the command category id. <code>null</code> if the action has
+     *         no category.
+     */
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    /**
+     * @return whether the action had an accelerator.
+     */
+    public boolean hasAccelerator() {
+        return accelerator;
+    }
+
+    /**
+     * @return whether the action was invoked with the keyboard.
+     */
+    public boolean isKeyboard() {
+        return keyboard;
+    }
+
+    /**
+     * @return whether a keyboard shortcut could be configured for the action.
+     *         Only recorded for the actions without an accelerator.
+     */
+    public boolean isConfigurable() {
+        return configurable;
+    }
+
+    /**
+     * @return what MouseFeed did about the event. Never <code>null</code>.
+     */
+    public FeedbackOutcome getOutcome() {
+        return outcome;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return time + " " + source + " " + itemType + " " + actionId + " " + outcome;
+    }
+}
@@ -0,0 +1,641 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.metrics.Metrics;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Appends the action invocations to a journal file, so the usage can be
+ * analyzed offline and shared between the workspaces.
+ * <p>
+ * The journal consists of records of {@link #RECORD_SIZE} bytes. Each record
+ * starts with {@link #MAGIC}, followed by the time, the mouse and keyboard
+ * invocation counts, the action id and the action label, written with
+ * {@link DataOutputStream} and padded with zeros. The records are appended
+ * whole, with a single write to a file opened for appending, so several
+ * Eclipse instances can append to the same journal without any locking: the
+ * records never interleave, and a damaged record is skipped without affecting
+ * the following ones. A record cut off by a crash is followed by the records
+ * appended later, so after a damaged record the reader looks for the next
+ * {@link #MAGIC} instead of assuming the record boundaries.
+ * </p>
+ * <p>
+ * {@link #enqueue(AbstractActionDesc, boolean, int, long)} only queues the
+ * invocation in memory, so the user does not wait for the disk. The queued
+ * records are appended together by {@link #flush()}, called in the
+ * background.
+ * </p>
+ * <p>
+ * The journal is opened for each append, which is cheap at the rate of the
+ * user actions, so {@link #compact(File, long)} can move it away.
+ * Compaction, which merges the records of each action, is the only operation
+ * taking a lock.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class UsageJournal implements Flushable {
+    /**
+     * The record signature, "MFU2".
+     */
+    public static final int MAGIC = 0x4D465532;
+
+    /**
+     * The size of each record, in bytes.
+     */
+    public static final int RECORD_SIZE = 256;
+
+    /**
+     * The size of the record fields preceding the strings: the signature, the
+     * time and the counts.
+     */
+    private static final int HEADER_SIZE = 4 + 8 + 4 + 4;
+
+    /**
+     * The suffix of the journal being compacted.
+     */
+    private static final String COMPACTING_SUFFIX = ".compacting";
+
+    /**
+     * The suffix of the compaction lock file.
+     */
+    private static final String LOCK_SUFFIX = ".lock";
+
+    /**
+     * The action id of the record marking the merged records of a
+     * compaction. The marker time holds the checksum of the compacted
+     * journal. Is never reported to the visitors.
+     */
+    private static final String MARKER_ID = "";
+
+    /**
+     * The journal file.
+     */
+    private final File file;
+
+    /**
+     * The encoded records waiting for {@link #flush()}. Guarded by
+     * <code>this</code>.
+     */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /**
+     * When the oldest of the {@link #pending} records was queued, in
+     * {@link System#nanoTime()} units. Guarded by <code>this</code>.
+     */
+    private long oldestPending;
+
+    /**
+     * Receives the journal records.
+     */
+    public interface Visitor {
+        /**
+         * Is called for each record of the journal.
+         *
+         * @param actionId
+         *            the action id. Not <code>null</code>.
+         * @param label
+         *            the action label. Not <code>null</code>.
+         * @param mouseCount
+         *            the number of the invocations with the mouse. 1 or 0
+         *            unless the record was compacted.
+         * @param keyboardCount
+         *            the number of the invocations with the keyboard.
+         * @param time
+         *            the latest invocation time, in milliseconds since the
+         *            epoch.
+         */
+        void onRecord(String actionId, String label, int mouseCount, int keyboardCount, long time);
+    }
+
+    /**
+     * Constructor. Does not access the file.
+     *
+     * @param file
+     *            the journal file. Is created on the first append. Not
+     *            <code>null</code>.
+     */
+    public UsageJournal(final File file) {
+        notNull(file);
+        this.file = file;
+    }
+
+    /**
+     * The journal file.
+     *
+     * @return the file. Never <code>null</code>.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Appends the invocation.
+     *
+     * @param action
+     *            the invoked action. Not <code>null</code>.
+     * @param keyboard
+     *            whether the action was invoked with the keyboard.
+     * @param time
+     *            the invocation time, in milliseconds since the epoch.
+     * @throws IOException
+     *             if the journal could not be written.
+     */
+    public void append(final AbstractActionDesc action, final boolean keyboard, final long time)
+            throws IOException {
+        notNull(action);
+        write(encode(action.getId(), action.getLabel(), keyboard ? 0 : 1, keyboard ? 1 : 0, time));
+    }
+
+    /**
+     * Queues the invocation to be appended by {@link #flush()}.
+     *
+     * @param action
+     *            the invoked action. Not <code>null</code>.
+     * @param keyboard
+     *            whether the action was invoked with the keyboard.
+     * @param count
+     *            the number of the invocations the record stands for, more
+     *            than 1 for a sampled invocation. Positive.
+     * @param time
+     *            the invocation time, in milliseconds since the epoch.
+     */
+    public synchronized void enqueue(final AbstractActionDesc action, final boolean keyboard, final int count,
+            final long time) {
+        notNull(action);
+        isTrue(count > 0);
+        final byte[] record = encode(action.getId(), action.getLabel(), keyboard ? 0 : count, keyboard ? count : 0,
+                time);
+        if (pending.size() == 0) {
+            oldestPending = System.nanoTime();
+        }
+        pending.write(record, 0, record.length);
+    }
+
+    /**
+     * Appends the queued invocations with a single write. Must not be called
+     * concurrently.
+     *
+     * @throws IOException
+     *             if the journal could not be written. The queued invocations
+     *             are kept, ahead of the ones queued since, for the next
+     *             flush.
+     */
+    public void flush() throws IOException {
+        final byte[] records;
+        final long oldest;
+        synchronized (this) {
+            if (pending.size() == 0) {
+                return;
+            }
+            records = pending.toByteArray();
+            oldest = oldestPending;
+            pending.reset();
+        }
+        boolean written = false;
+        try {
+            write(records);
+            written = true;
+        } finally {
+            if (!written) {
+                requeue(records, oldest);
+            }
+        }
+        Metrics.getInstance().getJournalWriteLag().observe(System.nanoTime() - oldest);
+    }
+
+    /**
+     * Puts the records of a failed flush back in front of the records queued
+     * since.
+     *
+     * @param records
+     *            the records which were not written. Assumed not
+     *            <code>null</code>.
+     * @param oldest
+     *            when the oldest of the records was queued, in
+     *            {@link System#nanoTime()} units.
+     */
+    private synchronized void requeue(final byte[] records, final long oldest) {
+        final byte[] queued = pending.toByteArray();
+        pending.reset();
+        pending.write(records, 0, records.length);
+        pending.write(queued, 0, queued.length);
+        oldestPending = oldest;
+    }
+
+    /**
+     * Appends the records to the journal file.
+     *
+     * @param records
+     *            the encoded records. Assumed not <code>null</code>.
+     * @throws IOException
+     *             if the journal could not be written.
+     */
+    private void write(final byte[] records) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(records);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the journal records one by one, without loading the whole
+     * journal. Skips the damaged records, including a record cut off by a
+     * crash, and continues with the next record signature.
+     *
+     * @param in
+     *            the journal content. Is not closed. Not <code>null</code>.
+     * @param visitor
+     *            receives the records. Not <code>null</code>.
+     * @return the number of the records read.
+     * @throws IOException
+     *             if the input could not be read.
+     */
+    public static int read(final InputStream in, final Visitor visitor) throws IOException {
+        notNull(in);
+        notNull(visitor);
+        return read(in, visitor, null);
+    }
+
+    /**
+     * Reads the journal records and the compaction markers.
+     *
+     * @param in
+     *            the journal content. Is not closed. Assumed not
+     *            <code>null</code>.
+     * @param visitor
+     *            receives the records. Assumed not <code>null</code>.
+     * @param markers
+     *            receives the checksums of the compaction markers. Can be
+     *            <code>null</code>.
+     * @return the number of the records read, not counting the markers.
+     * @throws IOException
+     *             if the input could not be read.
+     */
+    private static int read(final InputStream in, final Visitor visitor, final Set<Long> markers)
+            throws IOException {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        final byte[] record = new byte[RECORD_SIZE];
+        int count = 0;
+        // the bytes of the next record already in the buffer
+        int filled = 0;
+        while (true) {
+            try {
+                data.readFully(record, filled, RECORD_SIZE - filled);
+            } catch (final EOFException e) {
+                return count;
+            }
+            final int decoded = decode(record, visitor, markers);
+            if (decoded < 0) {
+                final int next = findMagic(record);
+                filled = RECORD_SIZE - next;
+                System.arraycopy(record, next, record, 0, filled);
+            } else {
+                count += decoded;
+                filled = 0;
+            }
+        }
+    }
+
+    /**
+     * Looks for the next record signature in a damaged record.
+     *
+     * @param record
+     *            the damaged record. Assumed not <code>null</code>.
+     * @return the offset of the first {@link #MAGIC} after the record start,
+     *         or of its beginning at the end of the record.
+     *         {@link #RECORD_SIZE} if there is none.
+     */
+    private static int findMagic(final byte[] record) {
+        for (int offset = 1; offset < RECORD_SIZE; offset++) {
+            boolean found = true;
+            for (int i = 0; i < 4 && offset + i < RECORD_SIZE && found; i++) {
+                found = record[offset + i] == (byte) (MAGIC >>> (24 - 8 * i));
+            }
+            if (found) {
+                return offset;
+            }
+        }
+        return RECORD_SIZE;
+    }
+
+    /**
+     * Merges the records of each action into a single record, so the journal
+     * does not grow forever. Does nothing if another process is compacting
+     * the journal.
+     * <p>
+     * The journal is renamed, so the new records are appended to a new
+     * journal file, then after the grace period, which lets the appends in
+     * progress finish, the renamed journal is merged and appended to the
+     * new journal. A compaction interrupted by a crash is finished by the
+     * next one. The merged records are appended with a marker holding the
+     * checksum of the renamed journal, so if the crash came after the append,
+     * the next compaction only deletes the renamed journal instead of
+     * counting it twice.
+     * </p>
+     *
+     * @param journal
+     *            the journal to compact. Not <code>null</code>.
+     * @param gracePeriod
+     *            how long to wait after the journal is renamed, in
+     *            milliseconds. Not negative.
+     * @return <code>true</code> if the journal was compacted,
+     *         <code>false</code> if another process is compacting it.
+     * @throws IOException
+     *             if the journal could not be compacted.
+     * @throws InterruptedException
+     *             if interrupted during the grace period.
+     */
+    public static boolean compact(final File journal, final long gracePeriod)
+            throws IOException, InterruptedException {
+        notNull(journal);
+        isTrue(gracePeriod >= 0);
+        final RandomAccessFile lockFile = new RandomAccessFile(new File(journal.getPath() + LOCK_SUFFIX), "rw");
+        try {
+            final FileLock lock;
+            try {
+                lock = lockFile.getChannel().tryLock();
+            } catch (final OverlappingFileLockException e) {
+                // compacted by another thread of this process
+                return false;
+            }
+            if (lock == null) {
+                return false;
+            }
+            try {
+                final File compacting = new File(journal.getPath() + COMPACTING_SUFFIX);
+                final boolean interrupted = compacting.exists();
+                if (!interrupted) {
+                    if (!journal.exists()) {
+                        return true;
+                    }
+                    if (!journal.renameTo(compacting)) {
+                        throw new IOException("Could not rename " + journal);
+                    }
+                    Thread.sleep(gracePeriod);
+                }
+                final long checksum = checksum(compacting);
+                if (!interrupted || !readMarkers(journal).contains(checksum)) {
+                    final byte[] merged = merge(compacting, checksum);
+                    final FileOutputStream out = new FileOutputStream(journal, true);
+                    try {
+                        out.write(merged);
+                    } finally {
+                        out.close();
+                    }
+                }
+                if (!compacting.delete()) {
+                    throw new IOException("Could not delete " + compacting);
+                }
+                return true;
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    /**
+     * The checksum identifying the journal content.
+     *
+     * @param journal
+     *            the journal. Assumed not <code>null</code>.
+     * @return the CRC-32 of the content in the lower bits, the content length
+     *         in the higher bits.
+     * @throws IOException
+     *             if the journal could not be read.
+     */
+    private static long checksum(final File journal) throws IOException {
+        final CRC32 crc = new CRC32();
+        final byte[] buffer = new byte[8192];
+        long length = 0;
+        final InputStream in = new FileInputStream(journal);
+        try {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, n);
+                length += n;
+            }
+        } finally {
+            in.close();
+        }
+        return length << 32 | crc.getValue();
+    }
+
+    /**
+     * The compaction markers of the journal.
+     *
+     * @param journal
+     *            the journal. Assumed not <code>null</code>.
+     * @return the checksums of the journals merged into the journal. Empty if
+     *         the journal does not exist. Never <code>null</code>.
+     * @throws IOException
+     *             if the journal could not be read.
+     */
+    private static Set<Long> readMarkers(final File journal) throws IOException {
+        final Set<Long> markers = new HashSet<Long>();
+        if (!journal.exists()) {
+            return markers;
+        }
+        final InputStream in = new FileInputStream(journal);
+        try {
+            read(in, new Visitor() {
+                public void onRecord(final String actionId, final String label, final int mouseCount,
+                        final int keyboardCount, final long time) {
+                }
+            }, markers);
+        } finally {
+            in.close();
+        }
+        return markers;
+    }
+
+    /**
+     * Merges the records of each action.
+     *
+     * @param journal
+     *            the journal. Assumed not <code>null</code>.
+     * @param checksum
+     *            the journal checksum, written to the marker following the
+     *            merged records.
+     * @return the merged records and the marker. Never <code>null</code>.
+     * @throws IOException
+     *             if the journal could not be read.
+     */
+    private static byte[] merge(final File journal, final long checksum) throws IOException {
+        final Map<String, long[]> totals = new LinkedHashMap<String, long[]>();
+        final Map<String, String> labels = new LinkedHashMap<String, String>();
+        final InputStream in = new FileInputStream(journal);
+        try {
+            read(in, new Visitor() {
+                public void onRecord(final String actionId, final String label, final int mouseCount,
+                        final int keyboardCount, final long time) {
+                    long[] t = totals.get(actionId);
+                    if (t == null) {
+                        t = new long[3];
+                        totals.put(actionId, t);
+                    }
+                    t[0] += mouseCount;
+                    t[1] += keyboardCount;
+                    t[2] = Math.max(t[2], time);
+                    labels.put(actionId, label);
+                }
+            });
+        } finally {
+            in.close();
+        }
+        final ByteArrayOutputStream merged = new ByteArrayOutputStream(totals.size() * RECORD_SIZE);
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            final long[] t = entry.getValue();
+            merged.write(encode(entry.getKey(), labels.get(entry.getKey()),
+                    (int) Math.min(t[0], Integer.MAX_VALUE), (int) Math.min(t[1], Integer.MAX_VALUE), t[2]));
+        }
+        // last, so a cut off append is merged again rather than lost
+        merged.write(encode(MARKER_ID, "", 0, 0, checksum));
+        return merged.toByteArray();
+    }
+
+    /**
+     * Encodes a record. Shortens the label, then the action id, if they do
+     * not fit into the record.
+     *
+     * @param actionId
+     *            the action id. Assumed not <code>null</code>.
+     * @param label
+     *            the action label. Assumed not <code>null</code>.
+     * @param mouseCount
+     *            the mouse invocations number.
+     * @param keyboardCount
+     *            the keyboard invocations number.
+     * @param time
+     *            the latest invocation time.
+     * @return the record of {@link #RECORD_SIZE} bytes. Never
+     *         <code>null</code>.
+     */
+    static byte[] encode(final String actionId, final String label, final int mouseCount,
+            final int keyboardCount, final long time) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_SIZE);
+        final DataOutputStream data = new DataOutputStream(bytes);
+        try {
+            data.writeInt(MAGIC);
+            data.writeLong(time);
+            data.writeInt(mouseCount);
+            data.writeInt(keyboardCount);
+            final String id = fit(actionId, RECORD_SIZE - HEADER_SIZE - 2 - 2);
+            data.writeUTF(id);
+            data.writeUTF(fit(label, RECORD_SIZE - bytes.size() - 2));
+        } catch (final IOException e) {
+            throw new AssertionError(e);
+        }
+        final byte[] record = new byte[RECORD_SIZE];
+        System.arraycopy(bytes.toByteArray(), 0, record, 0, bytes.size());
+        return record;
+    }
+
+    /**
+     * Decodes a record.
+     *
+     * @param record
+     *            the record. Assumed not <code>null</code>.
+     * @param visitor
+     *            receives the record. Assumed not <code>null</code>.
+     * @param markers
+     *            receives the checksum if the record is a compaction marker.
+     *            Can be <code>null</code>.
+     * @return 1 if the record was passed to the visitor, 0 for a marker, -1
+     *         if the record is damaged. A record with non-zero padding is
+     *         damaged, it was cut off and overwritten by the next record.
+     */
+    private static int decode(final byte[] record, final Visitor visitor, final Set<Long> markers) {
+        final DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+        try {
+            if (data.readInt() != MAGIC) {
+                return -1;
+            }
+            final long time = data.readLong();
+            final int mouseCount = data.readInt();
+            final int keyboardCount = data.readInt();
+            final String actionId = data.readUTF();
+            final String label = data.readUTF();
+            for (int i = RECORD_SIZE - data.available(); i < RECORD_SIZE; i++) {
+                if (record[i] != 0) {
+                    return -1;
+                }
+            }
+            if (MARKER_ID.equals(actionId)) {
+                if (markers != null) {
+                    markers.add(time);
+                }
+                return 0;
+            }
+            visitor.onRecord(actionId, label, mouseCount, keyboardCount, time);
+            return 1;
+        } catch (final IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Shortens the string to fit into the number of the modified UTF-8
+     * bytes.
+     *
+     * @param s
+     *            the string. Assumed not <code>null</code>.
+     * @param maxBytes
+     *            the maximal number of the encoded bytes.
+     * @return the string or its beginning. Never <code>null</code>.
+     */
+    private static String fit(final String s, final int maxBytes) {
+        int bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            bytes += c >= 1 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+            if (bytes > maxBytes) {
+                return s.substring(0, i);
+            }
+        }
+        return s;
+    }
+}
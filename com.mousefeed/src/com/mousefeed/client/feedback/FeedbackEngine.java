@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.feedback;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.FeedbackOutcome;
+import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.client.collector.ActionIdDictionary;
+
+/**
+ * Decides what MouseFeed does about an action invoked with the mouse. Does not
+ * depend on the workbench: the preferences and the key bindings are accessed
+ * through {@link FeedbackPreferences} and {@link ShortcutBindings}, the
+ * feedback is shown by a {@link FeedbackPresenter}, and the invocation counts
+ * are kept by the caller, see {@link FeedbackRequest#getPreviousCount()}.
+ * Thread-safe if the service implementations are.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class FeedbackEngine {
+    /**
+     * The id of the action configuring the invocation modes. Is ignored, so
+     * configuring the mode of an action does not count as an invocation.
+     */
+    public static final String CONFIGURE_ACTION_ID = "com.mousefeed.commands.configureActionInvocation";
+
+    /**
+     * The ordinal of {@link #CONFIGURE_ACTION_ID}, so the ignored action is
+     * recognized without comparing the ids.
+     */
+    private static final int CONFIGURE_ACTION_ORDINAL =
+            ActionIdDictionary.getInstance().getOrdinal(CONFIGURE_ACTION_ID);
+
+    /**
+     * The preferences.
+     */
+    private final FeedbackPreferences preferences;
+
+    /**
+     * The key bindings.
+     */
+    private final ShortcutBindings bindings;
+
+    /**
+     * Constructor.
+     *
+     * @param preferences
+     *            the preferences. Not <code>null</code>.
+     * @param bindings
+     *            the key bindings. Not <code>null</code>.
+     */
+    public FeedbackEngine(final FeedbackPreferences preferences, final ShortcutBindings bindings) {
+        notNull(preferences);
+        notNull(bindings);
+        this.preferences = preferences;
+        this.bindings = bindings;
+    }
+
+    /**
+     * Decides what to do about the action invocation.
+     *
+     * @param request
+     *            the invocation. Not <code>null</code>.
+     * @return the outcome. If it is counted, the caller must increase the
+     *         invocation count of the action. Never <code>null</code>.
+     */
+    public FeedbackOutcome decide(final FeedbackRequest request) {
+        notNull(request);
+        if (request.getActionOrdinal() == CONFIGURE_ACTION_ORDINAL) {
+            return FeedbackOutcome.IGNORED;
+        }
+        if (!preferences.isInvocationControlEnabled()) {
+            return FeedbackOutcome.CONTROL_DISABLED;
+        }
+        if (!request.hasAccelerator()) {
+            final int count = request.getPreviousCount() + 1;
+            return preferences.isConfigureKeyboardShortcutEnabled()
+                    && count > preferences.getConfigureKeyboardShortcutThreshold()
+                    && bindings.isConfigurable(request.getActionId())
+                    ? FeedbackOutcome.CONFIGURE_SHORTCUT
+                    : FeedbackOutcome.COUNTED;
+        }
+        final OnWrongInvocationMode mode =
+                preferences.getOnWrongInvocationMode(request.getActionId(), request.getCategoryId());
+        return FeedbackOutcome.of(mode == null ? preferences.getOnWrongInvocationMode() : mode);
+    }
+
+    /**
+     * Shows the feedback of the outcome. Does nothing for the outcomes
+     * without any feedback.
+     *
+     * @param outcome
+     *            the decided outcome. Not <code>null</code>.
+     * @param presenter
+     *            shows the feedback. Not <code>null</code>.
+     */
+    public static void present(final FeedbackOutcome outcome, final FeedbackPresenter presenter) {
+        notNull(outcome);
+        notNull(presenter);
+        switch (outcome) {
+        case CONFIGURE_SHORTCUT:
+            presenter.offerShortcutConfiguration();
+            break;
+        case PRESENTATION:
+            presenter.presentShortcut();
+            break;
+        case REMIND:
+            presenter.remindShortcut();
+            break;
+        case ENFORCE:
+            presenter.enforceShortcut();
+            break;
+        default:
+            // no feedback
+            break;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.feedback;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.client.OnWrongInvocationModeRules;
+
+/**
+ * {@link FeedbackPreferences} fixed at creation, e.g. for replays and
+ * benchmarks. Immutable.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class FeedbackPolicy implements FeedbackPreferences {
+    /**
+     * @see #isInvocationControlEnabled()
+     */
+    private final boolean invocationControlEnabled;
+
+    /**
+     * @see #getOnWrongInvocationMode()
+     */
+    private final OnWrongInvocationMode defaultMode;
+
+    /**
+     * @see #getOnWrongInvocationMode(String, String)
+     */
+    private final OnWrongInvocationModeRules rules;
+
+    /**
+     * @see #isConfigureKeyboardShortcutEnabled()
+     */
+    private final boolean configureKeyboardShortcutEnabled;
+
+    /**
+     * @see #getConfigureKeyboardShortcutThreshold()
+     */
+    private final int configureKeyboardShortcutThreshold;
+
+    /**
+     * Constructor.
+     *
+     * @param invocationControlEnabled
+     *            whether the invocation control is enabled.
+     * @param defaultMode
+     *            the mode of the actions without a rule. Not
+     *            <code>null</code>.
+     * @param rules
+     *            the action-specific modes. Not <code>null</code>.
+     * @param configureKeyboardShortcutEnabled
+     *            whether the user is offered to configure a shortcut for the
+     *            actions without one.
+     * @param configureKeyboardShortcutThreshold
+     *            how many times an action without a shortcut must be invoked
+     *            before the user is offered to configure one.
+     */
+    public FeedbackPolicy(final boolean invocationControlEnabled, final OnWrongInvocationMode defaultMode,
+            final OnWrongInvocationModeRules rules, final boolean configureKeyboardShortcutEnabled,
+            final int configureKeyboardShortcutThreshold) {
+        notNull(defaultMode);
+        notNull(rules);
+        this.invocationControlEnabled = invocationControlEnabled;
+        this.defaultMode = defaultMode;
+        this.rules = rules;
+        this.configureKeyboardShortcutEnabled = configureKeyboardShortcutEnabled;
+        this.configureKeyboardShortcutThreshold = configureKeyboardShortcutThreshold;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isInvocationControlEnabled() {
+        return invocationControlEnabled;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isConfigureKeyboardShortcutEnabled() {
+        return configureKeyboardShortcutEnabled;
+    }
+
+    /** {@inheritDoc} */
+    public int getConfigureKeyboardShortcutThreshold() {
+        return configureKeyboardShortcutThreshold;
+    }
+
+    /** {@inheritDoc} */
+    public OnWrongInvocationMode getOnWrongInvocationMode() {
+        return defaultMode;
+    }
+
+    /** {@inheritDoc} */
+    public OnWrongInvocationMode getOnWrongInvocationMode(final String actionId, final String categoryId) {
+        return rules.resolve(actionId, categoryId);
+    }
+}
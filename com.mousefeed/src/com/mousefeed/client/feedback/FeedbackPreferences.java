@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.feedback;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+
+/**
+ * The preferences {@link FeedbackEngine} decides by. Implementations must be
+ * safe to call from the threads the engine is used on.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public interface FeedbackPreferences {
+    /**
+     * @return whether MouseFeed controls the action invocations at all.
+     */
+    boolean isInvocationControlEnabled();
+
+    /**
+     * @return whether the user is offered to configure a keyboard shortcut
+     *         for the often used actions without one.
+     */
+    boolean isConfigureKeyboardShortcutEnabled();
+
+    /**
+     * @return how many times an action without a shortcut must be invoked
+     *         before the user is offered to configure one.
+     */
+    int getConfigureKeyboardShortcutThreshold();
+
+    /**
+     * @return the mode of the actions without an action-specific setting.
+     *         Never <code>null</code>.
+     */
+    OnWrongInvocationMode getOnWrongInvocationMode();
+
+    /**
+     * The action-specific mode.
+     *
+     * @param actionId
+     *            the action id. Not <code>null</code>.
+     * @param categoryId
+     *            the id of the action command category. Can be
+     *            <code>null</code>.
+     * @return the mode. <code>null</code> if there is no setting for the
+     *         action.
+     */
+    OnWrongInvocationMode getOnWrongInvocationMode(String actionId, String categoryId);
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.feedback;
+
+/**
+ * Shows the feedback decided by {@link FeedbackEngine} to the user. An
+ * implementation is usually created for a single action invocation.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ * @see FeedbackEngine#present(com.mousefeed.client.FeedbackOutcome, FeedbackPresenter)
+ */
+public interface FeedbackPresenter {
+    /**
+     * Offers the user to configure a keyboard shortcut for the action.
+     */
+    void offerShortcutConfiguration();
+
+    /**
+     * Shows the action shortcuts without interrupting the user.
+     */
+    void presentShortcut();
+
+    /**
+     * Reminds the user about the action shortcut.
+     */
+    void remindShortcut();
+
+    /**
+     * Cancels the action and reminds the user about its shortcut.
+     */
+    void enforceShortcut();
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.feedback;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.ActionIdDictionary;
+
+/**
+ * An action invocation to decide about, with the data the decision depends
+ * on. Immutable.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class FeedbackRequest {
+    /**
+     * @see #getActionId()
+     */
+    private final String actionId;
+
+    /**
+     * @see #getActionOrdinal()
+     */
+    private final int actionOrdinal;
+
+    /**
+     * @see #getCategoryId()
+     */
+    private final String categoryId;
+
+    /**
+     * @see #hasAccelerator()
+     */
+    private final boolean accelerator;
+
+    /**
+     * @see #getPreviousCount()
+     */
+    private final int previousCount;
+
+    /**
+     * Constructor. Takes both the action id and its ordinal, so no
+     * dictionary lookup is needed on the decision path; a frozen action
+     * description already carries both.
+     *
+     * @param actionId
+     *            see {@link #getActionId()}. Not <code>null</code>.
+     * @param actionOrdinal
+     *            see {@link #getActionOrdinal()}. The ordinal of the action
+     *            id, not negative.
+     * @param categoryId
+     *            see {@link #getCategoryId()}. Can be <code>null</code>.
+     * @param accelerator
+     *            see {@link #hasAccelerator()}.
+     * @param previousCount
+     *            see {@link #getPreviousCount()}. Not negative.
+     */
+    public FeedbackRequest(final String actionId, final int actionOrdinal, final String categoryId,
+            final boolean accelerator, final int previousCount) {
+        notNull(actionId);
+        isTrue(actionOrdinal >= 0);
+        isTrue(previousCount >= 0);
+        this.actionId = actionId;
+        this.actionOrdinal = actionOrdinal;
+        this.categoryId = categoryId;
+        this.accelerator = accelerator;
+        this.previousCount = previousCount;
+    }
+
+    /**
+     * Creates a request for the action id, looking up its ordinal.
+     *
+     * @param actionId
+     *            the action id. Not <code>null</code>.
+     * @param categoryId
+     *            see {@link #getCategoryId()}. Can be <code>null</code>.
+     * @param accelerator
+     *            see {@link #hasAccelerator()}.
+     * @param previousCount
+     *            see {@link #getPreviousCount()}. Not negative.
+     */
+    public FeedbackRequest(final String actionId, final String categoryId, final boolean accelerator,
+            final int previousCount) {
+        this(actionId, ActionIdDictionary.getInstance().getOrdinal(actionId), categoryId, accelerator, previousCount);
+    }
+
+    /**
+     * @return the ordinal of the action id in {@link ActionIdDictionary}.
+     */
+    public int getActionOrdinal() {
+        return actionOrdinal;
+    }
+
+    /**
+     * @return the action id. Never <code>null</code>.
+     */
+    public String getActionId() {
+        return actionId;
+    }
+
+    /**
+     * @return the id of the action command category. <code>null</code> if
+     *         the action has no category.
+     */
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    /**
+     * @return whether the action has an accelerator.
+     */
+    public boolean hasAccelerator() {
+        return accelerator;
+    }
+
+    /**
+     * @return how many times the action was counted before, see
+     *         {@link com.mousefeed.client.FeedbackOutcome#isCounted()}.
+     */
+    public int getPreviousCount() {
+        return previousCount;
+    }
+}
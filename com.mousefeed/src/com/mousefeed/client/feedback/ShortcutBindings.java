@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.feedback;
+
+/**
+ * Answers the questions of {@link FeedbackEngine} about the key bindings.
+ * Implementations must be safe to call from the threads the engine is used
+ * on.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public interface ShortcutBindings {
+    /**
+     * Whether the user can bind a keyboard shortcut to the action. Is only
+     * called for the actions the user is about to be offered to configure a
+     * shortcut for, so it can be expensive.
+     *
+     * @param actionId
+     *            the action id. Not <code>null</code>.
+     * @return <code>true</code> if a shortcut can be configured.
+     */
+    boolean isConfigurable(String actionId);
+}
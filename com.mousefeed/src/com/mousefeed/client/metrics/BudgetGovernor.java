@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.metrics;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Adaptively disables the steps which keep exceeding their time budget. A
+ * step is disabled after {@link #getStrikeLimit()} overruns in a row. A
+ * disabled step is skipped for a number of calls, then it is given another
+ * try. If it exceeds the budget again, it is skipped for twice as many calls,
+ * up to {@link #MAX_COOLDOWN}. A step running within the budget is trusted
+ * again. Not thread-safe.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class BudgetGovernor {
+    /**
+     * The default number of the overruns in a row disabling a step.
+     */
+    public static final int DEFAULT_STRIKE_LIMIT = 3;
+
+    /**
+     * The number of the calls a step is skipped for when it is disabled the
+     * first time.
+     */
+    public static final int INITIAL_COOLDOWN = 16;
+
+    /**
+     * The maximal number of the calls a step is skipped for.
+     */
+    public static final int MAX_COOLDOWN = 1024;
+
+    /**
+     * @see #getStrikeLimit()
+     */
+    private final int strikeLimit;
+
+    /**
+     * The state of the steps. Keys - the step names. Contains only the steps
+     * which exceeded the budget since they were trusted last time.
+     */
+    private final Map<String, StepState> states = new HashMap<String, StepState>();
+
+    /**
+     * Creates a governor with {@link #DEFAULT_STRIKE_LIMIT}.
+     */
+    public BudgetGovernor() {
+        this(DEFAULT_STRIKE_LIMIT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param strikeLimit
+     *            the number of the overruns in a row disabling a step.
+     *            Positive.
+     */
+    public BudgetGovernor(final int strikeLimit) {
+        isTrue(strikeLimit > 0);
+        this.strikeLimit = strikeLimit;
+    }
+
+    /**
+     * The number of the overruns in a row disabling a step.
+     *
+     * @return the strike limit. Positive.
+     */
+    public int getStrikeLimit() {
+        return strikeLimit;
+    }
+
+    /**
+     * Whether the step should run. Must be called once before each call of
+     * the step, because the calls of a disabled step are counted to decide
+     * when it is given another try.
+     *
+     * @param step
+     *            the step name. Not <code>null</code>.
+     * @return <code>false</code> if the step is disabled and should be
+     *         skipped.
+     */
+    public boolean isEnabled(final String step) {
+        notNull(step);
+        final StepState state = states.get(step);
+        if (state == null || state.skipsLeft == 0) {
+            return true;
+        }
+        state.skipsLeft--;
+        return false;
+    }
+
+    /**
+     * Whether the step is currently disabled. Unlike
+     * {@link #isEnabled(String)} does not count the call.
+     *
+     * @param step
+     *            the step name. Not <code>null</code>.
+     * @return <code>true</code> if the step is skipped by the next calls.
+     */
+    public boolean isDisabled(final String step) {
+        notNull(step);
+        final StepState state = states.get(step);
+        return state != null && state.skipsLeft > 0;
+    }
+
+    /**
+     * Records the duration of a step call.
+     *
+     * @param step
+     *            the step name. Not <code>null</code>.
+     * @param elapsed
+     *            how long the step ran. Not negative.
+     * @param budget
+     *            the step budget, in the same units as
+     *            <code>elapsed</code>. Not negative.
+     * @return <code>true</code> if this call disabled the step.
+     */
+    public boolean record(final String step, final long elapsed, final long budget) {
+        notNull(step);
+        isTrue(elapsed >= 0);
+        isTrue(budget >= 0);
+        if (elapsed <= budget) {
+            states.remove(step);
+            return false;
+        }
+        StepState state = states.get(step);
+        if (state == null) {
+            state = new StepState();
+            states.put(step, state);
+        }
+        state.strikes++;
+        if (state.cooldown > 0) {
+            // failed the retry after being disabled
+            state.cooldown = Math.min(MAX_COOLDOWN, state.cooldown * 2);
+        } else if (state.strikes >= strikeLimit) {
+            state.cooldown = INITIAL_COOLDOWN;
+        } else {
+            return false;
+        }
+        state.skipsLeft = state.cooldown;
+        return true;
+    }
+
+    /**
+     * The state of a step exceeding the budget.
+     */
+    private static class StepState {
+        /**
+         * The number of the overruns in a row.
+         */
+        private int strikes;
+
+        /**
+         * The number of the calls the step was skipped for when it was
+         * disabled last time. 0 if the step was not disabled yet.
+         */
+        private int cooldown;
+
+        /**
+         * The number of the calls the step is still skipped for.
+         */
+        private int skipsLeft;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonically increasing count. Thread-safe.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class Counter {
+    /**
+     * The count.
+     */
+    private final AtomicLong value = new AtomicLong();
+
+    /**
+     * Increases the count by 1.
+     */
+    public void inc() {
+        value.incrementAndGet();
+    }
+
+    /**
+     * The current count.
+     *
+     * @return the count.
+     */
+    public long get() {
+        return value.get();
+    }
+}
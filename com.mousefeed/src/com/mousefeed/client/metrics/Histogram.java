@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.metrics;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the durations in fixed buckets. The memory and the rendering cost
+ * depend on the number of the buckets only, not on the number of the
+ * observations. Thread-safe.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class Histogram {
+    /**
+     * The upper bounds of the buckets, in seconds, as rendered.
+     */
+    private final double[] bounds;
+
+    /**
+     * The upper bounds of the buckets, in nanoseconds.
+     */
+    private final long[] boundsNanos;
+
+    /**
+     * The number of the observations per bucket. The last bucket counts the
+     * durations above all the bounds.
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * The sum of the observed durations, in nanoseconds.
+     */
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param bounds
+     *            the upper bounds of the buckets, in seconds, ascending. Not
+     *            empty.
+     */
+    public Histogram(final double... bounds) {
+        notNull(bounds);
+        isTrue(bounds.length > 0);
+        this.bounds = bounds.clone();
+        this.boundsNanos = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            isTrue(i == 0 || bounds[i] > bounds[i - 1]);
+            boundsNanos[i] = (long) (bounds[i] * 1e9);
+        }
+        this.counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    /**
+     * Counts the duration.
+     *
+     * @param nanos
+     *            the duration, in nanoseconds.
+     */
+    public void observe(final long nanos) {
+        int i = 0;
+        while (i < boundsNanos.length && nanos > boundsNanos[i]) {
+            i++;
+        }
+        counts.incrementAndGet(i);
+        sumNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Renders the histogram in the Prometheus text format.
+     *
+     * @param name
+     *            the metric name. Not <code>null</code>.
+     * @param help
+     *            the metric description. Not <code>null</code>.
+     * @param out
+     *            the output. Not <code>null</code>.
+     */
+    public void render(final String name, final String help, final StringBuilder out) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += counts.get(i);
+            out.append(name).append("_bucket{le=\"").append(bounds[i]).append("\"} ").append(cumulative)
+                    .append('\n');
+        }
+        cumulative += counts.get(bounds.length);
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum ").append(sumNanos.get() / 1e9).append('\n');
+        out.append(name).append("_count ").append(cumulative).append('\n');
+    }
+}
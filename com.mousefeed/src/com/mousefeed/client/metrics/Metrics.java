@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.metrics;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+
+/**
+ * The MouseFeed metrics: the latency of the hot paths, the event rate, the
+ * pop-ups shown, the cache efficiency and the journal write lag. Updating a
+ * metric is a few atomic operations. Singleton. Thread-safe.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public final class Metrics {
+    /**
+     * The latency histogram buckets, in seconds.
+     */
+    private static final double[] LATENCY_BUCKETS =
+            {0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1};
+
+    /**
+     * The journal write lag histogram buckets, in seconds. The invocations
+     * are written in batches a few seconds apart.
+     */
+    private static final double[] LAG_BUCKETS = {0.1, 0.5, 1, 2, 2.5, 3, 5, 10, 30, 60};
+
+    /**
+     * The singleton instance.
+     */
+    private static final Metrics INSTANCE = new Metrics();
+
+    /**
+     * @see #getHandlerLatency()
+     */
+    private final Histogram handlerLatency = new Histogram(LATENCY_BUCKETS);
+
+    /**
+     * @see #getJournalWriteLag()
+     */
+    private final Histogram journalWriteLag = new Histogram(LAG_BUCKETS);
+
+    /**
+     * @see #getEvents()
+     */
+    private final Counter events = new Counter();
+
+    /**
+     * The reminder pop-ups, indexed by the invocation mode ordinals.
+     */
+    private final Counter[] popups = new Counter[OnWrongInvocationMode.values().length];
+
+    /**
+     * @see #getShortcutPopups()
+     */
+    private final Counter shortcutPopups = new Counter();
+
+    /**
+     * @see #getBindingCacheHits()
+     */
+    private final Counter bindingCacheHits = new Counter();
+
+    /**
+     * @see #getBindingCacheMisses()
+     */
+    private final Counter bindingCacheMisses = new Counter();
+
+    /**
+     * @see #getDescriptorCacheHits()
+     */
+    private final Counter descriptorCacheHits = new Counter();
+
+    /**
+     * @see #getDescriptorCacheMisses()
+     */
+    private final Counter descriptorCacheMisses = new Counter();
+
+    /**
+     * The events count at the previous rendering, for the event rate.
+     */
+    private long lastEvents;
+
+    /**
+     * The time of the previous rendering, in nanoseconds. 0 before the first
+     * rendering.
+     */
+    private long lastRenderNanos;
+
+    /**
+     * Creates new metrics. Because this class is a singleton, the constructor
+     * normally should not be used. It is exposed for testing purposes only.
+     */
+    Metrics() {
+        for (int i = 0; i < popups.length; i++) {
+            popups[i] = new Counter();
+        }
+    }
+
+    /**
+     * The singleton instance.
+     *
+     * @return the singleton instance. Never <code>null</code>.
+     */
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The time MouseFeed takes to process a selection or command event.
+     *
+     * @return the histogram. Never <code>null</code>.
+     */
+    public Histogram getHandlerLatency() {
+        return handlerLatency;
+    }
+
+    /**
+     * The time from queuing the oldest action invocation of a batch to the
+     * batch written to the usage journal. The invocations are written in the
+     * background.
+     *
+     * @return the histogram. Never <code>null</code>.
+     */
+    public Histogram getJournalWriteLag() {
+        return journalWriteLag;
+    }
+
+    /**
+     * The number of the processed action invocations.
+     *
+     * @return the counter. Never <code>null</code>.
+     */
+    public Counter getEvents() {
+        return events;
+    }
+
+    /**
+     * The number of the reminder pop-ups shown for the mode.
+     *
+     * @param mode
+     *            the invocation mode the pop-up was shown for. Not
+     *            <code>null</code>.
+     * @return the counter. Never <code>null</code>.
+     */
+    public Counter getPopups(final OnWrongInvocationMode mode) {
+        return popups[mode.ordinal()];
+    }
+
+    /**
+     * The number of the pop-ups suggesting to configure a shortcut.
+     *
+     * @return the counter. Never <code>null</code>.
+     */
+    public Counter getShortcutPopups() {
+        return shortcutPopups;
+    }
+
+    /**
+     * The number of the values found in the caches of the binding data.
+     *
+     * @return the counter. Never <code>null</code>.
+     */
+    public Counter getBindingCacheHits() {
+        return bindingCacheHits;
+    }
+
+    /**
+     * The number of the values not found in the caches of the binding data.
+     *
+     * @return the counter. Never <code>null</code>.
+     */
+    public Counter getBindingCacheMisses() {
+        return bindingCacheMisses;
+    }
+
+    /**
+     * The number of the action descriptions found prefetched.
+     *
+     * @return the counter. Never <code>null</code>.
+     */
+    public Counter getDescriptorCacheHits() {
+        return descriptorCacheHits;
+    }
+
+    /**
+     * The number of the action descriptions generated on the click.
+     *
+     * @return the counter. Never <code>null</code>.
+     */
+    public Counter getDescriptorCacheMisses() {
+        return descriptorCacheMisses;
+    }
+
+    /**
+     * Renders all the metrics in the Prometheus text format. The output size
+     * does not depend on the number of the observations.
+     *
+     * @param nowNanos
+     *            the current {@link System#nanoTime()}, for the event rate.
+     * @return the rendered metrics. Never <code>null</code>.
+     */
+    public synchronized String render(final long nowNanos) {
+        final StringBuilder out = new StringBuilder(4096);
+        handlerLatency.render("mousefeed_handler_seconds", "Time to process a selection or command event.", out);
+        journalWriteLag.render("mousefeed_journal_write_lag_seconds",
+                "Time from queuing an action invocation to writing it to the usage journal.", out);
+
+        final long eventCount = events.get();
+        renderType(out, "mousefeed_events_total", "Processed action invocations.", "counter");
+        out.append("mousefeed_events_total ").append(eventCount).append('\n');
+        final double rate = lastRenderNanos == 0 || nowNanos <= lastRenderNanos
+                ? 0 : (eventCount - lastEvents) * 1e9 / (nowNanos - lastRenderNanos);
+        lastEvents = eventCount;
+        lastRenderNanos = nowNanos;
+        renderType(out, "mousefeed_events_per_second", "Action invocations per second since the last scrape.",
+                "gauge");
+        out.append("mousefeed_events_per_second ").append(rate).append('\n');
+
+        renderType(out, "mousefeed_popups_total", "Pop-ups shown, by invocation mode.", "counter");
+        for (OnWrongInvocationMode mode : OnWrongInvocationMode.values()) {
+            out.append("mousefeed_popups_total{mode=\"").append(mode.name()).append("\"} ")
+                    .append(getPopups(mode).get()).append('\n');
+        }
+        out.append("mousefeed_popups_total{mode=\"CONFIGURE_SHORTCUT\"} ").append(shortcutPopups.get())
+                .append('\n');
+
+        renderType(out, "mousefeed_cache_requests_total", "Cache lookups, by cache and result.", "counter");
+        renderCache(out, "bindings", bindingCacheHits, bindingCacheMisses);
+        renderCache(out, "descriptors", descriptorCacheHits, descriptorCacheMisses);
+        return out.toString();
+    }
+
+    /**
+     * Renders the metric header.
+     *
+     * @param out
+     *            the output. Assumed not <code>null</code>.
+     * @param name
+     *            the metric name. Assumed not <code>null</code>.
+     * @param help
+     *            the metric description. Assumed not <code>null</code>.
+     * @param type
+     *            the metric type. Assumed not <code>null</code>.
+     */
+    private void renderType(final StringBuilder out, final String name, final String help, final String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Renders the cache lookups.
+     *
+     * @param out
+     *            the output. Assumed not <code>null</code>.
+     * @param cache
+     *            the cache name. Assumed not <code>null</code>.
+     * @param hits
+     *            the hits counter. Assumed not <code>null</code>.
+     * @param misses
+     *            the misses counter. Assumed not <code>null</code>.
+     */
+    private void renderCache(final StringBuilder out, final String cache, final Counter hits,
+            final Counter misses) {
+        out.append("mousefeed_cache_requests_total{cache=\"").append(cache).append("\",result=\"hit\"} ")
+                .append(hits.get()).append('\n');
+        out.append("mousefeed_cache_requests_total{cache=\"").append(cache).append("\",result=\"miss\"} ")
+                .append(misses.get()).append('\n');
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.metrics;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * Serves {@link Metrics} in the Prometheus text format at
+ * <code>http://localhost:port/metrics</code>. A minimal HTTP/1.0 server on a
+ * single daemon thread, listening on the loopback interface only, so it needs
+ * no libraries. The scrapes are served one by one, which is plenty for a
+ * scraper polling every few seconds.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class MetricsServer {
+    /**
+     * The path the metrics are served at.
+     */
+    public static final String PATH = "/metrics";
+
+    /**
+     * How long a connection may take to send the request, in milliseconds.
+     */
+    private static final int READ_TIMEOUT = 2000;
+
+    /**
+     * The served metrics.
+     */
+    private final Metrics metrics;
+
+    /**
+     * The listening socket.
+     */
+    private final ServerSocket serverSocket;
+
+    /**
+     * Starts the server.
+     *
+     * @param metrics
+     *            the metrics to serve. Not <code>null</code>.
+     * @param port
+     *            the port to listen on. 0 for any free port.
+     * @throws IOException
+     *             if the port could not be opened.
+     */
+    public MetricsServer(final Metrics metrics, final int port) throws IOException {
+        notNull(metrics);
+        isTrue(port >= 0 && port <= 0xFFFF);
+        this.metrics = metrics;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName(null), port));
+        final Thread thread = new Thread("MouseFeed metrics exporter") {
+            @Override
+            public void run() {
+                serve();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The port the server listens on.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (final IOException e) {
+            // the server thread ends anyway
+        }
+    }
+
+    /**
+     * Accepts the connections until the server is stopped.
+     */
+    private void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                try {
+                    socket.setSoTimeout(READ_TIMEOUT);
+                    respond(socket);
+                } finally {
+                    socket.close();
+                }
+            } catch (final SocketException e) {
+                // closed by stop() or by the client
+            } catch (final IOException e) {
+                // the scraper will retry
+            }
+        }
+    }
+
+    /**
+     * Answers a single request.
+     *
+     * @param socket
+     *            the connection. Assumed not <code>null</code>.
+     * @throws IOException
+     *             on a communication failure.
+     */
+    private void respond(final Socket socket) throws IOException {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+        final String requestLine = in.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        // skips the headers
+        for (String line = in.readLine(); line != null && line.length() > 0; line = in.readLine()) {
+            continue;
+        }
+        final String[] parts = requestLine.split(" ");
+        final String status;
+        final String body;
+        if (parts.length >= 2 && "GET".equals(parts[0]) && (PATH.equals(parts[1]) || parts[1].startsWith(PATH + "?"))) {
+            status = "200 OK";
+            body = metrics.render(System.nanoTime());
+        } else {
+            status = "404 Not Found";
+            body = "Not found, the metrics are at " + PATH + "\n";
+        }
+        final byte[] bytes = body.getBytes("UTF-8");
+        final OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.0 " + status + "\r\nContent-Type: text/plain; version=0.0.4; charset=utf-8\r\n"
+                + "Content-Length: " + bytes.length + "\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+        out.write(bytes);
+        out.flush();
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.metrics;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Detects the MouseFeed handlers blocking the display thread. The handlers
+ * call {@link #enter(String)} and {@link #exit()}, which only update a few
+ * volatile fields. A daemon thread checks twice per budget whether the
+ * current handler runs longer than the budget and if so, samples the stack
+ * of the display thread and appends a stall report to the log file.
+ * <p>
+ * The reports are deduplicated by the handler and the stack: a stack is
+ * written once, its repeats are reported with the number of the occurrences
+ * when the number reaches a power of two, so a recurring stall does not fill
+ * the disk. The least recently seen stacks are forgotten first. The log is
+ * rotated when it reaches {@link #MAX_LOG_SIZE}, keeping one older log.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class StallWatchdog implements Runnable {
+    /**
+     * The default budget of a handler, in milliseconds.
+     */
+    public static final int DEFAULT_BUDGET = 20;
+
+    /**
+     * The maximal number of the stack frames written.
+     */
+    static final int MAX_FRAMES = 40;
+
+    /**
+     * The maximal number of the different stacks remembered for the
+     * deduplication.
+     */
+    static final int MAX_STACKS = 256;
+
+    /**
+     * The log size the log is rotated at, in bytes.
+     */
+    static final long MAX_LOG_SIZE = 1024 * 1024;
+
+    /**
+     * The suffix of the rotated log.
+     */
+    static final String ROTATED_SUFFIX = ".1";
+
+    /**
+     * The display thread.
+     */
+    private final Thread watched;
+
+    /**
+     * The file the reports are appended to.
+     */
+    private final File log;
+
+    /**
+     * The handler budget, in nanoseconds. 0 when disabled.
+     */
+    private volatile long budgetNanos;
+
+    /**
+     * The {@link System#nanoTime()} the current handler was entered at. 0
+     * when no handler runs.
+     */
+    private volatile long enteredAt;
+
+    /**
+     * The name of the current handler.
+     */
+    private volatile String handler;
+
+    /**
+     * Is increased each time a handler is entered.
+     */
+    private volatile int sequence;
+
+    /**
+     * The nesting level of the handlers. Accessed by the display thread only.
+     */
+    private int depth;
+
+    /**
+     * The last handler invocation sampled. Accessed by the watchdog thread
+     * only.
+     */
+    private int sampledSequence = -1;
+
+    /**
+     * The number of the occurrences of each reported stack. Keys - the stack
+     * ids. The least recently seen stacks are dropped first. Accessed by the
+     * watchdog thread only.
+     */
+    private final Map<String, Integer> occurrences = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Integer> eldest) {
+            return size() > MAX_STACKS;
+        }
+    };
+
+    /**
+     * The watchdog thread. <code>null</code> if not started.
+     */
+    private Thread thread;
+
+    /**
+     * Constructor.
+     *
+     * @param watched
+     *            the display thread, running the handlers. Not
+     *            <code>null</code>.
+     * @param log
+     *            the file to append the reports to. Not <code>null</code>.
+     * @param budget
+     *            the handler budget, in milliseconds. 0 disables the
+     *            watchdog. Not negative.
+     */
+    public StallWatchdog(final Thread watched, final File log, final int budget) {
+        notNull(watched);
+        notNull(log);
+        this.watched = watched;
+        this.log = log;
+        setBudget(budget);
+    }
+
+    /**
+     * Changes the handler budget.
+     *
+     * @param budget
+     *            the handler budget, in milliseconds. 0 disables the
+     *            watchdog. Not negative.
+     */
+    public void setBudget(final int budget) {
+        isTrue(budget >= 0);
+        budgetNanos = budget * 1000000L;
+    }
+
+    /**
+     * Starts the watchdog thread.
+     */
+    public synchronized void start() {
+        isTrue(thread == null);
+        thread = new Thread(this, "MouseFeed stall watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the watchdog thread.
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Must be called by the display thread when a handler starts. The nested
+     * handlers are counted as a part of the outer one.
+     *
+     * @param name
+     *            the handler name. Not <code>null</code>.
+     */
+    public void enter(final String name) {
+        if (depth++ == 0) {
+            handler = name;
+            sequence++;
+            enteredAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Must be called by the display thread when a handler ends, in a
+     * <code>finally</code> block.
+     */
+    public void exit() {
+        if (--depth == 0) {
+            enteredAt = 0;
+        }
+    }
+
+    /**
+     * Checks the display thread until stopped.
+     */
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            final long budget = budgetNanos;
+            try {
+                Thread.sleep(budget == 0 ? 1000 : Math.max(1, budget / 2000000));
+            } catch (final InterruptedException e) {
+                return;
+            }
+            check();
+        }
+    }
+
+    /**
+     * Samples the display thread if the current handler exceeded the budget
+     * and was not sampled yet.
+     */
+    void check() {
+        final long budget = budgetNanos;
+        final int seq = sequence;
+        final long start = enteredAt;
+        final String name = handler;
+        if (budget == 0 || start == 0 || seq == sampledSequence) {
+            return;
+        }
+        final long elapsed = System.nanoTime() - start;
+        if (elapsed <= budget) {
+            return;
+        }
+        final StackTraceElement[] stack = watched.getStackTrace();
+        // the handler could end while the stack was sampled
+        if (enteredAt != start) {
+            return;
+        }
+        sampledSequence = seq;
+        report(name, elapsed / 1000000, stack);
+    }
+
+    /**
+     * Writes the stall report, unless the stack was reported before.
+     *
+     * @param name
+     *            the handler name. Assumed not <code>null</code>.
+     * @param elapsed
+     *            how long the handler has run, in milliseconds.
+     * @param stack
+     *            the display thread stack. Assumed not <code>null</code>.
+     */
+    void report(final String name, final long elapsed, final StackTraceElement[] stack) {
+        final StringBuilder frames = new StringBuilder();
+        for (int i = 0; i < stack.length && i < MAX_FRAMES; i++) {
+            frames.append("    at ").append(stack[i]).append('\n');
+        }
+        final String id = Integer.toHexString((name + frames).hashCode());
+        final Integer seen = occurrences.get(id);
+        final int count = seen == null ? 1 : seen + 1;
+        occurrences.put(id, count);
+
+        final StringBuilder report = new StringBuilder();
+        report.append(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date()));
+        report.append(" stall ").append(id).append(" in ").append(name).append(", ").append(elapsed)
+                .append(" ms");
+        if (seen == null) {
+            report.append('\n').append(frames);
+        } else if ((count & (count - 1)) == 0) {
+            report.append(", seen ").append(count).append(" times\n");
+        } else {
+            return;
+        }
+        append(report.toString());
+    }
+
+    /**
+     * Appends the text to the log file, rotating the log first if it is too
+     * large. Ignores the failures, the watchdog must never disturb the user.
+     *
+     * @param text
+     *            the text. Assumed not <code>null</code>.
+     */
+    private void append(final String text) {
+        if (log.length() >= MAX_LOG_SIZE) {
+            final File rotated = new File(log.getPath() + ROTATED_SUFFIX);
+            rotated.delete();
+            if (!log.renameTo(rotated)) {
+                // the report would grow the log further
+                return;
+            }
+        }
+        try {
+            final Writer out = new OutputStreamWriter(new FileOutputStream(log, true), "UTF-8");
+            try {
+                out.write(text);
+            } finally {
+                out.close();
+            }
+        } catch (final IOException e) {
+            // the report is lost
+        }
+    }
+}
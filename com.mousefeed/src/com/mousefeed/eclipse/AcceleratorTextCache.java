@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jface.action.ExternalActionManager;
+import org.eclipse.jface.action.ExternalActionManager.ICallback;
+import org.eclipse.jface.bindings.TriggerSequence;
+import org.eclipse.jface.bindings.keys.SWTKeySupport;
+
+/**
+ * Caches the human-readable accelerator texts. Formatting a key sequence
+ * looks up the platform key formatter and translated key names each time, so
+ * the texts are kept until the bindings, the locale or the platform change.
+ * Singleton. Must be accessed from the display thread only.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+final class AcceleratorTextCache {
+    /**
+     * The singleton instance. Created on first access, because it needs the
+     * workbench.
+     */
+    private static AcceleratorTextCache instance;
+
+    /**
+     * The texts of the trigger sequences.
+     */
+    private final BindingsDependentCache<TriggerSequence, String> sequenceTexts;
+
+    /**
+     * The texts of the SWT accelerators.
+     */
+    private final BindingsDependentCache<Integer, String> acceleratorTexts;
+
+    /**
+     * The accelerator texts of the action definitions. An empty string for
+     * the definitions without an accelerator, because the cache does not
+     * store <code>null</code>.
+     */
+    private final BindingsDependentCache<String, String> definitionTexts;
+
+    /**
+     * Constructor.
+     *
+     * @param monitor
+     *            tracks the binding changes. Not <code>null</code>.
+     */
+    private AcceleratorTextCache(final BindingsMonitor monitor) {
+        sequenceTexts = new BindingsDependentCache<TriggerSequence, String>(monitor);
+        acceleratorTexts = new BindingsDependentCache<Integer, String>(monitor);
+        definitionTexts = new BindingsDependentCache<String, String>(monitor);
+    }
+
+    /**
+     * The singleton instance.
+     *
+     * @return the singleton instance. Never <code>null</code>.
+     */
+    public static AcceleratorTextCache getInstance() {
+        if (instance == null) {
+            instance = new AcceleratorTextCache(BindingsMonitor.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * The text of the trigger sequence, as returned by
+     * {@link TriggerSequence#format()}.
+     *
+     * @param sequence
+     *            the trigger sequence. Not <code>null</code>.
+     * @return the formatted sequence. Not <code>null</code>.
+     */
+    public String format(final TriggerSequence sequence) {
+        notNull(sequence);
+        String text = sequenceTexts.get(sequence);
+        if (text == null) {
+            text = sequence.format();
+            sequenceTexts.put(sequence, text);
+        }
+        return text;
+    }
+
+    /**
+     * The text of the SWT accelerator.
+     *
+     * @param accelerator
+     *            the accelerator; should be a valid SWT accelerator value.
+     * @return the formatted key stroke. Not <code>null</code>.
+     */
+    public String format(final int accelerator) {
+        final Integer key = Integer.valueOf(accelerator);
+        String text = acceleratorTexts.get(key);
+        if (text == null) {
+            text = SWTKeySupport.convertAcceleratorToKeyStroke(accelerator).format();
+            acceleratorTexts.put(key, text);
+        }
+        return text;
+    }
+
+    /**
+     * The accelerator text of the action definition, as provided by the
+     * {@link ExternalActionManager} callback.
+     *
+     * @param definitionId
+     *            the action definition id. Not blank.
+     * @return the accelerator text. <code>null</code> if the definition has
+     *         no accelerator.
+     */
+    public String getAcceleratorText(final String definitionId) {
+        notNull(definitionId);
+        String text = definitionTexts.get(definitionId);
+        if (text == null) {
+            final ICallback callback = ExternalActionManager.getInstance().getCallback();
+            text = StringUtils.defaultString(callback.getAcceleratorText(definitionId));
+            definitionTexts.put(definitionId, text);
+        }
+        return text.length() == 0 ? null : text;
+    }
+}
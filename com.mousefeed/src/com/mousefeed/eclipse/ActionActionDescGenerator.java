@@ -24,21 +24,21 @@ import com.mousefeed.client.collector.AbstractActionDesc;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.core.commands.Command;
 import org.eclipse.core.commands.IHandler;
-import org.eclipse.jface.action.ExternalActionManager;
-import org.eclipse.jface.action.ExternalActionManager.ICallback;
+import org.eclipse.core.commands.common.NotDefinedException;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.bindings.Binding;
 import org.eclipse.jface.bindings.TriggerSequence;
 import org.eclipse.jface.bindings.keys.KeySequence;
-import org.eclipse.jface.bindings.keys.SWTKeySupport;
 import org.eclipse.jface.commands.ActionHandler;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.actions.RetargetAction;
 import org.eclipse.ui.activities.IActivityManager;
+import org.eclipse.ui.commands.ICommandService;
 import org.eclipse.ui.internal.keys.BindingService;
 import org.eclipse.ui.keys.IBindingService;
 
@@ -53,6 +53,17 @@ import org.eclipse.ui.keys.IBindingService;
  */
 @SuppressWarnings("restriction")
 public class ActionActionDescGenerator {
+    /**
+     * The name the binding scan is reported under to the
+     * {@link DescriptorBudget}.
+     */
+    static final String SCAN_BINDINGS = "ActionActionDescGenerator.scanBindings";
+
+    /**
+     * The name {@link TextActionHandlerActionLocator} is reported under to
+     * the {@link DescriptorBudget}.
+     */
+    static final String TEXT_ACTION_LOCATOR = "TextActionHandlerActionLocator";
 
     /**
      * Stores the generated action description.
@@ -65,24 +76,60 @@ public class ActionActionDescGenerator {
      */
     private final TextActionHandlerActionLocator actionSearcher = new TextActionHandlerActionLocator();
 
+    /**
+     * Limits the time spent on the binding scan and the action search.
+     */
+    private final DescriptorBudget budget;
+
+    /**
+     * Formats the accelerators.
+     */
+    private final AcceleratorTextCache textCache = AcceleratorTextCache.getInstance();
+
     /**
      * The binding service for the associated workbench.
      */
     private final IBindingService bindingService;
 
+    /**
+     * The command service for the associated workbench.
+     */
+    private final ICommandService commandService;
+
     /**
      * The activity manager for the associated workbench.
      */
     private final IActivityManager activityManager;
 
     /**
-     * Creates new finder.
+     * The generated action descriptions. Keys - the action classes.
+     */
+    private final BindingsDependentCache<Class<?>, CachedActionDesc> cache =
+            new BindingsDependentCache<Class<?>, CachedActionDesc>();
+
+    /**
+     * Creates new finder, which is not limited in time.
      */
     public ActionActionDescGenerator() {
+        this(new DescriptorBudget());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param budget
+     *            limits the time spent on the generation. Not
+     *            <code>null</code>.
+     */
+    ActionActionDescGenerator(final DescriptorBudget budget) {
+        notNull(budget);
+        this.budget = budget;
         bindingService = (IBindingService) getWorkbench().getAdapter(
                 IBindingService.class);
         activityManager = getWorkbench().getActivitySupport()
                 .getActivityManager();
+        commandService = (ICommandService) getWorkbench().getService(
+                ICommandService.class);
     }
 
     /**
@@ -92,10 +139,35 @@ public class ActionActionDescGenerator {
      *            the action to generate description for. Not <code>null</code>.
      * @return the action description for the provided action. Never
      *         <code>null</code>.
+     * @throws DescriptorBudget.ExceededException
+     *             if the generation exceeded its time budget.
      */
     public AbstractActionDesc generate(final IAction action) {
         notNull(action);
 
+        final CachedActionDesc cached = cache.get(action.getClass());
+        if (cached != null && cached.signature.matches(action)) {
+            return cached.actionDesc;
+        }
+        final int skipped = budget.getSkipped();
+        final AbstractActionDesc generated = doGenerate(action);
+        // the description is incomplete if a disabled locator was skipped
+        if (budget.getSkipped() == skipped) {
+            cache.put(action.getClass(),
+                    new CachedActionDesc(new ActionSignature(action), generated));
+        }
+        return generated;
+    }
+
+    /**
+     * Generates a new action description from the action.
+     * 
+     * @param action
+     *            the action to generate description for. Assumed not
+     *            <code>null</code>.
+     * @return the frozen action description. Never <code>null</code>.
+     */
+    private AbstractActionDesc doGenerate(final IAction action) {
         actionDesc = new ActionDescImpl();
         // actions may have no text nor tool tip text
         final String text = action.getText();
@@ -109,6 +181,7 @@ public class ActionActionDescGenerator {
         }
         actionDesc.setClassName(action.getClass().getName());
         extractActionData(action);
+        actionDesc.freeze();
         return actionDesc;
     }
 
@@ -146,12 +219,34 @@ public class ActionActionDescGenerator {
             return;
         }
         actionDesc.setDef(definitionId);
+        fromCommandCategory(definitionId);
         final String s = findAcceleratorForActionDefinition(definitionId);
         if (s != null) {
             actionDesc.setAccelerator(s);
         }
     }
 
+    /**
+     * Populates {@link #actionDesc} category from the command with the action
+     * definition id.
+     * 
+     * @param definitionId
+     *            the action definition id. Assumed not <code>null</code>.
+     */
+    private void fromCommandCategory(final String definitionId) {
+        if (actionDesc.getCategoryId() != null) {
+            return;
+        }
+        final Command command = commandService.getCommand(definitionId);
+        try {
+            if (command.isDefined() && command.getCategory() != null) {
+                actionDesc.setCategoryId(command.getCategory().getId());
+            }
+        } catch (final NotDefinedException ignore) {
+            // the command is undefined, no category
+        }
+    }
+
     /**
      * Populates {@link #actionDesc} from the action accelerator.
      * 
@@ -177,9 +272,7 @@ public class ActionActionDescGenerator {
         if (StringUtils.isBlank(definitionId)) {
             return null;
         }
-        final ICallback callback = ExternalActionManager.getInstance()
-                .getCallback();
-        return callback.getAcceleratorText(definitionId);
+        return textCache.getAcceleratorText(definitionId);
     }
 
     /**
@@ -204,7 +297,15 @@ public class ActionActionDescGenerator {
                     .getActionHandler());
         }
 
-        return scanBindings(action);
+        if (!budget.isEnabled(SCAN_BINDINGS)) {
+            return null;
+        }
+        final long start = System.nanoTime();
+        try {
+            return scanBindings(action);
+        } finally {
+            budget.record(SCAN_BINDINGS, System.nanoTime() - start);
+        }
     }
 
     /**
@@ -230,6 +331,7 @@ public class ActionActionDescGenerator {
 
             final Class<? extends IAction> actionClass = action.getClass();
             for (Object o : matches.keySet()) {
+                budget.checkDeadline();
                 final TriggerSequence triggerSequence = (TriggerSequence) o;
                 final Binding binding = (Binding) matches.get(triggerSequence);
                 final Command command = binding.getParameterizedCommand()
@@ -288,9 +390,16 @@ public class ActionActionDescGenerator {
         if (searchTarget.getClass().equals(actionClass)) {
             return triggerSequence.toString();
         }
-        if (actionSearcher.isSearchable(searchTarget)) {
-            final String id = actionSearcher.findActionDefinitionId(action,
-                    searchTarget);
+        if (actionSearcher.isSearchable(searchTarget)
+                && budget.isEnabled(TEXT_ACTION_LOCATOR)) {
+            final long start = System.nanoTime();
+            final String id;
+            try {
+                id = actionSearcher.findActionDefinitionId(action,
+                        searchTarget);
+            } finally {
+                budget.record(TEXT_ACTION_LOCATOR, System.nanoTime() - start);
+            }
             return findAcceleratorForActionDefinition(id);
         }
         return null;
@@ -307,8 +416,7 @@ public class ActionActionDescGenerator {
      * @return The equivalent key stroke; never <code>null</code>.
      */
     private String keyToStr(final int accelerator) {
-        return SWTKeySupport.convertAcceleratorToKeyStroke(accelerator)
-                .format();
+        return textCache.format(accelerator);
     }
 
     /**
@@ -357,5 +465,126 @@ public class ActionActionDescGenerator {
         return command.isDefined()
                 && activityManager.getIdentifier(command.getId()).isEnabled();
     }
+
+    /**
+     * The action description cached for an action class.
+     */
+    private static class CachedActionDesc {
+        /**
+         * The action data the description was generated from.
+         */
+        private final ActionSignature signature;
+
+        /**
+         * The frozen action description.
+         */
+        private final AbstractActionDesc actionDesc;
+
+        /**
+         * Constructor.
+         * 
+         * @param signature
+         *            the action data. Assumed not <code>null</code>.
+         * @param actionDesc
+         *            the description. Assumed not <code>null</code>.
+         */
+        CachedActionDesc(final ActionSignature signature,
+                final AbstractActionDesc actionDesc) {
+            this.signature = signature;
+            this.actionDesc = actionDesc;
+        }
+    }
+
+    /**
+     * The action data an action description is generated from, except the
+     * bindings. Actions of the same class having the same signature get the
+     * same description.
+     */
+    private static class ActionSignature {
+        /**
+         * The action class.
+         */
+        private final Class<?> actionClass;
+
+        /**
+         * The action text.
+         */
+        private final String text;
+
+        /**
+         * The action tool tip text.
+         */
+        private final String toolTipText;
+
+        /**
+         * The action accelerator.
+         */
+        private final int accelerator;
+
+        /**
+         * The action definition id.
+         */
+        private final String definitionId;
+
+        /**
+         * The signature of the retarget action handler. <code>null</code> if
+         * the action is not a retarget action or has no handler.
+         */
+        private final ActionSignature handler;
+
+        /**
+         * Creates the signature of the action.
+         * 
+         * @param action
+         *            the action. Assumed not <code>null</code>.
+         */
+        ActionSignature(final IAction action) {
+            actionClass = action.getClass();
+            text = action.getText();
+            toolTipText = action.getToolTipText();
+            accelerator = action.getAccelerator();
+            definitionId = action.getActionDefinitionId();
+            final IAction actionHandler = getHandler(action);
+            handler = actionHandler == null
+                    ? null : new ActionSignature(actionHandler);
+        }
+
+        /**
+         * Whether the action has this signature. Does not allocate.
+         * 
+         * @param action
+         *            the action to check. Assumed not <code>null</code>.
+         * @return <code>true</code> if the action has the same data as the
+         *         action this signature was created from.
+         */
+        boolean matches(final IAction action) {
+            if (!actionClass.equals(action.getClass())
+                    || accelerator != action.getAccelerator()
+                    || !ObjectUtils.equals(text, action.getText())
+                    || !ObjectUtils.equals(toolTipText, action.getToolTipText())
+                    || !ObjectUtils.equals(definitionId,
+                            action.getActionDefinitionId())) {
+                return false;
+            }
+            final IAction actionHandler = getHandler(action);
+            if (actionHandler == null) {
+                return handler == null;
+            }
+            return handler != null && handler.matches(actionHandler);
+        }
+
+        /**
+         * The handler of a retarget action.
+         * 
+         * @param action
+         *            the action. Assumed not <code>null</code>.
+         * @return the retarget action handler. <code>null</code> if the
+         *         action is not a retarget action or has no handler.
+         */
+        private static IAction getHandler(final IAction action) {
+            return action instanceof RetargetAction
+                    ? ((RetargetAction) action).getActionHandler() : null;
+        }
+    }
 }
 // COUPLING:ON
@@ -77,6 +77,7 @@ public class ActionDescImpl extends AbstractActionDesc {
      * @see #getClassName()
      */
     public void setClassName(final String className) {
+        checkNotFrozen();
         if (isBlank(className)) {
             return;
         }
@@ -100,6 +101,7 @@ public class ActionDescImpl extends AbstractActionDesc {
      * @see #getDef()
      */
     public void setDef(final String def) {
+        checkNotFrozen();
         if (isBlank(def)) {
             return;
         }
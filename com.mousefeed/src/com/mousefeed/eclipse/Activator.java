@@ -21,8 +21,22 @@ package com.mousefeed.eclipse;
 import static org.apache.commons.lang.Validate.isTrue;
 
 import com.mousefeed.client.collector.Collector;
+import com.mousefeed.client.collector.DescriptorSnapshot;
+import com.mousefeed.client.collector.UsageJournal;
+import com.mousefeed.client.metrics.StallWatchdog;
+import com.mousefeed.eclipse.preferences.PreferenceAccessor;
+import com.mousefeed.eclipse.preferences.PreferenceConstants;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import org.eclipse.core.runtime.jobs.IJobManager;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
+import org.osgi.framework.BundleContext;
 
 /**
  * The activator class controls the plug-in life cycle.
@@ -35,6 +49,35 @@ public class Activator extends AbstractUIPlugin {
      */
     public static final String PLUGIN_ID = "com.mousefeed";
 
+    /**
+     * The usage journal file name.
+     */
+    private static final String USAGE_JOURNAL_NAME = "usage.journal";
+
+    /**
+     * The family of the background jobs MouseFeed runs until it is stopped.
+     * The jobs are canceled when the plugin is stopped.
+     *
+     * @see org.eclipse.core.runtime.jobs.Job#belongsTo(Object)
+     */
+    public static final Object JOB_FAMILY = PLUGIN_ID + ".jobs";
+
+    /**
+     * The command descriptions snapshot file name.
+     */
+    private static final String DESCRIPTOR_SNAPSHOT_NAME = "descriptors.snapshot";
+
+    /**
+     * The event trace file name.
+     */
+    private static final String EVENT_TRACE_NAME = "events.trace";
+
+    /**
+     * How long the plugin stop waits for the state to be written, in
+     * milliseconds.
+     */
+    private static final long SHUTDOWN_WRITE_TIMEOUT = 5000;
+
     /**
      * The shared instance.
      */
@@ -44,6 +87,37 @@ public class Activator extends AbstractUIPlugin {
      * @see #getCollector()
      */
     private final Collector collector = new Collector();
+
+    /**
+     * @see #getWriteScheduler()
+     */
+    private final WriteScheduler writeScheduler = new WriteScheduler();
+
+    /**
+     * @see #getUsageJournal()
+     */
+    private volatile UsageJournal usageJournal;
+
+    /**
+     * Serves the metrics while enabled. <code>null</code> when the plugin is
+     * not started.
+     */
+    private MetricsExporter metricsExporter;
+
+    /**
+     * @see #getEventTraceRecorder()
+     */
+    private EventTraceRecorder eventTraceRecorder;
+
+    /**
+     * @see #getStallWatchdog()
+     */
+    private StallWatchdog stallWatchdog;
+
+    /**
+     * @see #getDescriptorSnapshot()
+     */
+    private volatile DescriptorSnapshot descriptorSnapshot;
     
     /**
      * The constructor.
@@ -53,6 +127,102 @@ public class Activator extends AbstractUIPlugin {
         plugin = this;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void start(final BundleContext context) throws Exception {
+        super.start(context);
+        metricsExporter = new MetricsExporter(getPreferenceStore());
+        eventTraceRecorder = new EventTraceRecorder(getPreferenceStore(),
+                new File(getStateLocation().toFile(), EVENT_TRACE_NAME), writeScheduler);
+        final IPreferenceStore store = getPreferenceStore();
+        collector.setKeyboardSampling(Math.max(1, store.getInt(PreferenceConstants.P_KEYBOARD_SAMPLING)));
+        usageJournal = newUsageJournal();
+        store.addPropertyChangeListener(new IPropertyChangeListener() {
+            public void propertyChange(final PropertyChangeEvent event) {
+                if (PreferenceConstants.P_KEYBOARD_SAMPLING.equals(event.getProperty())) {
+                    collector.setKeyboardSampling(
+                            Math.max(1, store.getInt(PreferenceConstants.P_KEYBOARD_SAMPLING)));
+                } else if (PreferenceConstants.P_SHARED_USAGE_JOURNAL.equals(event.getProperty())) {
+                    switchUsageJournal();
+                }
+            }
+        });
+    }
+
+    /**
+     * Switches to the journal location of the current preferences. The
+     * invocations still queued in the old journal are written to it in the
+     * background.
+     */
+    private synchronized void switchUsageJournal() {
+        final UsageJournal old = usageJournal;
+        final UsageJournal journal = newUsageJournal();
+        if (old != null && old.getFile().equals(journal.getFile())) {
+            return;
+        }
+        usageJournal = journal;
+        if (old != null) {
+            writeScheduler.schedule(old);
+        }
+    }
+
+    /**
+     * Creates the journal in the location of the current preferences,
+     * creating its directory.
+     * @return the journal. Not <code>null</code>.
+     */
+    private UsageJournal newUsageJournal() {
+        final File file;
+        if (PreferenceAccessor.getInstance().isUsageJournalShared()) {
+            file = new File(new File(System.getProperty("user.home"), ".mousefeed"), USAGE_JOURNAL_NAME);
+        } else {
+            file = new File(getStateLocation().toFile(), USAGE_JOURNAL_NAME);
+        }
+        file.getParentFile().mkdirs();
+        return new UsageJournal(file);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stop(final BundleContext context) throws Exception {
+        try {
+            final IJobManager jobManager = Job.getJobManager();
+            jobManager.cancel(JOB_FAMILY);
+            jobManager.join(JOB_FAMILY, null);
+            if (metricsExporter != null) {
+                metricsExporter.dispose();
+                metricsExporter = null;
+            }
+            if (eventTraceRecorder != null) {
+                eventTraceRecorder.dispose();
+                eventTraceRecorder = null;
+            }
+            synchronized (this) {
+                if (stallWatchdog != null) {
+                    stallWatchdog.stop();
+                }
+            }
+            saveDescriptorSnapshot();
+            writeScheduler.shutdown(SHUTDOWN_WRITE_TIMEOUT);
+        } finally {
+            super.stop(context);
+        }
+    }
+
+    /**
+     * Schedules writing the command descriptions resolved in this session.
+     */
+    private void saveDescriptorSnapshot() {
+        final DescriptorSnapshot snapshot = descriptorSnapshot;
+        if (snapshot != null && snapshot.isDirty()) {
+            writeScheduler.schedule(new Flushable() {
+                public void flush() throws IOException {
+                    snapshot.write(getDescriptorSnapshotFile());
+                }
+            });
+        }
+    }
+
     /**
      * Returns the shared instance.
      *
@@ -81,4 +251,94 @@ public class Activator extends AbstractUIPlugin {
     public Collector getCollector() {
         return collector;
     }
+
+    /**
+     * Writes the MouseFeed state in the background.
+     * @return the write scheduler. Not <code>null</code>.
+     */
+    public WriteScheduler getWriteScheduler() {
+        return writeScheduler;
+    }
+
+    /**
+     * Records the events processed by MouseFeed while it is enabled.
+     * @return the event trace recorder. <code>null</code> if the plugin is
+     * not started.
+     */
+    EventTraceRecorder getEventTraceRecorder() {
+        return eventTraceRecorder;
+    }
+
+    /**
+     * Reports the MouseFeed handlers blocking the display thread to
+     * <code>stalls.log</code> in the plug-in state location. Is created and
+     * started on the first call, which must be made from the display thread.
+     * @return the stall watchdog. Not <code>null</code>.
+     */
+    public synchronized StallWatchdog getStallWatchdog() {
+        if (stallWatchdog == null) {
+            final IPreferenceStore store = getPreferenceStore();
+            stallWatchdog = new StallWatchdog(Thread.currentThread(),
+                    new File(getStateLocation().toFile(), "stalls.log"),
+                    Math.max(0, store.getInt(PreferenceConstants.P_STALL_BUDGET)));
+            store.addPropertyChangeListener(new IPropertyChangeListener() {
+                public void propertyChange(final PropertyChangeEvent event) {
+                    if (PreferenceConstants.P_STALL_BUDGET.equals(event.getProperty())) {
+                        stallWatchdog.setBudget(Math.max(0, store.getInt(PreferenceConstants.P_STALL_BUDGET)));
+                    }
+                }
+            });
+            stallWatchdog.start();
+        }
+        return stallWatchdog;
+    }
+
+    /**
+     * The command descriptions resolved in this and the earlier sessions.
+     * @return the snapshot. <code>null</code> while it is loaded by
+     * {@link DescriptorSnapshotLoader}.
+     */
+    public DescriptorSnapshot getDescriptorSnapshot() {
+        return descriptorSnapshot;
+    }
+
+    /**
+     * @param snapshot the loaded snapshot. Not <code>null</code>.
+     * @see #getDescriptorSnapshot()
+     */
+    void setDescriptorSnapshot(final DescriptorSnapshot snapshot) {
+        isTrue(snapshot != null);
+        descriptorSnapshot = snapshot;
+    }
+
+    /**
+     * Stops using the snapshot when the binding configuration changes, until
+     * a snapshot for the new configuration is loaded.
+     * @see #getDescriptorSnapshot()
+     */
+    void discardDescriptorSnapshot() {
+        descriptorSnapshot = null;
+    }
+
+    /**
+     * The file the command descriptions are stored in between the sessions.
+     * @return the snapshot file in the plug-in state location. Not
+     * <code>null</code>.
+     */
+    File getDescriptorSnapshotFile() {
+        return new File(getStateLocation().toFile(), DESCRIPTOR_SNAPSHOT_NAME);
+    }
+
+    /**
+     * The journal of the action invocations. Is stored in the plug-in state
+     * location, or in the user home directory if the journal is shared by the
+     * workspaces. Is resolved when the plugin is started and when the
+     * preference changes, so getting it does not access the file system.
+     * @return the usage journal. <code>null</code> if the plugin is not
+     * started.
+     * @see PreferenceAccessor#isUsageJournalShared()
+     */
+    public UsageJournal getUsageJournal() {
+        return usageJournal;
+    }
 }
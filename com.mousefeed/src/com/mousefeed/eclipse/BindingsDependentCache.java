@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.metrics.Metrics;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches values computed from the workbench key bindings. The cache is
+ * emptied as soon as the bindings change. Must be accessed from the display
+ * thread only.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class BindingsDependentCache<K, V> {
+    /**
+     * Notifies about the binding changes.
+     */
+    private final BindingsMonitor monitor;
+
+    /**
+     * The cached values.
+     */
+    private final Map<K, V> values = new HashMap<K, V>();
+
+    /**
+     * The bindings version the cached values were computed for.
+     */
+    private int version;
+
+    /**
+     * Creates a cache for the workbench bindings.
+     */
+    public BindingsDependentCache() {
+        this(BindingsMonitor.getInstance());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param monitor
+     *            tracks the binding changes. Not <code>null</code>.
+     */
+    BindingsDependentCache(final BindingsMonitor monitor) {
+        notNull(monitor);
+        this.monitor = monitor;
+        this.version = monitor.getVersion();
+    }
+
+    /**
+     * The cached value.
+     *
+     * @param key
+     *            the key. Not <code>null</code>.
+     * @return the value cached for the key. <code>null</code> if there is no
+     *         value for the key or the bindings changed after the value was
+     *         cached.
+     */
+    public V get(final K key) {
+        validate();
+        final V value = values.get(key);
+        if (value == null) {
+            Metrics.getInstance().getBindingCacheMisses().inc();
+        } else {
+            Metrics.getInstance().getBindingCacheHits().inc();
+        }
+        return value;
+    }
+
+    /**
+     * Caches the value.
+     *
+     * @param key
+     *            the key. Not <code>null</code>.
+     * @param value
+     *            the value computed from the current bindings. Not
+     *            <code>null</code>.
+     */
+    public void put(final K key, final V value) {
+        notNull(key);
+        notNull(value);
+        validate();
+        values.put(key, value);
+    }
+
+    /**
+     * Empties the cache if the bindings changed.
+     */
+    private void validate() {
+        final int current = monitor.getVersion();
+        if (version != current) {
+            values.clear();
+            version = current;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import com.mousefeed.client.collector.SchemeRegistry;
+import org.eclipse.jface.bindings.BindingManager;
+import org.eclipse.jface.bindings.BindingManagerEvent;
+import org.eclipse.jface.bindings.IBindingManagerListener;
+import org.eclipse.jface.bindings.Scheme;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.internal.keys.BindingService;
+import org.eclipse.ui.keys.IBindingService;
+
+/**
+ * Tracks changes of the workbench key bindings. Data computed from the
+ * bindings is valid as long as {@link #getVersion()} does not change.
+ * Singleton. Must be accessed from the display thread only.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+@SuppressWarnings("restriction")
+final class BindingsMonitor implements IBindingManagerListener {
+    /**
+     * The singleton instance. Created on first access, because it needs the
+     * workbench.
+     */
+    private static BindingsMonitor instance;
+
+    /**
+     * The workbench binding manager.
+     */
+    private final BindingManager bindingManager;
+
+    /**
+     * @see #getVersion()
+     */
+    private int version;
+
+    /**
+     * The nesting level of {@link #beginSchemeSwitch()} calls.
+     */
+    private int schemeSwitchDepth;
+
+    /**
+     * Creates the monitor and starts listening for the binding changes.
+     */
+    private BindingsMonitor() {
+        final IBindingService bindingService =
+                (IBindingService) PlatformUI.getWorkbench().getAdapter(IBindingService.class);
+        bindingManager = ((BindingService) bindingService).getBindingManager();
+        bindingManager.addBindingManagerListener(this);
+        for (Scheme scheme : bindingManager.getDefinedSchemes()) {
+            SchemeRegistry.getInstance().register(scheme.getId());
+        }
+    }
+
+    /**
+     * The singleton instance.
+     *
+     * @return the singleton instance. Never <code>null</code>.
+     */
+    public static BindingsMonitor getInstance() {
+        if (instance == null) {
+            instance = new BindingsMonitor();
+        }
+        return instance;
+    }
+
+    /**
+     * The bindings version. Is increased each time the workbench bindings
+     * change.
+     *
+     * @return the current bindings version.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * The workbench binding manager.
+     *
+     * @return the binding manager. Not <code>null</code>.
+     */
+    public BindingManager getBindingManager() {
+        return bindingManager;
+    }
+
+    /**
+     * Must be called before MouseFeed temporarily switches the active scheme
+     * to collect bindings of the other schemes. The binding changes are
+     * ignored until {@link #endSchemeSwitch()} is called, because MouseFeed
+     * restores the original scheme.
+     */
+    public void beginSchemeSwitch() {
+        schemeSwitchDepth++;
+    }
+
+    /**
+     * Must be called after MouseFeed restored the active scheme.
+     *
+     * @see #beginSchemeSwitch()
+     */
+    public void endSchemeSwitch() {
+        schemeSwitchDepth--;
+    }
+
+    /**
+     * Increases {@link #getVersion()} on the binding changes affecting the
+     * data MouseFeed collects. Keeps {@link SchemeRegistry} in sync with the
+     * defined schemes.
+     *
+     * @param event
+     *            the event. Not <code>null</code>.
+     */
+    @Override
+    public void bindingManagerChanged(final BindingManagerEvent event) {
+        if (schemeSwitchDepth > 0) {
+            return;
+        }
+        if (event.isSchemeChanged()) {
+            if (event.isSchemeDefined()) {
+                SchemeRegistry.getInstance().register(event.getScheme().getId());
+            } else {
+                SchemeRegistry.getInstance().unregister(event.getScheme().getId());
+            }
+        }
+        if (event.isActiveBindingsChanged() || event.isActiveSchemeChanged() || event.isSchemeChanged()
+                || event.isLocaleChanged() || event.isPlatformChanged()) {
+            version++;
+        }
+    }
+}
@@ -21,16 +21,20 @@ package com.mousefeed.eclipse;
 import static org.apache.commons.lang.Validate.notNull;
 
 import com.mousefeed.client.collector.AbstractActionDesc;
+import com.mousefeed.client.collector.DescriptorSnapshot;
+import com.mousefeed.client.collector.SchemeRegistry;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeSet;
+import org.eclipse.core.commands.Category;
 import org.eclipse.core.commands.Command;
 import org.eclipse.core.commands.common.NotDefinedException;
 import org.eclipse.jface.bindings.BindingManager;
 import org.eclipse.jface.bindings.Scheme;
 import org.eclipse.jface.bindings.TriggerSequence;
-import org.eclipse.swt.graphics.Point;
 import org.eclipse.ui.PlatformUI;
-import org.eclipse.ui.internal.keys.BindingService;
+import org.eclipse.ui.contexts.IContextService;
 import org.eclipse.ui.keys.IBindingService;
 import org.eclipse.ui.menus.CommandContributionItem;
 
@@ -53,11 +57,44 @@ class CommandActionDescGenerator {
      */
     private final IBindingService bindingService;
 
+    /**
+     * The context service used to identify the active contexts.
+     */
+    private final IContextService contextService;
+
+    /**
+     * Tracks the binding changes.
+     */
+    private final BindingsMonitor bindingsMonitor = BindingsMonitor.getInstance();
+
+    /**
+     * Formats the bindings.
+     */
+    private final AcceleratorTextCache textCache = AcceleratorTextCache.getInstance();
+
+    /**
+     * The generated action descriptions. Keys - the command ids.
+     */
+    private final BindingsDependentCache<String, AbstractActionDesc> cache =
+            new BindingsDependentCache<String, AbstractActionDesc>(bindingsMonitor);
+
+    /**
+     * The key of the active contexts, for {@link DescriptorSnapshot}.
+     */
+    private int contextKey;
+
+    /**
+     * The bindings version {@link #contextKey} was calculated for. -1 if not
+     * calculated yet.
+     */
+    private int contextKeyVersion = -1;
+
     /**
      * Constructor.
      */
     public CommandActionDescGenerator() {
         bindingService = (IBindingService) PlatformUI.getWorkbench().getAdapter(IBindingService.class);
+        contextService = (IContextService) PlatformUI.getWorkbench().getService(IContextService.class);
     }
 
     /**
@@ -66,62 +103,181 @@ class CommandActionDescGenerator {
      * @param commandContributionItem
      *            the contribution item to generate an action description for.
      *            Not <code>null</code>.
-     * @return the action description for the provided action. Never
-     *         <code>null</code>.
+     * @return the action description for the provided action.
+     *         <code>null</code> if the command can't be found.
      */
     public AbstractActionDesc generate(final CommandContributionItem commandContributionItem) {
         notNull(commandContributionItem);
 
         final Command command = locator.get(commandContributionItem);
-        return generate(command, null);
+        return generate(command);
     }
 
-    public AbstractActionDesc generate(Command command, Point location) {
-        final ActionDescImpl actionDesc = new ActionDescImpl();
+    /**
+     * Generates action description for the command. The descriptions are
+     * shared, the same description is returned for the command until the
+     * bindings change. Takes the description from the persisted
+     * {@link DescriptorSnapshot} if it was resolved in an earlier session.
+     * 
+     * @param command
+     *            the command to generate an action description for. Can be
+     *            <code>null</code>.
+     * @return the frozen action description for the command.
+     *         <code>null</code> if the command is <code>null</code>.
+     */
+    public AbstractActionDesc generate(final Command command) {
         if (command == null) {
             return null;
         }
+        final String commandId = command.getId();
+        AbstractActionDesc actionDesc = cache.get(commandId);
+        if (actionDesc == null) {
+            final DescriptorSnapshot snapshot = Activator.getDefault().getDescriptorSnapshot();
+            final DescriptorSnapshot.Entry entry = snapshot == null ? null : snapshot.get(commandId, getContextKey());
+            if (entry == null) {
+                actionDesc = doGenerate(command);
+                if (snapshot != null) {
+                    snapshot.put(commandId, getContextKey(), toEntry(actionDesc));
+                }
+            } else {
+                actionDesc = fromEntry(commandId, entry);
+            }
+            cache.put(commandId, actionDesc);
+        }
+        return actionDesc;
+    }
+
+    /**
+     * Restores the action description from the snapshot entry.
+     *
+     * @param commandId
+     *            the command id. Assumed not <code>null</code>.
+     * @param entry
+     *            the snapshot entry. Assumed not <code>null</code>.
+     * @return the frozen action description. Never <code>null</code>.
+     */
+    private AbstractActionDesc fromEntry(final String commandId, final DescriptorSnapshot.Entry entry) {
+        final ActionDescImpl actionDesc = new ActionDescImpl();
+        actionDesc.setLabel(entry.getLabel());
+        actionDesc.setCategoryId(entry.getCategoryId());
+        actionDesc.setDef(commandId);
+        final SchemeRegistry schemeRegistry = SchemeRegistry.getInstance();
+        for (Map.Entry<String, String> accelerator : entry.getAccelerators().entrySet()) {
+            actionDesc.setAccelerator(schemeRegistry.register(accelerator.getKey()), accelerator.getValue());
+        }
+        actionDesc.freeze();
+        return actionDesc;
+    }
+
+    /**
+     * Converts the action description to the snapshot entry.
+     *
+     * @param actionDesc
+     *            the generated action description. Assumed not
+     *            <code>null</code>.
+     * @return the snapshot entry. Never <code>null</code>.
+     */
+    private DescriptorSnapshot.Entry toEntry(final AbstractActionDesc actionDesc) {
+        final SchemeRegistry schemeRegistry = SchemeRegistry.getInstance();
+        final Map<String, String> accelerators = new HashMap<String, String>();
+        for (int ordinal = 0; ordinal < schemeRegistry.size(); ordinal++) {
+            final String accelerator = actionDesc.getAccelerator(ordinal);
+            if (accelerator != null) {
+                accelerators.put(schemeRegistry.getSchemeId(ordinal), accelerator);
+            }
+        }
+        return new DescriptorSnapshot.Entry(actionDesc.getLabel(), actionDesc.getCategoryId(), accelerators);
+    }
+
+    /**
+     * The key of the active contexts. The active bindings depend on the
+     * active contexts, so the snapshot entries are only valid in the contexts
+     * they were resolved in. Is recalculated when the bindings change.
+     *
+     * @return the context key.
+     */
+    @SuppressWarnings("unchecked")
+    private int getContextKey() {
+        final int version = bindingsMonitor.getVersion();
+        if (contextKeyVersion != version) {
+            final Collection<String> contextIds = contextService.getActiveContextIds();
+            final long hash = DescriptorSnapshot.hash(new TreeSet<String>(contextIds).toString());
+            contextKey = (int) (hash ^ (hash >>> 32));
+            contextKeyVersion = version;
+        }
+        return contextKey;
+    }
+
+    /**
+     * Generates a new action description for the command.
+     * 
+     * @param command
+     *            the command. Assumed not <code>null</code>.
+     * @return the frozen action description. Never <code>null</code>.
+     */
+    private AbstractActionDesc doGenerate(final Command command) {
+        final ActionDescImpl actionDesc = new ActionDescImpl();
         try {
             actionDesc.setLabel(command.getName());
+            final Category category = command.getCategory();
+            if (category != null) {
+                actionDesc.setCategoryId(category.getId());
+            }
         } catch (final NotDefinedException e) {
             // should never happen
             throw new RuntimeException(e);
         }
         final String commandId = command.getId();
         actionDesc.setDef(commandId);
-        actionDesc.setCaretLocation(location);
 
-        BindingManager bindingManager = ((BindingService) bindingService).getBindingManager();
-
-        Map<String, String> additional = new HashMap<String, String>();
-        Scheme de = bindingManager.getActiveScheme();
+        final TriggerSequence binding = bindingService.getBestActiveBindingFor(commandId);
+        if (binding != null) {
+            actionDesc.setAccelerator(textCache.format(binding));
+            addSchemeAccelerators(actionDesc, commandId);
+        }
+        actionDesc.freeze();
+        return actionDesc;
+    }
 
-        for (Scheme scheme : bindingManager.getDefinedSchemes()) {
-            try {
-                bindingManager.setActiveScheme(scheme);
+    /**
+     * Populates the action description with the command accelerators in all
+     * the defined schemes.
+     * 
+     * @param actionDesc
+     *            the action description to populate. Assumed not
+     *            <code>null</code>.
+     * @param commandId
+     *            the command id. Assumed not <code>null</code>.
+     */
+    private void addSchemeAccelerators(final ActionDescImpl actionDesc, final String commandId) {
+        final BindingManager bindingManager = bindingsMonitor.getBindingManager();
+        final SchemeRegistry schemeRegistry = SchemeRegistry.getInstance();
+        final Scheme de = bindingManager.getActiveScheme();
 
-                TriggerSequence bestActiveBindingFor = bindingManager.getBestActiveBindingFor(commandId);
-                if (bestActiveBindingFor != null) {
+        bindingsMonitor.beginSchemeSwitch();
+        try {
+            for (Scheme scheme : bindingManager.getDefinedSchemes()) {
+                try {
+                    bindingManager.setActiveScheme(scheme);
 
-                    additional.put(scheme.getId(), bestActiveBindingFor.format());
+                    final TriggerSequence bestActiveBindingFor = bindingManager.getBestActiveBindingFor(commandId);
+                    if (bestActiveBindingFor != null) {
+                        actionDesc.setAccelerator(schemeRegistry.register(scheme.getId()),
+                                textCache.format(bestActiveBindingFor));
+                    }
+                } catch (NotDefinedException e) {
+                    // should never happen
+                    throw new RuntimeException(e);
                 }
+            }
+            try {
+                bindingManager.setActiveScheme(de);
             } catch (NotDefinedException e) {
                 // should never happen
                 throw new RuntimeException(e);
             }
+        } finally {
+            bindingsMonitor.endSchemeSwitch();
         }
-        try {
-            bindingManager.setActiveScheme(de);
-        } catch (NotDefinedException e) {
-            // should never happen
-            throw new RuntimeException(e);
-        }
-
-        final TriggerSequence binding = bindingService.getBestActiveBindingFor(commandId);
-        if (binding != null) {
-            actionDesc.setAccelerators(binding.format(), additional);
-        }
-        return actionDesc;
     }
-
 }
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.AbstractActionDesc;
+import com.mousefeed.client.collector.TraceEvent;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.e4.ui.workbench.renderers.swt.HandledContributionItem;
+import org.eclipse.jface.action.ActionContributionItem;
+import org.eclipse.jface.action.IContributionItem;
+import org.eclipse.jface.action.SubContributionItem;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.menus.CommandContributionItem;
+
+/**
+ * Generates {@link AbstractActionDesc} from any of the contribution items
+ * MouseFeed knows about. Dispatches to the generator for the specific
+ * contribution item type.
+ * <p>
+ * {@link #generate(IContributionItem, int, String)} limits the time spent on
+ * the generation. If the budget is exceeded, it returns the description last
+ * generated for the same item or a description containing only the item
+ * label, and completes the generation later, so the next selection of the
+ * item gets the full description.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+@SuppressWarnings("restriction")
+class ContributionItemActionDescGenerator {
+    /**
+     * The maximal number of the descriptions kept as the fallback for the
+     * generations exceeding the budget.
+     */
+    private static final int MAX_LAST_GENERATED = 256;
+
+    /**
+     * Limits the time spent on the generation.
+     */
+    private final DescriptorBudget budget = new DescriptorBudget();
+
+    /**
+     * Finds keyboard shortcut for an action.
+     */
+    private final ActionActionDescGenerator actionActionDescGenerator = new ActionActionDescGenerator(budget);
+
+    /**
+     * Finds keyboard shortcut for a command.
+     */
+    private final CommandActionDescGenerator commandActionDescGenerator;
+
+    /**
+     * Finds keyboard shortcut for a handled contribution item.
+     */
+    private final HandledActionDescGenerator handledActionDescGenerator;
+
+    /**
+     * The complete descriptions generated last. Keys - the item keys, see
+     * {@link #getKey(IContributionItem, String)}. The least recently used
+     * descriptions are dropped first. Unlike the generator caches, is not
+     * emptied on the binding changes, because a slightly outdated description
+     * is a better fallback than the label only.
+     */
+    private final Map<String, AbstractActionDesc> lastGenerated =
+            new LinkedHashMap<String, AbstractActionDesc>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, AbstractActionDesc> eldest) {
+                    return size() > MAX_LAST_GENERATED;
+                }
+            };
+
+    /**
+     * The keys of the items with a scheduled generation completion.
+     */
+    private final Set<String> pending = new HashSet<String>();
+
+    /**
+     * Constructor.
+     *
+     * @param commandActionDescGenerator
+     *            the generator for the command contribution items. Is shared
+     *            with the command execution listener. Not <code>null</code>.
+     */
+    public ContributionItemActionDescGenerator(final CommandActionDescGenerator commandActionDescGenerator) {
+        notNull(commandActionDescGenerator);
+        this.commandActionDescGenerator = commandActionDescGenerator;
+        this.handledActionDescGenerator = new HandledActionDescGenerator(commandActionDescGenerator, budget);
+    }
+
+    /**
+     * Indicates whether an action description can be generated for the
+     * contribution item.
+     *
+     * @param contributionItem
+     *            the contribution item to check. Can be <code>null</code>.
+     * @return <code>true</code> if {@link #generate(IContributionItem)} can
+     *         handle the item.
+     */
+    public boolean isSupported(final IContributionItem contributionItem) {
+        if (contributionItem instanceof SubContributionItem) {
+            return isSupported(((SubContributionItem) contributionItem).getInnerItem());
+        }
+        return contributionItem instanceof ActionContributionItem
+                || contributionItem instanceof CommandContributionItem
+                || contributionItem instanceof HandledContributionItem;
+    }
+
+    /**
+     * The type of the contribution item, as recorded in the event traces.
+     *
+     * @param contributionItem
+     *            the contribution item. Not <code>null</code>.
+     * @return the type of the item or of the wrapped item. Never
+     *         <code>null</code>.
+     */
+    public TraceEvent.ItemType getItemType(final IContributionItem contributionItem) {
+        notNull(contributionItem);
+        if (contributionItem instanceof SubContributionItem) {
+            final IContributionItem inner = ((SubContributionItem) contributionItem).getInnerItem();
+            return inner == null ? TraceEvent.ItemType.OTHER : getItemType(inner);
+        } else if (contributionItem instanceof ActionContributionItem) {
+            return TraceEvent.ItemType.ACTION;
+        } else if (contributionItem instanceof CommandContributionItem) {
+            return TraceEvent.ItemType.COMMAND;
+        } else if (contributionItem instanceof HandledContributionItem) {
+            return TraceEvent.ItemType.HANDLED;
+        } else {
+            return TraceEvent.ItemType.OTHER;
+        }
+    }
+
+    /**
+     * Generates action description from the contribution item.
+     *
+     * @param contributionItem
+     *            the contribution item to generate description for. Not
+     *            <code>null</code>.
+     * @return the action description. <code>null</code> if the item is not
+     *         supported or the item does not provide enough data to describe
+     *         the action.
+     */
+    public AbstractActionDesc generate(final IContributionItem contributionItem) {
+        notNull(contributionItem);
+        if (contributionItem instanceof SubContributionItem) {
+            final SubContributionItem subCI = (SubContributionItem) contributionItem;
+            return subCI.getInnerItem() == null ? null : generate(subCI.getInnerItem());
+        } else if (contributionItem instanceof ActionContributionItem) {
+            final ActionContributionItem item = (ActionContributionItem) contributionItem;
+            return actionActionDescGenerator.generate(item.getAction());
+        } else if (contributionItem instanceof CommandContributionItem) {
+            return commandActionDescGenerator.generate((CommandContributionItem) contributionItem);
+        } else if (contributionItem instanceof HandledContributionItem) {
+            return handledActionDescGenerator.generate((HandledContributionItem) contributionItem);
+        } else {
+            // no action contribution item
+            return null;
+        }
+    }
+
+    /**
+     * Generates action description from the contribution item within the time
+     * budget.
+     *
+     * @param contributionItem
+     *            the contribution item to generate description for. Not
+     *            <code>null</code>.
+     * @param budgetMillis
+     *            the time budget, in milliseconds. 0 if the generation is not
+     *            limited. Not negative.
+     * @param label
+     *            the label of the selected widget, used when no description
+     *            can be generated in time. Can be <code>null</code>.
+     * @return the action description. If the budget is exceeded or a locator
+     *         disabled for being slow was skipped, the description generated
+     *         for the item last time or a description with the label only.
+     *         <code>null</code> if the item is not supported or the item
+     *         does not provide enough data to describe the action.
+     */
+    public AbstractActionDesc generate(final IContributionItem contributionItem, final int budgetMillis,
+            final String label) {
+        notNull(contributionItem);
+        final String key = getKey(contributionItem, label);
+        final AbstractActionDesc actionDesc;
+        budget.begin(budgetMillis);
+        try {
+            actionDesc = generate(contributionItem);
+        } catch (final DescriptorBudget.ExceededException e) {
+            scheduleCompletion(contributionItem, key);
+            return getFallback(key, label);
+        } finally {
+            budget.end();
+        }
+        if (budget.getSkipped() > 0) {
+            return actionDesc == null ? getFallback(key, label) : actionDesc;
+        }
+        if (actionDesc != null) {
+            lastGenerated.put(key, actionDesc);
+        }
+        return actionDesc;
+    }
+
+    /**
+     * The description to use when the generation is abandoned.
+     *
+     * @param key
+     *            the item key. Assumed not <code>null</code>.
+     * @param label
+     *            the item label. Can be <code>null</code>.
+     * @return the description generated last time, the
+     *         {@link LabelOnlyActionDesc} if there is none. <code>null</code>
+     *         if the label is blank.
+     */
+    private AbstractActionDesc getFallback(final String key, final String label) {
+        final AbstractActionDesc last = lastGenerated.get(key);
+        if (last != null || StringUtils.isBlank(label)) {
+            return last;
+        }
+        return new LabelOnlyActionDesc(label);
+    }
+
+    /**
+     * Completes the abandoned generation when the display thread is idle. The
+     * result becomes the fallback for the next generation exceeding the
+     * budget.
+     *
+     * @param contributionItem
+     *            the contribution item. Assumed not <code>null</code>.
+     * @param key
+     *            the item key. Assumed not <code>null</code>.
+     */
+    private void scheduleCompletion(final IContributionItem contributionItem, final String key) {
+        final Display display = Display.getCurrent();
+        if (display == null || !pending.add(key)) {
+            return;
+        }
+        display.asyncExec(new Runnable() {
+            public void run() {
+                budget.beginUnbounded();
+                try {
+                    final AbstractActionDesc actionDesc = generate(contributionItem);
+                    if (actionDesc != null && budget.getSkipped() == 0) {
+                        lastGenerated.put(key, actionDesc);
+                    }
+                } catch (final RuntimeException e) {
+                    Activator.getDefault().getLog().log(
+                            new Status(IStatus.WARNING, Activator.PLUGIN_ID,
+                                    "Could not complete action description", e));
+                } finally {
+                    budget.end();
+                    pending.remove(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * The key identifying the contribution item among the items recreated
+     * when the menus are rebuilt.
+     *
+     * @param contributionItem
+     *            the contribution item. Assumed not <code>null</code>.
+     * @param label
+     *            the item label. Can be <code>null</code>.
+     * @return the key. Not <code>null</code>.
+     */
+    private String getKey(final IContributionItem contributionItem, final String label) {
+        IContributionItem item = contributionItem;
+        while (item instanceof SubContributionItem && ((SubContributionItem) item).getInnerItem() != null) {
+            item = ((SubContributionItem) item).getInnerItem();
+        }
+        return item.getClass().getName() + '#' + (item.getId() == null ? label : item.getId());
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import com.mousefeed.client.metrics.BudgetGovernor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * The time budget of the action description generation. The generators call
+ * {@link #checkDeadline()} at the points where the generation can be
+ * abandoned, and run the locators which can be slow on unusual contribution
+ * items through {@link #isEnabled(String)} and {@link #record(String, long)},
+ * so the locators exceeding the budget again and again are skipped.
+ * <p>
+ * The binding data the generators use is only accessible from the display
+ * thread, so the generation can't be moved to a background thread. Instead
+ * it is abandoned when the budget is exceeded, and the caller decides what to
+ * use instead. Must be accessed from the display thread only.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class DescriptorBudget {
+    /**
+     * Thrown by {@link DescriptorBudget#checkDeadline()} when the generation
+     * exceeds the budget.
+     */
+    static class ExceededException extends RuntimeException {
+        /**
+         * Serialization version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor.
+         */
+        ExceededException() {
+            super("Action description generation exceeded its time budget");
+        }
+    }
+
+    /**
+     * The budget of the locators, in nanoseconds.
+     */
+    private long budgetNanos;
+
+    /**
+     * The {@link System#nanoTime()} the generation must be finished by.
+     * Only valid if {@link #bounded}.
+     */
+    private long deadline;
+
+    /**
+     * Whether the current generation has a deadline.
+     */
+    private boolean bounded;
+
+    /**
+     * The number of the locators skipped since the current generation began.
+     */
+    private int skipped;
+
+    /**
+     * Disables the locators exceeding the budget.
+     */
+    private final BudgetGovernor governor = new BudgetGovernor();
+
+    /**
+     * Starts a generation which must finish within the budget.
+     *
+     * @param budget
+     *            the budget, in milliseconds. 0 if the generation is not
+     *            limited and the locators are never disabled. Not negative.
+     */
+    public void begin(final int budget) {
+        budgetNanos = budget * 1000000L;
+        bounded = budget > 0;
+        deadline = System.nanoTime() + budgetNanos;
+        skipped = 0;
+    }
+
+    /**
+     * Starts a generation which is allowed to take as long as it needs, e.g.
+     * the one completing an abandoned generation. The disabled locators are
+     * still skipped.
+     */
+    public void beginUnbounded() {
+        bounded = false;
+        skipped = 0;
+    }
+
+    /**
+     * Finishes the generation started by {@link #begin(int)} or
+     * {@link #beginUnbounded()}.
+     */
+    public void end() {
+        bounded = false;
+    }
+
+    /**
+     * Abandons the generation if it exceeded the budget. Does nothing if the
+     * generation has no deadline.
+     *
+     * @throws ExceededException
+     *             if the budget is exceeded.
+     */
+    public void checkDeadline() {
+        if (bounded && System.nanoTime() - deadline > 0) {
+            throw new ExceededException();
+        }
+    }
+
+    /**
+     * Whether the locator should run. If not, the skip is counted, so the
+     * caller can learn that the generated description may be incomplete.
+     *
+     * @param locator
+     *            the locator name. Not <code>null</code>.
+     * @return <code>false</code> if the locator is disabled.
+     * @see #getSkipped()
+     */
+    public boolean isEnabled(final String locator) {
+        if (governor.isEnabled(locator)) {
+            return true;
+        }
+        skipped++;
+        return false;
+    }
+
+    /**
+     * Records the duration of a locator call, disabling the locator if it
+     * keeps exceeding the budget.
+     *
+     * @param locator
+     *            the locator name. Not <code>null</code>.
+     * @param elapsed
+     *            the duration of the call, in nanoseconds.
+     */
+    public void record(final String locator, final long elapsed) {
+        if (budgetNanos == 0) {
+            return;
+        }
+        if (governor.record(locator, Math.max(0, elapsed), budgetNanos)) {
+            Activator.getDefault().getLog().log(new Status(IStatus.INFO, Activator.PLUGIN_ID,
+                    "Temporarily disabled " + locator + ", because it keeps exceeding the time budget"));
+        }
+    }
+
+    /**
+     * The number of the locators skipped since the current generation began.
+     *
+     * @return the number of the skipped locators. 0 if the generated
+     *         description is complete.
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+}
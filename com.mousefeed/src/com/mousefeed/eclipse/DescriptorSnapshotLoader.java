@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import com.mousefeed.client.collector.DescriptorSnapshot;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.swt.SWT;
+import org.eclipse.ui.IWorkbenchPreferenceConstants;
+import org.eclipse.ui.PlatformUI;
+import org.osgi.framework.Bundle;
+
+/**
+ * Loads the command descriptions resolved in the earlier sessions. Identifies
+ * the binding configuration by the installed bundles contributing the
+ * commands and the schemes, the user key bindings, the active scheme, the
+ * locale and the platform, all available without the display thread. If the
+ * snapshot was written for another configuration, installs an empty one, to
+ * be filled in this session. When the user changes the key bindings or the
+ * active scheme, the snapshot is discarded and loaded again for the new
+ * configuration.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class DescriptorSnapshotLoader extends Job {
+    /**
+     * The plugin storing the user key bindings.
+     */
+    private static final String WORKBENCH_PLUGIN_ID = "org.eclipse.ui.workbench";
+
+    /**
+     * The preference storing the user key bindings.
+     */
+    private static final String USER_BINDINGS_KEY = "org.eclipse.ui.commands";
+
+    /**
+     * The bundle states of the installed bundles which can contribute to the
+     * bindings.
+     */
+    private static final int RESOLVED_STATES = Bundle.RESOLVED | Bundle.STARTING | Bundle.ACTIVE;
+
+    /**
+     * Constructor.
+     */
+    public DescriptorSnapshotLoader() {
+        super("MouseFeed command descriptions loading");
+        setSystem(true);
+        setPriority(DECORATE);
+    }
+
+    /**
+     * Discards the snapshot and loads it again each time the binding
+     * configuration changes.
+     */
+    public void reloadOnConfigChange() {
+        InstanceScope.INSTANCE.getNode(WORKBENCH_PLUGIN_ID).addPreferenceChangeListener(
+                new IPreferenceChangeListener() {
+                    public void preferenceChange(final PreferenceChangeEvent event) {
+                        if (USER_BINDINGS_KEY.equals(event.getKey())) {
+                            reload();
+                        }
+                    }
+                });
+        PlatformUI.getPreferenceStore().addPropertyChangeListener(new IPropertyChangeListener() {
+            public void propertyChange(final PropertyChangeEvent event) {
+                if (IWorkbenchPreferenceConstants.KEY_CONFIGURATION_ID.equals(event.getProperty())) {
+                    reload();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops using the current snapshot, which does not match the binding
+     * configuration any more, and schedules the loading.
+     */
+    private void reload() {
+        final Activator activator = Activator.getDefault();
+        if (activator != null) {
+            activator.discardDescriptorSnapshot();
+            schedule();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected IStatus run(final IProgressMonitor monitor) {
+        final Activator activator = Activator.getDefault();
+        if (monitor.isCanceled() || activator == null) {
+            return Status.CANCEL_STATUS;
+        }
+        final long configHash = DescriptorSnapshot.hash(describeConfig(activator));
+        DescriptorSnapshot snapshot = null;
+        try {
+            snapshot = DescriptorSnapshot.read(activator.getDescriptorSnapshotFile(), configHash);
+        } catch (final IOException e) {
+            activator.getLog().log(new Status(IStatus.WARNING, Activator.PLUGIN_ID,
+                    "Could not read the command descriptions", e));
+        }
+        activator.setDescriptorSnapshot(snapshot == null ? new DescriptorSnapshot(configHash) : snapshot);
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * Describes the binding configuration.
+     *
+     * @param activator
+     *            the plugin activator. Assumed not <code>null</code>.
+     * @return the configuration description. Not <code>null</code>.
+     */
+    private String describeConfig(final Activator activator) {
+        // all the bundles, because the registry does not tell which
+        // bundles contribute the schemes without parsing their extensions
+        final SortedSet<String> bundles = new TreeSet<String>();
+        for (Bundle bundle : activator.getBundle().getBundleContext().getBundles()) {
+            if ((bundle.getState() & RESOLVED_STATES) != 0) {
+                bundles.add(bundle.getSymbolicName() + '_' + bundle.getVersion());
+            }
+        }
+        final StringBuilder config = new StringBuilder();
+        config.append(bundles).append('\n');
+        config.append(InstanceScope.INSTANCE.getNode(WORKBENCH_PLUGIN_ID).get(USER_BINDINGS_KEY, "")).append('\n');
+        config.append(PlatformUI.getPreferenceStore().getString(IWorkbenchPreferenceConstants.KEY_CONFIGURATION_ID))
+                .append('\n');
+        config.append(Locale.getDefault()).append('\n');
+        config.append(SWT.getPlatform());
+        return config.toString();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean belongsTo(final Object family) {
+        return Activator.JOB_FAMILY.equals(family);
+    }
+}
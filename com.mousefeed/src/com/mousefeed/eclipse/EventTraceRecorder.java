@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.EventTrace;
+import com.mousefeed.client.collector.TraceEvent;
+import com.mousefeed.eclipse.preferences.PreferenceConstants;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+
+/**
+ * Records the events processed by MouseFeed to an {@link EventTrace} while
+ * the recording is enabled in the preferences. Each enabling starts a new
+ * session of the trace. A write failure stops the recording until it is
+ * enabled again.
+ * <p>
+ * {@link #record(TraceEvent)} only queues the event, the queued events are
+ * written by {@link #flush()}, called by the {@link WriteScheduler}, so the
+ * display thread does not wait for the disk.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class EventTraceRecorder implements IPropertyChangeListener, Flushable {
+    /**
+     * The plugin preferences.
+     */
+    private final IPreferenceStore store;
+
+    /**
+     * The trace file.
+     */
+    private final File file;
+
+    /**
+     * Writes the queued events.
+     */
+    private final WriteScheduler scheduler;
+
+    /**
+     * The writer of the current session. <code>null</code> if the recording
+     * is disabled. Guarded by <code>this</code>.
+     */
+    private EventTrace.Writer writer;
+
+    /**
+     * Whether the events are recorded. Is <code>true</code> exactly when
+     * {@link #writer} is set.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * The recorded events not written yet. Guarded by itself, so the
+     * recording does not wait for a write in progress.
+     */
+    private final List<TraceEvent> pending = new ArrayList<TraceEvent>();
+
+    /**
+     * Starts recording if it is enabled and starts listening for the
+     * preference changes.
+     *
+     * @param store
+     *            the plugin preferences. Not <code>null</code>.
+     * @param file
+     *            the trace file. Not <code>null</code>.
+     * @param scheduler
+     *            writes the recorded events. Not <code>null</code>.
+     */
+    public EventTraceRecorder(final IPreferenceStore store, final File file, final WriteScheduler scheduler) {
+        notNull(store);
+        notNull(file);
+        notNull(scheduler);
+        this.store = store;
+        this.file = file;
+        this.scheduler = scheduler;
+        store.addPropertyChangeListener(this);
+        update();
+    }
+
+    /**
+     * Writes the queued events, then stops the recording and the preference
+     * listening.
+     */
+    public synchronized void dispose() {
+        store.removePropertyChangeListener(this);
+        flush();
+        closeWriter();
+    }
+
+    /**
+     * Whether the events are recorded, so the callers can skip collecting the
+     * event data.
+     *
+     * @return <code>true</code> if the recording is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the event to be written. Does nothing if the recording is
+     * disabled.
+     *
+     * @param event
+     *            the event. Not <code>null</code>.
+     */
+    public void record(final TraceEvent event) {
+        notNull(event);
+        if (!enabled) {
+            return;
+        }
+        synchronized (pending) {
+            pending.add(event);
+        }
+        scheduler.schedule(this);
+    }
+
+    /**
+     * Writes the queued events. A write failure is reported and stops the
+     * recording. The events queued while the recording is disabled are
+     * dropped.
+     */
+    public synchronized void flush() {
+        final List<TraceEvent> events;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            events = new ArrayList<TraceEvent>(pending);
+            pending.clear();
+        }
+        if (writer == null) {
+            return;
+        }
+        try {
+            for (TraceEvent event : events) {
+                writer.write(event);
+            }
+            writer.flush();
+        } catch (final IOException e) {
+            Activator.getDefault().getLog().log(
+                    new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Could not write the event trace " + file, e));
+            closeWriter();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void propertyChange(final PropertyChangeEvent event) {
+        if (PreferenceConstants.P_EVENT_TRACE_ENABLED.equals(event.getProperty())) {
+            update();
+        }
+    }
+
+    /**
+     * Brings the recording in line with the preferences.
+     */
+    private synchronized void update() {
+        if (!store.getBoolean(PreferenceConstants.P_EVENT_TRACE_ENABLED)) {
+            flush();
+            closeWriter();
+        } else if (writer == null) {
+            try {
+                writer = new EventTrace.Writer(file, System.currentTimeMillis());
+                enabled = true;
+            } catch (final IOException e) {
+                Activator.getDefault().getLog().log(
+                        new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Could not open the event trace " + file, e));
+            }
+        }
+    }
+
+    /**
+     * Closes the writer if it is open.
+     */
+    private void closeWriter() {
+        enabled = false;
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (final IOException e) {
+                Activator.getDefault().getLog().log(
+                        new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Could not write the event trace " + file, e));
+            }
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.CaretLocator;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.text.ITextOperationTarget;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Text;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.handlers.HandlerUtil;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+/**
+ * Finds the caret location of the text control a command was executed in.
+ * Looks at the active text editor first, then at the widget of the SWT
+ * event stored in the E4 context of the execution event.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class ExecutionEventCaretLocator implements CaretLocator {
+    /**
+     * The command execution event.
+     */
+    private final ExecutionEvent event;
+
+    /**
+     * Constructor.
+     *
+     * @param event
+     *            the command execution event. Not <code>null</code>.
+     */
+    public ExecutionEventCaretLocator(final ExecutionEvent event) {
+        notNull(event);
+        this.event = event;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Point findCaretLocation() {
+        final IWorkbenchPart activePartChecked = HandlerUtil.getActivePart(event);
+        if (activePartChecked instanceof ITextEditor) {
+            final ITextOperationTarget adapter = (ITextOperationTarget) ((ITextEditor) activePartChecked)
+                    .getAdapter(ITextOperationTarget.class);
+            if (adapter instanceof ITextViewer) {
+                final StyledText text = ((ITextViewer) adapter).getTextWidget();
+                return text.toDisplay(text.getCaret().getLocation());
+            }
+        } else {
+            final Event event2 = getEventFromE4Context();
+            if (event2 != null) {
+                if (event2.widget instanceof StyledText) {
+                    final StyledText text = (StyledText) event2.widget;
+                    return text.toDisplay(text.getCaret().getLocation());
+                } else if (event2.widget instanceof Text) {
+                    final Text text = (Text) event2.widget;
+                    return text.toDisplay(text.getCaretLocation());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the SWT event from the E4 context of the execution event.
+     *
+     * @return the SWT event. <code>null</code> if the event is not
+     *         available.
+     */
+    private Event getEventFromE4Context() {
+        final Object applicationContext = event.getApplicationContext();
+        try {
+            final Field declaredField = applicationContext.getClass().getDeclaredField("staticContext");
+            declaredField.setAccessible(true);
+            final Object/* IEclipseContext */ieclipseContext = declaredField.get(applicationContext);
+            final Method declaredMethod = ieclipseContext.getClass().getDeclaredMethod("get", Class.class);
+            return (Event) declaredMethod.invoke(ieclipseContext, Event.class);
+        } catch (Throwable e) {
+            Activator.getDefault().getLog()
+                    .log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Could not get event from E4 context", e));
+        }
+        return null;
+    }
+}
@@ -19,17 +19,23 @@
 package com.mousefeed.eclipse;
 
 import static org.apache.commons.lang.Validate.isTrue;
-import static org.apache.commons.lang.Validate.notNull;
 
+import com.mousefeed.client.FeedbackOutcome;
 import com.mousefeed.client.OnWrongInvocationMode;
 import com.mousefeed.client.collector.AbstractActionDesc;
+import com.mousefeed.client.collector.ActionCounts;
+import com.mousefeed.client.collector.ActionInvocation;
 import com.mousefeed.client.collector.Collector;
+import com.mousefeed.client.collector.TraceEvent;
+import com.mousefeed.client.collector.UsageJournal;
+import com.mousefeed.client.feedback.FeedbackEngine;
+import com.mousefeed.client.feedback.FeedbackPresenter;
+import com.mousefeed.client.feedback.FeedbackRequest;
+import com.mousefeed.client.feedback.ShortcutBindings;
+import com.mousefeed.client.metrics.Metrics;
+import com.mousefeed.client.metrics.StallWatchdog;
 import com.mousefeed.eclipse.preferences.PreferenceAccessor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.core.commands.Command;
 import org.eclipse.core.commands.ExecutionEvent;
@@ -38,30 +44,17 @@ import org.eclipse.core.commands.IExecutionListener;
 import org.eclipse.core.commands.NotHandledException;
 import org.eclipse.core.commands.ParameterizedCommand;
 import org.eclipse.core.commands.common.NotDefinedException;
-import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Status;
-import org.eclipse.e4.ui.workbench.renderers.swt.HandledContributionItem;
-import org.eclipse.jface.action.ActionContributionItem;
 import org.eclipse.jface.action.IContributionItem;
-import org.eclipse.jface.action.SubContributionItem;
-import org.eclipse.jface.text.ITextOperationTarget;
-import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.action.LegacyActionTools;
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.custom.StyledText;
-import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.MenuItem;
-import org.eclipse.swt.widgets.Text;
 import org.eclipse.swt.widgets.ToolItem;
 import org.eclipse.swt.widgets.Widget;
 import org.eclipse.ui.IWorkbench;
-import org.eclipse.ui.IWorkbenchPart;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.commands.ICommandService;
-import org.eclipse.ui.handlers.HandlerUtil;
-import org.eclipse.ui.menus.CommandContributionItem;
-import org.eclipse.ui.texteditor.ITextEditor;
 
 /**
  * Globally listens for the selection events.
@@ -73,21 +66,19 @@ import org.eclipse.ui.texteditor.ITextEditor;
  */
 @SuppressWarnings("restriction")
 public class GlobalSelectionListener implements Listener {
-    /**
-     * The id of the command/action to configure invocation mode for other
-     * actions.
-     */
-    private static final String CONFIGURE_ACTION_INVOCATION_DEF = "com.mousefeed.commands.configureActionInvocation";
-
     /**
      * Provides access to the plugin preferences.
      */
     private final PreferenceAccessor preferences = PreferenceAccessor.getInstance();
 
     /**
-     * Finds keyboard shortcut for an action.
+     * Decides what to do about the action invocations.
      */
-    private final ActionActionDescGenerator actionActionDescGenerator = new ActionActionDescGenerator();
+    private final FeedbackEngine feedbackEngine = new FeedbackEngine(preferences, new ShortcutBindings() {
+        public boolean isConfigurable(final String actionId) {
+            return isConfigurableAction(actionId);
+        }
+    });
 
     /**
      * Finds keyboard shortcut for a command.
@@ -95,15 +86,27 @@ public class GlobalSelectionListener implements Listener {
     private final CommandActionDescGenerator commandActionDescGenerator = new CommandActionDescGenerator();
 
     /**
-     * Finds keyboard shortcut for a command.
+     * Finds keyboard shortcut for a contribution item.
+     */
+    private final ContributionItemActionDescGenerator contributionItemActionDescGenerator =
+            new ContributionItemActionDescGenerator(commandActionDescGenerator);
+
+    /**
+     * Prefetches action descriptions for the shown menus.
      */
-    private final HandledActionDescGenerator handledActionDescGenerator = new HandledActionDescGenerator();
+    private final MenuActionDescPrefetcher menuPrefetcher =
+            new MenuActionDescPrefetcher(contributionItemActionDescGenerator);
 
     /**
      * Collects user activity data.
      */
     private final Collector collector = Activator.getDefault().getCollector();
 
+    /**
+     * Records the processed events while enabled.
+     */
+    private final EventTraceRecorder traceRecorder = Activator.getDefault().getEventTraceRecorder();
+
     /**
      * The workbench command service.
      */
@@ -112,7 +115,22 @@ public class GlobalSelectionListener implements Listener {
     /**
      * Counts the number of times an action or command is invoked.
      */
-    private final Map<String, Integer> actionUsageMonitor = new HashMap<String, Integer>();
+    private final ActionCounts actionUsageMonitor = new ActionCounts();
+
+    /**
+     * Measures the event processing.
+     */
+    private final Metrics metrics = Metrics.getInstance();
+
+    /**
+     * Reports the handlers blocking the display thread.
+     */
+    private final StallWatchdog watchdog = Activator.getDefault().getStallWatchdog();
+
+    /**
+     * Proposes shortcuts for the actions counted by {@link #actionUsageMonitor}.
+     */
+    private final ShortcutRecommender shortcutRecommender = new ShortcutRecommender(actionUsageMonitor);
 
     /**
      * Default constructor does nothing.
@@ -154,7 +172,14 @@ public class GlobalSelectionListener implements Listener {
         if (widget instanceof ToolItem || widget instanceof MenuItem) {
             final Object data = widget.getData();
             if (data instanceof IContributionItem) {
-                processContributionItem((IContributionItem) data, event);
+                final long start = System.nanoTime();
+                watchdog.enter("GlobalSelectionListener.handleEvent");
+                try {
+                    processContributionItem((IContributionItem) data, event);
+                } finally {
+                    watchdog.exit();
+                }
+                metrics.getHandlerLatency().observe(System.nanoTime() - start);
             }
         } else {
             // do not handle these types of actions
@@ -162,130 +187,153 @@ public class GlobalSelectionListener implements Listener {
     }
 
     private void processContributionItem(final IContributionItem contributionItem, final Event event) {
-        if (contributionItem instanceof SubContributionItem) {
-            final SubContributionItem subCI = (SubContributionItem) contributionItem;
-            processContributionItem(subCI.getInnerItem(), event);
-        } else if (contributionItem instanceof ActionContributionItem) {
-            final ActionContributionItem item = (ActionContributionItem) contributionItem;
-            final AbstractActionDesc actionDesc = actionActionDescGenerator.generate(item.getAction());
-            processActionDesc(actionDesc, event);
-        } else if (contributionItem instanceof CommandContributionItem) {
-            final AbstractActionDesc actionDesc = commandActionDescGenerator
-                    .generate((CommandContributionItem) contributionItem);
-            processActionDesc(actionDesc, event);
-        } else if (contributionItem instanceof HandledContributionItem) {
-            final AbstractActionDesc actionDesc = handledActionDescGenerator
-                    .generate((HandledContributionItem) contributionItem);
-            processActionDesc(actionDesc, event);
-        } else {
+        if (!contributionItemActionDescGenerator.isSupported(contributionItem)) {
             // no action contribution item on the widget data
+            return;
         }
+        AbstractActionDesc actionDesc = menuPrefetcher.get(contributionItem);
+        if (actionDesc == null) {
+            metrics.getDescriptorCacheMisses().inc();
+            actionDesc = contributionItemActionDescGenerator.generate(contributionItem,
+                    preferences.getDescriptorBudget(), getWidgetLabel(event.widget));
+        } else {
+            metrics.getDescriptorCacheHits().inc();
+        }
+        final FeedbackOutcome outcome = actionDesc == null
+                ? FeedbackOutcome.UNDESCRIBED
+                : processActionInvocation(new ActionInvocation(actionDesc, null), event);
+        trace(event.widget instanceof MenuItem ? TraceEvent.Source.MENU_ITEM : TraceEvent.Source.TOOL_ITEM,
+                contributionItemActionDescGenerator.getItemType(contributionItem), actionDesc, false, outcome);
     }
 
     /**
-     * Processes the prepared action description.
-     * 
-     * @param actionDesc
-     *            the action description to process. Assumed not
-     *            <code>null</code>.
-     * @param event
-     *            the original event. Assumed not <code>null</code>.
+     * The label of the selected widget, used to describe the action when its
+     * description can't be generated in time.
+     *
+     * @param widget
+     *            the menu or tool item. Assumed not <code>null</code>.
+     * @return the label without the mnemonic and the accelerator text.
+     *         <code>null</code> if the widget has no label.
      */
-    private void processActionDesc(final AbstractActionDesc actionDesc, final Event event) {
-        // skips the configure action invocation action
-        if (CONFIGURE_ACTION_INVOCATION_DEF.equals(actionDesc.getId())) {
-            return;
+    private String getWidgetLabel(final Widget widget) {
+        if (widget instanceof MenuItem) {
+            final String text = StringUtils.substringBefore(((MenuItem) widget).getText(), "\t");
+            return LegacyActionTools.removeMnemonics(text);
         }
-        giveActionFeedback(actionDesc, event);
-        logUserAction(actionDesc);
-        commandService.refreshElements(CONFIGURE_ACTION_INVOCATION_DEF, null);
+        final ToolItem toolItem = (ToolItem) widget;
+        return StringUtils.isBlank(toolItem.getToolTipText())
+                ? LegacyActionTools.removeMnemonics(toolItem.getText())
+                : toolItem.getToolTipText();
     }
 
     /**
-     * Current workbench. Not <code>null</code>.
+     * Prefetches action descriptions for the menus when they are shown. Should
+     * be registered to receive the {@link SWT#Show} and {@link SWT#Hide}
+     * events.
+     *
+     * @return the menu prefetcher. Not <code>null</code>.
      */
-    private IWorkbench getWorkbench() {
-        return PlatformUI.getWorkbench();
+    public Listener getMenuPrefetcher() {
+        return menuPrefetcher;
     }
 
     /**
-     * Sends action information to {@link #collector}.
+     * Processes the action invocation.
      * 
-     * @param actionDesc
-     *            the action data to send. Assumed not <code>null</code>.
+     * @param invocation
+     *            the action invocation to process. Assumed not
+     *            <code>null</code>.
+     * @param event
+     *            the original event. <code>null</code> if the action was not
+     *            invoked by a selection event.
+     * @return what was done about the invocation. Never <code>null</code>.
      */
-    private void logUserAction(final AbstractActionDesc actionDesc) {
-        collector.onAction(actionDesc);
+    private FeedbackOutcome processActionInvocation(final ActionInvocation invocation, final Event event) {
+        final AbstractActionDesc actionDesc = invocation.getActionDesc();
+        final int ordinal = actionDesc.getOrdinal();
+        final FeedbackOutcome outcome = feedbackEngine.decide(new FeedbackRequest(actionDesc.getId(), ordinal,
+                actionDesc.getCategoryId(), actionDesc.hasAccelerator(), actionUsageMonitor.get(ordinal)));
+        // skips the configure action invocation action
+        if (outcome == FeedbackOutcome.IGNORED) {
+            return outcome;
+        }
+        isTrue(StringUtils.isNotBlank(actionDesc.getLabel()));
+        metrics.getEvents().inc();
+        // the label-only description does not tell which action was invoked
+        final boolean identified = !AbstractActionDesc.LABEL_ONLY_ID.equals(actionDesc.getId());
+        if (outcome.isCounted() && identified) {
+            actionUsageMonitor.increment(ordinal);
+        }
+        FeedbackEngine.present(outcome, new InvocationPresenter(invocation, event));
+        if (identified) {
+            logUserAction(invocation);
+        }
+        commandService.refreshElements(FeedbackEngine.CONFIGURE_ACTION_ID, null);
+        return outcome;
     }
 
     /**
-     * Depending on the settings reports to the user that action can be called
-     * by the action accelerator, cancels the action.
-     * 
+     * Records the event to the trace if the recording is enabled.
+     *
+     * @param source
+     *            where the event came from. Assumed not <code>null</code>.
+     * @param itemType
+     *            the contribution item type. Assumed not <code>null</code>.
      * @param actionDesc
-     *            the populated action description. Must have a keyboard
-     *            shortcut defined. Not <code>null</code>.
+     *            the invoked action. <code>null</code> if the action could
+     *            not be described.
+     * @param keyboard
+     *            whether the action was invoked with the keyboard.
+     * @param outcome
+     *            what was done about the event. Assumed not
+     *            <code>null</code>.
      */
-    private void giveActionFeedback(final AbstractActionDesc actionDesc, final Event event) {
-        notNull(actionDesc);
-        isTrue(StringUtils.isNotBlank(actionDesc.getLabel()));
-
-        if (!preferences.isInvocationControlEnabled()) {
-            return;
-        }
-        final String id = actionDesc.getId();
-        if (!actionDesc.hasAccelerator()) {
-            Integer currentCount = actionUsageMonitor.get(id);
-            if (currentCount == null) {
-                currentCount = Integer.valueOf(0);
-            }
-            currentCount = currentCount + 1;
-            actionUsageMonitor.put(id, currentCount);
-            if (isConfigureKeyboardShortcutEnabled(currentCount.intValue()) && isConfigurableAction(actionDesc)) {
-                new NagPopUp(actionDesc.getLabel(), actionDesc.getId()).open();
-            }
+    private void trace(final TraceEvent.Source source, final TraceEvent.ItemType itemType,
+            final AbstractActionDesc actionDesc, final boolean keyboard, final FeedbackOutcome outcome) {
+        if (traceRecorder == null || !traceRecorder.isEnabled()) {
             return;
         }
+        final boolean accelerator = actionDesc != null && actionDesc.hasAccelerator();
+        final boolean configurable = actionDesc != null && !accelerator && isConfigurableAction(actionDesc.getId());
+        traceRecorder.record(new TraceEvent(System.currentTimeMillis(), source, itemType,
+                actionDesc == null ? null : actionDesc.getId(), actionDesc == null ? null : actionDesc.getCategoryId(),
+                accelerator, keyboard, configurable, outcome));
+    }
 
-        if (getOnWrongInvocationMode(id) == OnWrongInvocationMode.PRESENTATION
-                && actionDesc.getAccelerators().isEmpty()) {
-            return;
-        }
+    /**
+     * Current workbench. Not <code>null</code>.
+     */
+    private IWorkbench getWorkbench() {
+        return PlatformUI.getWorkbench();
+    }
 
-        switch (getOnWrongInvocationMode(id)) {
-        case DO_NOTHING:
-            // go on
-            break;
-        case REMIND:
-            new NagPopUp(actionDesc.getLabel(), actionDesc.getAccelerators(), false, actionDesc.getCaretLocation())
-                    .open();
-            break;
-        case PRESENTATION:
-            new NagPopUp(actionDesc.getLabel(), actionDesc.getAccelerators(), false, actionDesc.getCaretLocation())
-                    .open();
-            break;
-        case ENFORCE:
-            cancelEvent(event);
-            new NagPopUp(actionDesc.getLabel(), actionDesc.getAccelerators(), true, actionDesc.getCaretLocation())
-                    .open();
-            break;
-        default:
-            throw new AssertionError();
+    /**
+     * Sends action information to {@link #collector}. Journals the invocations
+     * recorded by the collector, with the same weights.
+     * 
+     * @param invocation
+     *            the action invocation to send. Assumed not <code>null</code>.
+     */
+    private void logUserAction(final ActionInvocation invocation) {
+        final int weight = collector.onAction(invocation.getActionDesc(), invocation.isKeyboard());
+        if (weight == 0) {
+            return;
         }
+        final UsageJournal journal = Activator.getDefault().getUsageJournal();
+        journal.enqueue(invocation.getActionDesc(), invocation.isKeyboard(), weight, System.currentTimeMillis());
+        Activator.getDefault().getWriteScheduler().schedule(journal);
     }
 
     /**
      * Checks if for the current action a keyboard shortcut can be configured.
      * 
-     * @param actionDesc
-     *            ActionDesc for the current action. Not null.
+     * @param actionId
+     *            the id of the current action. Not null.
      * @return true, if the current action has at least one ParameterizedCommand
      *         (only those are listed in the keys preference page), false else.
      */
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    protected boolean isConfigurableAction(final AbstractActionDesc actionDesc) {
-        final String actionId = actionDesc.getId();
-
+    protected boolean isConfigurableAction(final String actionId) {
         final Command command = commandService.getCommand(actionId);
         if (command != null) {
             final HashSet allParameterizedCommands = new HashSet();
@@ -300,86 +348,105 @@ public class GlobalSelectionListener implements Listener {
     }
 
     /**
-     * Checks, if keyboard shortcut configuration should be activated.
-     * 
-     * @param currentCount
-     *            current counter for an action invocation
-     * @return true, if the configure keyboard shortcut preference is enabled
-     *         and currentCount exceeds the value of the action invocation
-     *         threshold property.
+     * Shows the feedback for an action invocation.
      */
-    public boolean isConfigureKeyboardShortcutEnabled(final int currentCount) {
-        final boolean isConfigureKeyboardShortcutEnabled = preferences.isConfigureKeyboardShortcutEnabled();
-        final boolean isCounterAboveThreshold = currentCount > preferences.getConfigureKeyboardShortcutThreshold();
-        return isConfigureKeyboardShortcutEnabled && isCounterAboveThreshold;
-    }
+    private class InvocationPresenter implements FeedbackPresenter {
+        /**
+         * The action invocation.
+         */
+        private final ActionInvocation invocation;
+
+        /**
+         * The original event. <code>null</code> if the action was not
+         * invoked by a selection event.
+         */
+        private final Event event;
+
+        /**
+         * Constructor.
+         *
+         * @param invocation
+         *            the action invocation. Assumed not <code>null</code>.
+         * @param event
+         *            the original event. Can be <code>null</code>.
+         */
+        InvocationPresenter(final ActionInvocation invocation, final Event event) {
+            this.invocation = invocation;
+            this.event = event;
+        }
 
-    /**
-     * Returns the wrong invocation mode handling for the action with the
-     * specified id.
-     * 
-     * @param id
-     *            the action id. Assumed not <code>null</code>.
-     * @return the mode. Not <code>null</code>.
-     */
-    private OnWrongInvocationMode getOnWrongInvocationMode(final String id) {
-        final OnWrongInvocationMode mode = preferences.getOnWrongInvocationMode(id);
-        return mode == null ? preferences.getOnWrongInvocationMode() : mode;
+        /** {@inheritDoc} */
+        public void offerShortcutConfiguration() {
+            final AbstractActionDesc actionDesc = invocation.getActionDesc();
+            metrics.getShortcutPopups().inc();
+            new NagPopUp(actionDesc.getLabel(), actionDesc.getId(),
+                    shortcutRecommender.recommend(actionDesc.getOrdinal(), actionDesc.getLabel())).open();
+        }
+
+        /** {@inheritDoc} */
+        public void presentShortcut() {
+            metrics.getPopups(OnWrongInvocationMode.PRESENTATION).inc();
+            if (preferences.isPresentationHudEnabled()) {
+                PresentationHud.getInstance().show(invocation.getActionDesc());
+            } else {
+                new NagPopUp(invocation.getActionDesc(), false, invocation.getCaretLocation()).open();
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void remindShortcut() {
+            metrics.getPopups(OnWrongInvocationMode.REMIND).inc();
+            new NagPopUp(invocation.getActionDesc(), false, invocation.getCaretLocation()).open();
+        }
+
+        /** {@inheritDoc} */
+        public void enforceShortcut() {
+            metrics.getPopups(OnWrongInvocationMode.ENFORCE).inc();
+            cancelEvent(event);
+            new NagPopUp(invocation.getActionDesc(), true, invocation.getCaretLocation()).open();
+        }
     }
 
     /**
      * Stops further processing of the specified event.
      * 
      * @param event
-     *            the event to disable. Assumed not <code>null</code>.
+     *            the event to disable. Does nothing if <code>null</code>,
+     *            e.g. when the action was not invoked by a selection event.
      */
     private void cancelEvent(final Event event) {
+        if (event == null) {
+            return;
+        }
         event.type = SWT.None;
         event.doit = false;
     }
 
+    /**
+     * Processes the command execution. The caret location is only looked up
+     * when a pop-up is shown.
+     *
+     * @param commandId
+     *            the command id. Not <code>null</code>.
+     * @param event
+     *            the command execution event. Not <code>null</code>.
+     */
     protected void onExecuteCommand(String commandId, ExecutionEvent event) {
-        Point caretLocation = null;
-
-        IWorkbenchPart activePartChecked = HandlerUtil.getActivePart(event);
-        if (activePartChecked instanceof ITextEditor) {
-            ITextOperationTarget adapter = (ITextOperationTarget) ((ITextEditor) activePartChecked)
-                    .getAdapter(ITextOperationTarget.class);
-            if (adapter instanceof ITextViewer) {
-                ITextViewer viewer = (ITextViewer) adapter;
-                caretLocation = viewer.getTextWidget().getCaret().getLocation();
-                caretLocation = viewer.getTextWidget().toDisplay(caretLocation);
-            }
-        } else {
-            Event event2 = getEventFromE4Context(event);
-            if (event2 != null) {
-                if (event2.widget instanceof StyledText) {
-                    StyledText text = (StyledText) event2.widget;
-                    caretLocation = text.getCaret().getLocation();
-                    caretLocation = text.toDisplay(caretLocation);
-                } else if (event2.widget instanceof Text) {
-                    Text text = (Text) event2.widget;
-                    caretLocation = text.getCaretLocation();
-                    caretLocation = text.toDisplay(caretLocation);
-                }
-            }
-        }
-        processActionDesc(commandActionDescGenerator.generate(event.getCommand(), caretLocation), null);
-    }
-
-    private Event getEventFromE4Context(ExecutionEvent event) {
-        Object applicationContext = event.getApplicationContext();
+        final long start = System.nanoTime();
+        watchdog.enter("GlobalSelectionListener.onExecuteCommand");
         try {
-            Field declaredField = applicationContext.getClass().getDeclaredField("staticContext");
-            declaredField.setAccessible(true);
-            Object/* IEclipseContext */ieclipseContext = declaredField.get(applicationContext);
-            Method declaredMethod = ieclipseContext.getClass().getDeclaredMethod("get", Class.class);
-            Event innerEvent = (Event) declaredMethod.invoke(ieclipseContext, Event.class);
-            return innerEvent;
-        } catch (Throwable e) {
-            Activator.getDefault().getLog()
-                    .log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Could not get event from E4 context", e));
+            final AbstractActionDesc actionDesc = commandActionDescGenerator.generate(event.getCommand());
+            // the key binding dispatcher passes the key event as the trigger
+            final boolean keyboard = event.getTrigger() instanceof Event
+                    && ((Event) event.getTrigger()).type == SWT.KeyDown;
+            final FeedbackOutcome outcome = actionDesc == null
+                    ? FeedbackOutcome.UNDESCRIBED
+                    : processActionInvocation(
+                            new ActionInvocation(actionDesc, new ExecutionEventCaretLocator(event), keyboard), null);
+            trace(TraceEvent.Source.COMMAND, TraceEvent.ItemType.NONE, actionDesc, keyboard, outcome);
+        } finally {
+            watchdog.exit();
         }
-        return null;
+        metrics.getHandlerLatency().observe(System.nanoTime() - start);
     }
 }
@@ -22,11 +22,7 @@ import static org.apache.commons.lang.Validate.notNull;
 
 import com.mousefeed.client.collector.AbstractActionDesc;
 import org.eclipse.core.commands.Command;
-import org.eclipse.core.commands.common.NotDefinedException;
 import org.eclipse.e4.ui.workbench.renderers.swt.HandledContributionItem;
-import org.eclipse.jface.bindings.TriggerSequence;
-import org.eclipse.ui.PlatformUI;
-import org.eclipse.ui.keys.IBindingService;
 
 /**
  * /** Generates {@link ActionDescImpl} from {@link HandledContributionItem}.
@@ -36,22 +32,45 @@ import org.eclipse.ui.keys.IBindingService;
  */
 @SuppressWarnings("restriction")
 class HandledActionDescGenerator {
+    /**
+     * The name {@link HandledContributionItemCommandLocator} is reported
+     * under to the {@link DescriptorBudget}.
+     */
+    static final String LOCATOR = "HandledContributionItemCommandLocator";
+
     /**
      * Retrieves a command from a handled contribution item.
      */
     private final HandledContributionItemCommandLocator locator = new HandledContributionItemCommandLocator();
 
     /**
-     * The binding service used to retrieve bindings data.
+     * Generates the description for the command of the handled contribution
+     * item.
+     */
+    private final CommandActionDescGenerator commandActionDescGenerator;
+
+    /**
+     * Limits the time spent on the command retrieval.
      */
-    private final IBindingService bindingService;
+    private final DescriptorBudget budget;
 
     /**
      * Constructor.
+     * 
+     * @param commandActionDescGenerator
+     *            generates descriptions for the commands. Not
+     *            <code>null</code>.
+     * @param budget
+     *            limits the time spent on the generation. Not
+     *            <code>null</code>.
      */
-    public HandledActionDescGenerator() {
-        bindingService = (IBindingService) PlatformUI.getWorkbench()
-                .getAdapter(IBindingService.class);
+    public HandledActionDescGenerator(
+            final CommandActionDescGenerator commandActionDescGenerator,
+            final DescriptorBudget budget) {
+        notNull(commandActionDescGenerator);
+        notNull(budget);
+        this.commandActionDescGenerator = commandActionDescGenerator;
+        this.budget = budget;
     }
 
     /**
@@ -60,31 +79,29 @@ class HandledActionDescGenerator {
      * @param handledContributionItem
      *            the contribution item to generate an action description for.
      *            Not <code>null</code>.
-     * @return the action description for the provided action.
+     * @return the action description for the provided action. Is shared with
+     *         the other invocations of the same command.
+     *         <code>null</code> if the command can't be found or the locator
+     *         is disabled for exceeding its time budget.
+     * @throws DescriptorBudget.ExceededException
+     *             if the generation exceeded its time budget.
      */
     public AbstractActionDesc generate(
             final HandledContributionItem handledContributionItem) {
         notNull(handledContributionItem);
 
-        final ActionDescImpl actionDesc = new ActionDescImpl();
-        final Command command = locator.get(handledContributionItem);
-        if (command == null) {
+        if (!budget.isEnabled(LOCATOR)) {
             return null;
         }
+        final long start = System.nanoTime();
+        final Command command;
         try {
-            actionDesc.setLabel(command.getName());
-        } catch (final NotDefinedException e) {
-            // should never happen
-            throw new RuntimeException(e);
-        }
-        final String commandId = command.getId();
-        actionDesc.setDef(commandId);
-        final TriggerSequence binding = bindingService
-                .getBestActiveBindingFor(commandId);
-        if (binding != null) {
-            actionDesc.setAccelerator(binding.format());
+            command = locator.get(handledContributionItem);
+        } finally {
+            budget.record(LOCATOR, System.nanoTime() - start);
         }
-        return actionDesc;
+        budget.checkDeadline();
+        return commandActionDescGenerator.generate(command);
     }
 
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import com.mousefeed.client.collector.AbstractActionDesc;
+
+/**
+ * The description of an action which could not be described in time,
+ * carrying only the label of the selected widget. Lets the feedback show the
+ * label, but does not identify the action: all such descriptions share
+ * {@link AbstractActionDesc#LABEL_ONLY_ID}, so the labels are not recorded as
+ * the action ids, and the invocations are not counted.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class LabelOnlyActionDesc extends ActionDescImpl {
+    /**
+     * Creates a frozen description.
+     *
+     * @param label
+     *            the widget label. Not blank.
+     */
+    public LabelOnlyActionDesc(final String label) {
+        setLabel(label);
+        freeze();
+    }
+
+    /**
+     * @return {@link AbstractActionDesc#LABEL_ONLY_ID}, the label does not
+     *         identify the action.
+     */
+    @Override
+    public String getId() {
+        return LABEL_ONLY_ID;
+    }
+}
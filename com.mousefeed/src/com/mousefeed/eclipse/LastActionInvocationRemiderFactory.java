@@ -42,6 +42,17 @@ public class LastActionInvocationRemiderFactory {
     private static final Messages MESSAGES = new Messages(
             LastActionInvocationRemiderFactory.class);
 
+    /**
+     * The reminder text generated last. <code>null</code> if not generated
+     * yet.
+     */
+    private String text;
+
+    /**
+     * The bindings version {@link #text} was generated for.
+     */
+    private int textVersion;
+
     /**
      * Default constructor does nothing.
      */
@@ -49,16 +60,30 @@ public class LastActionInvocationRemiderFactory {
     }
     
     /**
-     * The reminder text.
+     * The reminder text. Is regenerated only when the bindings change.
+     * Must be called from the display thread.
      * @return the reminder text. Not <code>null</code>.
      */
     public String getText() {
+        final int version = BindingsMonitor.getInstance().getVersion();
+        if (text == null || textVersion != version) {
+            text = generateText();
+            textVersion = version;
+        }
+        return text;
+    }
+
+    /**
+     * Generates the reminder text from the current bindings.
+     * @return the reminder text. Not <code>null</code>.
+     */
+    private String generateText() {
         final TriggerSequence[] bindings =
             getBindingService().getActiveBindingsFor(
                     CONFIGURE_ACTION_INVOCATION_ACTION_ID);
         final String binding = bindings.length == 0
                 ? MESSAGES.get("configureActionInvocation-noBinding")
-                : bindings[0].format();
+                : AcceleratorTextCache.getInstance().format(bindings[0]);
         return MESSAGES.get("text", binding);
     }
 
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.AbstractActionDesc;
+import com.mousefeed.client.metrics.StallWatchdog;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.action.IContributionItem;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.MenuItem;
+
+/**
+ * Speculatively generates action descriptions for the items of a menu when the
+ * menu is shown, so a later click on a menu item only takes the precomputed
+ * description instead of generating it.
+ * <p>
+ * Listens for {@link SWT#Show} and {@link SWT#Hide} of menus and context
+ * menus. The workbench binding data used by the generators is only accessible
+ * from the display thread, so the descriptions are generated in the
+ * background of the display thread: one item per
+ * {@link org.eclipse.swt.widgets.Display#asyncExec(Runnable)} run, which
+ * keeps the menu responsive while the user reads it. The results for a menu
+ * are discarded when it is hidden.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class MenuActionDescPrefetcher implements Listener {
+    /**
+     * Generates the action descriptions.
+     */
+    private final ContributionItemActionDescGenerator generator;
+
+    /**
+     * Reports the prefetch steps blocking the display thread.
+     */
+    private final StallWatchdog watchdog = Activator.getDefault().getStallWatchdog();
+
+    /**
+     * The prefetched descriptions. Keys - the shown menus, values - the
+     * descriptions of the menu items keyed by the item contribution items.
+     * Only a few menus (a menu and its open sub-menus) are shown at once.
+     */
+    private final Map<Menu, Map<IContributionItem, AbstractActionDesc>> prefetched =
+            new IdentityHashMap<Menu, Map<IContributionItem, AbstractActionDesc>>();
+
+    /**
+     * Constructor.
+     *
+     * @param generator
+     *            generates the action descriptions. Not <code>null</code>.
+     */
+    public MenuActionDescPrefetcher(final ContributionItemActionDescGenerator generator) {
+        notNull(generator);
+        this.generator = generator;
+    }
+
+    /**
+     * Processes the menu show and hide events. Ignores all other events.
+     *
+     * @param event
+     *            the event. Not <code>null</code>.
+     */
+    @Override
+    public void handleEvent(final Event event) {
+        if (!(event.widget instanceof Menu)) {
+            return;
+        }
+        final Menu menu = (Menu) event.widget;
+        if (event.type == SWT.Show) {
+            onShow(menu);
+        } else if (event.type == SWT.Hide) {
+            onHide(menu);
+        }
+    }
+
+    /**
+     * The prefetched action description for the contribution item.
+     *
+     * @param contributionItem
+     *            the contribution item of the selected menu item. Not
+     *            <code>null</code>.
+     * @return the action description prefetched when the item's menu was
+     *         shown. <code>null</code> if the description is not available
+     *         (yet).
+     */
+    public AbstractActionDesc get(final IContributionItem contributionItem) {
+        notNull(contributionItem);
+        for (Map<IContributionItem, AbstractActionDesc> descs : prefetched.values()) {
+            final AbstractActionDesc desc = descs.get(contributionItem);
+            if (desc != null) {
+                return desc;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts the prefetch for the shown menu. The filter receives the event
+     * before the menu managers fill dynamic menus, so the menu items are
+     * scanned later.
+     *
+     * @param menu
+     *            the shown menu. Assumed not <code>null</code>.
+     */
+    private void onShow(final Menu menu) {
+        final Map<IContributionItem, AbstractActionDesc> descs =
+                new IdentityHashMap<IContributionItem, AbstractActionDesc>();
+        prefetched.put(menu, descs);
+        menu.getDisplay().asyncExec(new PrefetchStep(menu, descs, 0));
+    }
+
+    /**
+     * Discards the descriptions prefetched for the menu. The selection event
+     * of the clicked item may be delivered after the menu is hidden, so the
+     * results are discarded only after the pending events are processed.
+     *
+     * @param menu
+     *            the hidden menu. Assumed not <code>null</code>.
+     */
+    private void onHide(final Menu menu) {
+        final Map<IContributionItem, AbstractActionDesc> descs = prefetched.get(menu);
+        if (descs == null) {
+            return;
+        }
+        menu.getDisplay().asyncExec(new Runnable() {
+            public void run() {
+                // the menu could be shown again in the meantime
+                if (prefetched.get(menu) == descs) {
+                    prefetched.remove(menu);
+                }
+            }
+        });
+    }
+
+    /**
+     * Generates the description of a single menu item, then schedules the next
+     * item. Stops as soon as the menu is hidden or shown again.
+     */
+    private class PrefetchStep implements Runnable {
+        /**
+         * The menu to prefetch the descriptions for.
+         */
+        private final Menu menu;
+
+        /**
+         * Where to store the descriptions.
+         */
+        private final Map<IContributionItem, AbstractActionDesc> descs;
+
+        /**
+         * The index of the menu item to process.
+         */
+        private final int index;
+
+        /**
+         * Constructor.
+         *
+         * @param menu
+         *            the menu. Assumed not <code>null</code>.
+         * @param descs
+         *            where to store the descriptions. Assumed not
+         *            <code>null</code>.
+         * @param index
+         *            the index of the menu item to process.
+         */
+        PrefetchStep(final Menu menu, final Map<IContributionItem, AbstractActionDesc> descs, final int index) {
+            this.menu = menu;
+            this.descs = descs;
+            this.index = index;
+        }
+
+        /**
+         * Processes the menu item.
+         */
+        public void run() {
+            if (menu.isDisposed() || prefetched.get(menu) != descs || index >= menu.getItemCount()) {
+                return;
+            }
+            watchdog.enter("MenuActionDescPrefetcher.prefetch");
+            try {
+                prefetch(menu.getItem(index));
+            } finally {
+                watchdog.exit();
+            }
+            menu.getDisplay().asyncExec(new PrefetchStep(menu, descs, index + 1));
+        }
+
+        /**
+         * Generates description for the menu item.
+         *
+         * @param item
+         *            the menu item. Assumed not <code>null</code>.
+         */
+        private void prefetch(final MenuItem item) {
+            final Object data = item.getData();
+            if (!(data instanceof IContributionItem)) {
+                return;
+            }
+            final IContributionItem contributionItem = (IContributionItem) data;
+            if (!generator.isSupported(contributionItem) || descs.containsKey(contributionItem)) {
+                return;
+            }
+            try {
+                final AbstractActionDesc desc = generator.generate(contributionItem);
+                if (desc != null) {
+                    descs.put(contributionItem, desc);
+                }
+            } catch (final RuntimeException e) {
+                // the click will generate the description again, showing
+                // the error to the user if it is still there
+                Activator.getDefault().getLog().log(
+                        new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Could not prefetch action description", e));
+            }
+        }
+    }
+}
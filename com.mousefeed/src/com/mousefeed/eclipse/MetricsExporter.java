@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.metrics.Metrics;
+import com.mousefeed.client.metrics.MetricsServer;
+import com.mousefeed.eclipse.preferences.PreferenceConstants;
+import java.io.IOException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+
+/**
+ * Runs the {@link MetricsServer} while it is enabled in the preferences.
+ * Starts, stops or moves the server when the preferences change.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class MetricsExporter implements IPropertyChangeListener {
+    /**
+     * The plugin preferences.
+     */
+    private final IPreferenceStore store;
+
+    /**
+     * The running server. <code>null</code> if the exporter is disabled.
+     */
+    private MetricsServer server;
+
+    /**
+     * The port preference the running server was started with. May be
+     * <code>0</code> for any free port, so it can differ from the port the
+     * server is bound to.
+     */
+    private int serverPort;
+
+    /**
+     * Starts the server if it is enabled and starts listening for the
+     * preference changes.
+     *
+     * @param store
+     *            the plugin preferences. Not <code>null</code>.
+     */
+    public MetricsExporter(final IPreferenceStore store) {
+        notNull(store);
+        this.store = store;
+        store.addPropertyChangeListener(this);
+        update();
+    }
+
+    /**
+     * Stops the server and the preference listening.
+     */
+    public synchronized void dispose() {
+        store.removePropertyChangeListener(this);
+        stopServer();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void propertyChange(final PropertyChangeEvent event) {
+        if (PreferenceConstants.P_METRICS_EXPORTER_ENABLED.equals(event.getProperty())
+                || PreferenceConstants.P_METRICS_EXPORTER_PORT.equals(event.getProperty())) {
+            update();
+        }
+    }
+
+    /**
+     * Brings the server in line with the preferences.
+     */
+    private synchronized void update() {
+        final boolean enabled = store.getBoolean(PreferenceConstants.P_METRICS_EXPORTER_ENABLED);
+        final int port = store.getInt(PreferenceConstants.P_METRICS_EXPORTER_PORT);
+        if (server != null && (!enabled || serverPort != port)) {
+            stopServer();
+        }
+        if (enabled && server == null) {
+            try {
+                server = new MetricsServer(Metrics.getInstance(), port);
+                serverPort = port;
+            } catch (final IOException e) {
+                Activator.getDefault().getLog().log(new Status(IStatus.WARNING, Activator.PLUGIN_ID,
+                        "Could not start the metrics exporter on port " + port, e));
+            }
+        }
+    }
+
+    /**
+     * Stops the server if it runs.
+     */
+    private void stopServer() {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+    }
+}
@@ -27,19 +27,13 @@ import com.mousefeed.client.Messages;
 import com.mousefeed.client.OnWrongInvocationMode;
 import com.mousefeed.client.collector.AbstractActionDesc;
 import com.mousefeed.eclipse.preferences.PreferenceAccessor;
-import com.mousefeed.eclipse.preferences.presentation.SchemeConfig;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.core.commands.Command;
 import org.eclipse.core.commands.ParameterizedCommand;
 import org.eclipse.core.commands.common.NotDefinedException;
 import org.eclipse.jface.dialogs.PopupDialog;
 import org.eclipse.jface.preference.PreferenceDialog;
-import org.eclipse.jface.resource.JFaceResources;
-import org.eclipse.jface.resource.LocalResourceManager;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StyleRange;
 import org.eclipse.swt.custom.StyledText;
@@ -76,8 +70,6 @@ import org.eclipse.ui.dialogs.PreferencesUtil;
  */
 public class NagPopUp extends PopupDialog {
 
-    private static final String LINE_SEPARATOR = "\n";
-
     /**
      * Provides access to the plugin preferences.
      */
@@ -142,7 +134,7 @@ public class NagPopUp extends PopupDialog {
     private static final LastActionInvocationRemiderFactory REMINDER_FACTORY = new LastActionInvocationRemiderFactory();
 
     /**
-     * @see NagPopUp#NagPopUp(String, String, boolean)
+     * @see NagPopUp#NagPopUp(AbstractActionDesc, boolean, Point)
      */
     private final String actionName;
 
@@ -152,9 +144,16 @@ public class NagPopUp extends PopupDialog {
     private final String actionId;
 
     /**
-     * @see NagPopUp#NagPopUp(String, String, boolean)
+     * @see NagPopUp#NagPopUp(String, String, String)
+     */
+    private final String suggestedShortcut;
+
+    /**
+     * The action to show the accelerators of.
+     * 
+     * @see NagPopUp#NagPopUp(AbstractActionDesc, boolean, Point)
      */
-    private final Map<String, String> accelerators;
+    private final AbstractActionDesc actionDesc;
 
     /**
      * Indicates whether MouseFeed canceled the action the popup notifies about.
@@ -192,25 +191,28 @@ public class NagPopUp extends PopupDialog {
      * Creates a pop-up with notification for the specified accelerator and
      * action.
      *
-     * @param actionName
-     *            the action label. Not blank.
-     * @param accelerator
-     *            the string describing the accelerator. Not blank.
+     * @param actionDesc
+     *            the action. Must have an accelerator. Not
+     *            <code>null</code>.
      * @param actionCancelled
      *            indicates whether MouseFeed canceled the action the popup
      *            notifies about.
+     * @param carentLocation
+     *            the caret location to show the pop-up at. If
+     *            <code>null</code>, the pop-up is shown at the mouse
+     *            pointer.
      */
-    public NagPopUp(final String actionName, final Map<String, String> accelerators, final boolean actionCancelled,
-            final Point carentLocation) {
+    public NagPopUp(final AbstractActionDesc actionDesc, final boolean actionCancelled, final Point carentLocation) {
         super((Shell) null, PopupDialog.HOVER_SHELLSTYLE, false, false, false, false, false,
                 getTitleText(actionCancelled), getActionConfigurationReminder());
-        isTrue(StringUtils.isNotBlank(actionName));
-        // isTrue(StringUtils.isNotBlank(accelerator));
+        isTrue(StringUtils.isNotBlank(actionDesc.getLabel()));
+        isTrue(actionDesc.hasAccelerator());
 
-        this.actionName = actionName;
-        this.accelerators = accelerators;
+        this.actionName = actionDesc.getLabel();
+        this.actionDesc = actionDesc;
         this.actionCancelled = actionCancelled;
         this.actionId = null;
+        this.suggestedShortcut = null;
         this.carentLocation = carentLocation;
     }
 
@@ -224,6 +226,22 @@ public class NagPopUp extends PopupDialog {
      *            the contribution id. Not blank.
      */
     public NagPopUp(final String actionName, final String actionId) {
+        this(actionName, actionId, null);
+    }
+
+    /**
+     * Creates a pop-up with suggestion to open the Keys preference page to
+     * configure a keyboard shortcut for an action, proposing a free shortcut.
+     *
+     * @param actionName
+     *            the action label. Not blank.
+     * @param actionId
+     *            the contribution id. Not blank.
+     * @param suggestedShortcut
+     *            the free shortcut to propose. <code>null</code> if there is
+     *            no proposal.
+     */
+    public NagPopUp(final String actionName, final String actionId, final String suggestedShortcut) {
         super((Shell) null, PopupDialog.HOVER_SHELLSTYLE, false, false, false, false, false, getTitleText(false),
                 getActionConfigurationReminder());
         isTrue(StringUtils.isNotBlank(actionName));
@@ -231,8 +249,9 @@ public class NagPopUp extends PopupDialog {
 
         this.actionName = actionName;
         this.actionId = actionId;
+        this.suggestedShortcut = suggestedShortcut;
         this.actionCancelled = false;
-        this.accelerators = null;
+        this.actionDesc = null;
         this.carentLocation = null;
     }
 
@@ -245,7 +264,9 @@ public class NagPopUp extends PopupDialog {
         composite.setLayout(new FormLayout());
 
         if (isLinkPopup()) {
-            final String linkText = MESSAGES.get("message.configureShortcut", actionName);
+            final String linkText = suggestedShortcut == null
+                    ? MESSAGES.get("message.configureShortcut", actionName)
+                    : MESSAGES.get("message.configureShortcutSuggestion", actionName, suggestedShortcut);
             actionLink = createLink(composite, linkText);
         } else {
             actionDescriptionText = createActionDescriptionText(composite);
@@ -262,7 +283,7 @@ public class NagPopUp extends PopupDialog {
      * @return true if actionId != null && accelerator == null
      */
     protected boolean isLinkPopup() {
-        return actionId != null && accelerators == null;
+        return actionId != null && actionDesc == null;
     }
 
     /**
@@ -278,29 +299,12 @@ public class NagPopUp extends PopupDialog {
 
         configureFormData(text);
 
+        ReminderLayoutCache.ReminderLayout reminderLayout = null;
         if (preferences.getOnWrongInvocationMode() == OnWrongInvocationMode.PRESENTATION) {
-            StringBuilder b = new StringBuilder();
-
-            b.append(actionName).append(LINE_SEPARATOR);
-
-            List<StyleRange> ranges = new ArrayList<StyleRange>();
-            int oldEnd = -1;
-            StyleRange style = new StyleRange();
-            style.start = oldEnd + 1;
-            style.length = oldEnd = (b.length() - style.start);
-            style.fontStyle = SWT.BOLD;
-            ranges.add(style);
-
-            LocalResourceManager res = new LocalResourceManager(JFaceResources.getResources(), text);
-
-            addIDELines(res, b, ranges, oldEnd);
-
-            text.setText(b.toString());
-
-            // text.setStyleRange(ranges.get(2));
-            text.setStyleRanges(ranges.toArray(new StyleRange[ranges.size()]));
+            reminderLayout = ReminderLayoutCache.getInstance().get(actionDesc);
+            reminderLayout.apply(text);
         } else {
-            text.setText(accelerators.get(AbstractActionDesc.DEFAULT_ACCELERATOR_KEY) + " (" + actionName + ")");
+            text.setText(actionDesc.getAccelerator() + " (" + actionName + ")");
 
             if (actionCancelled) {
                 final StyleRange style = new StyleRange();
@@ -312,6 +316,9 @@ public class NagPopUp extends PopupDialog {
         }
 
         configureBigFont(text);
+        if (reminderLayout != null) {
+            reminderLayout.applyPreferredSize(text);
+        }
 
         // since SWT.NO_FOCUS is only a hint...
         text.addFocusListener(new FocusAdapter() {
@@ -331,47 +338,6 @@ public class NagPopUp extends PopupDialog {
         return text;
     }
 
-    private void addIDELines(LocalResourceManager res, StringBuilder b, List<StyleRange> ranges, int oldEnd) {
-        if (accelerators == null) {
-            return;
-        }
-
-        int maxLabelLength = 0;
-        for (SchemeConfig config : preferences.getPresentationModeSchemeConfigs()) {
-            maxLabelLength = Math.max(maxLabelLength, config.getLabel().length());
-        }
-
-        for (SchemeConfig config : preferences.getPresentationModeSchemeConfigs()) {
-            String key = getString(accelerators.get(config.getSchemeId()));
-
-            if (preferences.isUsePresentationModeParentheses()) {
-                b.append("(");
-            }
-            b.append(config.getLabel());
-            if (preferences.isUsePresentationModeParentheses()) {
-                b.append(")");
-            }
-            int lengthDiff = maxLabelLength - config.getLabel().length();
-            for (int i = 0; i < lengthDiff; i++) {
-                b.append(" ");
-            }
-            b.append("\t").append(key).append(LINE_SEPARATOR);
-            StyleRange style = new StyleRange();
-            style.start = oldEnd + (preferences.isUsePresentationModeParentheses() ? 1 : 0);
-            style.length = config.getLabel().length();
-            style.foreground = res.createColor(config.getColorCode());
-            ranges.add(style);
-            oldEnd = b.length();
-        }
-    }
-
-    private String getString(String string) {
-        if (string == null) {
-            return "";
-        }
-        return string;
-    }
-
     /**
      * Creates the link control to show a hyperlink to the Keys preference page.
      * 
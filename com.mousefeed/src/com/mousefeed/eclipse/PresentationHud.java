@@ -0,0 +1,550 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.AbstractActionDesc;
+import com.mousefeed.eclipse.preferences.PreferenceAccessor;
+import com.mousefeed.eclipse.preferences.presentation.SchemeConfig;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jface.resource.JFaceResources;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.FontData;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Shows the actions invoked in the presentation mode with their accelerators
+ * in all the configured schemes, for the screencasts and the trainings.
+ * <p>
+ * Unlike {@link NagPopUp}, does not create a shell per action. A single
+ * overlay shell, which never takes the focus, shows a rolling list of the
+ * last {@link #MAX_ENTRIES} actions. The list is painted with a
+ * {@link GC} into an off-screen image, which is copied to the shell, so the
+ * shell does not flicker when an action is added. The colors and the fonts
+ * are created once and kept while the shell lives. Each action fades out
+ * after the pop-up close timeout, the shell is hidden when the list becomes
+ * empty. Singleton. Must be accessed from the display thread only.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+final class PresentationHud {
+    /**
+     * The maximal number of the actions shown.
+     */
+    static final int MAX_ENTRIES = 5;
+
+    /**
+     * The interval between the animation frames, in milliseconds, close to
+     * the common display refresh rate of 60 Hz.
+     */
+    private static final int FRAME_INTERVAL = 16;
+
+    /**
+     * How long the shell fades in, in milliseconds.
+     */
+    private static final int FADE_IN = 120;
+
+    /**
+     * How long an action fades out, in milliseconds.
+     */
+    private static final int FADE_OUT = 400;
+
+    /**
+     * The space around the list and between the shell and the screen edge,
+     * in pixels.
+     */
+    private static final int PADDING = 12;
+
+    /**
+     * The space between the actions, in pixels.
+     */
+    private static final int ENTRY_GAP = 8;
+
+    /**
+     * The space between a scheme label and the accelerator, in pixels.
+     */
+    private static final int COLUMN_GAP = 12;
+
+    /**
+     * Number of times to increase font size in, same as {@link NagPopUp}.
+     */
+    private static final int FONT_INCREASE_MULT = 2;
+
+    /**
+     * The fully opaque alpha value.
+     */
+    private static final int OPAQUE = 255;
+
+    /**
+     * The singleton instance. Created on first access.
+     */
+    private static PresentationHud instance;
+
+    /**
+     * Provides access to the plugin preferences.
+     */
+    private final PreferenceAccessor preferences = PreferenceAccessor.getInstance();
+
+    /**
+     * The shown actions, the oldest first.
+     */
+    private final LinkedList<Entry> entries = new LinkedList<Entry>();
+
+    /**
+     * The scheme label colors. Keys - the configured colors.
+     */
+    private final Map<RGB, Color> colors = new HashMap<RGB, Color>();
+
+    /**
+     * The workbench display.
+     */
+    private final Display display;
+
+    /**
+     * The overlay shell. <code>null</code> if not created yet or disposed.
+     */
+    private Shell shell;
+
+    /**
+     * The font of the accelerators and the scheme labels.
+     */
+    private Font font;
+
+    /**
+     * The font of the action labels.
+     */
+    private Font boldFont;
+
+    /**
+     * The off-screen image the list is painted to. Has the size of the shell.
+     */
+    private Image buffer;
+
+    /**
+     * The image to measure the text with.
+     */
+    private Image measureImage;
+
+    /**
+     * Whether the animation frames are scheduled.
+     */
+    private boolean animating;
+
+    /**
+     * Runs an animation frame.
+     */
+    private final Runnable frame = new Runnable() {
+        public void run() {
+            animate();
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param display
+     *            the workbench display. Not <code>null</code>.
+     */
+    private PresentationHud(final Display display) {
+        notNull(display);
+        this.display = display;
+    }
+
+    /**
+     * The singleton instance.
+     *
+     * @return the singleton instance. Never <code>null</code>.
+     */
+    public static PresentationHud getInstance() {
+        if (instance == null) {
+            instance = new PresentationHud(Display.getCurrent());
+        }
+        return instance;
+    }
+
+    /**
+     * Adds the action to the list, showing the shell if it is hidden.
+     *
+     * @param actionDesc
+     *            the invoked action. Not <code>null</code>.
+     */
+    public void show(final AbstractActionDesc actionDesc) {
+        notNull(actionDesc);
+        ensureShell();
+        entries.addLast(new Entry(actionDesc, preferences.getPresentationModeSchemeConfigs(),
+                preferences.isUsePresentationModeParentheses(), System.currentTimeMillis()));
+        while (entries.size() > MAX_ENTRIES) {
+            entries.removeFirst();
+        }
+        layout();
+        if (!shell.isVisible()) {
+            shell.setAlpha(0);
+            shell.setVisible(true);
+        }
+        if (!animating) {
+            animating = true;
+            display.timerExec(FRAME_INTERVAL, frame);
+        }
+    }
+
+    /**
+     * Creates the shell and the graphic resources if they do not exist yet.
+     */
+    private void ensureShell() {
+        if (shell != null && !shell.isDisposed()) {
+            return;
+        }
+        shell = new Shell(display, SWT.NO_TRIM | SWT.ON_TOP | SWT.TOOL | SWT.NO_FOCUS | SWT.NO_BACKGROUND);
+        shell.setBackground(display.getSystemColor(SWT.COLOR_INFO_BACKGROUND));
+        final FontData[] fontData = JFaceResources.getDefaultFont().getFontData();
+        for (FontData data : fontData) {
+            data.setHeight(data.getHeight() * FONT_INCREASE_MULT);
+        }
+        font = new Font(display, fontData);
+        for (FontData data : fontData) {
+            data.setStyle(SWT.BOLD);
+        }
+        boldFont = new Font(display, fontData);
+        measureImage = new Image(display, 1, 1);
+
+        shell.addListener(SWT.Paint, new Listener() {
+            public void handleEvent(final Event event) {
+                if (buffer != null) {
+                    event.gc.drawImage(buffer, 0, 0);
+                }
+            }
+        });
+        // the list covers a part of the workbench window, let the user
+        // dismiss it
+        shell.addListener(SWT.MouseDown, new Listener() {
+            public void handleEvent(final Event event) {
+                entries.clear();
+                shell.setVisible(false);
+            }
+        });
+        shell.addListener(SWT.Dispose, new Listener() {
+            public void handleEvent(final Event event) {
+                disposeResources();
+            }
+        });
+    }
+
+    /**
+     * Disposes the graphic resources when the shell is disposed.
+     */
+    private void disposeResources() {
+        for (Color color : colors.values()) {
+            color.dispose();
+        }
+        colors.clear();
+        font.dispose();
+        boldFont.dispose();
+        measureImage.dispose();
+        if (buffer != null) {
+            buffer.dispose();
+            buffer = null;
+        }
+        entries.clear();
+        shell = null;
+    }
+
+    /**
+     * Measures the entries, places the shell to the bottom right corner of
+     * the active window and paints the list.
+     */
+    private void layout() {
+        final GC gc = new GC(measureImage);
+        int width = 0;
+        int height = 0;
+        try {
+            for (Entry entry : entries) {
+                entry.measure(gc);
+                width = Math.max(width, entry.size.x);
+                height += entry.size.y;
+            }
+        } finally {
+            gc.dispose();
+        }
+        width += 2 * PADDING;
+        height += 2 * PADDING + ENTRY_GAP * Math.max(0, entries.size() - 1);
+
+        final Shell activeShell = display.getActiveShell();
+        final Rectangle area = activeShell == null || activeShell == shell
+                ? display.getPrimaryMonitor().getClientArea()
+                : activeShell.getBounds();
+        shell.setBounds(area.x + area.width - width - PADDING, area.y + area.height - height - PADDING,
+                width, height);
+        paint(System.currentTimeMillis());
+    }
+
+    /**
+     * Paints the list to {@link #buffer} and copies it to the shell.
+     *
+     * @param now
+     *            the current time, in milliseconds.
+     */
+    private void paint(final long now) {
+        final Point size = shell.getSize();
+        if (buffer == null || !buffer.getBounds().equals(new Rectangle(0, 0, size.x, size.y))) {
+            if (buffer != null) {
+                buffer.dispose();
+            }
+            buffer = new Image(display, Math.max(1, size.x), Math.max(1, size.y));
+        }
+        final Color foreground = display.getSystemColor(SWT.COLOR_INFO_FOREGROUND);
+        final GC gc = new GC(buffer);
+        try {
+            gc.setBackground(display.getSystemColor(SWT.COLOR_INFO_BACKGROUND));
+            gc.fillRectangle(0, 0, size.x, size.y);
+            gc.setForeground(display.getSystemColor(SWT.COLOR_WIDGET_BORDER));
+            gc.drawRectangle(0, 0, size.x - 1, size.y - 1);
+            int y = PADDING;
+            for (Entry entry : entries) {
+                gc.setAlpha(entry.getAlpha(now, preferences.getNagPopupCloseTimeout()));
+                entry.paint(gc, PADDING, y, foreground);
+                y += entry.size.y + ENTRY_GAP;
+            }
+        } finally {
+            gc.dispose();
+        }
+        shell.redraw();
+    }
+
+    /**
+     * Runs an animation frame: fades the shell in, fades out and removes the
+     * expired actions, hides the shell when no action is left.
+     */
+    private void animate() {
+        if (shell == null || !shell.isVisible()) {
+            animating = false;
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final int timeout = preferences.getNagPopupCloseTimeout();
+        boolean removed = false;
+        while (!entries.isEmpty() && entries.getFirst().getAlpha(now, timeout) == 0) {
+            entries.removeFirst();
+            removed = true;
+        }
+        if (entries.isEmpty()) {
+            shell.setVisible(false);
+            animating = false;
+            return;
+        }
+        final long newest = now - entries.getLast().shownAt;
+        shell.setAlpha(newest >= FADE_IN ? OPAQUE : (int) (OPAQUE * newest / FADE_IN));
+        if (removed) {
+            layout();
+        } else if (entries.getFirst().isFading(now, timeout)) {
+            paint(now);
+        }
+        display.timerExec(FRAME_INTERVAL, frame);
+    }
+
+    /**
+     * The cached color.
+     *
+     * @param rgb
+     *            the color value. Assumed not <code>null</code>.
+     * @return the color, disposed with the shell. Not <code>null</code>.
+     */
+    private Color getColor(final RGB rgb) {
+        Color color = colors.get(rgb);
+        if (color == null) {
+            color = new Color(display, rgb);
+            colors.put(rgb, color);
+        }
+        return color;
+    }
+
+    /**
+     * An action in the list. The texts are prepared when the action is
+     * added, so the frames only paint them.
+     */
+    private class Entry {
+        /**
+         * The action label.
+         */
+        private final String label;
+
+        /**
+         * The scheme labels.
+         */
+        private final String[] schemeLabels;
+
+        /**
+         * The scheme label colors.
+         */
+        private final Color[] schemeColors;
+
+        /**
+         * The accelerators in the schemes.
+         */
+        private final String[] accelerators;
+
+        /**
+         * When the action was added, in milliseconds.
+         */
+        private final long shownAt;
+
+        /**
+         * The size of the painted entry. <code>null</code> until measured.
+         */
+        private Point size;
+
+        /**
+         * The width of the widest scheme label.
+         */
+        private int schemeLabelWidth;
+
+        /**
+         * The height of a line.
+         */
+        private int lineHeight;
+
+        /**
+         * Constructor.
+         *
+         * @param actionDesc
+         *            the action. Assumed not <code>null</code>.
+         * @param configs
+         *            the schemes to show. Assumed not <code>null</code>.
+         * @param parentheses
+         *            whether to enclose the scheme labels in parentheses.
+         * @param shownAt
+         *            when the action is added, in milliseconds.
+         */
+        Entry(final AbstractActionDesc actionDesc, final Collection<SchemeConfig> configs,
+                final boolean parentheses, final long shownAt) {
+            this.label = actionDesc.getLabel();
+            this.shownAt = shownAt;
+            schemeLabels = new String[configs.size()];
+            schemeColors = new Color[configs.size()];
+            accelerators = new String[configs.size()];
+            int i = 0;
+            for (SchemeConfig config : configs) {
+                schemeLabels[i] = parentheses ? "(" + config.getLabel() + ")" : config.getLabel();
+                schemeColors[i] = getColor(config.getColorCode());
+                accelerators[i] = StringUtils.defaultString(actionDesc.getAccelerator(config.getOrdinal()));
+                i++;
+            }
+        }
+
+        /**
+         * Measures the entry once.
+         *
+         * @param gc
+         *            the context to measure the text with. Assumed not
+         *            <code>null</code>.
+         */
+        void measure(final GC gc) {
+            if (size != null) {
+                return;
+            }
+            gc.setFont(boldFont);
+            final Point labelSize = gc.textExtent(label);
+            gc.setFont(font);
+            lineHeight = gc.getFontMetrics().getHeight();
+            int acceleratorWidth = 0;
+            for (int i = 0; i < schemeLabels.length; i++) {
+                schemeLabelWidth = Math.max(schemeLabelWidth, gc.textExtent(schemeLabels[i]).x);
+                acceleratorWidth = Math.max(acceleratorWidth, gc.textExtent(accelerators[i]).x);
+            }
+            size = new Point(Math.max(labelSize.x, schemeLabelWidth + COLUMN_GAP + acceleratorWidth),
+                    labelSize.y + lineHeight * schemeLabels.length);
+        }
+
+        /**
+         * Paints the entry.
+         *
+         * @param gc
+         *            the context to paint with. Assumed not
+         *            <code>null</code>.
+         * @param x
+         *            the left edge.
+         * @param y
+         *            the top edge.
+         * @param foreground
+         *            the color of the action label and the accelerators.
+         *            Assumed not <code>null</code>.
+         */
+        void paint(final GC gc, final int x, final int y, final Color foreground) {
+            gc.setFont(boldFont);
+            gc.setForeground(foreground);
+            gc.drawText(label, x, y, true);
+            gc.setFont(font);
+            int lineY = y + size.y - lineHeight * schemeLabels.length;
+            for (int i = 0; i < schemeLabels.length; i++) {
+                gc.setForeground(schemeColors[i]);
+                gc.drawText(schemeLabels[i], x, lineY, true);
+                gc.setForeground(foreground);
+                gc.drawText(accelerators[i], x + schemeLabelWidth + COLUMN_GAP, lineY, true);
+                lineY += lineHeight;
+            }
+        }
+
+        /**
+         * The opacity of the entry.
+         *
+         * @param now
+         *            the current time, in milliseconds.
+         * @param timeout
+         *            how long the entry is shown before it fades out, in
+         *            milliseconds.
+         * @return the alpha value, 0 when the entry expired.
+         */
+        int getAlpha(final long now, final int timeout) {
+            final long left = shownAt + timeout + FADE_OUT - now;
+            if (left <= 0) {
+                return 0;
+            }
+            return left >= FADE_OUT ? OPAQUE : (int) (OPAQUE * left / FADE_OUT);
+        }
+
+        /**
+         * Whether the entry is fading out.
+         *
+         * @param now
+         *            the current time, in milliseconds.
+         * @param timeout
+         *            how long the entry is shown before it fades out, in
+         *            milliseconds.
+         * @return <code>true</code> if the entry is partially transparent.
+         */
+        boolean isFading(final long now, final int timeout) {
+            return getAlpha(now, timeout) < OPAQUE;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.AbstractActionDesc;
+import com.mousefeed.eclipse.preferences.PreferenceAccessor;
+import com.mousefeed.eclipse.preferences.presentation.SchemeConfig;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyleRange;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Caches the laid out presentation mode reminders of {@link NagPopUp}: the
+ * text, the style runs and the preferred size. A reminder depends on the
+ * action and the presentation mode configuration, so the cache is emptied
+ * when the configuration or the bindings change. The colors of the style
+ * runs are shared by all the reminders and disposed with the display.
+ * Singleton. Must be accessed from the display thread only.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+final class ReminderLayoutCache {
+    /**
+     * The reminder line separator.
+     */
+    private static final String LINE_SEPARATOR = "\n";
+
+    /**
+     * The singleton instance. Created on first access.
+     */
+    private static ReminderLayoutCache instance;
+
+    /**
+     * Provides access to the plugin preferences.
+     */
+    private final PreferenceAccessor preferences = PreferenceAccessor.getInstance();
+
+    /**
+     * Tracks the binding changes, which change the accelerators.
+     */
+    private final BindingsMonitor bindingsMonitor = BindingsMonitor.getInstance();
+
+    /**
+     * The reminders. Keys - the action keys, see
+     * {@link #getKey(AbstractActionDesc)}.
+     */
+    private final Map<String, ReminderLayout> layouts = new HashMap<String, ReminderLayout>();
+
+    /**
+     * The scheme label colors. Keys - the configured colors.
+     */
+    private final Map<RGB, Color> colors = new HashMap<RGB, Color>();
+
+    /**
+     * The presentation mode configuration version the reminders were laid out
+     * for.
+     */
+    private int configVersion;
+
+    /**
+     * The bindings version the reminders were laid out for.
+     */
+    private int bindingsVersion;
+
+    /**
+     * A laid out reminder.
+     */
+    static final class ReminderLayout {
+        /**
+         * The reminder text.
+         */
+        private final String text;
+
+        /**
+         * The style runs. Cloned before they are passed to a widget.
+         */
+        private final StyleRange[] styleRanges;
+
+        /**
+         * The preferred size of the reminder text control. <code>null</code>
+         * until the reminder is shown the first time.
+         */
+        private Point size;
+
+        /**
+         * Constructor.
+         *
+         * @param text
+         *            the reminder text. Assumed not <code>null</code>.
+         * @param styleRanges
+         *            the style runs. Assumed not <code>null</code>.
+         */
+        ReminderLayout(final String text, final StyleRange[] styleRanges) {
+            this.text = text;
+            this.styleRanges = styleRanges;
+        }
+
+        /**
+         * Shows the reminder in the text control.
+         *
+         * @param control
+         *            the text control. Not <code>null</code>.
+         */
+        public void apply(final StyledText control) {
+            notNull(control);
+            control.setText(text);
+            final StyleRange[] ranges = new StyleRange[styleRanges.length];
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = (StyleRange) styleRanges[i].clone();
+            }
+            control.setStyleRanges(ranges);
+        }
+
+        /**
+         * Fixes the size of the text control to the preferred size, computed
+         * for the first control only. Must be called after the control font
+         * is set.
+         *
+         * @param control
+         *            the text control with the reminder applied. Its layout
+         *            data must be {@link FormData}. Not <code>null</code>.
+         */
+        public void applyPreferredSize(final StyledText control) {
+            notNull(control);
+            if (size == null) {
+                size = control.computeSize(SWT.DEFAULT, SWT.DEFAULT);
+            }
+            final FormData formData = (FormData) control.getLayoutData();
+            formData.width = size.x;
+            formData.height = size.y;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param display
+     *            the display to dispose the colors with. Not
+     *            <code>null</code>.
+     */
+    private ReminderLayoutCache(final Display display) {
+        notNull(display);
+        configVersion = preferences.getPresentationModeVersion();
+        bindingsVersion = bindingsMonitor.getVersion();
+        display.disposeExec(new Runnable() {
+            public void run() {
+                for (Color color : colors.values()) {
+                    color.dispose();
+                }
+                colors.clear();
+            }
+        });
+    }
+
+    /**
+     * The singleton instance.
+     *
+     * @return the singleton instance. Never <code>null</code>.
+     */
+    public static ReminderLayoutCache getInstance() {
+        if (instance == null) {
+            instance = new ReminderLayoutCache(Display.getCurrent());
+        }
+        return instance;
+    }
+
+    /**
+     * The presentation mode reminder of the action.
+     *
+     * @param actionDesc
+     *            the action. Not <code>null</code>.
+     * @return the reminder laid out for the current configuration. Not
+     *         <code>null</code>.
+     */
+    public ReminderLayout get(final AbstractActionDesc actionDesc) {
+        notNull(actionDesc);
+        validate();
+        final String key = getKey(actionDesc);
+        ReminderLayout layout = layouts.get(key);
+        if (layout == null) {
+            layout = layOut(actionDesc);
+            layouts.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * The cache key of the action. Contains the label too, because some
+     * actions change their labels, e.g. "Undo Typing".
+     *
+     * @param actionDesc
+     *            the action. Assumed not <code>null</code>.
+     * @return the key. Not <code>null</code>.
+     */
+    private String getKey(final AbstractActionDesc actionDesc) {
+        return actionDesc.getId() + '\n' + actionDesc.getLabel();
+    }
+
+    /**
+     * Empties the cache if the configuration or the bindings changed.
+     */
+    private void validate() {
+        final int currentConfig = preferences.getPresentationModeVersion();
+        final int currentBindings = bindingsMonitor.getVersion();
+        if (configVersion != currentConfig || bindingsVersion != currentBindings) {
+            layouts.clear();
+            configVersion = currentConfig;
+            bindingsVersion = currentBindings;
+        }
+    }
+
+    /**
+     * Lays out the reminder: the action label in bold, followed by the scheme
+     * labels in the scheme colors, padded to the same width, and the scheme
+     * accelerators.
+     *
+     * @param actionDesc
+     *            the action. Assumed not <code>null</code>.
+     * @return the reminder. Not <code>null</code>.
+     */
+    private ReminderLayout layOut(final AbstractActionDesc actionDesc) {
+        final StringBuilder b = new StringBuilder();
+        b.append(actionDesc.getLabel()).append(LINE_SEPARATOR);
+
+        final List<StyleRange> ranges = new ArrayList<StyleRange>();
+        final StyleRange labelStyle = new StyleRange();
+        labelStyle.start = 0;
+        labelStyle.length = b.length();
+        labelStyle.fontStyle = SWT.BOLD;
+        ranges.add(labelStyle);
+        int oldEnd = b.length();
+
+        final boolean parentheses = preferences.isUsePresentationModeParentheses();
+        int maxLabelLength = 0;
+        for (SchemeConfig config : preferences.getPresentationModeSchemeConfigs()) {
+            maxLabelLength = Math.max(maxLabelLength, config.getLabel().length());
+        }
+        for (SchemeConfig config : preferences.getPresentationModeSchemeConfigs()) {
+            final String key = actionDesc.getAccelerator(config.getOrdinal());
+            if (parentheses) {
+                b.append("(");
+            }
+            b.append(config.getLabel());
+            if (parentheses) {
+                b.append(")");
+            }
+            for (int i = config.getLabel().length(); i < maxLabelLength; i++) {
+                b.append(" ");
+            }
+            b.append("\t").append(key == null ? "" : key).append(LINE_SEPARATOR);
+            final StyleRange style = new StyleRange();
+            style.start = oldEnd + (parentheses ? 1 : 0);
+            style.length = config.getLabel().length();
+            style.foreground = getColor(config.getColorCode());
+            ranges.add(style);
+            oldEnd = b.length();
+        }
+        return new ReminderLayout(b.toString(), ranges.toArray(new StyleRange[ranges.size()]));
+    }
+
+    /**
+     * The cached color.
+     *
+     * @param rgb
+     *            the color value. Assumed not <code>null</code>.
+     * @return the color, disposed with the display. Not <code>null</code>.
+     */
+    private Color getColor(final RGB rgb) {
+        Color color = colors.get(rgb);
+        if (color == null) {
+            color = new Color(Display.getCurrent(), rgb);
+            colors.put(rgb, color);
+        }
+        return color;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.FreeChordFinder;
+import com.mousefeed.client.collector.ActionCounts;
+import com.mousefeed.client.collector.ActionIdDictionary;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.core.commands.common.NotDefinedException;
+import org.eclipse.core.commands.contexts.Context;
+import org.eclipse.jface.bindings.Binding;
+import org.eclipse.jface.bindings.BindingManager;
+import org.eclipse.jface.bindings.keys.KeyBinding;
+import org.eclipse.jface.bindings.keys.KeySequence;
+import org.eclipse.jface.bindings.keys.KeyStroke;
+import org.eclipse.swt.SWT;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.contexts.IContextService;
+
+/**
+ * Proposes free key chords for the actions the user invokes with the mouse
+ * and which don't have a keyboard shortcut. The proposed chord is not bound in
+ * the context the action is bound in in other schemes, or in the window
+ * context, in any of its parent or child contexts.
+ * <p>
+ * The used chords are collected once per bindings version, after that a
+ * proposal only scans the few hundred candidate chords of
+ * {@link FreeChordFinder}. The actions are ranked by the number of the mouse
+ * invocations: the chord proposed to a more frequently used action is not
+ * proposed to the other actions.
+ * </p>
+ * Must be accessed from the display thread only.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class ShortcutRecommender {
+    /**
+     * The context the actions are proposed a chord in when the action is not
+     * bound in any scheme.
+     */
+    static final String DEFAULT_CONTEXT_ID = "org.eclipse.ui.contexts.window";
+
+    /**
+     * The candidate modifiers. Chords with a single modifier are almost all
+     * used by the workbench.
+     */
+    private static final int[] MODIFIERS = {SWT.MOD1 | SWT.MOD3, SWT.MOD1 | SWT.MOD2, SWT.MOD2 | SWT.MOD3,
+        SWT.MOD1 | SWT.MOD2 | SWT.MOD3};
+
+    /**
+     * The candidate keys: letters, digits and function keys.
+     */
+    private static final int[] KEYS = createKeys();
+
+    /**
+     * Notifies about the binding changes.
+     */
+    private final BindingsMonitor monitor;
+
+    /**
+     * The number of mouse invocations of the actions without a keyboard
+     * shortcut. Is maintained by the caller.
+     */
+    private final ActionCounts usage;
+
+    /**
+     * The chords proposed so far. Keys - action ordinals.
+     */
+    private final Map<Integer, Integer> proposals = new HashMap<Integer, Integer>();
+
+    /**
+     * The contexts of the commands bound in any scheme. Keys - command ids.
+     */
+    private final Map<String, String> commandContexts = new HashMap<String, String>();
+
+    /**
+     * The used chords of the current bindings. <code>null</code> if not
+     * collected yet.
+     */
+    private FreeChordFinder finder;
+
+    /**
+     * The bindings version {@link #finder} was collected for.
+     */
+    private int version;
+
+    /**
+     * Constructor.
+     *
+     * @param usage
+     *            the number of mouse invocations of the actions without a
+     *            keyboard shortcut. Is read on each proposal. Not
+     *            <code>null</code>.
+     */
+    public ShortcutRecommender(final ActionCounts usage) {
+        notNull(usage);
+        this.usage = usage;
+        this.monitor = BindingsMonitor.getInstance();
+    }
+
+    /**
+     * Proposes a free key chord for the action.
+     *
+     * @param actionOrdinal
+     *            the action ordinal in {@link ActionIdDictionary}. Not
+     *            negative.
+     * @param actionLabel
+     *            the action label. The chords with the label letters are
+     *            preferred. Not <code>null</code>.
+     * @return the formatted key chord. <code>null</code> if there is no free
+     *         chord left.
+     */
+    public String recommend(final int actionOrdinal, final String actionLabel) {
+        notNull(actionLabel);
+        validate();
+
+        final BitSet excluded = new BitSet();
+        final int count = usage.get(actionOrdinal);
+        for (Map.Entry<Integer, Integer> entry : proposals.entrySet()) {
+            if (entry.getKey() != actionOrdinal && usage.get(entry.getKey()) >= count) {
+                excluded.set(entry.getValue());
+            }
+        }
+        final Integer proposed = proposals.get(actionOrdinal);
+        if (proposed != null && !excluded.get(proposed)) {
+            return format(proposed);
+        }
+
+        String contextId = commandContexts.get(ActionIdDictionary.getInstance().getId(actionOrdinal));
+        if (contextId == null) {
+            contextId = DEFAULT_CONTEXT_ID;
+        }
+        final int chord = finder.find(contextId, actionLabel.toUpperCase(), excluded);
+        if (chord == FreeChordFinder.NO_CHORD) {
+            proposals.remove(actionOrdinal);
+            return null;
+        }
+        proposals.put(actionOrdinal, chord);
+        return format(chord);
+    }
+
+    /**
+     * Collects the used chords again if the bindings changed. Forgets the
+     * proposals, because they could be bound now.
+     */
+    private void validate() {
+        if (finder != null && version == monitor.getVersion()) {
+            return;
+        }
+        version = monitor.getVersion();
+        proposals.clear();
+        commandContexts.clear();
+        finder = new FreeChordFinder(MODIFIERS, KEYS);
+
+        final BindingManager bindingManager = monitor.getBindingManager();
+        for (Object o : bindingManager.getActiveBindingsDisregardingContextFlat()) {
+            if (o instanceof KeyBinding) {
+                final KeyBinding binding = (KeyBinding) o;
+                final KeyStroke[] strokes = binding.getKeySequence().getKeyStrokes();
+                if (strokes.length > 0) {
+                    // a multi-stroke binding makes its first stroke a prefix
+                    finder.use(binding.getContextId(), strokes[0].getModifierKeys(), strokes[0].getNaturalKey());
+                }
+            }
+        }
+        final Binding[] bindings = bindingManager.getBindings();
+        if (bindings != null) {
+            for (Binding binding : bindings) {
+                final String commandId = binding.getParameterizedCommand() == null
+                        ? null : binding.getParameterizedCommand().getId();
+                if (commandId != null && !commandContexts.containsKey(commandId)) {
+                    commandContexts.put(commandId, binding.getContextId());
+                }
+            }
+        }
+
+        final IContextService contextService =
+                (IContextService) PlatformUI.getWorkbench().getService(IContextService.class);
+        for (Object o : contextService.getDefinedContextIds()) {
+            final Context context = contextService.getContext((String) o);
+            try {
+                finder.setParent(context.getId(), context.getParentId());
+            } catch (final NotDefinedException e) {
+                // the context is being removed, has no bindings to care about
+            }
+        }
+    }
+
+    /**
+     * Formats the chord the way the workbench shows the key bindings.
+     *
+     * @param chord
+     *            the chord found by {@link #finder}.
+     * @return the formatted chord. Never <code>null</code>.
+     */
+    private String format(final int chord) {
+        return AcceleratorTextCache.getInstance().format(
+                KeySequence.getInstance(KeyStroke.getInstance(finder.getModifiers(chord), finder.getKey(chord))));
+    }
+
+    /**
+     * Creates {@link #KEYS}.
+     *
+     * @return the candidate keys, letters first. Never <code>null</code>.
+     */
+    private static int[] createKeys() {
+        final int[] keys = new int[('Z' - 'A' + 1) + ('9' - '0' + 1) + (SWT.F12 - SWT.F2 + 1)];
+        int i = 0;
+        for (char c = 'A'; c <= 'Z'; c++) {
+            keys[i++] = c;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            keys[i++] = c;
+        }
+        for (int key = SWT.F2; key <= SWT.F12; key++) {
+            keys[i++] = key;
+        }
+        return keys;
+    }
+}
@@ -29,6 +29,12 @@ import org.eclipse.ui.PlatformUI;
  */
 public class Startup implements IStartup {
 
+    /**
+     * The delay of the startup maintenance jobs, in milliseconds, so they
+     * do not slow down the workbench startup.
+     */
+    private static final long STARTUP_DELAY = 60 * 1000;
+
     /**
      * Default constructor does nothing.
      */
@@ -39,12 +45,21 @@ public class Startup implements IStartup {
      * Hooks up event listeners.
      */
     public void earlyStartup() {
+        final DescriptorSnapshotLoader snapshotLoader = new DescriptorSnapshotLoader();
+        snapshotLoader.reloadOnConfigChange();
+        snapshotLoader.schedule();
         getDisplay().asyncExec(new Runnable() {
             public void run() {
+                final GlobalSelectionListener listener =
+                        new GlobalSelectionListener();
+                getDisplay().addFilter(SWT.Selection, listener);
+                getDisplay().addFilter(
+                        SWT.Show, listener.getMenuPrefetcher());
                 getDisplay().addFilter(
-                      SWT.Selection, new GlobalSelectionListener());
+                        SWT.Hide, listener.getMenuPrefetcher());
             }
         });
+        new UsageJournalCompactor().schedule(STARTUP_DELAY);
     }
 
     /**
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import com.mousefeed.client.collector.UsageJournal;
+import java.io.File;
+import java.io.IOException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Periodically compacts the usage journal when it grows large. Several
+ * Eclipse instances sharing the journal can run the job at the same time,
+ * only one of them compacts the journal, the others skip it without waiting.
+ * Reschedules itself until it is canceled when the plugin is stopped.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class UsageJournalCompactor extends Job {
+    /**
+     * The interval between the checks, in milliseconds.
+     */
+    public static final long CHECK_INTERVAL = 60 * 60 * 1000;
+
+    /**
+     * The journal size the journal is compacted at, in bytes.
+     */
+    static final long COMPACTION_THRESHOLD = 4096L * UsageJournal.RECORD_SIZE;
+
+    /**
+     * How long the appends already writing to the journal are given to
+     * finish before the journal is compacted, in milliseconds.
+     */
+    private static final long GRACE_PERIOD = 2000;
+
+    /**
+     * Constructor.
+     */
+    public UsageJournalCompactor() {
+        super("MouseFeed usage journal compaction");
+        setSystem(true);
+        setPriority(DECORATE);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected IStatus run(final IProgressMonitor monitor) {
+        final Activator activator = Activator.getDefault();
+        if (monitor.isCanceled() || activator == null) {
+            return Status.CANCEL_STATUS;
+        }
+        final File journal = activator.getUsageJournal().getFile();
+        if (journal.length() >= COMPACTION_THRESHOLD) {
+            try {
+                UsageJournal.compact(journal, GRACE_PERIOD);
+            } catch (final IOException e) {
+                activator.getLog().log(
+                        new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Could not compact the usage journal", e));
+            } catch (final InterruptedException e) {
+                return Status.CANCEL_STATUS;
+            }
+        }
+        if (monitor.isCanceled()) {
+            return Status.CANCEL_STATUS;
+        }
+        schedule(CHECK_INTERVAL);
+        return Status.OK_STATUS;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean belongsTo(final Object family) {
+        return Activator.JOB_FAMILY.equals(family);
+    }
+}
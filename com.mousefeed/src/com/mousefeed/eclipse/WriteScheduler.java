@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Writes the MouseFeed state to disk in the background, so no user
+ * interaction waits for the disk. The owner of the state keeps it in memory
+ * and marks it dirty with {@link #schedule(Flushable)}; the targets marked
+ * within {@link #BATCH_DELAY} are written together by a low-priority system
+ * job, each target once, no matter how many times it was marked. On shutdown
+ * {@link #shutdown(long)} writes the remaining targets within a time bound.
+ * A failing target is reported once, until it is written successfully again,
+ * and is marked dirty again to be retried after {@link #RETRY_DELAY}. A target
+ * which can retry must keep its unwritten state when its flush fails.
+ * Thread-safe. The targets must be safe to flush from any thread.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class WriteScheduler extends Job {
+    /**
+     * How long the job waits for more changes after a target is marked, in
+     * milliseconds.
+     */
+    public static final long BATCH_DELAY = 2000;
+
+    /**
+     * How long the job waits before writing a failed target again, in
+     * milliseconds.
+     */
+    public static final long RETRY_DELAY = 60 * 1000;
+
+    /**
+     * Guards {@link #dirty}, {@link #failing} and {@link #stopped}. The job itself is not used
+     * as the lock, because the job manager calls back into the jobs.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The targets waiting to be written, in the order they were marked.
+     */
+    private final Set<Flushable> dirty = new LinkedHashSet<Flushable>();
+
+    /**
+     * Held while the targets are written, so the final flush does not
+     * write a target at the same time as the job.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * The targets which failed to be written last time, so a persistent
+     * failure is reported only once.
+     */
+    private final Set<Flushable> failing = new HashSet<Flushable>();
+
+    /**
+     * Whether {@link #shutdown(long)} was called.
+     */
+    private boolean stopped;
+
+    /**
+     * Constructor.
+     */
+    public WriteScheduler() {
+        super("MouseFeed state writing");
+        setSystem(true);
+        setPriority(DECORATE);
+    }
+
+    /**
+     * Marks the target dirty. Its {@link Flushable#flush()} is called from
+     * the job later. After the shutdown, is called immediately instead.
+     *
+     * @param target
+     *            the state to write. Not <code>null</code>.
+     */
+    public void schedule(final Flushable target) {
+        notNull(target);
+        final boolean first;
+        synchronized (lock) {
+            if (stopped) {
+                first = false;
+            } else {
+                first = dirty.isEmpty();
+                dirty.add(target);
+                if (!first) {
+                    return;
+                }
+            }
+        }
+        if (first) {
+            schedule(BATCH_DELAY);
+        } else {
+            // a late change after the final flush
+            write(target);
+        }
+    }
+
+    /**
+     * Writes the remaining targets, then writes any further targets
+     * immediately. Is called when the plugin is stopped.
+     *
+     * @param timeout
+     *            the maximal time to spend, in milliseconds. The targets not
+     *            written in time are reported and dropped. Not negative.
+     */
+    public void shutdown(final long timeout) {
+        isTrue(timeout >= 0);
+        final long deadline = System.currentTimeMillis() + timeout;
+        final List<Flushable> targets;
+        synchronized (lock) {
+            stopped = true;
+            targets = takeDirty();
+        }
+        cancel();
+        try {
+            // waits for the job writing
+            if (!writeLock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+                log("Could not write the MouseFeed state in time, " + targets.size() + " writes dropped", null);
+                return;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            for (int i = 0; i < targets.size(); i++) {
+                if (System.currentTimeMillis() > deadline) {
+                    log("Could not write the MouseFeed state in time, " + (targets.size() - i) + " writes dropped",
+                            null);
+                    return;
+                }
+                write(targets.get(i));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Whether there are targets waiting to be written.
+     *
+     * @return <code>true</code> if any target is dirty.
+     */
+    public boolean isDirty() {
+        synchronized (lock) {
+            return !dirty.isEmpty();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected IStatus run(final IProgressMonitor monitor) {
+        writeLock.lock();
+        try {
+            final List<Flushable> targets;
+            synchronized (lock) {
+                targets = takeDirty();
+            }
+            for (Flushable target : targets) {
+                write(target);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * Takes the dirty targets. Must be called with {@link #lock} held.
+     *
+     * @return the targets, in the order they were marked. Never
+     *         <code>null</code>.
+     */
+    private List<Flushable> takeDirty() {
+        final List<Flushable> targets = new ArrayList<Flushable>(dirty);
+        dirty.clear();
+        return targets;
+    }
+
+    /**
+     * Writes the target. A failure does not affect the other targets.
+     *
+     * @param target
+     *            the target. Assumed not <code>null</code>.
+     */
+    private void write(final Flushable target) {
+        try {
+            target.flush();
+            synchronized (lock) {
+                failing.remove(target);
+            }
+        } catch (final IOException e) {
+            onFailure(target, e);
+        } catch (final RuntimeException e) {
+            onFailure(target, e);
+        }
+    }
+
+    /**
+     * Reports the failure, unless the target failed last time too, and marks
+     * the target dirty again, unless the scheduler is stopped.
+     *
+     * @param target
+     *            the failed target. Assumed not <code>null</code>.
+     * @param e
+     *            the error. Assumed not <code>null</code>.
+     */
+    private void onFailure(final Flushable target, final Exception e) {
+        final boolean first;
+        final boolean retry;
+        synchronized (lock) {
+            first = failing.add(target);
+            retry = !stopped && dirty.isEmpty();
+            if (!stopped) {
+                dirty.add(target);
+            }
+        }
+        if (first) {
+            log("Could not write the MouseFeed state", e);
+        }
+        if (retry) {
+            schedule(RETRY_DELAY);
+        }
+    }
+
+    /**
+     * Reports a problem.
+     *
+     * @param message
+     *            the message. Assumed not <code>null</code>.
+     * @param e
+     *            the error. Can be <code>null</code>.
+     */
+    private void log(final String message, final Throwable e) {
+        if (Activator.getDefault() != null) {
+            Activator.getDefault().getLog().log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, message, e));
+        }
+    }
+}
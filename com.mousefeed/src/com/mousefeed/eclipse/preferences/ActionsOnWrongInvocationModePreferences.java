@@ -1,28 +1,59 @@
 package com.mousefeed.eclipse.preferences;
 
 import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.client.OnWrongInvocationModeRules;
 import com.mousefeed.eclipse.Activator;
 import com.mousefeed.eclipse.preferences.invocation.ActionOnWrongInvocationMode;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.Flushable;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.Writer;
+import java.net.URL;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.ui.IMemento;
 import org.eclipse.ui.WorkbenchException;
 import org.eclipse.ui.XMLMemento;
 
 /**
+ * Action-specific invocation mode settings. The settings edited by the user
+ * are layered on top of the defaults bundled with the plugin and of the
+ * optional team policy file, see {@link InvocationPolicy}. The layers are
+ * merged into a single precomputed lookup whenever a layer changes. The team
+ * policy file is watched for changes by {@link InvocationPolicyWatcher}.
+ * <p>
+ * Thread-safe. The settings and the merged lookup are published together as
+ * an immutable {@link Snapshot}, which is replaced as a whole on each change,
+ * so any thread can read them without locking. All the changes go through
+ * {@link #update(Map, boolean)}, which serializes the writers. The user
+ * settings file is written in the background by the
+ * {@link com.mousefeed.eclipse.WriteScheduler}.
+ * </p>
  * 
  * @author Rabea Gransberger (@rgransberger)
  */
 class ActionsOnWrongInvocationModePreferences {
 
+    /**
+     * The plugin path of the invocation policy bundled with the plugin.
+     */
+    private static final String BUNDLED_POLICY_PATH = "policy/invocationPolicy.xml";
+
     /**
      * Name of the file to store action-specific behavior when the actions are
      * invoked wrong way.
@@ -56,25 +87,72 @@ class ActionsOnWrongInvocationModePreferences {
     private static final String TAG_ON_WRONG_INVOCATION_MODE = "onWrongInvocationMode";
 
     /**
-     * Actions on wrong invocation mode settings. Keys - action ids, values -
-     * the settings.
+     * The current settings. Is replaced as a whole, never changed.
+     */
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Writes the current user settings to the file.
+     */
+    private final Flushable settingsWriter = new Flushable() {
+        public void flush() throws IOException {
+            saveActionsOnWrongInvocationMode(snapshot.settings.values());
+        }
+    };
+
+    /**
+     * The policy bundled with the plugin. The lowest layer. Guarded by
+     * <code>this</code>, as the other layers.
+     */
+    private InvocationPolicy bundledPolicy = InvocationPolicy.EMPTY;
+
+    /**
+     * The team policy. The layer between the bundled and the user settings.
+     */
+    private InvocationPolicy sharedPolicy = InvocationPolicy.EMPTY;
+
+    /**
+     * The team policy file {@link #sharedPolicy} was loaded from.
+     * <code>null</code> if there is no team policy.
+     */
+    private File sharedPolicyFile;
+
+    /**
+     * The modification stamp of {@link #sharedPolicyFile} when it was
+     * loaded.
      */
-    private final Map<String, ActionOnWrongInvocationMode> actionsOnWrongMode = new HashMap<String, ActionOnWrongInvocationMode>();
+    private long sharedPolicyStamp;
 
     /**
-     * Loads preferences for the {@link #getOnWrongInvocationMode(String)}.
+     * Loads preferences for the {@link #get(String)} and
+     * {@link #resolve(String, String)}, starts watching the team policy file.
      */
-    void load() {
+    synchronized void load() {
+        bundledPolicy = loadBundledPolicy();
+        reloadSharedPolicyIfModified();
+        update(loadUserSettings(), false);
+        if (Activator.getDefault() != null) {
+            new InvocationPolicyWatcher(this).schedule(InvocationPolicyWatcher.POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * Loads the settings edited by user.
+     * 
+     * @return the user settings. Keys - action ids. Never <code>null</code>.
+     */
+    private Map<String, ActionOnWrongInvocationMode> loadUserSettings() {
+        final Map<String, ActionOnWrongInvocationMode> settings = new HashMap<String, ActionOnWrongInvocationMode>();
         final File file = getActionsWrongInvocationModeFile();
         if (!file.exists() || file.length() == 0) {
             // the file not initialized yet
-            return;
+            return settings;
         }
         Reader reader = null;
         try {
             reader = new FileReader(file);
             final XMLMemento memento = XMLMemento.createReadRoot(reader);
-            loadActionsOnWrongInvocationMode(memento);
+            loadActionsOnWrongInvocationMode(memento, settings);
         } catch (final FileNotFoundException ignore) {
             // the file does not exist yet
         } catch (final WorkbenchException e) {
@@ -88,6 +166,7 @@ class ActionsOnWrongInvocationModePreferences {
                 throw new RuntimeException(e);
             }
         }
+        return settings;
     }
 
     /**
@@ -100,35 +179,255 @@ class ActionsOnWrongInvocationModePreferences {
      * @see #getActionsOnWrongInvocationMode()
      */
     public void save(final Collection<ActionOnWrongInvocationMode> settings) {
-        this.actionsOnWrongMode.clear();
+        final Map<String, ActionOnWrongInvocationMode> newSettings = new HashMap<String, ActionOnWrongInvocationMode>();
         for (ActionOnWrongInvocationMode mode : settings) {
-            final ActionOnWrongInvocationMode clone;
-            try {
-                clone = (ActionOnWrongInvocationMode) mode.clone();
-            } catch (final CloneNotSupportedException e) {
-                throw new RuntimeException();
-            }
-            this.actionsOnWrongMode.put(clone.getId(), clone);
+            final ActionOnWrongInvocationMode clone = copy(mode);
+            newSettings.put(clone.getId(), clone);
         }
-        saveActionsOnWrongInvocationMode();
+        update(newSettings, true);
     }
 
+    /**
+     * The user settings.
+     * 
+     * @return the settings. Read-only, the settings must not be changed,
+     *         clone them for editing. Never <code>null</code>.
+     */
     public Collection<ActionOnWrongInvocationMode> values() {
-        return actionsOnWrongMode.values();
+        return snapshot.settings.values();
     }
 
-    public void add(ActionOnWrongInvocationMode settings) {
-        this.actionsOnWrongMode.put(settings.getId(), settings);
-        saveActionsOnWrongInvocationMode();
+    /**
+     * Adds or replaces the user setting for an action.
+     * 
+     * @param settings
+     *            the setting. Is copied. Not <code>null</code>.
+     */
+    public synchronized void add(ActionOnWrongInvocationMode settings) {
+        final Map<String, ActionOnWrongInvocationMode> newSettings =
+                new HashMap<String, ActionOnWrongInvocationMode>(snapshot.settings);
+        newSettings.put(settings.getId(), copy(settings));
+        update(newSettings, true);
     }
 
+    /**
+     * The user setting for the action.
+     * 
+     * @param actionId
+     *            the action id. Not <code>null</code>.
+     * @return the setting. Read-only. <code>null</code> if the user did not
+     *         configure the action.
+     */
     public ActionOnWrongInvocationMode get(String actionId) {
-        return this.actionsOnWrongMode.get(actionId);
+        return snapshot.settings.get(actionId);
     }
 
-    public void remove(String actionId) {
-        this.actionsOnWrongMode.remove(actionId);
-        saveActionsOnWrongInvocationMode();
+    /**
+     * Removes the user setting for the action.
+     * 
+     * @param actionId
+     *            the action id. Not <code>null</code>.
+     */
+    public synchronized void remove(String actionId) {
+        final Map<String, ActionOnWrongInvocationMode> newSettings =
+                new HashMap<String, ActionOnWrongInvocationMode>(snapshot.settings);
+        newSettings.remove(actionId);
+        update(newSettings, true);
+    }
+
+    /**
+     * The only way to change the settings. Publishes the new user settings
+     * merged with the other layers.
+     * 
+     * @param settings
+     *            the new user settings. Keys - action ids. Is not copied, must
+     *            not be changed after the call. Assumed not <code>null</code>.
+     * @param persist
+     *            whether to schedule saving the user settings to the file.
+     */
+    private synchronized void update(final Map<String, ActionOnWrongInvocationMode> settings, final boolean persist) {
+        final Map<String, OnWrongInvocationMode> modes = new HashMap<String, OnWrongInvocationMode>();
+        for (ActionOnWrongInvocationMode mode : settings.values()) {
+            modes.put(mode.getId(), mode.getOnWrongInvocationMode());
+        }
+        final InvocationPolicy userPolicy = new InvocationPolicy(modes, new HashSet<String>());
+        final Snapshot newSnapshot = new Snapshot(Collections.unmodifiableMap(settings),
+                InvocationPolicy.merge(bundledPolicy, sharedPolicy, userPolicy));
+        snapshot = newSnapshot;
+        if (persist) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Schedules writing the user settings. Writes them immediately if the
+     * plugin is not running.
+     */
+    private void scheduleSave() {
+        if (Activator.getDefault() != null) {
+            Activator.getDefault().getWriteScheduler().schedule(settingsWriter);
+            return;
+        }
+        try {
+            settingsWriter.flush();
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Copies the setting.
+     * 
+     * @param mode
+     *            the setting to copy. Assumed not <code>null</code>.
+     * @return the copy. Never <code>null</code>.
+     */
+    private static ActionOnWrongInvocationMode copy(final ActionOnWrongInvocationMode mode) {
+        try {
+            return (ActionOnWrongInvocationMode) mode.clone();
+        } catch (final CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Finds the mode of the most specific setting matching the action,
+     * including the prefix and the category rules. Looks at all the layers.
+     * 
+     * @param actionId
+     *            the action id. Not <code>null</code>.
+     * @param categoryId
+     *            the action category id. Can be <code>null</code>.
+     * @return the mode. <code>null</code> if no setting matches the action.
+     * @see OnWrongInvocationModeRules#resolve(String, String)
+     */
+    public OnWrongInvocationMode resolve(final String actionId, final String categoryId) {
+        return snapshot.rules.resolve(actionId, categoryId);
+    }
+
+    /**
+     * Reloads the team policy if its file was changed, or the team policy
+     * preference changed.
+     * 
+     * @return <code>true</code> if the team policy was reloaded.
+     */
+    synchronized boolean reloadSharedPolicyIfModified() {
+        final File file = getSharedPolicyFile();
+        final long stamp = file == null ? 0 : file.lastModified() ^ file.length();
+        if (ObjectUtils.equals(file, sharedPolicyFile) && stamp == sharedPolicyStamp) {
+            return false;
+        }
+        sharedPolicyFile = file;
+        sharedPolicyStamp = stamp;
+        sharedPolicy = file == null || !file.isFile() ? InvocationPolicy.EMPTY : loadPolicy(file);
+        return true;
+    }
+
+    /**
+     * Reloads the team policy if it was changed, merges the layers again.
+     */
+    synchronized void reloadIfModified() {
+        if (reloadSharedPolicyIfModified()) {
+            update(snapshot.settings, false);
+        }
+    }
+
+    /**
+     * Loads the policy bundled with the plugin.
+     * 
+     * @return the bundled policy. Empty if the plugin is not running.
+     */
+    private InvocationPolicy loadBundledPolicy() {
+        if (Activator.getDefault() == null) {
+            return InvocationPolicy.EMPTY;
+        }
+        final URL url = FileLocator.find(Activator.getDefault().getBundle(), new Path(BUNDLED_POLICY_PATH), null);
+        if (url == null) {
+            return InvocationPolicy.EMPTY;
+        }
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(url.openStream(), "UTF-8");
+            return InvocationPolicy.read(reader);
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        } catch (final WorkbenchException e) {
+            throw new RuntimeException(e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Loads the team policy. A broken team policy file is reported and
+     * ignored, so a typo in a shared file does not break MouseFeed for the
+     * whole team.
+     * 
+     * @param file
+     *            the policy file. Assumed not <code>null</code>.
+     * @return the policy. Empty if the file can't be read.
+     */
+    private InvocationPolicy loadPolicy(final File file) {
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            return InvocationPolicy.read(reader);
+        } catch (final IOException e) {
+            logPolicyError(file, e);
+        } catch (final WorkbenchException e) {
+            logPolicyError(file, e);
+        } finally {
+            closeQuietly(reader);
+        }
+        return InvocationPolicy.EMPTY;
+    }
+
+    /**
+     * Reports a team policy file which can't be loaded.
+     * 
+     * @param file
+     *            the policy file. Assumed not <code>null</code>.
+     * @param e
+     *            the error. Assumed not <code>null</code>.
+     */
+    private void logPolicyError(final File file, final Exception e) {
+        if (Activator.getDefault() != null) {
+            Activator.getDefault().getLog().log(
+                    new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Could not load invocation policy " + file, e));
+        }
+    }
+
+    /**
+     * Closes the reader, ignoring the errors.
+     * 
+     * @param reader
+     *            the reader. Can be <code>null</code>.
+     */
+    private static void closeQuietly(final Reader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (final IOException ignore) {
+            // the data is already read
+        }
+    }
+
+    /**
+     * The team policy file.
+     * 
+     * @return the file configured by
+     *         {@link PreferenceConstants#P_SHARED_INVOCATION_POLICY_FILE}.
+     *         <code>null</code> if not configured.
+     */
+    private File getSharedPolicyFile() {
+        if (Activator.getDefault() == null) {
+            return null;
+        }
+        final String path =
+                Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_SHARED_INVOCATION_POLICY_FILE);
+        return StringUtils.isBlank(path) ? null : new File(path.trim());
     }
 
     /**
@@ -137,50 +436,53 @@ class ActionsOnWrongInvocationModePreferences {
      * @param memento
      *            the memento to load the data from. Assumed not
      *            <code>null</code>.
-     * @see #loadActionsOnWrongInvocationMode()
+     * @param settings
+     *            where to put the loaded settings. Assumed not
+     *            <code>null</code>.
      */
-    private void loadActionsOnWrongInvocationMode(final XMLMemento memento) {
-        actionsOnWrongMode.clear();
+    private void loadActionsOnWrongInvocationMode(final XMLMemento memento,
+            final Map<String, ActionOnWrongInvocationMode> settings) {
         final IMemento[] children = memento.getChildren(TAG_ACTION);
         for (IMemento child : children) {
             final ActionOnWrongInvocationMode mode = new ActionOnWrongInvocationMode();
             mode.setLabel(child.getString(TAG_ACTION_LABEL));
             mode.setId(child.getString(TAG_ACTION_ID));
             mode.setOnWrongInvocationMode(OnWrongInvocationMode.valueOf(child.getString(TAG_ON_WRONG_INVOCATION_MODE)));
-            actionsOnWrongMode.put(mode.getId(), mode);
+            settings.put(mode.getId(), mode);
         }
     }
 
     /**
-     * Saves settings loaded by {@link #loadActionsOnWrongInvocationMode()}.
+     * Saves settings loaded by
+     * {@link #loadActionsOnWrongInvocationMode(XMLMemento, Map)}.
+     * 
+     * @param settings
+     *            the settings to save. Assumed not <code>null</code>.
+     * @throws IOException
+     *             if the file could not be written.
      */
-    private void saveActionsOnWrongInvocationMode() {
-        final XMLMemento memento = createActionsOnWrongInvocationModeMemento();
-        Writer writer = null;
+    private void saveActionsOnWrongInvocationMode(final Collection<ActionOnWrongInvocationMode> settings)
+            throws IOException {
+        final XMLMemento memento = createActionsOnWrongInvocationModeMemento(settings);
+        final Writer writer = new FileWriter(getActionsWrongInvocationModeFile());
         try {
-            writer = new FileWriter(getActionsWrongInvocationModeFile());
             memento.save(writer);
-        } catch (final IOException e) {
-            throw new RuntimeException(e);
         } finally {
-            try {
-                if (writer != null) {
-                    writer.close();
-                }
-            } catch (final IOException e) {
-                throw new RuntimeException(e);
-            }
+            writer.close();
         }
     }
 
     /**
      * Generates XML memento with the actions wrong invocation mode data.
      * 
+     * @param settings
+     *            the settings to save. Assumed not <code>null</code>.
      * @return the memento. Never <code>null</code>.
      */
-    private XMLMemento createActionsOnWrongInvocationModeMemento() {
+    private XMLMemento createActionsOnWrongInvocationModeMemento(
+            final Collection<ActionOnWrongInvocationMode> settings) {
         final XMLMemento memento = XMLMemento.createWriteRoot(TAG_ACTIONS_WRONG_INVOCATION_MODE);
-        for (ActionOnWrongInvocationMode val : actionsOnWrongMode.values()) {
+        for (ActionOnWrongInvocationMode val : settings) {
             final IMemento actionMemento = memento.createChild(TAG_ACTION);
             actionMemento.putString(TAG_ACTION_ID, val.getId());
             actionMemento.putString(TAG_ACTION_LABEL, val.getLabel());
@@ -202,4 +504,39 @@ class ActionsOnWrongInvocationModePreferences {
         return Activator.getDefault().getStateLocation().append(ACTIONS_WRONG_INVOCATION_MODE_FILE).toFile();
     }
 
+    /**
+     * The user settings together with the lookup merged from all the layers.
+     * Immutable.
+     */
+    private static final class Snapshot {
+        /**
+         * No settings.
+         */
+        static final Snapshot EMPTY = new Snapshot(
+                Collections.<String, ActionOnWrongInvocationMode> emptyMap(), OnWrongInvocationModeRules.EMPTY);
+
+        /**
+         * The read-only user settings. Keys - action ids.
+         */
+        final Map<String, ActionOnWrongInvocationMode> settings;
+
+        /**
+         * All the layers compiled for {@link #resolve(String, String)}.
+         */
+        final OnWrongInvocationModeRules rules;
+
+        /**
+         * Constructor.
+         * 
+         * @param settings
+         *            the read-only user settings. Assumed not
+         *            <code>null</code>.
+         * @param rules
+         *            the merged lookup. Assumed not <code>null</code>.
+         */
+        Snapshot(final Map<String, ActionOnWrongInvocationMode> settings, final OnWrongInvocationModeRules rules) {
+            this.settings = settings;
+            this.rules = rules;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.client.OnWrongInvocationModeRules;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.ui.IMemento;
+import org.eclipse.ui.WorkbenchException;
+import org.eclipse.ui.XMLMemento;
+
+/**
+ * A single layer of the action-specific invocation mode settings, e.g. the
+ * defaults bundled with the plugin, the team policy or the user settings.
+ * Besides the invocation mode an entry of a team policy can be locked, so
+ * the higher layers can't override it. Immutable.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+final class InvocationPolicy {
+    /**
+     * The policy without any entries.
+     */
+    public static final InvocationPolicy EMPTY = new InvocationPolicy(
+            new HashMap<String, OnWrongInvocationMode>(), new HashSet<String>());
+
+    /**
+     * The action tag name.
+     */
+    static final String TAG_ACTION = "action";
+
+    /**
+     * The action id tag name.
+     */
+    static final String TAG_ACTION_ID = "id";
+
+    /**
+     * The on wrong invocation mode handling approach.
+     */
+    static final String TAG_ON_WRONG_INVOCATION_MODE = "onWrongInvocationMode";
+
+    /**
+     * The tag name of the flag preventing the higher layers to override the
+     * entry.
+     */
+    static final String TAG_LOCKED = "locked";
+
+    /**
+     * The invocation modes. Keys - the action ids or the rule patterns.
+     */
+    private final Map<String, OnWrongInvocationMode> modes;
+
+    /**
+     * The ids of the locked entries.
+     */
+    private final Set<String> locked;
+
+    /**
+     * Constructor.
+     *
+     * @param modes
+     *            the invocation modes. Keys - the action ids or the rule
+     *            patterns, see {@link OnWrongInvocationModeRules}. Not
+     *            <code>null</code>.
+     * @param locked
+     *            the ids of the locked entries. Not <code>null</code>.
+     */
+    public InvocationPolicy(final Map<String, OnWrongInvocationMode> modes, final Set<String> locked) {
+        notNull(modes);
+        notNull(locked);
+        this.modes = Collections.unmodifiableMap(new HashMap<String, OnWrongInvocationMode>(modes));
+        this.locked = Collections.unmodifiableSet(new HashSet<String>(locked));
+    }
+
+    /**
+     * Reads the policy in the format of the user action-specific settings
+     * file, where each <code>action</code> element can have an optional
+     * <code>locked="true"</code> attribute.
+     *
+     * @param reader
+     *            the policy XML. Not <code>null</code>.
+     * @return the policy. Never <code>null</code>.
+     * @throws WorkbenchException
+     *             if the policy can't be parsed.
+     */
+    public static InvocationPolicy read(final Reader reader) throws WorkbenchException {
+        final XMLMemento memento = XMLMemento.createReadRoot(reader);
+        final Map<String, OnWrongInvocationMode> modes = new HashMap<String, OnWrongInvocationMode>();
+        final Set<String> locked = new HashSet<String>();
+        for (IMemento child : memento.getChildren(TAG_ACTION)) {
+            final String id = child.getString(TAG_ACTION_ID);
+            final String mode = child.getString(TAG_ON_WRONG_INVOCATION_MODE);
+            if (id == null || mode == null) {
+                continue;
+            }
+            try {
+                modes.put(id, OnWrongInvocationMode.valueOf(mode));
+            } catch (final IllegalArgumentException e) {
+                throw new WorkbenchException("Unknown invocation mode " + mode + " for " + id, e);
+            }
+            if (Boolean.TRUE.equals(child.getBoolean(TAG_LOCKED))) {
+                locked.add(id);
+            }
+        }
+        return new InvocationPolicy(modes, locked);
+    }
+
+    /**
+     * Merges the policy layers into the rules used to resolve the action
+     * invocation mode. An entry of a higher layer overrides the entry with
+     * the same id of a lower layer, unless the lower entry is locked.
+     * <p>
+     * A locked prefix rule also drops the entries of the higher layers it
+     * covers: the ids and the longer prefixes starting with the prefix, and
+     * for the catch-all prefix the category rules too. Otherwise the more
+     * specific entries would override it. Which actions a locked category
+     * rule covers is not known until an action is resolved, so the category
+     * locks are enforced by the compiled rules.
+     * </p>
+     *
+     * @param layers
+     *            the policy layers, from the lowest to the highest. Not
+     *            <code>null</code>.
+     * @return the compiled rules. Never <code>null</code>.
+     */
+    public static OnWrongInvocationModeRules merge(final InvocationPolicy... layers) {
+        final Map<String, OnWrongInvocationMode> merged = new HashMap<String, OnWrongInvocationMode>();
+        final Set<String> lockedIds = new HashSet<String>();
+        final Set<String> lockedPrefixes = new HashSet<String>();
+        for (InvocationPolicy layer : layers) {
+            for (Map.Entry<String, OnWrongInvocationMode> entry : layer.modes.entrySet()) {
+                final String id = entry.getKey();
+                if (!lockedIds.contains(id) && !isCovered(id, lockedPrefixes)) {
+                    merged.put(id, entry.getValue());
+                }
+            }
+            final Set<String> layerPrefixes = new HashSet<String>();
+            for (String id : layer.locked) {
+                if (layer.modes.containsKey(id) && !lockedIds.contains(id) && !isCovered(id, lockedPrefixes)) {
+                    lockedIds.add(id);
+                    if (OnWrongInvocationModeRules.isPrefixRule(id)) {
+                        layerPrefixes.add(id.substring(0, id.length() - OnWrongInvocationModeRules.WILDCARD.length()));
+                    }
+                }
+            }
+            lockedPrefixes.addAll(layerPrefixes);
+        }
+        return new OnWrongInvocationModeRules(merged, lockedIds);
+    }
+
+    /**
+     * Whether the entry is covered by a locked prefix rule of a lower layer.
+     *
+     * @param id
+     *            the entry id. Assumed not <code>null</code>.
+     * @param lockedPrefixes
+     *            the prefixes of the locked prefix rules. Assumed not
+     *            <code>null</code>.
+     * @return <code>true</code> if a locked prefix rule overrides the entry.
+     */
+    private static boolean isCovered(final String id, final Set<String> lockedPrefixes) {
+        if (OnWrongInvocationModeRules.isCategoryRule(id)) {
+            return lockedPrefixes.contains("");
+        }
+        for (String prefix : lockedPrefixes) {
+            if (id.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
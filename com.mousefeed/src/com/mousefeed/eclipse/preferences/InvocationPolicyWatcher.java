@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.eclipse.Activator;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Periodically checks whether the team invocation policy file changed, and
+ * reloads it. Polls the file modification time, which is cheap and works on
+ * the network drives the team policies are often shared from. Reschedules
+ * itself until it is canceled when the plugin is stopped.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class InvocationPolicyWatcher extends Job {
+    /**
+     * The interval between the checks, in milliseconds.
+     */
+    public static final long POLL_INTERVAL = 5000;
+
+    /**
+     * The settings to reload the team policy for.
+     */
+    private final ActionsOnWrongInvocationModePreferences preferences;
+
+    /**
+     * Constructor.
+     *
+     * @param preferences
+     *            the settings to reload the team policy for. Not
+     *            <code>null</code>.
+     */
+    public InvocationPolicyWatcher(final ActionsOnWrongInvocationModePreferences preferences) {
+        super("MouseFeed invocation policy watcher");
+        notNull(preferences);
+        this.preferences = preferences;
+        setSystem(true);
+        setPriority(DECORATE);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected IStatus run(final IProgressMonitor monitor) {
+        if (monitor.isCanceled() || Activator.getDefault() == null) {
+            return Status.CANCEL_STATUS;
+        }
+        preferences.reloadIfModified();
+        if (monitor.isCanceled()) {
+            return Status.CANCEL_STATUS;
+        }
+        schedule(POLL_INTERVAL);
+        return Status.OK_STATUS;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean belongsTo(final Object family) {
+        return Activator.JOB_FAMILY.equals(family);
+    }
+}
@@ -27,6 +27,7 @@ import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_NAG_LISTEN
 import static org.apache.commons.lang.Validate.notNull;
 
 import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.client.feedback.FeedbackPreferences;
 import com.mousefeed.eclipse.Activator;
 import com.mousefeed.eclipse.preferences.invocation.ActionOnWrongInvocationMode;
 import com.mousefeed.eclipse.preferences.presentation.SchemeConfig;
@@ -40,7 +41,7 @@ import org.eclipse.jface.preference.IPreferenceStore;
  * @author Robert Wloch
  * @author Rabea Gransberger (@rgransberger)
  */
-public class PreferenceAccessor {
+public class PreferenceAccessor implements FeedbackPreferences {
 
     /**
      * The singleton instance.
@@ -120,6 +121,37 @@ public class PreferenceAccessor {
         getPreferenceStore().setValue(P_CONFIGURE_KEYBOARD_SHORTCUT_ENABLED, configureKeyboardShortcutEnabled);
     }
 
+    /**
+     * Whether the usage journal is shared by all the workspaces of the user.
+     * 
+     * @return current preference value.
+     * @see PreferenceConstants#P_SHARED_USAGE_JOURNAL
+     */
+    public boolean isUsageJournalShared() {
+        return getPreferenceStore().getBoolean(PreferenceConstants.P_SHARED_USAGE_JOURNAL);
+    }
+
+    /**
+     * The time budget of the action description generation.
+     * 
+     * @return current preference value, in milliseconds. 0 if the generation
+     *         is not limited. Not negative.
+     * @see PreferenceConstants#P_DESCRIPTOR_BUDGET
+     */
+    public int getDescriptorBudget() {
+        return Math.max(0, getPreferenceStore().getInt(PreferenceConstants.P_DESCRIPTOR_BUDGET));
+    }
+
+    /**
+     * Whether the presentation mode shows the actions in a single overlay.
+     * 
+     * @return current preference value.
+     * @see PreferenceConstants#P_PRESENTATION_HUD
+     */
+    public boolean isPresentationHudEnabled() {
+        return getPreferenceStore().getBoolean(PreferenceConstants.P_PRESENTATION_HUD);
+    }
+
     /**
      * The default preference of the threshold for the action invocation counter
      * above which keyboard shortcut configuration is enabled.
@@ -169,6 +201,27 @@ public class PreferenceAccessor {
         return mode == null ? null : mode.getOnWrongInvocationMode();
     }
 
+    /**
+     * The preference what to do on wrong invocation mode for the specified
+     * action, taking into account the action id prefix and the command
+     * category rules. The most specific matching setting wins.
+     * 
+     * @param actionId
+     *            the id of the action get preferences for. Not
+     *            <code>null</code>.
+     * @param categoryId
+     *            the id of the action command category. Can be
+     *            <code>null</code>.
+     * @return the invocation mode preference. <code>null</code> if no setting
+     *         matches the action. In this case use the default preference
+     *         value.
+     * @see com.mousefeed.client.OnWrongInvocationModeRules
+     */
+    public OnWrongInvocationMode getOnWrongInvocationMode(final String actionId, final String categoryId) {
+        notNull(actionId);
+        return actionsOnWrongInvocationMode.resolve(actionId, categoryId);
+    }
+
     /**
      * Saves action-specific on wrong invocation mode settings.
      * 
@@ -185,9 +238,9 @@ public class PreferenceAccessor {
      * Returns action-specific wrong invocation mode handling for all actions.
      * 
      * @return the action-specific settings. Read-only. The collection nor its
-     *         elements should not be changed. Note, the collection and the
-     *         objects in it should be cloned for using for any significant
-     *         period of time. Never <code>null</code>, can be empty if no
+     *         elements should not be changed, clone the objects for editing.
+     *         The collection is an immutable snapshot, it can be used from any
+     *         thread. Never <code>null</code>, can be empty if no
      *         action-specific settings were defined. All objects in the
      *         collection have unique ids.
      */
@@ -236,6 +289,23 @@ public class PreferenceAccessor {
         this.presentationModePreferences.save();
     }
 
+    /**
+     * The version of the presentation mode configuration.
+     * 
+     * @return the version. Changes each time the configuration changes.
+     */
+    public int getPresentationModeVersion() {
+        return presentationModePreferences.getVersion();
+    }
+
+    /**
+     * Must be called after a scheme configuration returned by
+     * {@link #getPresentationModeSchemeConfigs()} is modified.
+     */
+    public void presentationModeSchemeConfigChanged() {
+        presentationModePreferences.changed();
+    }
+
     /**
      * Removes action-specific on wrong invocation mode setting. After calling
      * this method when the action with the specified id is handled using the
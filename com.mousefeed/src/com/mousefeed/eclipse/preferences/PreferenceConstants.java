@@ -18,6 +18,9 @@
  */
 package com.mousefeed.eclipse.preferences;
 
+import com.mousefeed.client.collector.Collector;
+import com.mousefeed.client.metrics.StallWatchdog;
+
 import static org.apache.commons.lang.time.DateUtils.MILLIS_PER_SECOND;
 
 /**
@@ -95,6 +98,113 @@ public final class PreferenceConstants {
      */
     public static final int CLOSE_LISTENER_TIMEOUT_DEFAULT = 5 * (int) MILLIS_PER_SECOND;
 
+    /**
+     * The path of the team invocation policy file. The policy is layered
+     * between the defaults bundled with the plugin and the action-specific
+     * settings of the user. Can be set for the whole team, e.g. in
+     * <code>plugin_customization.ini</code>.
+     */
+    public static final String P_SHARED_INVOCATION_POLICY_FILE = "SharedInvocationPolicyFile";
+
+    /**
+     * The default value for the setting
+     * {@link #P_SHARED_INVOCATION_POLICY_FILE} setting. No team policy.
+     */
+    public static final String SHARED_INVOCATION_POLICY_FILE_DEFAULT = "";
+
+    /**
+     * Whether the usage journal is stored in the user home directory and
+     * shared by all the workspaces and the Eclipse instances of the user,
+     * instead of the workspace.
+     */
+    public static final String P_SHARED_USAGE_JOURNAL = "SharedUsageJournal";
+
+    /**
+     * The default value for the setting {@link #P_SHARED_USAGE_JOURNAL}.
+     */
+    public static final boolean SHARED_USAGE_JOURNAL_DEFAULT = false;
+
+    /**
+     * Whether the MouseFeed metrics are served in the Prometheus text format
+     * on the loopback interface.
+     */
+    public static final String P_METRICS_EXPORTER_ENABLED = "MetricsExporterEnabled";
+
+    /**
+     * The default value for the setting {@link #P_METRICS_EXPORTER_ENABLED}.
+     */
+    public static final boolean METRICS_EXPORTER_ENABLED_DEFAULT = false;
+
+    /**
+     * The local port the metrics are served on.
+     */
+    public static final String P_METRICS_EXPORTER_PORT = "MetricsExporterPort";
+
+    /**
+     * The default value for the setting {@link #P_METRICS_EXPORTER_PORT}.
+     */
+    public static final int METRICS_EXPORTER_PORT_DEFAULT = 9464;
+
+    /**
+     * How long a MouseFeed handler may block the display thread, in
+     * milliseconds, before a stall report is written. 0 disables the stall
+     * reports.
+     */
+    public static final String P_STALL_BUDGET = "StallBudget";
+
+    /**
+     * The default value for the setting {@link #P_STALL_BUDGET}.
+     */
+    public static final int STALL_BUDGET_DEFAULT = StallWatchdog.DEFAULT_BUDGET;
+
+    /**
+     * How long the generation of an action description may take, in
+     * milliseconds, before MouseFeed falls back to the description generated
+     * earlier and disables the locators which keep exceeding it. 0 disables
+     * the limit.
+     */
+    public static final String P_DESCRIPTOR_BUDGET = "DescriptorBudget";
+
+    /**
+     * The default value for the setting {@link #P_DESCRIPTOR_BUDGET}.
+     */
+    public static final int DESCRIPTOR_BUDGET_DEFAULT = 15;
+
+    /**
+     * Whether the presentation mode shows the actions in a single overlay
+     * instead of a pop-up per action.
+     */
+    public static final String P_PRESENTATION_HUD = "PresentationHud";
+
+    /**
+     * The default value for the setting {@link #P_PRESENTATION_HUD}.
+     */
+    public static final boolean PRESENTATION_HUD_DEFAULT = true;
+
+    /**
+     * Whether the events processed by MouseFeed are recorded to an
+     * anonymized trace in the plug-in state location, to replay them with
+     * {@link com.mousefeed.tools.TraceReplay}.
+     */
+    public static final String P_EVENT_TRACE_ENABLED = "EventTraceEnabled";
+
+    /**
+     * The default value for the setting {@link #P_EVENT_TRACE_ENABLED}.
+     */
+    public static final boolean EVENT_TRACE_ENABLED_DEFAULT = false;
+
+    /**
+     * Only one of this number of the keyboard invocations of each action is
+     * recorded in the usage statistics and the usage journal, weighted to
+     * stand for the skipped ones. 1 records all the invocations.
+     */
+    public static final String P_KEYBOARD_SAMPLING = "KeyboardSampling";
+
+    /**
+     * The default value for the setting {@link #P_KEYBOARD_SAMPLING}.
+     */
+    public static final int KEYBOARD_SAMPLING_DEFAULT = Collector.DEFAULT_KEYBOARD_SAMPLING;
+
     private PreferenceConstants() {
     }
 }
@@ -59,5 +59,23 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
                 PreferenceConstants.CLOSE_TIMEOUT_DEFAULT);
         store.setDefault(PreferenceConstants.P_NAG_LISTENER_TIMEOUT,
                 PreferenceConstants.CLOSE_LISTENER_TIMEOUT_DEFAULT);
+        store.setDefault(PreferenceConstants.P_SHARED_INVOCATION_POLICY_FILE,
+                PreferenceConstants.SHARED_INVOCATION_POLICY_FILE_DEFAULT);
+        store.setDefault(PreferenceConstants.P_SHARED_USAGE_JOURNAL,
+                PreferenceConstants.SHARED_USAGE_JOURNAL_DEFAULT);
+        store.setDefault(PreferenceConstants.P_METRICS_EXPORTER_ENABLED,
+                PreferenceConstants.METRICS_EXPORTER_ENABLED_DEFAULT);
+        store.setDefault(PreferenceConstants.P_METRICS_EXPORTER_PORT,
+                PreferenceConstants.METRICS_EXPORTER_PORT_DEFAULT);
+        store.setDefault(PreferenceConstants.P_STALL_BUDGET,
+                PreferenceConstants.STALL_BUDGET_DEFAULT);
+        store.setDefault(PreferenceConstants.P_DESCRIPTOR_BUDGET,
+                PreferenceConstants.DESCRIPTOR_BUDGET_DEFAULT);
+        store.setDefault(PreferenceConstants.P_PRESENTATION_HUD,
+                PreferenceConstants.PRESENTATION_HUD_DEFAULT);
+        store.setDefault(PreferenceConstants.P_EVENT_TRACE_ENABLED,
+                PreferenceConstants.EVENT_TRACE_ENABLED_DEFAULT);
+        store.setDefault(PreferenceConstants.P_KEYBOARD_SAMPLING,
+                PreferenceConstants.KEYBOARD_SAMPLING_DEFAULT);
     }
 }
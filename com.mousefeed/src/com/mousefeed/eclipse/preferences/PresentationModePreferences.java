@@ -6,6 +6,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
@@ -44,14 +45,76 @@ public class PresentationModePreferences {
 
     private boolean useParentheses = false;
 
+    /**
+     * Is increased each time the configuration changes, so the data computed
+     * from it can be recomputed.
+     */
+    private int version;
+
+    /**
+     * The configuration saved last and not written yet. <code>null</code> if
+     * there is nothing to write. Guarded by <code>this</code>.
+     */
+    private XMLMemento pending;
+
+    /**
+     * Writes {@link #pending} to the file. If the write fails, keeps the
+     * configuration pending, unless a newer one was saved meanwhile, so it
+     * is written on the retry.
+     */
+    private final Flushable pendingWriter = new Flushable() {
+        public void flush() throws IOException {
+            final XMLMemento memento;
+            synchronized (PresentationModePreferences.this) {
+                memento = pending;
+                pending = null;
+            }
+            if (memento == null) {
+                return;
+            }
+            boolean written = false;
+            try {
+                write(memento);
+                written = true;
+            } finally {
+                if (!written) {
+                    synchronized (PresentationModePreferences.this) {
+                        if (pending == null) {
+                            pending = memento;
+                        }
+                    }
+                }
+            }
+        }
+    };
+
     // ###
 
+    /**
+     * The configuration version.
+     * 
+     * @return the version. Changes when the schemes, their labels or colors,
+     *         or the parentheses setting change.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Must be called after a scheme configuration returned by
+     * {@link #values()} is modified.
+     */
+    public void changed() {
+        version++;
+    }
+
     public Collection<SchemeConfig> values() {
         return list;
     }
 
     public void setUseParentheses(boolean useParentheses) {
         this.useParentheses = useParentheses;
+        changed();
     }
 
     public boolean isUseParentheses() {
@@ -60,6 +123,7 @@ public class PresentationModePreferences {
 
     public void add(SchemeConfig config) {
         list.add(config);
+        changed();
     }
 
     public void remove(String schemeId) {
@@ -67,6 +131,7 @@ public class PresentationModePreferences {
             SchemeConfig next = it.next();
             if (next.getSchemeId().equals(schemeId)) {
                 it.remove();
+                changed();
                 break;
             }
         }
@@ -75,6 +140,7 @@ public class PresentationModePreferences {
 
     public void defaults() {
         this.useParentheses = false;
+        changed();
 
         list.clear();
 
@@ -89,6 +155,7 @@ public class PresentationModePreferences {
 
     public void load() {
         list.clear();
+        changed();
 
         final File file = getFile();
         if (!file.exists() || file.length() == 0) {
@@ -118,22 +185,33 @@ public class PresentationModePreferences {
 
     }
 
+    /**
+     * Saves the configuration. The file is written in the background by the
+     * {@link com.mousefeed.eclipse.WriteScheduler}, or immediately if the
+     * plugin is not running.
+     */
     public void save() {
         final XMLMemento memento = createMemento();
-        Writer writer = null;
+        synchronized (this) {
+            pending = memento;
+        }
+        if (Activator.getDefault() != null) {
+            Activator.getDefault().getWriteScheduler().schedule(pendingWriter);
+            return;
+        }
         try {
-            writer = new FileWriter(getFile());
-            memento.save(writer);
+            pendingWriter.flush();
         } catch (final IOException e) {
             throw new RuntimeException(e);
+        }
+    }
+
+    private void write(final XMLMemento memento) throws IOException {
+        final Writer writer = new FileWriter(getFile());
+        try {
+            memento.save(writer);
         } finally {
-            try {
-                if (writer != null) {
-                    writer.close();
-                }
-            } catch (final IOException e) {
-                throw new RuntimeException(e);
-            }
+            writer.close();
         }
     }
 
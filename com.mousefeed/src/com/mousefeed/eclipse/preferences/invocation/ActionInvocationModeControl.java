@@ -26,21 +26,29 @@ import com.mousefeed.eclipse.preferences.PreferenceAccessor;
 
 import com.mousefeed.client.Messages;
 import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.client.OnWrongInvocationModeRules;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
 import org.eclipse.jface.viewers.CellEditor;
 import org.eclipse.jface.viewers.ComboBoxCellEditor;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
-import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.window.Window;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.TableEditor;
 import org.eclipse.swt.events.KeyAdapter;
 import org.eclipse.swt.events.KeyEvent;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.layout.FormAttachment;
 import org.eclipse.swt.layout.FormData;
 import org.eclipse.swt.layout.FormLayout;
@@ -50,6 +58,7 @@ import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.Text;
 
 /**
  * Creates and manages action-specific invocation preferences UI.
@@ -77,6 +86,11 @@ class ActionInvocationModeControl extends Composite {
         MODE
     }
 
+    /**
+     * The width of the label column, in average characters.
+     */
+    private static final int LABEL_COLUMN_CHARS = 50;
+
     /**
      * Provides text from the resource.
      */
@@ -95,6 +109,17 @@ class ActionInvocationModeControl extends Composite {
     private final List<ActionOnWrongInvocationMode> actionModes =
             createActionModes();
 
+    /**
+     * Sorts and filters {@link #actionModes} for {@link #table}.
+     */
+    private final ActionInvocationModeIndex index =
+            new ActionInvocationModeIndex(actionModes);
+
+    /**
+     * Filters the table rows.
+     */
+    private final Text filterText;
+
     /**
      * Lists actions with their settings.
      */
@@ -110,6 +135,11 @@ class ActionInvocationModeControl extends Composite {
      */
     private final Button removeButton;
 
+    /**
+     * The button to add a pattern rule.
+     */
+    private final Button addRuleButton;
+
     /**
      * Constructor.
      * @param parent the container where to create the UI.
@@ -119,7 +149,8 @@ class ActionInvocationModeControl extends Composite {
         super(parent, SWT.NONE);
         this.setLayout(new FormLayout());
 
-        table = createTable(null);
+        filterText = createFilterText();
+        table = createTable(filterText);
         tableViewer = createTableViewer();
         resizeTableColumns();
         table.addKeyListener(new KeyAdapter() {
@@ -140,8 +171,9 @@ class ActionInvocationModeControl extends Composite {
                 });
         
         removeButton = createRemoveButton();
-        layoutTable(removeButton);
-        createAddReminder(removeButton);
+        addRuleButton = createAddRuleButton(removeButton);
+        layoutTable(filterText, removeButton);
+        createAddReminder(addRuleButton);
         
         onTableSelectionChanged();
     }
@@ -150,31 +182,85 @@ class ActionInvocationModeControl extends Composite {
      * Is called when the table selection is changed.
      */
     private void onTableSelectionChanged() {
-        removeButton.setEnabled(!tableViewer.getSelection().isEmpty());
+        removeButton.setEnabled(table.getSelectionCount() > 0);
+    }
+
+    /**
+     * Shows only the settings matching the filter text.
+     */
+    private void onFilterChanged() {
+        index.setFilter(filterText.getText());
+        refreshTable();
+    }
+
+    /**
+     * Updates {@link #table} after the shown settings changed. Only the
+     * visible rows are created again.
+     */
+    private void refreshTable() {
+        table.deselectAll();
+        tableViewer.setItemCount(index.size());
+        tableViewer.refresh();
+        onTableSelectionChanged();
     }
 
     /**
      * Removes the selected settings from {@link #actionModes}.
      */
     private void removeSelected() {
-        final IStructuredSelection selection =
-            (IStructuredSelection) tableViewer.getSelection();
-        final List<?> selectedModes = selection.toList();
-        if (selectedModes.isEmpty()) {
+        // the selected rows of the virtual table may be not created yet
+        final int[] rows = table.getSelectionIndices();
+        if (rows.length == 0) {
             getDisplay().beep();
-        } else {
-            actionModes.removeAll(selectedModes);
-            tableViewer.refresh(false);
+            return;
+        }
+        final Set<ActionOnWrongInvocationMode> selectedModes =
+                Collections.newSetFromMap(
+                        new IdentityHashMap<ActionOnWrongInvocationMode, Boolean>());
+        for (int row : rows) {
+            selectedModes.add(index.get(row));
         }
+        actionModes.removeAll(selectedModes);
+        index.rebuild();
+        refreshTable();
     }
 
     /**
-     * Sets {@link #table} column widths. 
+     * Sets {@link #table} column widths. The virtual table creates only the
+     * visible rows, so the widths are computed from the column headers.
      */
     private void resizeTableColumns() {
-        for (TableColumn column : table.getColumns()) {
-            column.pack();
+        final TableColumn[] columns = table.getColumns();
+        final GC gc = new GC(table);
+        try {
+            columns[Column.LABEL.ordinal()].setWidth(
+                    gc.stringExtent(columns[Column.LABEL.ordinal()].getText()).x
+                    + gc.getFontMetrics().getAverageCharWidth() * LABEL_COLUMN_CHARS);
+        } finally {
+            gc.dispose();
         }
+        columns[Column.MODE.ordinal()].pack();
+    }
+
+    /**
+     * Creates the text control to initialize {@link #filterText}.
+     * @return the filter text control. Not <code>null</code>.
+     */
+    private Text createFilterText() {
+        final Text text = new Text(this,
+                SWT.SINGLE | SWT.BORDER | SWT.SEARCH | SWT.ICON_CANCEL);
+        text.setMessage(MESSAGES.get("filterText.message"));
+        final FormData formData = new FormData();
+        formData.left = new FormAttachment(0, 0);
+        formData.top = new FormAttachment(0, 0);
+        formData.right = new FormAttachment(WHOLE_SIZE, 0);
+        text.setLayoutData(formData);
+        text.addModifyListener(new ModifyListener() {
+            public void modifyText(final ModifyEvent e) {
+                onFilterChanged();
+            }
+        });
+        return text;
     }
 
     /**
@@ -184,8 +270,8 @@ class ActionInvocationModeControl extends Composite {
      * @return the table control.
      */
     private Table createTable(final Control aboveControl) {
-        final Table t = new Table(this,
-                SWT.V_SCROLL | SWT.BORDER | SWT.MULTI | SWT.FULL_SELECTION);
+        final Table t = new Table(this, SWT.VIRTUAL
+                | SWT.V_SCROLL | SWT.BORDER | SWT.MULTI | SWT.FULL_SELECTION);
         t.setLinesVisible(true);
         t.setHeaderVisible(true);
         
@@ -208,8 +294,9 @@ class ActionInvocationModeControl extends Composite {
      */
     private TableViewer createTableViewer() {
         final TableViewer viewer = new TableViewer(table);
+        viewer.setUseHashlookup(true);
         viewer.setContentProvider(
-                new ActionInvocationModeTableContentProvider());
+                new ActionInvocationModeTableContentProvider(viewer, index));
         viewer.setLabelProvider(
                 new ActionInvocationModeTableLabelProvider());
 
@@ -223,29 +310,36 @@ class ActionInvocationModeControl extends Composite {
         viewer.setCellModifier(
                 new ActionInvocationModeTableCellModifier(viewer));
         viewer.setInput(actionModes);
+        viewer.setItemCount(index.size());
         return viewer;
     }
 
+    private ComboBoxCellEditor createOnWrongInvocationModeCellEditor() {
+        return new ComboBoxCellEditor(table,
+                OnWrongInvocationMode.getLabels(),
+                SWT.READ_ONLY);
+    }
+
     /**
-     * Clones the action invocation control preferences for the table content. 
+     * Clones the action invocation control preferences for the table content.
+     * The preferences are shared with the other threads, so they are not
+     * edited directly.
      * @return the table content. Never <code>null</code>, can be empty.
-     * Sorted by label.
      */
     private List<ActionOnWrongInvocationMode> createActionModes() {
         final List<ActionOnWrongInvocationMode> modes =
-            new ArrayList<ActionOnWrongInvocationMode>(
-                    preferences.getActionsOnWrongInvocationMode());
-        Collections.sort(modes,
-                new ActionOnWrongInvocationMode.LabelComparator());
+                new ArrayList<ActionOnWrongInvocationMode>();
+        for (ActionOnWrongInvocationMode mode
+                : preferences.getActionsOnWrongInvocationMode()) {
+            try {
+                modes.add((ActionOnWrongInvocationMode) mode.clone());
+            } catch (final CloneNotSupportedException e) {
+                throw new RuntimeException(e);
+            }
+        }
         return modes;
     }
 
-    private ComboBoxCellEditor createOnWrongInvocationModeCellEditor() {
-        return new ComboBoxCellEditor(table,
-                OnWrongInvocationMode.getLabels(),
-                SWT.READ_ONLY);
-    }
-
     /**
      * Creates the button to allow user to remove the table entries.
      * @return a new remove button. Not <code>null</code>. 
@@ -267,6 +361,58 @@ class ActionInvocationModeControl extends Composite {
         return b;
     }
 
+    /**
+     * Creates the button to allow user to add the id prefix or the command
+     * category rules.
+     * @param rightControl the control to the right.
+     * @return a new add rule button. Not <code>null</code>.
+     */
+    private Button createAddRuleButton(final Control rightControl) {
+        final Button b = new Button(this, SWT.PUSH);
+        final FormData formData = new FormData();
+        formData.right = new FormAttachment(rightControl, -H_OFFSET, SWT.LEFT);
+        formData.bottom = new FormAttachment(WHOLE_SIZE);
+        b.setLayoutData(formData);
+
+        b.setText(MESSAGES.get("addRuleButton.label"));
+        b.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(final SelectionEvent e) {
+                addRule();
+            }
+        });
+        return b;
+    }
+
+    /**
+     * Asks user for a rule pattern, adds the rule to {@link #actionModes}
+     * with the default invocation mode.
+     */
+    private void addRule() {
+        final InputDialog dialog = new InputDialog(getShell(),
+                MESSAGES.get("addRuleDialog.title"),
+                MESSAGES.get("addRuleDialog.message",
+                        OnWrongInvocationModeRules.WILDCARD,
+                        OnWrongInvocationModeRules.CATEGORY_PREFIX),
+                "", new RuleValidator());
+        if (dialog.open() != Window.OK) {
+            return;
+        }
+        final String pattern = dialog.getValue().trim();
+        final ActionOnWrongInvocationMode rule =
+                new ActionOnWrongInvocationMode();
+        rule.setId(pattern);
+        rule.setLabel(pattern);
+        rule.setOnWrongInvocationMode(preferences.getOnWrongInvocationMode());
+        actionModes.add(rule);
+        filterText.setText("");
+        index.rebuild();
+        refreshTable();
+        table.setSelection(index.indexOf(rule));
+        table.showSelection();
+        onTableSelectionChanged();
+    }
+
     /**
      * Creates a label with reminder how to add new entries to the table.
      * @param rightControl the control to the right.
@@ -286,14 +432,14 @@ class ActionInvocationModeControl extends Composite {
 
     /**
      * Positions {@link #table}.
-     * @param aboveControl the control above this one. Can be <code>null</code>.
+     * @param aboveControl the control above this one. Assumed not <code>null</code>.
      * @param belowControl the control below this one.
      * Assumed not <code>null</code>.
      */
-    private void layoutTable(final Control belowControl) {
+    private void layoutTable(final Control aboveControl, final Control belowControl) {
         final FormData formData = new FormData();
         formData.left = new FormAttachment(0, 0);
-        formData.top = new FormAttachment(0, 0);
+        formData.top = new FormAttachment(aboveControl, STACKED_V_OFFSET, SWT.BOTTOM);
         formData.right = new FormAttachment(WHOLE_SIZE, 0);
         formData.bottom = new FormAttachment(
                 belowControl, -STACKED_V_OFFSET, SWT.TOP);
@@ -314,7 +460,28 @@ class ActionInvocationModeControl extends Composite {
      */
     public void clearActionSettings() {
         getActionModes().clear();
-        tableViewer.refresh();
+        index.rebuild();
+        refreshTable();
+    }
+
+    /**
+     * Validates the rule patterns entered by user.
+     */
+    private class RuleValidator implements IInputValidator {
+        /** {@inheritDoc} */
+        public String isValid(final String newText) {
+            final String pattern = newText.trim();
+            if (!OnWrongInvocationModeRules.isPattern(pattern)
+                    || pattern.equals(OnWrongInvocationModeRules.CATEGORY_PREFIX)) {
+                return MESSAGES.get("addRuleDialog.error.notPattern");
+            }
+            for (ActionOnWrongInvocationMode mode : actionModes) {
+                if (mode.getId().equals(pattern)) {
+                    return MESSAGES.get("addRuleDialog.error.exists");
+                }
+            }
+            return null;
+        }
     }
 }
 //COUPLING:ON
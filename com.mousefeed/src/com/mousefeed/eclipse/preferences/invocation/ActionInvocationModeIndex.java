@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences.invocation;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Sorts and filters the action-specific settings shown in
+ * {@link ActionInvocationModeControl} without copying the settings. The sort
+ * order and the filter results are arrays of indexes into the settings list.
+ * Narrowing the filter, e.g. when user types the next character, only
+ * searches the previous matches.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+class ActionInvocationModeIndex {
+    /**
+     * No indexes.
+     */
+    private static final int[] NONE = new int[0];
+
+    /**
+     * The indexed settings.
+     */
+    private final List<ActionOnWrongInvocationMode> modes;
+
+    /**
+     * The lower-case search keys, label and id, indexed as {@link #modes}.
+     */
+    private String[] keys = new String[0];
+
+    /**
+     * The indexes of {@link #modes} sorted by label.
+     */
+    private int[] order = NONE;
+
+    /**
+     * The indexes of the settings matching {@link #filter}, in the sort
+     * order.
+     */
+    private int[] matches = NONE;
+
+    /**
+     * The lower-case filter text.
+     */
+    private String filter = "";
+
+    /**
+     * Constructor.
+     *
+     * @param modes
+     *            the settings to index. The list is not copied, call
+     *            {@link #rebuild()} after it is changed. Not
+     *            <code>null</code>.
+     */
+    public ActionInvocationModeIndex(final List<ActionOnWrongInvocationMode> modes) {
+        notNull(modes);
+        this.modes = modes;
+        rebuild();
+    }
+
+    /**
+     * Recomputes the index after the settings list changed. Keeps the
+     * current filter.
+     */
+    public void rebuild() {
+        final int size = modes.size();
+        keys = new String[size];
+        final Integer[] sorted = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            final ActionOnWrongInvocationMode mode = modes.get(i);
+            keys[i] = (mode.getLabel() + '\n' + mode.getId()).toLowerCase(Locale.ENGLISH);
+            sorted[i] = i;
+        }
+        final Comparator<ActionOnWrongInvocationMode> labelComparator =
+                new ActionOnWrongInvocationMode.LabelComparator();
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            public int compare(final Integer i1, final Integer i2) {
+                return labelComparator.compare(modes.get(i1), modes.get(i2));
+            }
+        });
+        order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = sorted[i];
+        }
+        matches = search(order, filter);
+    }
+
+    /**
+     * Shows only the settings containing the text in their label or id.
+     *
+     * @param text
+     *            the filter text. Case-insensitive. Not <code>null</code>,
+     *            empty to show all the settings.
+     */
+    public void setFilter(final String text) {
+        notNull(text);
+        final String newFilter = text.trim().toLowerCase(Locale.ENGLISH);
+        if (newFilter.equals(filter)) {
+            return;
+        }
+        // a longer filter containing the previous one can only match a subset
+        final int[] candidates = newFilter.contains(filter) ? matches : order;
+        filter = newFilter;
+        matches = search(candidates, filter);
+    }
+
+    /**
+     * Finds the candidates matching the filter.
+     *
+     * @param candidates
+     *            the indexes to search in the sort order. Assumed not
+     *            <code>null</code>.
+     * @param text
+     *            the lower-case filter. Assumed not <code>null</code>.
+     * @return the matching indexes in the sort order. Never
+     *         <code>null</code>.
+     */
+    private int[] search(final int[] candidates, final String text) {
+        if (text.length() == 0) {
+            return order;
+        }
+        final int[] found = new int[candidates.length];
+        int count = 0;
+        for (int candidate : candidates) {
+            if (keys[candidate].contains(text)) {
+                found[count++] = candidate;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * The number of settings matching the filter.
+     *
+     * @return the number of shown settings.
+     */
+    public int size() {
+        return matches.length;
+    }
+
+    /**
+     * The shown setting.
+     *
+     * @param row
+     *            the row in the sorted and filtered view. Between 0 and
+     *            {@link #size()}.
+     * @return the setting. Never <code>null</code>.
+     */
+    public ActionOnWrongInvocationMode get(final int row) {
+        return modes.get(matches[row]);
+    }
+
+    /**
+     * The row showing the setting.
+     *
+     * @param mode
+     *            the setting. Not <code>null</code>.
+     * @return the row in the sorted and filtered view. -1 if the setting is
+     *         not shown.
+     */
+    public int indexOf(final ActionOnWrongInvocationMode mode) {
+        notNull(mode);
+        for (int row = 0; row < matches.length; row++) {
+            if (modes.get(matches[row]) == mode) {
+                return row;
+            }
+        }
+        return -1;
+    }
+}
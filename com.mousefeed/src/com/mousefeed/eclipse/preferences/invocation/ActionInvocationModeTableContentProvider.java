@@ -18,25 +18,50 @@
  */
 package com.mousefeed.eclipse.preferences.invocation;
 
-import java.util.Collection;
-import org.eclipse.jface.viewers.IStructuredContentProvider;
+import static org.apache.commons.lang.Validate.notNull;
+
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.Viewer;
 
 /**
+ * Lazy content provider of the virtual {@link ActionInvocationModeControl}
+ * table. Provides only the rows the table shows, taking them from
+ * {@link ActionInvocationModeIndex}.
  * 
  * @author Andriy Palamarchuk
+ * @author Rabea Gransberger (@rgransberger)
  */
 public class ActionInvocationModeTableContentProvider implements
-        IStructuredContentProvider {
+        ILazyContentProvider {
+    /**
+     * The table viewer to provide the content for.
+     */
+    private final TableViewer viewer;
+
+    /**
+     * The sorted and filtered settings.
+     */
+    private final ActionInvocationModeIndex index;
 
     /**
-     * Default constructor does nothing.
+     * Constructor.
+     * @param viewer the table viewer to provide the content for.
+     * Not <code>null</code>.
+     * @param index the sorted and filtered settings to show.
+     * Not <code>null</code>.
      */
-    public ActionInvocationModeTableContentProvider() {
+    ActionInvocationModeTableContentProvider(final TableViewer viewer,
+            final ActionInvocationModeIndex index) {
+        notNull(viewer);
+        notNull(index);
+        this.viewer = viewer;
+        this.index = index;
     }
-    
-    public Object[] getElements(final Object inputElement) {
-        return ((Collection<?>) inputElement).toArray();
+
+    // see base
+    public void updateElement(final int row) {
+        viewer.replace(index.get(row), row);
     }
 
     /**
@@ -45,6 +70,6 @@ public class ActionInvocationModeTableContentProvider implements
     public void dispose() {}
 
     // see base
-    public void inputChanged(final Viewer viewer, final Object oldInput, final Object newInput) {
+    public void inputChanged(final Viewer v, final Object oldInput, final Object newInput) {
     }
 }
@@ -30,6 +30,8 @@ import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.ComboFieldEditor;
 import org.eclipse.jface.preference.FieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.FileFieldEditor;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.ui.IWorkbench;
@@ -71,6 +73,8 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
         addEditor(new ComboFieldEditor(PreferenceConstants.P_DEFAULT_ON_WRONG_INVOCATION_MODE,
                 MESSAGES.get("field.defaultOnWrongInvocationMode.label"), createInvocationModeInput(),
                 getFieldEditorParent()));
+        addEditor(new BooleanFieldEditor(PreferenceConstants.P_PRESENTATION_HUD,
+                MESSAGES.get("field.presentationHudCheckbox.label"), getFieldEditorParent()));
 
         GridDataFactory.fillDefaults().span(2, 1).applyTo(new Label(getFieldEditorParent(), SWT.NONE));
         addEditor(new BooleanFieldEditor(PreferenceConstants.P_CONFIGURE_KEYBOARD_SHORTCUT_ENABLED,
@@ -85,6 +89,31 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
         addEditor(new SpinnerFieldEditor(PreferenceConstants.P_NAG_LISTENER_TIMEOUT,
                 MESSAGES.get("field.nagListenerTimeout.label"), getFieldEditorParent(), 0,
                 (int) TimeUnit.SECONDS.toMillis(60), 1, 1));
+
+        GridDataFactory.fillDefaults().span(2, 1).applyTo(new Label(getFieldEditorParent(), SWT.NONE));
+        final FileFieldEditor sharedPolicyEditor = addEditor(new FileFieldEditor(
+                PreferenceConstants.P_SHARED_INVOCATION_POLICY_FILE,
+                MESSAGES.get("field.sharedInvocationPolicyFile.label"), true, getFieldEditorParent()));
+        sharedPolicyEditor.setFileExtensions(new String[] { "*.xml", "*.*" });
+        sharedPolicyEditor.setEmptyStringAllowed(true);
+        addEditor(new BooleanFieldEditor(PreferenceConstants.P_SHARED_USAGE_JOURNAL,
+                MESSAGES.get("field.sharedUsageJournalCheckbox.label"), getFieldEditorParent()));
+
+        GridDataFactory.fillDefaults().span(2, 1).applyTo(new Label(getFieldEditorParent(), SWT.NONE));
+        addEditor(new BooleanFieldEditor(PreferenceConstants.P_METRICS_EXPORTER_ENABLED,
+                MESSAGES.get("field.metricsExporterEnabledCheckbox.label"), getFieldEditorParent()));
+        final IntegerFieldEditor metricsPortEditor = addEditor(new IntegerFieldEditor(
+                PreferenceConstants.P_METRICS_EXPORTER_PORT, MESSAGES.get("field.metricsExporterPort.label"),
+                getFieldEditorParent()));
+        metricsPortEditor.setValidRange(1, 0xFFFF);
+        addEditor(new SpinnerFieldEditor(PreferenceConstants.P_STALL_BUDGET,
+                MESSAGES.get("field.stallBudget.label"), getFieldEditorParent(), 0, 1000, 1, 10));
+        addEditor(new SpinnerFieldEditor(PreferenceConstants.P_DESCRIPTOR_BUDGET,
+                MESSAGES.get("field.descriptorBudget.label"), getFieldEditorParent(), 0, 1000, 1, 10));
+        addEditor(new BooleanFieldEditor(PreferenceConstants.P_EVENT_TRACE_ENABLED,
+                MESSAGES.get("field.eventTraceEnabledCheckbox.label"), getFieldEditorParent()));
+        addEditor(new SpinnerFieldEditor(PreferenceConstants.P_KEYBOARD_SAMPLING,
+                MESSAGES.get("field.keyboardSampling.label"), getFieldEditorParent(), 1, 100, 1, 10));
     }
 
     private <T extends FieldEditor> T addEditor(T fieldEditor) {
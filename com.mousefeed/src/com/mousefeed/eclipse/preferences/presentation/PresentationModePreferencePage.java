@@ -250,6 +250,7 @@ public class PresentationModePreferencePage extends PreferencePage implements IW
             @Override
             protected void setStringValue(SchemeConfig element, String value) {
                 element.setLabel(value);
+                preferences.presentationModeSchemeConfigChanged();
                 viewer.refresh();
             }
 
@@ -274,6 +275,7 @@ public class PresentationModePreferencePage extends PreferencePage implements IW
             @Override
             protected void setRGBValue(SchemeConfig element, RGB value) {
                 element.setColorCode(value);
+                preferences.presentationModeSchemeConfigChanged();
                 viewer.refresh();
 
             }
@@ -1,5 +1,6 @@
 package com.mousefeed.eclipse.preferences.presentation;
 
+import com.mousefeed.client.collector.SchemeRegistry;
 import org.eclipse.swt.graphics.RGB;
 
 /**
@@ -54,6 +55,17 @@ public class SchemeConfig {
         return schemeId;
     }
 
+    /**
+     * The ordinal of the scheme in {@link SchemeRegistry}, to look up the
+     * scheme accelerator of an action description. Looked up on each call,
+     * because the scheme can be removed while the configuration stays.
+     * {@link SchemeRegistry#NO_ORDINAL} if the scheme is unknown or removed,
+     * for which the action descriptions have no accelerator.
+     */
+    public int getOrdinal() {
+        return SchemeRegistry.getInstance().getOrdinal(schemeId);
+    }
+
     public RGB getColorCode() {
         return colorCode;
     }
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.views;
+
+import com.mousefeed.client.Messages;
+import com.mousefeed.client.collector.ActionUsage;
+import com.mousefeed.client.collector.ActionUsageAggregator;
+import com.mousefeed.eclipse.Activator;
+import java.util.Arrays;
+import java.util.Comparator;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.ui.part.ViewPart;
+
+/**
+ * Shows the mouse and keyboard invocation counts of the actions, the mouse
+ * usage trend and the actions invoked with the mouse most often first.
+ * <p>
+ * The view reads the statistics aggregated by
+ * {@link com.mousefeed.client.collector.Collector}. It checks for changes
+ * once per {@link #REFRESH_INTERVAL} only, skips the refresh when nothing
+ * changed or the view is hidden, and the virtual table creates the rows on
+ * screen only.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class UsageDashboardView extends ViewPart {
+    /**
+     * The view id.
+     */
+    public static final String ID = "com.mousefeed.views.usageDashboard";
+
+    /**
+     * How often the view checks for the statistics changes, in milliseconds.
+     */
+    static final int REFRESH_INTERVAL = 1000;
+
+    /**
+     * The trend below this value is shown as a change.
+     */
+    private static final double TREND_THRESHOLD = 0.05;
+
+    /**
+     * Provides messages text.
+     */
+    private static final Messages MESSAGES = new Messages(UsageDashboardView.class);
+
+    /**
+     * Orders the actions invoked with the mouse most often first.
+     */
+    private static final Comparator<ActionUsage> OFFENDERS_FIRST = new Comparator<ActionUsage>() {
+        public int compare(final ActionUsage u1, final ActionUsage u2) {
+            if (u1.getMouseCount() != u2.getMouseCount()) {
+                return u1.getMouseCount() > u2.getMouseCount() ? -1 : 1;
+            }
+            return u1.getLabel().compareTo(u2.getLabel());
+        }
+    };
+
+    /**
+     * The statistics shown by the view.
+     */
+    private final ActionUsageAggregator aggregator = Activator.getDefault().getCollector().getUsage();
+
+    /**
+     * Shows the totals.
+     */
+    private Label summary;
+
+    /**
+     * Shows the actions.
+     */
+    private Table table;
+
+    /**
+     * The rows of {@link #table}.
+     */
+    private ActionUsage[] rows = new ActionUsage[0];
+
+    /**
+     * The statistics version the view shows. -1 to refresh on first check.
+     */
+    private int shownVersion = -1;
+
+    /**
+     * Checks for the statistics changes while the view is open.
+     */
+    private final Runnable refresher = new Runnable() {
+        public void run() {
+            if (table == null || table.isDisposed()) {
+                return;
+            }
+            if (table.isVisible() && shownVersion != aggregator.getVersion()) {
+                refresh();
+            }
+            table.getDisplay().timerExec(REFRESH_INTERVAL, this);
+        }
+    };
+
+    /** {@inheritDoc} */
+    @Override
+    public void createPartControl(final Composite parent) {
+        parent.setLayout(new GridLayout());
+        summary = new Label(parent, SWT.NONE);
+        summary.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+
+        table = new Table(parent, SWT.VIRTUAL | SWT.FULL_SELECTION | SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER);
+        table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+        table.setHeaderVisible(true);
+        table.setLinesVisible(true);
+        createColumn("column.action", 250);
+        createColumn("column.mouse", 80);
+        createColumn("column.keyboard", 80);
+        createColumn("column.recentMouseShare", 120);
+        createColumn("column.trend", 100);
+        table.addListener(SWT.SetData, new Listener() {
+            public void handleEvent(final Event event) {
+                final TableItem item = (TableItem) event.item;
+                final int index = table.indexOf(item);
+                if (index >= 0 && index < rows.length) {
+                    fillItem(item, rows[index]);
+                }
+            }
+        });
+
+        refresh();
+        table.getDisplay().timerExec(REFRESH_INTERVAL, refresher);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setFocus() {
+        table.setFocus();
+    }
+
+    /**
+     * Creates a table column.
+     *
+     * @param key
+     *            the message key of the column name. Assumed not
+     *            <code>null</code>.
+     * @param width
+     *            the column width.
+     */
+    private void createColumn(final String key, final int width) {
+        final TableColumn column = new TableColumn(table, SWT.NONE);
+        column.setText(MESSAGES.get(key));
+        column.setWidth(width);
+    }
+
+    /**
+     * Shows the current statistics. Only sorts the actions, the table
+     * requests the visible rows from {@link #rows}.
+     */
+    private void refresh() {
+        shownVersion = aggregator.getVersion();
+        rows = aggregator.getUsages();
+        Arrays.sort(rows, OFFENDERS_FIRST);
+        summary.setText(MESSAGES.get("summary", aggregator.getMouseCount(), aggregator.getKeyboardCount(),
+                formatShare(aggregator.getRecentMouseShare())));
+        table.setItemCount(rows.length);
+        table.clearAll();
+    }
+
+    /**
+     * Shows the action statistics in the table item.
+     *
+     * @param item
+     *            the item. Assumed not <code>null</code>.
+     * @param usage
+     *            the action statistics. Assumed not <code>null</code>.
+     */
+    private void fillItem(final TableItem item, final ActionUsage usage) {
+        item.setText(new String[] {usage.getLabel(), Integer.toString(usage.getMouseCount()),
+            Integer.toString(usage.getKeyboardCount()), formatShare(usage.getRecentMouseShare()),
+            formatTrend(usage.getTrend())});
+    }
+
+    /**
+     * Formats the mouse share as percent.
+     *
+     * @param share
+     *            the share, from 0 to 1.
+     * @return the text. Never <code>null</code>.
+     */
+    private String formatShare(final double share) {
+        return Math.round(share * 100) + "%";
+    }
+
+    /**
+     * Describes the trend.
+     *
+     * @param trend
+     *            the trend.
+     * @return the text. Never <code>null</code>.
+     * @see ActionUsage#getTrend()
+     */
+    private String formatTrend(final double trend) {
+        if (trend < -TREND_THRESHOLD) {
+            return MESSAGES.get("trend.keyboard");
+        } else if (trend > TREND_THRESHOLD) {
+            return MESSAGES.get("trend.mouse");
+        } else {
+            return MESSAGES.get("trend.stable");
+        }
+    }
+}
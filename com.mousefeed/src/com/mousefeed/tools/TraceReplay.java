@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.tools;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.FeedbackOutcome;
+import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.client.OnWrongInvocationModeRules;
+import com.mousefeed.client.collector.AbstractActionDesc;
+import com.mousefeed.client.collector.ActionCounts;
+import com.mousefeed.client.collector.ActionIdDictionary;
+import com.mousefeed.client.collector.EventTrace;
+import com.mousefeed.client.collector.TraceEvent;
+import com.mousefeed.client.feedback.FeedbackEngine;
+import com.mousefeed.client.feedback.FeedbackPolicy;
+import com.mousefeed.client.feedback.FeedbackPreferences;
+import com.mousefeed.client.feedback.FeedbackRequest;
+import com.mousefeed.client.feedback.ShortcutBindings;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replays the recorded {@link EventTrace}s through the MouseFeed decision
+ * logic as fast as possible. Reports the throughput, the decision latency
+ * percentiles and the events decided differently than when they were
+ * recorded, e.g. by an older MouseFeed version or with other preferences.
+ * <p>
+ * The traces are loaded into memory before the replay, so the replay measures
+ * the decisions only. The workbench services the decisions depend on are
+ * replaced by the data recorded in the trace: whether the action had an
+ * accelerator and whether a shortcut could be configured for it.
+ * </p>
+ * <p>
+ * Usage:
+ * <code>java -cp mousefeed.jar:commons-lang.jar com.mousefeed.tools.TraceReplay
+ * [-mode MODE] [-rule ACTION_ID=MODE]... [-threshold N] [-no-control] [-no-configure] [-repeat N]
+ * trace...</code>.
+ * The options describe the replayed preferences and default to the MouseFeed
+ * defaults. <code>-repeat</code> replays the traces several times, so the
+ * reported run is not slowed down by the JIT compilation.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class TraceReplay {
+    /**
+     * The maximal number of the reported decision differences.
+     */
+    public static final int MAX_EXAMPLES = 20;
+
+    /**
+     * The reported latency percentiles.
+     */
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * Decides what MouseFeed does about an event.
+     */
+    public interface Decider {
+        /**
+         * Decides about the event. Is called for the events in the order they
+         * were recorded.
+         *
+         * @param event
+         *            the recorded event. Not <code>null</code>.
+         * @return the outcome. Not <code>null</code>.
+         */
+        FeedbackOutcome decide(TraceEvent event);
+    }
+
+    /**
+     * The replay results.
+     */
+    public static final class Report {
+        /**
+         * The decision latencies, sorted, in nanoseconds.
+         */
+        private final long[] latencies;
+
+        /**
+         * The whole replay time, in nanoseconds.
+         */
+        private final long elapsed;
+
+        /**
+         * The number of the different decisions. Keys - "recorded -> replayed".
+         */
+        private final Map<String, Integer> differences;
+
+        /**
+         * The first different decisions.
+         */
+        private final List<String> examples;
+
+        /**
+         * Constructor.
+         *
+         * @param latencies
+         *            the sorted latencies. Assumed not <code>null</code>.
+         * @param elapsed
+         *            the replay time.
+         * @param differences
+         *            the difference counts. Assumed not <code>null</code>.
+         * @param examples
+         *            the difference examples. Assumed not <code>null</code>.
+         */
+        Report(final long[] latencies, final long elapsed, final Map<String, Integer> differences,
+                final List<String> examples) {
+            this.latencies = latencies;
+            this.elapsed = elapsed;
+            this.differences = Collections.unmodifiableMap(differences);
+            this.examples = Collections.unmodifiableList(examples);
+        }
+
+        /**
+         * @return the number of the replayed events.
+         */
+        public int getEventCount() {
+            return latencies.length;
+        }
+
+        /**
+         * @return the replayed events per second.
+         */
+        public double getThroughput() {
+            return elapsed == 0 ? 0 : latencies.length * 1e9 / elapsed;
+        }
+
+        /**
+         * The decision latency percentile.
+         *
+         * @param percentile
+         *            the percentile, from 0 to 1.
+         * @return the latency, in nanoseconds. 0 if no events were replayed.
+         */
+        public long getLatency(final double percentile) {
+            isTrue(percentile >= 0 && percentile <= 1);
+            if (latencies.length == 0) {
+                return 0;
+            }
+            final int rank = (int) Math.ceil(percentile * latencies.length);
+            return latencies[Math.max(0, rank - 1)];
+        }
+
+        /**
+         * @return the number of the events decided differently, by the kind
+         *         of the difference, "recorded -> replayed". Never
+         *         <code>null</code>.
+         */
+        public Map<String, Integer> getDifferences() {
+            return differences;
+        }
+
+        /**
+         * @return the first {@link TraceReplay#MAX_EXAMPLES} events decided
+         *         differently. Never <code>null</code>.
+         */
+        public List<String> getExamples() {
+            return examples;
+        }
+    }
+
+    /**
+     * Decides with {@link FeedbackEngine}. Keeps the invocation counts like
+     * MouseFeed does, and answers the key binding questions of the engine
+     * from the recorded events.
+     */
+    public static class PolicyDecider implements Decider, ShortcutBindings {
+        /**
+         * Decides about the events.
+         */
+        private final FeedbackEngine engine;
+
+        /**
+         * The invocation counts of the actions.
+         */
+        private final ActionCounts counts = new ActionCounts();
+
+        /**
+         * The event being decided about.
+         */
+        private TraceEvent current;
+
+        /**
+         * Constructor.
+         *
+         * @param preferences
+         *            the replayed preferences. Not <code>null</code>.
+         */
+        public PolicyDecider(final FeedbackPreferences preferences) {
+            engine = new FeedbackEngine(preferences, this);
+        }
+
+        /** {@inheritDoc} */
+        public FeedbackOutcome decide(final TraceEvent event) {
+            final String actionId = event.getActionId();
+            if (actionId == null) {
+                return FeedbackOutcome.UNDESCRIBED;
+            }
+            final int ordinal = ActionIdDictionary.getInstance().getOrdinal(actionId);
+            current = event;
+            final FeedbackOutcome outcome = engine.decide(new FeedbackRequest(actionId, ordinal,
+                    event.getCategoryId(), event.hasAccelerator(), counts.get(ordinal)));
+            if (outcome.isCounted() && !AbstractActionDesc.LABEL_ONLY_ID.equals(actionId)) {
+                counts.increment(ordinal);
+            }
+            return outcome;
+        }
+
+        /** {@inheritDoc} */
+        public boolean isConfigurable(final String actionId) {
+            return current.isConfigurable();
+        }
+    }
+
+    /**
+     * Runs the replay from the command line.
+     *
+     * @param args
+     *            the command line arguments, see the class description.
+     * @throws Exception
+     *             if the replay fails.
+     */
+    public static void main(final String[] args) throws Exception {
+        boolean invocationControl = true;
+        boolean configureShortcut = true;
+        int threshold = 2;
+        int repeat = 1;
+        OnWrongInvocationMode mode = OnWrongInvocationMode.DEFAULT;
+        final Map<String, OnWrongInvocationMode> rules = new HashMap<String, OnWrongInvocationMode>();
+        final List<TraceEvent> events = new ArrayList<TraceEvent>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-mode".equals(args[i]) && i + 1 < args.length) {
+                mode = OnWrongInvocationMode.valueOf(args[++i]);
+            } else if ("-rule".equals(args[i]) && i + 1 < args.length) {
+                final String rule = args[++i];
+                final int separator = rule.lastIndexOf('=');
+                rules.put(rule.substring(0, separator), OnWrongInvocationMode.valueOf(rule.substring(separator + 1)));
+            } else if ("-threshold".equals(args[i]) && i + 1 < args.length) {
+                threshold = Integer.parseInt(args[++i]);
+            } else if ("-repeat".equals(args[i]) && i + 1 < args.length) {
+                repeat = Math.max(1, Integer.parseInt(args[++i]));
+            } else if ("-no-control".equals(args[i])) {
+                invocationControl = false;
+            } else if ("-no-configure".equals(args[i])) {
+                configureShortcut = false;
+            } else {
+                events.addAll(load(new File(args[i])));
+            }
+        }
+        if (events.isEmpty()) {
+            System.err.println("Usage: TraceReplay [-mode MODE] [-rule ACTION_ID=MODE]... [-threshold N] "
+                    + "[-no-control] [-no-configure] [-repeat N] trace...");
+            System.exit(1);
+        }
+
+        final OnWrongInvocationModeRules compiledRules = new OnWrongInvocationModeRules(rules);
+        Report report = null;
+        for (int i = 0; i < repeat; i++) {
+            report = replay(events, new PolicyDecider(
+                    new FeedbackPolicy(invocationControl, mode, compiledRules, configureShortcut, threshold)));
+        }
+        final PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        writeReport(report, out);
+        out.flush();
+    }
+
+    /**
+     * Loads the trace into memory.
+     *
+     * @param trace
+     *            the trace file. Not <code>null</code>.
+     * @return the trace events in the recorded order. Never
+     *         <code>null</code>.
+     * @throws IOException
+     *             if the trace could not be read.
+     */
+    public static List<TraceEvent> load(final File trace) throws IOException {
+        notNull(trace);
+        final List<TraceEvent> events = new ArrayList<TraceEvent>();
+        final InputStream in = new FileInputStream(trace);
+        try {
+            EventTrace.read(in, new EventTrace.Visitor() {
+                public void onEvent(final TraceEvent event) {
+                    events.add(event);
+                }
+            });
+        } finally {
+            in.close();
+        }
+        return events;
+    }
+
+    /**
+     * Replays the events.
+     *
+     * @param events
+     *            the events in the recorded order. Not <code>null</code>.
+     * @param decider
+     *            decides about the events. Not <code>null</code>.
+     * @return the replay report. Never <code>null</code>.
+     */
+    public static Report replay(final List<TraceEvent> events, final Decider decider) {
+        notNull(events);
+        notNull(decider);
+        final TraceEvent[] replayed = events.toArray(new TraceEvent[events.size()]);
+        final FeedbackOutcome[] outcomes = new FeedbackOutcome[replayed.length];
+        final long[] latencies = new long[replayed.length];
+
+        final long start = System.nanoTime();
+        long last = start;
+        for (int i = 0; i < replayed.length; i++) {
+            outcomes[i] = decider.decide(replayed[i]);
+            final long now = System.nanoTime();
+            latencies[i] = now - last;
+            last = now;
+        }
+        final long elapsed = last - start;
+
+        final Map<String, Integer> differences = new TreeMap<String, Integer>();
+        final List<String> examples = new ArrayList<String>();
+        for (int i = 0; i < replayed.length; i++) {
+            final FeedbackOutcome recorded = replayed[i].getOutcome();
+            if (recorded != outcomes[i]) {
+                final String kind = recorded + " -> " + outcomes[i];
+                final Integer count = differences.get(kind);
+                differences.put(kind, count == null ? 1 : count + 1);
+                if (examples.size() < MAX_EXAMPLES) {
+                    examples.add(replayed[i] + " -> " + outcomes[i]);
+                }
+            }
+        }
+        Arrays.sort(latencies);
+        return new Report(latencies, elapsed, differences, examples);
+    }
+
+    /**
+     * Writes the report in a human-readable form.
+     *
+     * @param report
+     *            the report. Not <code>null</code>.
+     * @param out
+     *            the output. Not <code>null</code>.
+     */
+    public static void writeReport(final Report report, final PrintWriter out) {
+        notNull(report);
+        notNull(out);
+        out.println("events: " + report.getEventCount());
+        out.println("throughput: " + Math.round(report.getThroughput()) + " events/s");
+        for (double percentile : PERCENTILES) {
+            out.println("latency p" + percentile * 100 + ": " + report.getLatency(percentile) + " ns");
+        }
+        out.println("latency max: " + report.getLatency(1) + " ns");
+        out.println("differences:");
+        for (Map.Entry<String, Integer> entry : report.getDifferences().entrySet()) {
+            out.println("  " + entry.getKey() + ": " + entry.getValue());
+        }
+        for (String example : report.getExamples()) {
+            out.println("  " + example);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.tools;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.UsageJournal;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reports which actions a team still invokes with the mouse. Reads the
+ * MouseFeed usage journals of many users and ranks the actions by the number
+ * of the mouse invocations.
+ * <p>
+ * Each journal is decoded by its own task, streaming the records into the
+ * per-action totals of the journal. The tasks run on a thread pool with a
+ * thread per processor, so the decoding scales with the cores. The per-journal
+ * totals, which are as small as the number of the actions, are merged at the
+ * end.
+ * </p>
+ * <p>
+ * Usage:
+ * <code>java -cp mousefeed.jar:commons-lang.jar com.mousefeed.tools.UsageReport
+ * [-json] [-threads N] journal-or-directory...</code>.
+ * The directories are searched for the files ending with
+ * {@link #JOURNAL_SUFFIX}. The report is written to the standard output as
+ * CSV, or as JSON with <code>-json</code>.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class UsageReport {
+    /**
+     * The suffix of the journal files found in the directories.
+     */
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    /**
+     * Ranks the actions invoked with the mouse most often first.
+     */
+    private static final Comparator<ActionTotals> RANKING = new Comparator<ActionTotals>() {
+        public int compare(final ActionTotals t1, final ActionTotals t2) {
+            if (t1.mouseCount != t2.mouseCount) {
+                return t1.mouseCount > t2.mouseCount ? -1 : 1;
+            }
+            return t1.actionId.compareTo(t2.actionId);
+        }
+    };
+
+    /**
+     * The number of the decoding threads.
+     */
+    private final int threads;
+
+    /**
+     * The usage totals of an action.
+     */
+    public static final class ActionTotals {
+        /**
+         * The action id.
+         */
+        private final String actionId;
+
+        /**
+         * The latest action label.
+         */
+        private String label;
+
+        /**
+         * The number of the mouse invocations.
+         */
+        private long mouseCount;
+
+        /**
+         * The number of the keyboard invocations.
+         */
+        private long keyboardCount;
+
+        /**
+         * The number of the users who invoked the action.
+         */
+        private int userCount;
+
+        /**
+         * Constructor.
+         *
+         * @param actionId
+         *            the action id. Assumed not <code>null</code>.
+         * @param label
+         *            the action label. Assumed not <code>null</code>.
+         */
+        ActionTotals(final String actionId, final String label) {
+            this.actionId = actionId;
+            this.label = label;
+        }
+
+        /**
+         * @return the action id. Never <code>null</code>.
+         */
+        public String getActionId() {
+            return actionId;
+        }
+
+        /**
+         * @return the action label. Never <code>null</code>.
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @return the number of the mouse invocations.
+         */
+        public long getMouseCount() {
+            return mouseCount;
+        }
+
+        /**
+         * @return the number of the keyboard invocations.
+         */
+        public long getKeyboardCount() {
+            return keyboardCount;
+        }
+
+        /**
+         * @return the number of the users who invoked the action.
+         */
+        public int getUserCount() {
+            return userCount;
+        }
+
+        /**
+         * @return the share of the mouse invocations, from 0 to 1.
+         */
+        public double getMouseShare() {
+            final long count = mouseCount + keyboardCount;
+            return count == 0 ? 0 : (double) mouseCount / count;
+        }
+
+        /**
+         * Adds the totals of the same action.
+         *
+         * @param other
+         *            the totals to add. Assumed not <code>null</code>.
+         */
+        void add(final ActionTotals other) {
+            label = other.label;
+            mouseCount += other.mouseCount;
+            keyboardCount += other.keyboardCount;
+            userCount += other.userCount;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param threads
+     *            the number of the decoding threads. Positive.
+     */
+    public UsageReport(final int threads) {
+        isTrue(threads > 0);
+        this.threads = threads;
+    }
+
+    /**
+     * Runs the tool.
+     *
+     * @param args
+     *            the command line arguments. See the class description.
+     * @throws Exception
+     *             on a journal reading failure.
+     */
+    public static void main(final String[] args) throws Exception {
+        boolean json = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        final List<File> journals = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-json".equals(args[i])) {
+                json = true;
+            } else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                collectJournals(new File(args[i]), journals);
+            }
+        }
+        if (journals.isEmpty()) {
+            System.err.println("Usage: UsageReport [-json] [-threads N] journal-or-directory...");
+            System.exit(1);
+        }
+
+        final List<ActionTotals> totals = new UsageReport(threads).aggregate(journals);
+        final Writer out = new OutputStreamWriter(System.out, "UTF-8");
+        if (json) {
+            writeJson(totals, out);
+        } else {
+            writeCsv(totals, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads the journals in parallel and merges their totals.
+     *
+     * @param journals
+     *            the journal files, one per user. Not <code>null</code>.
+     * @return the totals of all the actions, the actions invoked with the
+     *         mouse most often first. Never <code>null</code>.
+     * @throws IOException
+     *             if any of the journals could not be read.
+     */
+    public List<ActionTotals> aggregate(final List<File> journals) throws IOException {
+        notNull(journals);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Map<String, ActionTotals>>> results = new ArrayList<Future<Map<String, ActionTotals>>>();
+            for (final File journal : journals) {
+                results.add(executor.submit(new Callable<Map<String, ActionTotals>>() {
+                    public Map<String, ActionTotals> call() throws IOException {
+                        return readJournal(journal);
+                    }
+                }));
+            }
+
+            final Map<String, ActionTotals> merged = new HashMap<String, ActionTotals>();
+            for (int i = 0; i < results.size(); i++) {
+                for (ActionTotals t : getResult(results.get(i), journals.get(i)).values()) {
+                    final ActionTotals existing = merged.get(t.actionId);
+                    if (existing == null) {
+                        merged.put(t.actionId, t);
+                    } else {
+                        existing.add(t);
+                    }
+                }
+            }
+            final List<ActionTotals> ranked = new ArrayList<ActionTotals>(merged.values());
+            Collections.sort(ranked, RANKING);
+            return ranked;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Decodes a single journal.
+     *
+     * @param journal
+     *            the journal file. Assumed not <code>null</code>.
+     * @return the journal totals, keyed by the action ids. Never
+     *         <code>null</code>.
+     * @throws IOException
+     *             if the journal could not be read.
+     */
+    static Map<String, ActionTotals> readJournal(final File journal) throws IOException {
+        final Map<String, ActionTotals> totals = new HashMap<String, ActionTotals>();
+        final InputStream in = new FileInputStream(journal);
+        try {
+            UsageJournal.read(in, new UsageJournal.Visitor() {
+                public void onRecord(final String actionId, final String label, final int mouseCount,
+                        final int keyboardCount, final long time) {
+                    ActionTotals t = totals.get(actionId);
+                    if (t == null) {
+                        t = new ActionTotals(actionId, label);
+                        t.userCount = 1;
+                        totals.put(actionId, t);
+                    }
+                    t.label = label;
+                    t.mouseCount += mouseCount;
+                    t.keyboardCount += keyboardCount;
+                }
+            });
+        } finally {
+            in.close();
+        }
+        return totals;
+    }
+
+    /**
+     * Waits for the journal task.
+     *
+     * @param result
+     *            the task result. Assumed not <code>null</code>.
+     * @param journal
+     *            the journal the task reads. Assumed not <code>null</code>.
+     * @return the journal totals. Never <code>null</code>.
+     * @throws IOException
+     *             if the journal could not be read.
+     */
+    private static Map<String, ActionTotals> getResult(final Future<Map<String, ActionTotals>> result,
+            final File journal) throws IOException {
+        try {
+            return result.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + journal);
+        } catch (final ExecutionException e) {
+            final IOException ioe = new IOException("Could not read " + journal + ": " + e.getCause().getMessage());
+            ioe.initCause(e.getCause());
+            throw ioe;
+        }
+    }
+
+    /**
+     * Adds the journal files to the list.
+     *
+     * @param file
+     *            a journal, or a directory to search for the journals.
+     *            Assumed not <code>null</code>.
+     * @param journals
+     *            the list to add the journals to. Assumed not
+     *            <code>null</code>.
+     */
+    private static void collectJournals(final File file, final List<File> journals) {
+        if (file.isDirectory()) {
+            final File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (child.isDirectory() || child.getName().endsWith(JOURNAL_SUFFIX)) {
+                        collectJournals(child, journals);
+                    }
+                }
+            }
+        } else {
+            journals.add(file);
+        }
+    }
+
+    /**
+     * Writes the report as CSV with a header line.
+     *
+     * @param totals
+     *            the ranked totals. Not <code>null</code>.
+     * @param writer
+     *            the output. Is not closed. Not <code>null</code>.
+     */
+    public static void writeCsv(final List<ActionTotals> totals, final Writer writer) {
+        notNull(totals);
+        notNull(writer);
+        final PrintWriter out = new PrintWriter(writer);
+        out.print("rank,actionId,label,mouse,keyboard,mouseShare,users\n");
+        int rank = 1;
+        for (ActionTotals t : totals) {
+            out.print(rank++ + "," + csv(t.actionId) + "," + csv(t.label) + "," + t.mouseCount + ","
+                    + t.keyboardCount + "," + formatShare(t.getMouseShare()) + "," + t.userCount + "\n");
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the report as a JSON array of objects.
+     *
+     * @param totals
+     *            the ranked totals. Not <code>null</code>.
+     * @param writer
+     *            the output. Is not closed. Not <code>null</code>.
+     */
+    public static void writeJson(final List<ActionTotals> totals, final Writer writer) {
+        notNull(totals);
+        notNull(writer);
+        final PrintWriter out = new PrintWriter(writer);
+        out.print("[");
+        int rank = 1;
+        for (ActionTotals t : totals) {
+            out.print(rank == 1 ? "\n" : ",\n");
+            out.print("  {\"rank\": " + rank++ + ", \"actionId\": " + json(t.actionId) + ", \"label\": "
+                    + json(t.label) + ", \"mouse\": " + t.mouseCount + ", \"keyboard\": " + t.keyboardCount
+                    + ", \"mouseShare\": " + formatShare(t.getMouseShare()) + ", \"users\": " + t.userCount + "}");
+        }
+        out.print("\n]\n");
+        out.flush();
+    }
+
+    /**
+     * Formats the share with the dot as the decimal separator.
+     *
+     * @param share
+     *            the share, from 0 to 1.
+     * @return the share rounded to 3 decimal digits. Never <code>null</code>.
+     */
+    private static String formatShare(final double share) {
+        return Double.toString(Math.round(share * 1000) / 1000.0);
+    }
+
+    /**
+     * Quotes the value for CSV.
+     *
+     * @param value
+     *            the value. Assumed not <code>null</code>.
+     * @return the quoted value. Never <code>null</code>.
+     */
+    static String csv(final String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Quotes the value as a JSON string.
+     *
+     * @param value
+     *            the value. Assumed not <code>null</code>.
+     * @return the JSON string. Never <code>null</code>.
+     */
+    static String json(final String value) {
+        final StringBuilder b = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c < ' ') {
+                b.append(String.format("\\u%04x", (int) c));
+            } else {
+                b.append(c);
+            }
+        }
+        return b.append('"').toString();
+    }
+}
@@ -20,6 +20,8 @@ package com.mousefeed;
 
 import com.mousefeed.client.AllClientTests;
 import com.mousefeed.eclipse.AllEclipseTests;
+import com.mousefeed.tools.TraceReplayTest;
+import com.mousefeed.tools.UsageReportTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -29,7 +31,8 @@ import org.junit.runners.Suite.SuiteClasses;
  * @author Robert Wloch (robert@rowlo.de)
  */
 @RunWith(Suite.class)
-@SuiteClasses({ AllClientTests.class, AllEclipseTests.class })
+@SuiteClasses({ AllClientTests.class, AllEclipseTests.class, UsageReportTest.class,
+        TraceReplayTest.class })
 public class AllTests {
 
 }
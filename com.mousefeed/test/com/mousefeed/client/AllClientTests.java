@@ -19,7 +19,18 @@
 package com.mousefeed.client;
 
 import com.mousefeed.client.collector.ActionDescTest;
+import com.mousefeed.client.collector.ActionIdDictionaryTest;
+import com.mousefeed.client.collector.ActionInvocationTest;
+import com.mousefeed.client.collector.ActionUsageAggregatorTest;
 import com.mousefeed.client.collector.CollectorTest;
+import com.mousefeed.client.collector.DescriptorSnapshotTest;
+import com.mousefeed.client.collector.EventTraceTest;
+import com.mousefeed.client.collector.SchemeRegistryTest;
+import com.mousefeed.client.collector.UsageJournalTest;
+import com.mousefeed.client.feedback.FeedbackEngineTest;
+import com.mousefeed.client.metrics.BudgetGovernorTest;
+import com.mousefeed.client.metrics.MetricsTest;
+import com.mousefeed.client.metrics.StallWatchdogTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -30,8 +41,12 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({ AssertEnabledTest.class, MessagesTest.class,
-        OnWrongInvocationModeTest.class, ActionDescTest.class,
-        CollectorTest.class })
+        OnWrongInvocationModeTest.class, OnWrongInvocationModeRulesTest.class, FreeChordFinderTest.class,
+        ActionDescTest.class, ActionInvocationTest.class, ActionUsageAggregatorTest.class,
+        CollectorTest.class, SchemeRegistryTest.class, ActionIdDictionaryTest.class,
+        UsageJournalTest.class, DescriptorSnapshotTest.class, EventTraceTest.class,
+        FeedbackEngineTest.class,
+        MetricsTest.class, StallWatchdogTest.class, BudgetGovernorTest.class })
 public class AllClientTests {
 
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client;
+
+import static com.mousefeed.client.FreeChordFinder.NO_CHORD;
+import static org.junit.Assert.assertEquals;
+
+import java.util.BitSet;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class FreeChordFinderTest {
+    private static final int CTRL_ALT = 1;
+    private static final int CTRL_SHIFT = 2;
+    private static final String WINDOW = "window";
+    private static final String EDITOR = "editor";
+    private static final String JAVA_EDITOR = "javaEditor";
+
+    private FreeChordFinder newFinder() {
+        final FreeChordFinder finder = new FreeChordFinder(new int[] {CTRL_ALT, CTRL_SHIFT}, new int[] {'A', 'B', 'C'});
+        finder.setParent(EDITOR, WINDOW);
+        finder.setParent(JAVA_EDITOR, EDITOR);
+        return finder;
+    }
+
+    @Test public void chordSpace() {
+        final FreeChordFinder finder = newFinder();
+        final int chord = finder.getChord(CTRL_SHIFT, 'B');
+        assertEquals(CTRL_SHIFT, finder.getModifiers(chord));
+        assertEquals('B', finder.getKey(chord));
+        assertEquals(NO_CHORD, finder.getChord(CTRL_SHIFT, 'Z'));
+        assertEquals(NO_CHORD, finder.getChord(0, 'A'));
+    }
+
+    @Test public void preferenceOrder() {
+        final FreeChordFinder finder = newFinder();
+        assertEquals(finder.getChord(CTRL_ALT, 'A'), finder.find(WINDOW, "", null));
+        finder.use(WINDOW, CTRL_ALT, 'A');
+        assertEquals(finder.getChord(CTRL_ALT, 'B'), finder.find(WINDOW, "", null));
+    }
+
+    @Test public void hintLettersFirst() {
+        final FreeChordFinder finder = newFinder();
+        assertEquals(finder.getChord(CTRL_ALT, 'C'), finder.find(WINDOW, "CLOSE", null));
+        finder.use(WINDOW, CTRL_ALT, 'C');
+        // tries the hint with the other modifiers before the other keys
+        assertEquals(finder.getChord(CTRL_SHIFT, 'C'), finder.find(WINDOW, "CLOSE", null));
+    }
+
+    @Test public void contextHierarchy() {
+        final FreeChordFinder finder = newFinder();
+        // the parent binding is active in the child context
+        finder.use(WINDOW, CTRL_ALT, 'A');
+        assertEquals(finder.getChord(CTRL_ALT, 'B'), finder.find(JAVA_EDITOR, "", null));
+        // the child binding would shadow the binding in the parent context
+        finder.use(JAVA_EDITOR, CTRL_ALT, 'B');
+        assertEquals(finder.getChord(CTRL_ALT, 'C'), finder.find(WINDOW, "", null));
+        // the sibling context bindings don't matter
+        finder.use("dialog", CTRL_ALT, 'C');
+        assertEquals(finder.getChord(CTRL_ALT, 'C'), finder.find(EDITOR, "", null));
+    }
+
+    @Test public void excluded() {
+        final FreeChordFinder finder = newFinder();
+        final BitSet excluded = new BitSet();
+        excluded.set(finder.getChord(CTRL_ALT, 'A'));
+        assertEquals(finder.getChord(CTRL_SHIFT, 'A'), finder.find(WINDOW, "A", excluded));
+        assertEquals(finder.getChord(CTRL_ALT, 'B'), finder.find(WINDOW, "", excluded));
+    }
+
+    @Test public void allUsed() {
+        final FreeChordFinder finder = newFinder();
+        for (int modifiers : new int[] {CTRL_ALT, CTRL_SHIFT}) {
+            for (char key = 'A'; key <= 'C'; key++) {
+                finder.use(EDITOR, modifiers, key);
+            }
+        }
+        assertEquals(NO_CHORD, finder.find(EDITOR, "ABC", null));
+    }
+}
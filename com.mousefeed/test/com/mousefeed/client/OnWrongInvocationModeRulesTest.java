@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client;
+
+import static com.mousefeed.client.OnWrongInvocationMode.DO_NOTHING;
+import static com.mousefeed.client.OnWrongInvocationMode.ENFORCE;
+import static com.mousefeed.client.OnWrongInvocationMode.PRESENTATION;
+import static com.mousefeed.client.OnWrongInvocationMode.REMIND;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class OnWrongInvocationModeRulesTest {
+    private static final String JAVA_EDIT = "org.eclipse.jdt.ui.edit.text.java.";
+
+    @Test public void empty() {
+        assertNull(OnWrongInvocationModeRules.EMPTY.resolve("a.b", "c"));
+    }
+
+    @Test public void exact() {
+        final Map<String, OnWrongInvocationMode> rules = new HashMap<String, OnWrongInvocationMode>();
+        rules.put("a.b", ENFORCE);
+        final OnWrongInvocationModeRules r = new OnWrongInvocationModeRules(rules);
+        assertEquals(ENFORCE, r.resolve("a.b", null));
+        assertNull(r.resolve("a.bc", null));
+        assertNull(r.resolve("a.", null));
+    }
+
+    @Test public void mostSpecificWins() {
+        final Map<String, OnWrongInvocationMode> rules = new HashMap<String, OnWrongInvocationMode>();
+        rules.put("*", DO_NOTHING);
+        rules.put("org.eclipse.*", PRESENTATION);
+        rules.put(JAVA_EDIT + "*", ENFORCE);
+        rules.put(JAVA_EDIT + "format", DO_NOTHING);
+        rules.put("category:edit", REMIND);
+        final OnWrongInvocationModeRules r = new OnWrongInvocationModeRules(rules);
+
+        assertEquals(DO_NOTHING, r.resolve(JAVA_EDIT + "format", "edit"));
+        assertEquals(ENFORCE, r.resolve(JAVA_EDIT + "comment", "edit"));
+        assertEquals(PRESENTATION, r.resolve("org.eclipse.ui.file.save", "edit"));
+        assertEquals(REMIND, r.resolve("com.other.action", "edit"));
+        assertEquals(DO_NOTHING, r.resolve("com.other.action", "file"));
+        assertEquals(DO_NOTHING, r.resolve("com.other.action", null));
+    }
+
+    @Test public void lockedCategory() {
+        final Map<String, OnWrongInvocationMode> rules = new HashMap<String, OnWrongInvocationMode>();
+        rules.put("category:edit", ENFORCE);
+        rules.put("org.eclipse.*", PRESENTATION);
+        rules.put("org.eclipse.ui.edit.copy", DO_NOTHING);
+        rules.put("org.eclipse.ui.edit.paste", REMIND);
+        final Set<String> locked = new HashSet<String>();
+        locked.add("category:edit");
+        locked.add("org.eclipse.ui.edit.paste");
+        final OnWrongInvocationModeRules r = new OnWrongInvocationModeRules(rules, locked);
+
+        assertEquals(ENFORCE, r.resolve("org.eclipse.ui.edit.copy", "edit"));
+        assertEquals(ENFORCE, r.resolve("org.eclipse.ui.edit.cut", "edit"));
+        // a locked rule is more specific
+        assertEquals(REMIND, r.resolve("org.eclipse.ui.edit.paste", "edit"));
+        assertEquals(DO_NOTHING, r.resolve("org.eclipse.ui.edit.copy", "file"));
+    }
+
+    @Test public void isPattern() {
+        assertTrue(OnWrongInvocationModeRules.isPattern("a.*"));
+        assertTrue(OnWrongInvocationModeRules.isPattern("category:edit"));
+        assertFalse(OnWrongInvocationModeRules.isPattern("a.b"));
+    }
+}
@@ -56,5 +56,29 @@ public class ActionDescTest {
         assertTrue(d.hasAccelerator());
     }
     
+    @Test public void setAccelerator_scheme() {
+        final AbstractActionDesc d = new TestActionDesc();
+        assertNull(d.getAccelerator(5));
+        d.setAccelerator(5, "Ctrl+A");
+        assertEquals("Ctrl+A", d.getAccelerator(5));
+        assertNull(d.getAccelerator(4));
+        assertNull(d.getAccelerator(SchemeRegistry.NO_ORDINAL));
+        assertFalse(d.hasAccelerator());
+        d.setAccelerator(SchemeRegistry.DEFAULT_ORDINAL, "Ctrl+B");
+        assertEquals("Ctrl+B", d.getAccelerator());
+        assertEquals("Ctrl+A", d.getAccelerator(5));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void freeze() {
+        final AbstractActionDesc d = new TestActionDesc();
+        d.setLabel("abc");
+        assertFalse(d.isFrozen());
+        d.freeze();
+        assertTrue(d.isFrozen());
+        assertEquals("abc", d.getLabel());
+        d.setAccelerator("something");
+    }
+
     private static class TestActionDesc extends AbstractActionDesc {}
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class ActionIdDictionaryTest {
+
+    @Test public void ordinals() {
+        final ActionIdDictionary dictionary = new ActionIdDictionary();
+        assertEquals(ActionIdDictionary.NO_ORDINAL, dictionary.find("a.b"));
+        assertEquals(0, dictionary.getOrdinal("a.b"));
+        assertEquals(1, dictionary.getOrdinal("a.c"));
+        assertEquals(0, dictionary.getOrdinal("a.b"));
+        assertEquals(1, dictionary.find("a.c"));
+        assertEquals("a.c", dictionary.getId(1));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getId_unknown() {
+        new ActionIdDictionary().getId(0);
+    }
+
+    @Test public void counts() {
+        final ActionCounts counts = new ActionCounts();
+        assertEquals(0, counts.get(1000));
+        assertEquals(1, counts.increment(1000));
+        assertEquals(2, counts.increment(1000));
+        assertEquals(1, counts.increment(3));
+        assertEquals(2, counts.get(1000));
+    }
+
+    @Test public void codec() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final CompactCodec.Encoder encoder = new CompactCodec.Encoder(new DataOutputStream(bytes));
+        encoder.writeVarLong(0);
+        encoder.writeVarLong(300);
+        encoder.writeVarLong(Long.MAX_VALUE);
+        encoder.writeString("org.eclipse.ui.edit.copy");
+        encoder.writeString(null);
+        encoder.writeString("org.eclipse.ui.edit.copy");
+        final int repeated = bytes.size();
+        encoder.writeString("org.eclipse.ui.edit.copy");
+        // the repeated id is a single byte reference
+        assertEquals(repeated + 1, bytes.size());
+
+        final CompactCodec.Decoder decoder =
+                new CompactCodec.Decoder(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(0, decoder.readVarLong());
+        assertEquals(300, decoder.readVarInt());
+        assertEquals(Long.MAX_VALUE, decoder.readVarLong());
+        assertEquals("org.eclipse.ui.edit.copy", decoder.readString());
+        assertNull(decoder.readString());
+        assertEquals("org.eclipse.ui.edit.copy", decoder.readString());
+        assertEquals("org.eclipse.ui.edit.copy", decoder.readString());
+    }
+
+    @Test(expected = IOException.class)
+    public void codec_unknownReference() throws IOException {
+        new CompactCodec.Decoder(new DataInputStream(new ByteArrayInputStream(new byte[] {5}))).readString();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.eclipse.swt.graphics.Point;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class ActionInvocationTest {
+
+    @Test public void getCaretLocation_lazy() {
+        final CountingCaretLocator locator = new CountingCaretLocator();
+        final ActionInvocation invocation = new ActionInvocation(new TestActionDesc(), locator);
+        assertEquals(0, locator.calls);
+        assertEquals(new Point(1, 2), invocation.getCaretLocation());
+        assertEquals(new Point(1, 2), invocation.getCaretLocation());
+        assertEquals(1, locator.calls);
+    }
+
+    @Test public void getCaretLocation_noLocator() {
+        assertNull(new ActionInvocation(new TestActionDesc(), null).getCaretLocation());
+    }
+
+    private static class CountingCaretLocator implements CaretLocator {
+        private int calls;
+
+        public Point findCaretLocation() {
+            calls++;
+            return new Point(1, 2);
+        }
+    }
+
+    private static class TestActionDesc extends AbstractActionDesc {}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class ActionUsageAggregatorTest {
+    private static final double DELTA = 0.0001;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_zeroSmoothing() {
+        new ActionUsageAggregator(0);
+    }
+
+    @Test public void counts() {
+        final ActionUsageAggregator a = new ActionUsageAggregator();
+        assertEquals(0, a.getUsages().length);
+        final int version = a.getVersion();
+
+        a.onAction(newAction("Copy"), false);
+        a.onAction(newAction("Copy"), true);
+        a.onAction(newAction("Paste"), false);
+        assertEquals(version + 3, a.getVersion());
+        assertEquals(2, a.getMouseCount());
+        assertEquals(1, a.getKeyboardCount());
+        assertEquals(2, a.getUsages().length);
+        assertEquals("Copy", a.getUsages()[0].getActionId());
+
+        final ActionUsage copy = a.getUsage("Copy");
+        assertEquals(1, copy.getMouseCount());
+        assertEquals(1, copy.getKeyboardCount());
+        assertNull(a.getUsage("Cut"));
+    }
+
+    @Test public void recentMouseShare() {
+        final ActionUsageAggregator a = new ActionUsageAggregator(0.5);
+        a.onAction(newAction("Copy"), false);
+        assertEquals(1, a.getUsage("Copy").getRecentMouseShare(), DELTA);
+        a.onAction(newAction("Copy"), true);
+        assertEquals(0.5, a.getUsage("Copy").getRecentMouseShare(), DELTA);
+        a.onAction(newAction("Copy"), true);
+        assertEquals(0.25, a.getUsage("Copy").getRecentMouseShare(), DELTA);
+        assertEquals(0.25, a.getRecentMouseShare(), DELTA);
+        // the user switches to the keyboard
+        assertTrue(a.getUsage("Copy").getTrend() < 0);
+    }
+
+    @Test public void onAction_weight() {
+        final ActionUsageAggregator a = new ActionUsageAggregator(0.5);
+        a.onAction(newAction("Copy"), false);
+        a.onAction(newAction("Copy"), true, 2);
+        assertEquals(1, a.getUsage("Copy").getMouseCount());
+        assertEquals(2, a.getUsage("Copy").getKeyboardCount());
+        assertEquals(2, a.getKeyboardCount());
+        // the same as two unweighted keyboard invocations
+        assertEquals(0.25, a.getUsage("Copy").getRecentMouseShare(), DELTA);
+        assertEquals(0.25, a.getRecentMouseShare(), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onAction_zeroWeight() {
+        new ActionUsageAggregator().onAction(newAction("Copy"), true, 0);
+    }
+
+    private AbstractActionDesc newAction(final String label) {
+        final AbstractActionDesc action = new AbstractActionDesc() {};
+        action.setLabel(label);
+        return action;
+    }
+}
@@ -47,5 +47,47 @@ public class CollectorTest {
         assertEquals(action, c.getLastAction());
     }
 
+    @Test public void onAction_keyboardSampling() {
+        final Collector c = new Collector();
+        assertEquals(Collector.DEFAULT_KEYBOARD_SAMPLING, c.getKeyboardSampling());
+        c.setKeyboardSampling(4);
+
+        final AbstractActionDesc action = new TestActionDesc();
+        action.setLabel(LABEL);
+        int recorded = 0;
+        for (int i = 0; i < 40; i++) {
+            final int weight = c.onAction(action, true);
+            assertEquals(action, c.getLastAction());
+            if (weight > 0) {
+                assertEquals(4, weight);
+                recorded++;
+            }
+            // mouse invocations are never skipped
+            assertEquals(1, c.onAction(action, false));
+        }
+        assertEquals(10, recorded);
+        assertEquals(40, c.getUsage().getUsage(LABEL).getKeyboardCount());
+        assertEquals(40, c.getUsage().getUsage(LABEL).getMouseCount());
+    }
+
+    @Test public void onAction_keyboardSamplingUnbiased() {
+        final Collector c = new Collector();
+        c.setKeyboardSampling(4);
+        // each action invoked 3 times, fewer than the sampling interval
+        for (int i = 0; i < 8; i++) {
+            final AbstractActionDesc action = new TestActionDesc();
+            action.setLabel(LABEL + " sampled " + i);
+            for (int j = 0; j < 3; j++) {
+                c.onAction(action, true);
+            }
+        }
+        assertEquals(24, c.getUsage().getKeyboardCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setKeyboardSampling_zero() {
+        new Collector().setKeyboardSampling(0);
+    }
+
     private static class TestActionDesc extends AbstractActionDesc {}
 }
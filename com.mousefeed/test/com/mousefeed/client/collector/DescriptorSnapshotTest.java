@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class DescriptorSnapshotTest {
+    private File file;
+
+    @Before public void createFile() throws IOException {
+        file = File.createTempFile("descriptors", ".snapshot");
+        file.delete();
+    }
+
+    @After public void deleteFile() {
+        file.delete();
+    }
+
+    @Test public void writeAndRead() throws IOException {
+        final DescriptorSnapshot snapshot = new DescriptorSnapshot(42);
+        assertFalse(snapshot.isDirty());
+        final Map<String, String> accelerators = new HashMap<String, String>();
+        accelerators.put(AbstractActionDesc.DEFAULT_ACCELERATOR_KEY, "Ctrl+C");
+        accelerators.put("emacs", "Alt+W");
+        snapshot.put("copy", 1, new DescriptorSnapshot.Entry("Copy", "edit", accelerators));
+        snapshot.put("copy", 2, new DescriptorSnapshot.Entry("Copy", null, new HashMap<String, String>()));
+        assertTrue(snapshot.isDirty());
+        snapshot.write(file);
+        assertFalse(snapshot.isDirty());
+
+        final DescriptorSnapshot read = DescriptorSnapshot.read(file, 42);
+        assertEquals(2, read.size());
+        assertFalse(read.isDirty());
+        final DescriptorSnapshot.Entry entry = read.get("copy", 1);
+        assertEquals("Copy", entry.getLabel());
+        assertEquals("edit", entry.getCategoryId());
+        assertEquals(accelerators, entry.getAccelerators());
+        assertNull(read.get("copy", 2).getCategoryId());
+        assertTrue(read.get("copy", 2).getAccelerators().isEmpty());
+        assertNull(read.get("copy", 3));
+    }
+
+    @Test public void otherConfig() throws IOException {
+        new DescriptorSnapshot(42).write(file);
+        assertNull(DescriptorSnapshot.read(file, 43));
+    }
+
+    @Test public void missingOrDamaged() throws IOException {
+        assertNull(DescriptorSnapshot.read(file, 42));
+
+        final DescriptorSnapshot snapshot = new DescriptorSnapshot(42);
+        snapshot.put("copy", 1, new DescriptorSnapshot.Entry("Copy", null, new HashMap<String, String>()));
+        snapshot.write(file);
+        final RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(file.length() - 3);
+        truncated.close();
+        assertNull(DescriptorSnapshot.read(file, 42));
+    }
+
+    @Test public void replacesFile() throws IOException {
+        final DescriptorSnapshot snapshot = new DescriptorSnapshot(42);
+        snapshot.write(file);
+        snapshot.put("copy", 1, new DescriptorSnapshot.Entry("Copy", null, new HashMap<String, String>()));
+        snapshot.write(file);
+        assertEquals(1, DescriptorSnapshot.read(file, 42).size());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test public void hash() {
+        assertEquals(DescriptorSnapshot.hash("a"), DescriptorSnapshot.hash("a"));
+        assertFalse(DescriptorSnapshot.hash("a") == DescriptorSnapshot.hash("b"));
+    }
+}
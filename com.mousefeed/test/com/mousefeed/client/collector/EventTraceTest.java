@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.mousefeed.client.FeedbackOutcome;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class EventTraceTest {
+    @Test public void writeAndRead() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final EventTrace.Writer writer = new EventTrace.Writer(bytes, 1000);
+        writer.write(new TraceEvent(1005, TraceEvent.Source.MENU_ITEM, TraceEvent.ItemType.COMMAND,
+                "org.eclipse.ui.edit.copy", "org.eclipse.ui.category.edit", true, false, false,
+                FeedbackOutcome.REMIND));
+        writer.write(new TraceEvent(300000, TraceEvent.Source.COMMAND, TraceEvent.ItemType.NONE,
+                "org.eclipse.ui.edit.copy", null, true, true, false, FeedbackOutcome.ENFORCE));
+        writer.write(new TraceEvent(300001, TraceEvent.Source.TOOL_ITEM, TraceEvent.ItemType.ACTION,
+                null, null, false, false, true, FeedbackOutcome.UNDESCRIBED));
+        writer.close();
+        // the second session starts a new id table
+        final EventTrace.Writer second = new EventTrace.Writer(bytes, 500000);
+        second.write(new TraceEvent(500001, TraceEvent.Source.MENU_ITEM, TraceEvent.ItemType.HANDLED,
+                "save", null, false, false, true, FeedbackOutcome.CONFIGURE_SHORTCUT));
+        second.close();
+
+        final List<TraceEvent> events = read(bytes.toByteArray());
+        assertEquals(4, events.size());
+        final TraceEvent copy = events.get(0);
+        assertEquals(1005, copy.getTime());
+        assertEquals(TraceEvent.Source.MENU_ITEM, copy.getSource());
+        assertEquals(TraceEvent.ItemType.COMMAND, copy.getItemType());
+        assertEquals("org.eclipse.ui.edit.copy", copy.getActionId());
+        assertEquals("org.eclipse.ui.category.edit", copy.getCategoryId());
+        assertTrue(copy.hasAccelerator());
+        assertFalse(copy.isKeyboard());
+        assertEquals(FeedbackOutcome.REMIND, copy.getOutcome());
+        final TraceEvent command = events.get(1);
+        assertEquals(300000, command.getTime());
+        assertEquals("org.eclipse.ui.edit.copy", command.getActionId());
+        assertNull(command.getCategoryId());
+        assertTrue(command.isKeyboard());
+        final TraceEvent undescribed = events.get(2);
+        assertNull(undescribed.getActionId());
+        assertTrue(undescribed.isConfigurable());
+        assertEquals(FeedbackOutcome.UNDESCRIBED, undescribed.getOutcome());
+        final TraceEvent save = events.get(3);
+        assertEquals(500001, save.getTime());
+        assertEquals("save", save.getActionId());
+        assertEquals(TraceEvent.ItemType.HANDLED, save.getItemType());
+    }
+
+    @Test public void truncated() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final EventTrace.Writer writer = new EventTrace.Writer(bytes, 0);
+        for (int i = 0; i < 2; i++) {
+            writer.write(new TraceEvent(i, TraceEvent.Source.COMMAND, TraceEvent.ItemType.NONE,
+                    "command" + i, null, true, true, false, FeedbackOutcome.DO_NOTHING));
+        }
+        writer.close();
+        final byte[] content = bytes.toByteArray();
+        assertEquals(1, read(Arrays.copyOf(content, content.length - 1)).size());
+    }
+
+    @Test(expected = IOException.class) public void notATrace() throws IOException {
+        read("not a trace".getBytes("UTF-8"));
+    }
+
+    @Test public void anonymize() {
+        assertNull(EventTrace.anonymize(null));
+        assertEquals("org.eclipse.ui.edit-copy_2", EventTrace.anonymize("org.eclipse.ui.edit-copy_2"));
+        final String label = EventTrace.anonymize("1 /home/user/Secret.java");
+        assertTrue(label.startsWith("#"));
+        assertFalse(label.contains("Secret"));
+        assertEquals(label, EventTrace.anonymize("1 /home/user/Secret.java"));
+    }
+
+    /**
+     * Reads the trace events.
+     *
+     * @param content
+     *            the trace.
+     * @return the events.
+     * @throws IOException
+     *             on read failure.
+     */
+    private List<TraceEvent> read(final byte[] content) throws IOException {
+        final List<TraceEvent> events = new ArrayList<TraceEvent>();
+        EventTrace.read(new ByteArrayInputStream(content), new EventTrace.Visitor() {
+            public void onEvent(final TraceEvent event) {
+                events.add(event);
+            }
+        });
+        return events;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class SchemeRegistryTest {
+
+    @Test public void defaultScheme() {
+        final SchemeRegistry registry = new SchemeRegistry();
+        assertEquals(1, registry.size());
+        assertEquals(SchemeRegistry.DEFAULT_ORDINAL,
+                registry.getOrdinal(AbstractActionDesc.DEFAULT_ACCELERATOR_KEY));
+        assertTrue(registry.isRegistered(SchemeRegistry.DEFAULT_ORDINAL));
+    }
+
+    @Test public void register() {
+        final SchemeRegistry registry = new SchemeRegistry();
+        final int emacs = registry.register("emacs");
+        final int other = registry.register("other");
+        assertEquals(1, emacs);
+        assertEquals(2, other);
+        assertEquals(emacs, registry.register("emacs"));
+        assertEquals(emacs, registry.getOrdinal("emacs"));
+        assertEquals(SchemeRegistry.NO_ORDINAL, registry.getOrdinal("unknown"));
+        assertEquals(3, registry.size());
+        assertEquals("emacs", registry.getSchemeId(emacs));
+        assertEquals(AbstractActionDesc.DEFAULT_ACCELERATOR_KEY,
+                registry.getSchemeId(SchemeRegistry.DEFAULT_ORDINAL));
+    }
+
+    @Test public void unregister() {
+        final SchemeRegistry registry = new SchemeRegistry();
+        final int emacs = registry.register("emacs");
+        registry.unregister("emacs");
+        assertFalse(registry.isRegistered(emacs));
+        assertEquals(SchemeRegistry.NO_ORDINAL, registry.getOrdinal("emacs"));
+
+        // the ordinal is reserved for the scheme
+        assertEquals(emacs + 1, registry.register("other"));
+        assertEquals(emacs, registry.register("emacs"));
+        assertTrue(registry.isRegistered(emacs));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void register_blank() {
+        new SchemeRegistry().register(" ");
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.mousefeed.client.metrics.Metrics;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class UsageJournalTest {
+    private File file;
+
+    @Before public void createFile() throws IOException {
+        file = File.createTempFile("usage", ".journal");
+        file.delete();
+    }
+
+    @After public void deleteFiles() {
+        file.delete();
+        new File(file.getPath() + ".lock").delete();
+        new File(file.getPath() + ".compacting").delete();
+    }
+
+    @Test public void appendAndRead() throws IOException {
+        final UsageJournal journal = new UsageJournal(file);
+        journal.append(newAction("Copy"), false, 1);
+        journal.append(newAction("Paste"), true, 2);
+        journal.append(newAction("Copy"), true, 3);
+        assertEquals(3 * UsageJournal.RECORD_SIZE, file.length());
+
+        assertEquals(Arrays.asList("Copy/1/0/1", "Paste/0/1/2", "Copy/0/1/3"), read(new FileInputStream(file)));
+    }
+
+    @Test public void enqueueAndFlush() throws IOException {
+        final UsageJournal journal = new UsageJournal(file);
+        journal.enqueue(newAction("Copy"), false, 1, 1);
+        journal.enqueue(newAction("Paste"), true, 4, 2);
+        assertFalse(file.exists());
+
+        journal.flush();
+        assertEquals(Arrays.asList("Copy/1/0/1", "Paste/0/4/2"), read(new FileInputStream(file)));
+        // nothing queued
+        journal.flush();
+        assertEquals(2 * UsageJournal.RECORD_SIZE, file.length());
+    }
+
+    @Test public void flush_failed() throws IOException {
+        final UsageJournal journal = new UsageJournal(file);
+        journal.enqueue(newAction("Copy"), false, 1, 1);
+        journal.enqueue(newAction("Paste"), true, 1, 2);
+        // the journal can't be opened for appending
+        assertTrue(file.mkdir());
+        try {
+            journal.flush();
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+        journal.enqueue(newAction("Cut"), false, 1, 3);
+        assertTrue(file.delete());
+
+        journal.flush();
+        assertEquals(Arrays.asList("Copy/1/0/1", "Paste/0/1/2", "Cut/1/0/3"), read(new FileInputStream(file)));
+    }
+
+    @Test public void flush_lag() throws Exception {
+        final UsageJournal journal = new UsageJournal(file);
+        final double before = lagSum();
+        journal.enqueue(newAction("Copy"), false, 1, 1);
+        Thread.sleep(50);
+        journal.enqueue(newAction("Paste"), false, 1, 2);
+        journal.flush();
+        // measured from the oldest queued record
+        assertTrue(lagSum() - before >= 0.05);
+    }
+
+    @Test public void append_long() throws IOException {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < UsageJournal.RECORD_SIZE; i++) {
+            b.append('\u00e4');
+        }
+        new UsageJournal(file).append(newAction(b.toString()), false, 1);
+        assertEquals(UsageJournal.RECORD_SIZE, file.length());
+        assertEquals(1, read(new FileInputStream(file)).size());
+    }
+
+    @Test public void read_damaged() throws IOException {
+        final UsageJournal journal = new UsageJournal(file);
+        journal.append(newAction("Copy"), false, 1);
+        journal.append(newAction("Paste"), false, 2);
+        journal.append(newAction("Cut"), false, 3);
+        final byte[] content = readBytes();
+
+        // damaged signature of the second record
+        content[UsageJournal.RECORD_SIZE] = 0;
+        assertEquals(Arrays.asList("Copy/1/0/1", "Cut/1/0/3"), read(new ByteArrayInputStream(content)));
+
+        // the last record cut off
+        final byte[] cutOff = Arrays.copyOf(content, content.length - 3);
+        assertEquals(Arrays.asList("Copy/1/0/1"), read(new ByteArrayInputStream(cutOff)));
+        assertEquals(0, read(new ByteArrayInputStream(new byte[0])).size());
+    }
+
+    @Test public void read_cutOffFollowedByAppends() throws IOException {
+        final UsageJournal journal = new UsageJournal(file);
+        journal.append(newAction("Copy"), false, 1);
+        journal.append(newAction("Paste"), false, 2);
+        // a crash cuts off the second record
+        final byte[] cutOff = Arrays.copyOf(readBytes(), UsageJournal.RECORD_SIZE + 30);
+        writeBytes(cutOff);
+        for (int i = 0; i < 5; i++) {
+            journal.append(newAction("Cut"), true, 3 + i);
+        }
+        assertEquals(Arrays.asList("Copy/1/0/1", "Cut/0/1/3", "Cut/0/1/4", "Cut/0/1/5", "Cut/0/1/6", "Cut/0/1/7"),
+                read(new FileInputStream(file)));
+
+        // only the padding of the second record cut off
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(UsageJournal.encode("Copy", "Copy", 1, 0, 1));
+        content.write(UsageJournal.encode("Paste", "Paste", 1, 0, 2), 0, 100);
+        content.write(UsageJournal.encode("Cut", "Cut", 0, 1, 3));
+        assertEquals(Arrays.asList("Copy/1/0/1", "Cut/0/1/3"), read(new ByteArrayInputStream(content.toByteArray())));
+    }
+
+    @Test public void compact() throws Exception {
+        final UsageJournal journal = new UsageJournal(file);
+        journal.append(newAction("Copy"), false, 1);
+        journal.append(newAction("Paste"), true, 2);
+        journal.append(newAction("Copy"), true, 3);
+        journal.append(newAction("Copy"), false, 4);
+
+        assertTrue(UsageJournal.compact(file, 0));
+        assertEquals(Arrays.asList("Copy/2/1/4", "Paste/0/1/2"), read(new FileInputStream(file)));
+        assertFalse(new File(file.getPath() + ".compacting").exists());
+
+        // the appends continue after the compaction
+        journal.append(newAction("Paste"), false, 5);
+        assertTrue(UsageJournal.compact(file, 0));
+        assertEquals(Arrays.asList("Copy/2/1/4", "Paste/1/1/5"), read(new FileInputStream(file)));
+    }
+
+    @Test public void compact_interrupted() throws Exception {
+        final UsageJournal journal = new UsageJournal(file);
+        journal.append(newAction("Copy"), false, 1);
+        assertTrue(file.renameTo(new File(file.getPath() + ".compacting")));
+        journal.append(newAction("Copy"), false, 2);
+
+        assertTrue(UsageJournal.compact(file, 0));
+        assertEquals(Arrays.asList("Copy/1/0/2", "Copy/1/0/1"), read(new FileInputStream(file)));
+    }
+
+    @Test public void compact_interruptedAfterAppend() throws Exception {
+        final UsageJournal journal = new UsageJournal(file);
+        journal.append(newAction("Copy"), false, 1);
+        journal.append(newAction("Copy"), true, 2);
+        final byte[] original = readBytes();
+        assertTrue(UsageJournal.compact(file, 0));
+        journal.append(newAction("Paste"), false, 3);
+
+        // the crash before the compacted journal was deleted
+        final File compacting = new File(file.getPath() + ".compacting");
+        final FileOutputStream out = new FileOutputStream(compacting);
+        try {
+            out.write(original);
+        } finally {
+            out.close();
+        }
+        assertTrue(UsageJournal.compact(file, 0));
+        assertFalse(compacting.exists());
+        assertEquals(Arrays.asList("Copy/1/1/2", "Paste/1/0/3"), read(new FileInputStream(file)));
+    }
+
+    @Test public void compact_locked() throws Exception {
+        new UsageJournal(file).append(newAction("Copy"), false, 1);
+        final RandomAccessFile lockFile = new RandomAccessFile(file.getPath() + ".lock", "rw");
+        try {
+            final FileLock lock = lockFile.getChannel().lock();
+            try {
+                assertFalse(UsageJournal.compact(file, 0));
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockFile.close();
+        }
+        assertEquals(UsageJournal.RECORD_SIZE, file.length());
+    }
+
+    private double lagSum() {
+        final StringBuilder out = new StringBuilder();
+        Metrics.getInstance().getJournalWriteLag().render("lag", "", out);
+        final String sum = out.substring(out.indexOf("lag_sum ") + "lag_sum ".length());
+        return Double.parseDouble(sum.substring(0, sum.indexOf('\n')));
+    }
+
+    private byte[] readBytes() throws IOException {
+        final byte[] content = new byte[(int) file.length()];
+        final InputStream in = new FileInputStream(file);
+        try {
+            assertEquals(content.length, in.read(content));
+        } finally {
+            in.close();
+        }
+        return content;
+    }
+
+    private void writeBytes(final byte[] content) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    private List<String> read(final InputStream in) throws IOException {
+        final List<String> records = new ArrayList<String>();
+        try {
+            UsageJournal.read(in, new UsageJournal.Visitor() {
+                public void onRecord(final String actionId, final String label, final int mouseCount,
+                        final int keyboardCount, final long time) {
+                    records.add(actionId + "/" + mouseCount + "/" + keyboardCount + "/" + time);
+                }
+            });
+        } finally {
+            in.close();
+        }
+        return records;
+    }
+
+    private AbstractActionDesc newAction(final String label) {
+        final AbstractActionDesc action = new AbstractActionDesc() {};
+        action.setLabel(label);
+        return action;
+    }
+}
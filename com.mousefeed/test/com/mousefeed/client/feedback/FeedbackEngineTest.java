@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.feedback;
+
+import static org.junit.Assert.assertEquals;
+
+import com.mousefeed.client.FeedbackOutcome;
+import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.client.OnWrongInvocationModeRules;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class FeedbackEngineTest {
+    private static final ShortcutBindings CONFIGURABLE = new ShortcutBindings() {
+        public boolean isConfigurable(final String actionId) {
+            return !actionId.startsWith("fixed.");
+        }
+    };
+
+    @Test public void ignoredAndDisabled() {
+        final FeedbackEngine engine = engine(true, OnWrongInvocationModeRules.EMPTY);
+        assertEquals(FeedbackOutcome.IGNORED,
+                engine.decide(new FeedbackRequest(FeedbackEngine.CONFIGURE_ACTION_ID, null, true, 0)));
+
+        final FeedbackEngine disabled = new FeedbackEngine(new FeedbackPolicy(false, OnWrongInvocationMode.REMIND,
+                OnWrongInvocationModeRules.EMPTY, true, 1), CONFIGURABLE);
+        assertEquals(FeedbackOutcome.CONTROL_DISABLED, disabled.decide(new FeedbackRequest("a", null, true, 0)));
+        assertEquals(FeedbackOutcome.IGNORED,
+                disabled.decide(new FeedbackRequest(FeedbackEngine.CONFIGURE_ACTION_ID, null, true, 0)));
+    }
+
+    @Test public void withoutAccelerator() {
+        final FeedbackEngine engine = engine(true, OnWrongInvocationModeRules.EMPTY);
+        assertEquals(FeedbackOutcome.COUNTED, engine.decide(new FeedbackRequest("a", null, false, 0)));
+        assertEquals(FeedbackOutcome.CONFIGURE_SHORTCUT, engine.decide(new FeedbackRequest("a", null, false, 1)));
+        assertEquals(FeedbackOutcome.COUNTED, engine.decide(new FeedbackRequest("fixed.a", null, false, 1)));
+
+        final FeedbackEngine noOffer = engine(false, OnWrongInvocationModeRules.EMPTY);
+        assertEquals(FeedbackOutcome.COUNTED, noOffer.decide(new FeedbackRequest("a", null, false, 5)));
+    }
+
+    @Test public void withAccelerator() {
+        final Map<String, OnWrongInvocationMode> rules = new HashMap<String, OnWrongInvocationMode>();
+        rules.put("org.eclipse.*", OnWrongInvocationMode.ENFORCE);
+        rules.put("category:edit", OnWrongInvocationMode.PRESENTATION);
+        final FeedbackEngine engine = engine(true, new OnWrongInvocationModeRules(rules));
+        assertEquals(FeedbackOutcome.ENFORCE, engine.decide(new FeedbackRequest("org.eclipse.a", null, true, 0)));
+        assertEquals(FeedbackOutcome.PRESENTATION, engine.decide(new FeedbackRequest("b", "edit", true, 0)));
+        assertEquals(FeedbackOutcome.REMIND, engine.decide(new FeedbackRequest("b", "file", true, 7)));
+    }
+
+    @Test public void present() {
+        final List<String> calls = new ArrayList<String>();
+        final FeedbackPresenter presenter = new FeedbackPresenter() {
+            public void offerShortcutConfiguration() {
+                calls.add("offer");
+            }
+
+            public void presentShortcut() {
+                calls.add("present");
+            }
+
+            public void remindShortcut() {
+                calls.add("remind");
+            }
+
+            public void enforceShortcut() {
+                calls.add("enforce");
+            }
+        };
+        for (FeedbackOutcome outcome : FeedbackOutcome.values()) {
+            FeedbackEngine.present(outcome, presenter);
+        }
+        final List<String> expected = new ArrayList<String>();
+        expected.add("offer");
+        expected.add("present");
+        expected.add("remind");
+        expected.add("enforce");
+        assertEquals(expected, calls);
+    }
+
+    private static FeedbackEngine engine(final boolean configureShortcut, final OnWrongInvocationModeRules rules) {
+        return new FeedbackEngine(
+                new FeedbackPolicy(true, OnWrongInvocationMode.REMIND, rules, configureShortcut, 1), CONFIGURABLE);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.metrics;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class BudgetGovernorTest {
+    private static final String STEP = "step";
+
+    @Test public void disablesAfterStrikes() {
+        final BudgetGovernor governor = new BudgetGovernor(3);
+        assertFalse(governor.record(STEP, 20, 10));
+        assertFalse(governor.record(STEP, 20, 10));
+        assertTrue(governor.isEnabled(STEP));
+        assertTrue(governor.record(STEP, 20, 10));
+        assertTrue(governor.isDisabled(STEP));
+        assertTrue(governor.isEnabled("other"));
+    }
+
+    @Test public void successResetsStrikes() {
+        final BudgetGovernor governor = new BudgetGovernor(2);
+        assertFalse(governor.record(STEP, 20, 10));
+        assertFalse(governor.record(STEP, 10, 10));
+        assertFalse(governor.record(STEP, 20, 10));
+        assertTrue(governor.isEnabled(STEP));
+    }
+
+    @Test public void retriesAfterCooldown() {
+        final BudgetGovernor governor = new BudgetGovernor(1);
+        assertTrue(governor.record(STEP, 20, 10));
+        assertSkipped(governor, BudgetGovernor.INITIAL_COOLDOWN);
+        assertTrue(governor.isEnabled(STEP));
+
+        // failed retry doubles the cooldown
+        assertTrue(governor.record(STEP, 20, 10));
+        assertSkipped(governor, BudgetGovernor.INITIAL_COOLDOWN * 2);
+        assertTrue(governor.isEnabled(STEP));
+
+        // successful retry trusts the step again
+        assertFalse(governor.record(STEP, 5, 10));
+        assertFalse(governor.isDisabled(STEP));
+        assertTrue(governor.record(STEP, 20, 10));
+        assertSkipped(governor, BudgetGovernor.INITIAL_COOLDOWN);
+    }
+
+    @Test public void cooldownIsLimited() {
+        final BudgetGovernor governor = new BudgetGovernor(1);
+        for (int i = 0; i < 20; i++) {
+            governor.record(STEP, 20, 10);
+        }
+        assertSkipped(governor, BudgetGovernor.MAX_COOLDOWN);
+        assertTrue(governor.isEnabled(STEP));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidStrikeLimit() {
+        new BudgetGovernor(0);
+    }
+
+    private void assertSkipped(final BudgetGovernor governor, final int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertFalse(governor.isEnabled(STEP));
+        }
+    }
+}
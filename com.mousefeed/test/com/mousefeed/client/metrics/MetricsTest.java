@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class MetricsTest {
+    @Test public void histogram() {
+        final Histogram h = new Histogram(0.001, 0.01);
+        h.observe(500000);
+        h.observe(2000000);
+        h.observe(3000000000L);
+        final StringBuilder out = new StringBuilder();
+        h.render("h", "Help.", out);
+        final String text = out.toString();
+        assertTrue(text, text.contains("h_bucket{le=\"0.001\"} 1\n"));
+        assertTrue(text, text.contains("h_bucket{le=\"0.01\"} 2\n"));
+        assertTrue(text, text.contains("h_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(text, text.contains("h_sum 3.0025\n"));
+        assertTrue(text, text.contains("h_count 3\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void histogram_unordered() {
+        new Histogram(0.01, 0.001);
+    }
+
+    @Test public void render() {
+        final Metrics m = new Metrics();
+        m.getEvents().inc();
+        m.getPopups(OnWrongInvocationMode.ENFORCE).inc();
+        m.getBindingCacheHits().inc();
+        final String first = m.render(1000000000L);
+        assertTrue(first, first.contains("mousefeed_events_total 1\n"));
+        assertTrue(first, first.contains("mousefeed_events_per_second 0.0\n"));
+        assertTrue(first, first.contains("mousefeed_popups_total{mode=\"ENFORCE\"} 1\n"));
+        assertTrue(first, first.contains("mousefeed_cache_requests_total{cache=\"bindings\",result=\"hit\"} 1\n"));
+
+        m.getEvents().inc();
+        m.getEvents().inc();
+        final String second = m.render(3000000000L);
+        assertTrue(second, second.contains("mousefeed_events_per_second 1.0\n"));
+        // does not grow with the observations
+        assertEquals(first.length(), second.length());
+    }
+
+    @Test public void server() throws IOException {
+        final Metrics m = new Metrics();
+        m.getEvents().inc();
+        final MetricsServer server = new MetricsServer(m, 0);
+        try {
+            assertTrue(get(server.getPort(), "/metrics").startsWith("HTTP/1.0 200 OK"));
+            assertTrue(get(server.getPort(), "/metrics").contains("mousefeed_events_total 1\n"));
+            assertTrue(get(server.getPort(), "/").startsWith("HTTP/1.0 404"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private String get(final int port, final String path) throws IOException {
+        final Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            final OutputStream out = socket.getOutputStream();
+            out.write(("GET " + path + " HTTP/1.0\r\nHost: localhost\r\n\r\n").getBytes("US-ASCII"));
+            out.flush();
+            final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            final StringBuilder response = new StringBuilder();
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                response.append(line).append('\n');
+            }
+            return response.toString();
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class StallWatchdogTest {
+    private File log;
+
+    @Before public void createLog() throws IOException {
+        log = File.createTempFile("stalls", ".log");
+        log.delete();
+    }
+
+    @After public void deleteLog() {
+        log.delete();
+        new File(log.getPath() + StallWatchdog.ROTATED_SUFFIX).delete();
+    }
+
+    @Test public void fastHandler() {
+        final StallWatchdog watchdog = new StallWatchdog(Thread.currentThread(), log, 1000);
+        watchdog.enter("fast");
+        watchdog.check();
+        watchdog.exit();
+        watchdog.check();
+        assertFalse(log.exists());
+    }
+
+    @Test public void stall() throws Exception {
+        final StallWatchdog watchdog = new StallWatchdog(Thread.currentThread(), log, 1);
+        for (int i = 0; i < 4; i++) {
+            stall(watchdog);
+        }
+        final String text = read();
+        assertTrue(text, text.contains(" in slow, "));
+        assertTrue(text, text.contains(StallWatchdogTest.class.getName() + ".stall("));
+        // the same stack is written once, then the repeats are counted
+        assertTrue(text, text.contains("seen 2 times"));
+        assertFalse(text, text.substring(text.indexOf("seen 2 times")).contains("    at "));
+        assertTrue(text, text.contains("seen 4 times"));
+        assertFalse(text, text.contains("seen 3 times"));
+    }
+
+    @Test public void disabled() throws Exception {
+        final StallWatchdog watchdog = new StallWatchdog(Thread.currentThread(), log, 0);
+        stall(watchdog);
+        assertFalse(log.exists());
+    }
+
+    @Test public void nested() throws Exception {
+        final StallWatchdog watchdog = new StallWatchdog(Thread.currentThread(), log, 1);
+        watchdog.enter("outer");
+        watchdog.enter("inner");
+        watchdog.exit();
+        Thread.sleep(5);
+        // samples from another thread, the handler is still running
+        final Thread checker = new Thread() {
+            @Override
+            public void run() {
+                watchdog.check();
+            }
+        };
+        checker.start();
+        checker.join();
+        watchdog.exit();
+        assertTrue(read().contains(" in outer, "));
+    }
+
+    @Test public void report_evictsOldStacks() throws Exception {
+        final StallWatchdog watchdog = new StallWatchdog(Thread.currentThread(), log, 1);
+        final StackTraceElement[] stack = new Throwable().getStackTrace();
+        for (int i = 0; i <= StallWatchdog.MAX_STACKS; i++) {
+            watchdog.report("handler" + i, 10, stack);
+        }
+        // the newest stack is remembered, its repeat is counted
+        watchdog.report("handler" + StallWatchdog.MAX_STACKS, 10, stack);
+        assertTrue(read().endsWith(" in handler" + StallWatchdog.MAX_STACKS + ", 10 ms, seen 2 times\n"));
+        // the oldest one was forgotten, it is written again
+        watchdog.report("handler0", 10, stack);
+        final String text = read();
+        assertTrue(text.substring(text.lastIndexOf(" stall ")).contains(" in handler0, 10 ms\n    at " + stack[0]));
+    }
+
+    @Test public void report_rotatesLog() throws Exception {
+        final OutputStream out = new FileOutputStream(log);
+        try {
+            out.write(new byte[(int) StallWatchdog.MAX_LOG_SIZE]);
+        } finally {
+            out.close();
+        }
+        final StallWatchdog watchdog = new StallWatchdog(Thread.currentThread(), log, 1);
+        watchdog.report("slow", 10, new Throwable().getStackTrace());
+        assertTrue(read().contains(" in slow, "));
+        assertEquals(StallWatchdog.MAX_LOG_SIZE, new File(log.getPath() + StallWatchdog.ROTATED_SUFFIX).length());
+    }
+
+    private void stall(final StallWatchdog watchdog) throws InterruptedException {
+        watchdog.enter("slow");
+        try {
+            final Thread checker = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(20);
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    watchdog.check();
+                    // samples a handler invocation once
+                    watchdog.check();
+                }
+            };
+            checker.start();
+            checker.join();
+        } finally {
+            watchdog.exit();
+        }
+    }
+
+    private String read() throws IOException {
+        final byte[] content = new byte[(int) log.length()];
+        final InputStream in = new FileInputStream(log);
+        try {
+            assertEquals(content.length, in.read(content));
+        } finally {
+            in.close();
+        }
+        return new String(content, "UTF-8");
+    }
+}
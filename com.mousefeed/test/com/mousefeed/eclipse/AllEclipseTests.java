@@ -21,7 +21,9 @@ package com.mousefeed.eclipse;
 import com.mousefeed.eclipse.preferences.ActionInvocationModeTableCellModifierTest;
 import com.mousefeed.eclipse.preferences.ActionInvocationModeTableLabelProviderTest;
 import com.mousefeed.eclipse.preferences.ActionOnWrongInvocationModeTest;
+import com.mousefeed.eclipse.preferences.InvocationPolicyTest;
 import com.mousefeed.eclipse.preferences.PreferenceAccessorTest;
+import com.mousefeed.eclipse.preferences.invocation.ActionInvocationModeIndexTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -34,7 +36,8 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({ ActionDescImplTest.class,
         ActionInvocationModeTableCellModifierTest.class,
         ActionInvocationModeTableLabelProviderTest.class,
-        ActionOnWrongInvocationModeTest.class, PreferenceAccessorTest.class })
+        ActionOnWrongInvocationModeTest.class, InvocationPolicyTest.class,
+        PreferenceAccessorTest.class, ActionInvocationModeIndexTest.class })
 public class AllEclipseTests {
 
 }
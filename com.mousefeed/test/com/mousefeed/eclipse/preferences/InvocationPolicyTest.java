@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import static com.mousefeed.client.OnWrongInvocationMode.DO_NOTHING;
+import static com.mousefeed.client.OnWrongInvocationMode.ENFORCE;
+import static com.mousefeed.client.OnWrongInvocationMode.REMIND;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.client.OnWrongInvocationModeRules;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.ui.WorkbenchException;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class InvocationPolicyTest {
+
+    @Test public void merge_higherLayerWins() {
+        final OnWrongInvocationModeRules rules = InvocationPolicy.merge(
+                policy("a", ENFORCE, false), policy("a", DO_NOTHING, false));
+        assertEquals(DO_NOTHING, rules.resolve("a", null));
+    }
+
+    @Test public void merge_lockedWins() {
+        final OnWrongInvocationModeRules rules = InvocationPolicy.merge(InvocationPolicy.EMPTY,
+                policy("a", ENFORCE, true), policy("a", DO_NOTHING, false));
+        assertEquals(ENFORCE, rules.resolve("a", null));
+    }
+
+    @Test public void merge_patterns() {
+        final OnWrongInvocationModeRules rules = InvocationPolicy.merge(
+                policy("org.*", ENFORCE, false), policy("org.a", REMIND, false));
+        assertEquals(REMIND, rules.resolve("org.a", null));
+        assertEquals(ENFORCE, rules.resolve("org.b", null));
+        assertNull(rules.resolve("com.a", null));
+    }
+
+    @Test public void merge_lockedPrefix() {
+        final Map<String, OnWrongInvocationMode> team = new HashMap<String, OnWrongInvocationMode>();
+        team.put("org.eclipse.jdt.*", ENFORCE);
+        team.put("org.eclipse.jdt.ui.format", REMIND);
+        final Map<String, OnWrongInvocationMode> user = new HashMap<String, OnWrongInvocationMode>();
+        user.put("org.eclipse.jdt.ui.copy", DO_NOTHING);
+        user.put("org.eclipse.jdt.ui.*", DO_NOTHING);
+        user.put("org.eclipse.ui.save", DO_NOTHING);
+        final OnWrongInvocationModeRules rules = InvocationPolicy.merge(
+                new InvocationPolicy(team, Collections.singleton("org.eclipse.jdt.*")),
+                new InvocationPolicy(user, new HashSet<String>()));
+        assertEquals(ENFORCE, rules.resolve("org.eclipse.jdt.ui.copy", null));
+        assertEquals(ENFORCE, rules.resolve("org.eclipse.jdt.ui.paste", null));
+        // the same layer as the lock
+        assertEquals(REMIND, rules.resolve("org.eclipse.jdt.ui.format", null));
+        assertEquals(DO_NOTHING, rules.resolve("org.eclipse.ui.save", null));
+    }
+
+    @Test public void merge_lockedCatchAll() {
+        final OnWrongInvocationModeRules rules = InvocationPolicy.merge(
+                policy("*", ENFORCE, true), policy("category:edit", DO_NOTHING, false));
+        assertEquals(ENFORCE, rules.resolve("a", "edit"));
+    }
+
+    @Test public void merge_lockedCategory() {
+        final OnWrongInvocationModeRules rules = InvocationPolicy.merge(
+                policy("category:edit", ENFORCE, true), policy("a", DO_NOTHING, false));
+        assertEquals(ENFORCE, rules.resolve("a", "edit"));
+        assertEquals(DO_NOTHING, rules.resolve("a", "file"));
+    }
+
+    @Test public void read() throws WorkbenchException {
+        final InvocationPolicy policy = InvocationPolicy.read(new StringReader(
+                "<actionsWrongInvocationMode>"
+                + "<action id=\"a\" onWrongInvocationMode=\"ENFORCE\" locked=\"true\"/>"
+                + "<action id=\"b\" onWrongInvocationMode=\"REMIND\"/>"
+                + "</actionsWrongInvocationMode>"));
+        final OnWrongInvocationModeRules rules =
+                InvocationPolicy.merge(policy, policy("a", DO_NOTHING, false), policy("b", DO_NOTHING, false));
+        assertEquals(ENFORCE, rules.resolve("a", null));
+        assertEquals(DO_NOTHING, rules.resolve("b", null));
+    }
+
+    private InvocationPolicy policy(final String id, final OnWrongInvocationMode mode, final boolean locked) {
+        final Map<String, OnWrongInvocationMode> modes = new HashMap<String, OnWrongInvocationMode>();
+        modes.put(id, mode);
+        final Set<String> lockedIds = locked ? Collections.singleton(id) : new HashSet<String>();
+        return new InvocationPolicy(modes, lockedIds);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences.invocation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class ActionInvocationModeIndexTest {
+
+    @Test public void sortedByLabel() {
+        final List<ActionOnWrongInvocationMode> modes = new ArrayList<ActionOnWrongInvocationMode>();
+        final ActionOnWrongInvocationMode c = mode("c.id", "C");
+        final ActionOnWrongInvocationMode a = mode("a.id", "A");
+        final ActionOnWrongInvocationMode b = mode("b.id", "B");
+        modes.add(c);
+        modes.add(a);
+        modes.add(b);
+        final ActionInvocationModeIndex index = new ActionInvocationModeIndex(modes);
+        assertEquals(3, index.size());
+        assertSame(a, index.get(0));
+        assertSame(b, index.get(1));
+        assertSame(c, index.get(2));
+        assertEquals(2, index.indexOf(c));
+        // the list is not changed
+        assertSame(c, modes.get(0));
+    }
+
+    @Test public void setFilter() {
+        final List<ActionOnWrongInvocationMode> modes = new ArrayList<ActionOnWrongInvocationMode>();
+        final ActionOnWrongInvocationMode save = mode("org.eclipse.ui.file.save", "Save");
+        final ActionOnWrongInvocationMode saveAll = mode("org.eclipse.ui.file.saveAll", "Save All");
+        final ActionOnWrongInvocationMode format = mode("org.eclipse.jdt.ui.edit.text.java.format", "Format");
+        modes.add(save);
+        modes.add(saveAll);
+        modes.add(format);
+        final ActionInvocationModeIndex index = new ActionInvocationModeIndex(modes);
+
+        index.setFilter("SAVE");
+        assertEquals(2, index.size());
+        index.setFilter("save a");
+        assertEquals(1, index.size());
+        assertSame(saveAll, index.get(0));
+        index.setFilter("jdt");
+        assertEquals(1, index.size());
+        assertSame(format, index.get(0));
+        assertEquals(-1, index.indexOf(save));
+        index.setFilter("");
+        assertEquals(3, index.size());
+    }
+
+    @Test public void rebuild_keepsFilter() {
+        final List<ActionOnWrongInvocationMode> modes = new ArrayList<ActionOnWrongInvocationMode>();
+        modes.add(mode("a.id", "A"));
+        final ActionInvocationModeIndex index = new ActionInvocationModeIndex(modes);
+        index.setFilter("b");
+        assertEquals(0, index.size());
+        modes.add(mode("b.id", "B"));
+        index.rebuild();
+        assertEquals(1, index.size());
+    }
+
+    private ActionOnWrongInvocationMode mode(final String id, final String label) {
+        final ActionOnWrongInvocationMode mode = new ActionOnWrongInvocationMode();
+        mode.setId(id);
+        mode.setLabel(label);
+        return mode;
+    }
+}
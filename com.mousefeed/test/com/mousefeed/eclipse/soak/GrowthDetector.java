@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.soak;
+
+import static org.apache.commons.lang.Validate.isTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides whether a series of resource counts sampled during a soak run grows
+ * without bound. The series is bounded if the maximum of its second half does
+ * not exceed the maximum of its first half by more than the tolerance: a leak
+ * keeps growing with the number of processed events, while a cache or a pool
+ * levels off once it is warm.
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+final class GrowthDetector {
+    /**
+     * The minimal number of samples to decide on.
+     */
+    public static final int MIN_SAMPLES = 4;
+
+    /**
+     * The growth not considered a leak.
+     */
+    private final long tolerance;
+
+    /**
+     * The samples, in the order they were taken.
+     */
+    private final List<Long> samples = new ArrayList<Long>();
+
+    /**
+     * Constructor.
+     *
+     * @param tolerance
+     *            the growth not considered a leak. Not negative.
+     */
+    public GrowthDetector(final long tolerance) {
+        isTrue(tolerance >= 0);
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Adds the next sample.
+     *
+     * @param sample
+     *            the resource count.
+     */
+    public void add(final long sample) {
+        samples.add(sample);
+    }
+
+    /**
+     * Whether the samples stay bounded.
+     *
+     * @return <code>true</code> if the series levels off. Always
+     *         <code>true</code> if there are less than {@link #MIN_SAMPLES}
+     *         samples.
+     */
+    public boolean isBounded() {
+        if (samples.size() < MIN_SAMPLES) {
+            return true;
+        }
+        final int half = samples.size() / 2;
+        return max(half, samples.size()) <= max(0, half) + tolerance;
+    }
+
+    /**
+     * The maximal sample in the range.
+     *
+     * @param from
+     *            the first sample index, inclusive.
+     * @param to
+     *            the last sample index, exclusive.
+     * @return the maximal sample.
+     */
+    private long max(final int from, final int to) {
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, samples.get(i));
+        }
+        return max;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return samples.toString();
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.soak;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.eclipse.Activator;
+import com.mousefeed.eclipse.GlobalSelectionListener;
+import com.mousefeed.eclipse.preferences.PreferenceConstants;
+import com.mousefeed.eclipse.soak.ResourceCensus.Gauge;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.core.commands.Command;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.ActionContributionItem;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.MenuItem;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.ToolBar;
+import org.eclipse.swt.widgets.ToolItem;
+import org.eclipse.swt.widgets.Widget;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.commands.ICommandService;
+import org.eclipse.ui.handlers.IHandlerService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Soak test of the pop-ups shown by {@link GlobalSelectionListener}. Drives
+ * synthetic menu, tool bar and command events through the listener in all the
+ * invocation modes, and fails if the shells, fonts, colors, display filters or
+ * the retained heap grow without bound.
+ * <p>
+ * Needs a running workbench, so it is not a part of
+ * {@link com.mousefeed.AllTests} and its name does not match the unit test
+ * pattern of the build. Run it as a JUnit Plug-in Test, headless under Xvfb,
+ * with the <code>org.eclipse.ui/trace/graphics=true</code> debug option, so
+ * the fonts and colors can be counted. The number of events is set by the
+ * <code>mousefeed.soak.events</code> system property.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class NagPopUpSoak {
+    /**
+     * The number of the events to process.
+     */
+    private static final int EVENTS = Integer.getInteger("mousefeed.soak.events", 100000);
+
+    /**
+     * The number of the resource samples taken during the run.
+     */
+    private static final int CHECKPOINTS = 50;
+
+    /**
+     * The number of the checkpoints skipped while the caches warm up.
+     */
+    private static final int WARMUP_CHECKPOINTS = 5;
+
+    /**
+     * The number of the events processed before the pop-ups are given time to
+     * close.
+     */
+    private static final int BURST = 8;
+
+    /**
+     * The number of the distinct actions.
+     */
+    private static final int ACTIONS = 64;
+
+    /**
+     * Each n-th action has no accelerator.
+     */
+    private static final int NO_ACCELERATOR_EVERY = 8;
+
+    /**
+     * Each n-th event is a command execution instead of a widget selection.
+     */
+    private static final int COMMAND_EVERY = 5;
+
+    /**
+     * The pop-up timeouts, in milliseconds. The close and the listener
+     * timeouts are swapped between the bursts, so the close-on-action filters
+     * are added both before and after the pop-ups close.
+     */
+    private static final int SHORT_TIMEOUT = 10;
+
+    /**
+     * @see #SHORT_TIMEOUT
+     */
+    private static final int LONG_TIMEOUT = 20;
+
+    /**
+     * The executed command.
+     */
+    private static final String COMMAND_ID = "org.eclipse.ui.edit.copy";
+
+    /**
+     * The preferences changed by the test.
+     */
+    private static final String[] CHANGED_PREFERENCES = {PreferenceConstants.P_INVOCATION_CONTROL_ENABLED,
+            PreferenceConstants.P_DEFAULT_ON_WRONG_INVOCATION_MODE, PreferenceConstants.P_NAG_CLOSE_TIMEOUT,
+            PreferenceConstants.P_NAG_LISTENER_TIMEOUT, PreferenceConstants.P_PRESENTATION_HUD};
+
+    /**
+     * The preference values before the test.
+     */
+    private final Map<String, String> savedPreferences = new HashMap<String, String>();
+
+    private Display display;
+    private IPreferenceStore store;
+    private Shell shell;
+    private Widget[] items;
+    private SoakSelectionListener listener;
+    private Command command;
+
+    @Before public void setUp() {
+        display = PlatformUI.getWorkbench().getDisplay();
+        store = Activator.getDefault().getPreferenceStore();
+        for (String name : CHANGED_PREFERENCES) {
+            savedPreferences.put(name, store.getString(name));
+        }
+        store.setValue(PreferenceConstants.P_INVOCATION_CONTROL_ENABLED, true);
+
+        shell = new Shell(display);
+        final Menu menu = new Menu(shell, SWT.POP_UP);
+        final ToolBar toolBar = new ToolBar(shell, SWT.FLAT);
+        items = new Widget[ACTIONS];
+        for (int i = 0; i < ACTIONS; i++) {
+            final Action action = new Action("Soak Action " + i) {
+            };
+            action.setId("com.mousefeed.soak.action" + i);
+            if (i % NO_ACCELERATOR_EVERY != 0) {
+                action.setAccelerator(SWT.MOD1 | SWT.MOD3 | ('A' + i % 26));
+            }
+            final ActionContributionItem contributionItem = new ActionContributionItem(action);
+            if (i % 2 == 0) {
+                final MenuItem item = new MenuItem(menu, SWT.PUSH);
+                item.setText(action.getText());
+                item.setData(contributionItem);
+                items[i] = item;
+            } else {
+                final ToolItem item = new ToolItem(toolBar, SWT.PUSH);
+                item.setText(action.getText());
+                item.setData(contributionItem);
+                items[i] = item;
+            }
+        }
+        listener = new SoakSelectionListener();
+        command = ((ICommandService) PlatformUI.getWorkbench().getService(ICommandService.class))
+                .getCommand(COMMAND_ID);
+    }
+
+    @After public void tearDown() {
+        for (Map.Entry<String, String> entry : savedPreferences.entrySet()) {
+            store.setValue(entry.getKey(), entry.getValue());
+        }
+        shell.dispose();
+        settle(LONG_TIMEOUT * 5);
+    }
+
+    @Test public void resourcesStayBounded() {
+        final ResourceCensus census = new ResourceCensus(display);
+        assertTrue("Start the workbench with org.eclipse.ui/trace/graphics=true to track fonts and colors",
+                census.isTracking());
+        final Map<Gauge, GrowthDetector> detectors = new EnumMap<Gauge, GrowthDetector>(Gauge.class);
+        for (Gauge gauge : Gauge.values()) {
+            detectors.put(gauge, new GrowthDetector(gauge.getTolerance()));
+        }
+
+        final int checkpointEvery = Math.max(BURST, EVENTS / CHECKPOINTS);
+        for (int i = 0; i < EVENTS; i++) {
+            if (i % BURST == 0) {
+                settle(LONG_TIMEOUT * 2);
+                configureBurst(i / BURST);
+            }
+            if (i % COMMAND_EVERY == 0) {
+                executeCommand(i);
+            } else {
+                select(items[i % items.length]);
+            }
+            while (display.readAndDispatch()) {
+                // process the pop-up events
+            }
+            if ((i + 1) % checkpointEvery == 0 && (i + 1) / checkpointEvery > WARMUP_CHECKPOINTS) {
+                settle(LONG_TIMEOUT * 5);
+                final Map<Gauge, Long> counts = census.take();
+                for (Gauge gauge : Gauge.values()) {
+                    detectors.get(gauge).add(counts.get(gauge));
+                }
+            }
+        }
+
+        final StringBuilder leaks = new StringBuilder();
+        for (Gauge gauge : Gauge.values()) {
+            final GrowthDetector detector = detectors.get(gauge);
+            if (!detector.isBounded()) {
+                leaks.append(gauge).append(": ").append(detector).append('\n');
+            }
+        }
+        if (leaks.length() > 0) {
+            fail("Unbounded growth after " + EVENTS + " events:\n" + leaks);
+        }
+    }
+
+    /**
+     * Selects the invocation mode and the pop-up timeouts for the burst.
+     *
+     * @param burst
+     *            the burst number.
+     */
+    private void configureBurst(final int burst) {
+        final OnWrongInvocationMode[] modes = {OnWrongInvocationMode.REMIND, OnWrongInvocationMode.PRESENTATION,
+                OnWrongInvocationMode.PRESENTATION, OnWrongInvocationMode.ENFORCE};
+        final int mode = burst % modes.length;
+        store.setValue(PreferenceConstants.P_DEFAULT_ON_WRONG_INVOCATION_MODE, modes[mode].name());
+        // the presentation mode is run with and without the overlay
+        store.setValue(PreferenceConstants.P_PRESENTATION_HUD, mode == 1);
+        final boolean closeFirst = burst / modes.length % 2 == 0;
+        store.setValue(PreferenceConstants.P_NAG_CLOSE_TIMEOUT, closeFirst ? SHORT_TIMEOUT : LONG_TIMEOUT);
+        store.setValue(PreferenceConstants.P_NAG_LISTENER_TIMEOUT, closeFirst ? LONG_TIMEOUT : SHORT_TIMEOUT);
+    }
+
+    /**
+     * Sends the selection event of the widget to the listener.
+     *
+     * @param widget
+     *            the menu or tool item. Assumed not <code>null</code>.
+     */
+    private void select(final Widget widget) {
+        final Event event = new Event();
+        event.type = SWT.Selection;
+        event.display = display;
+        event.widget = widget;
+        event.doit = true;
+        listener.handleEvent(event);
+    }
+
+    /**
+     * Notifies the listener about the command execution, alternating the key
+     * and the mouse triggers.
+     *
+     * @param i
+     *            the event number.
+     */
+    private void executeCommand(final int i) {
+        Event trigger = null;
+        if (i % 2 == 0) {
+            trigger = new Event();
+            trigger.type = SWT.KeyDown;
+            trigger.display = display;
+            trigger.widget = shell;
+        }
+        final IHandlerService handlerService =
+                (IHandlerService) PlatformUI.getWorkbench().getService(IHandlerService.class);
+        listener.executeCommand(new ExecutionEvent(command, Collections.EMPTY_MAP, trigger,
+                handlerService.getCurrentState()));
+    }
+
+    /**
+     * Runs the event loop for the given time, so the pop-up timers fire.
+     *
+     * @param millis
+     *            the time to run the event loop for, in milliseconds.
+     */
+    private void settle(final int millis) {
+        final boolean[] done = {false};
+        display.timerExec(millis, new Runnable() {
+            public void run() {
+                done[0] = true;
+            }
+        });
+        while (!done[0]) {
+            if (!display.readAndDispatch()) {
+                display.sleep();
+            }
+        }
+    }
+
+    /**
+     * Exposes the command execution processing.
+     */
+    private static class SoakSelectionListener extends GlobalSelectionListener {
+        /**
+         * Processes the command execution as if the command was executed.
+         *
+         * @param event
+         *            the execution event. Not <code>null</code>.
+         */
+        public void executeCommand(final ExecutionEvent event) {
+            onExecuteCommand(event.getCommand().getId(), event);
+        }
+    }
+}
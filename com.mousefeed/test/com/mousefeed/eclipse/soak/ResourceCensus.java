@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.soak;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.lang.reflect.Field;
+import java.util.EnumMap;
+import java.util.Map;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.DeviceData;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Counts the resources a long running IDE session could leak: the shells,
+ * fonts, colors, display filters and the retained heap.
+ * <p>
+ * Fonts and colors are only counted when the display tracks the allocated
+ * resources, e.g. when the workbench is started with the
+ * <code>org.eclipse.ui/trace/graphics=true</code> debug option. The display
+ * filters are not exposed by SWT, so they are read from the display fields.
+ * </p>
+ *
+ * @author Rabea Gransberger (@rgransberger)
+ */
+final class ResourceCensus {
+    /**
+     * How many times the garbage collector is requested before the heap is
+     * measured.
+     */
+    private static final int GC_RUNS = 3;
+
+    /**
+     * The counted resources.
+     */
+    enum Gauge {
+        /** The open shells. */
+        SHELLS(0),
+        /** The allocated fonts. */
+        FONTS(0),
+        /** The allocated colors. */
+        COLORS(0),
+        /** The display filters. */
+        DISPLAY_FILTERS(0),
+        /** The heap retained after garbage collection, in bytes. */
+        HEAP(8L * 1024 * 1024);
+
+        /**
+         * @see #getTolerance()
+         */
+        private final long tolerance;
+
+        /**
+         * Constructor.
+         *
+         * @param tolerance
+         *            see {@link #getTolerance()}.
+         */
+        private Gauge(final long tolerance) {
+            this.tolerance = tolerance;
+        }
+
+        /**
+         * The growth not considered a leak, e.g. because of the measurement
+         * noise.
+         *
+         * @return the tolerance. Not negative.
+         */
+        public long getTolerance() {
+            return tolerance;
+        }
+    }
+
+    /**
+     * The display to count the resources of.
+     */
+    private final Display display;
+
+    /**
+     * Constructor.
+     *
+     * @param display
+     *            the display to count the resources of. Not
+     *            <code>null</code>.
+     */
+    public ResourceCensus(final Display display) {
+        notNull(display);
+        this.display = display;
+    }
+
+    /**
+     * Whether the fonts and colors can be counted.
+     *
+     * @return <code>true</code> if the display tracks the allocated
+     *         resources.
+     */
+    public boolean isTracking() {
+        return display.getDeviceData().tracking;
+    }
+
+    /**
+     * Counts the resources. Must be called from the display thread.
+     *
+     * @return the current counts. Not <code>null</code>.
+     */
+    public Map<Gauge, Long> take() {
+        final Map<Gauge, Long> counts = new EnumMap<Gauge, Long>(Gauge.class);
+        counts.put(Gauge.SHELLS, (long) display.getShells().length);
+        final DeviceData data = display.getDeviceData();
+        long fonts = 0;
+        long colors = 0;
+        if (data.objects != null) {
+            for (Object o : data.objects) {
+                if (o instanceof Font) {
+                    fonts++;
+                } else if (o instanceof Color) {
+                    colors++;
+                }
+            }
+        }
+        counts.put(Gauge.FONTS, fonts);
+        counts.put(Gauge.COLORS, colors);
+        counts.put(Gauge.DISPLAY_FILTERS, countFilters());
+        counts.put(Gauge.HEAP, getRetainedHeap());
+        return counts;
+    }
+
+    /**
+     * Counts the display filters.
+     *
+     * @return the number of the registered filters.
+     */
+    private long countFilters() {
+        try {
+            final Object table = getField(display, Display.class, "filterTable");
+            if (table == null) {
+                return 0;
+            }
+            final Object[] listeners = (Object[]) getField(table, table.getClass(), "listeners");
+            long count = 0;
+            if (listeners != null) {
+                for (Object listener : listeners) {
+                    if (listener != null) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        } catch (final NoSuchFieldException e) {
+            throw new IllegalStateException("The display filters can't be counted for this SWT version", e);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException("The display filters can't be counted for this SWT version", e);
+        }
+    }
+
+    /**
+     * Reads a private field.
+     *
+     * @param object
+     *            the object to read the field of. Assumed not
+     *            <code>null</code>.
+     * @param declaringClass
+     *            the class declaring the field. Assumed not
+     *            <code>null</code>.
+     * @param name
+     *            the field name. Assumed not <code>null</code>.
+     * @return the field value.
+     * @throws NoSuchFieldException
+     *             if the field does not exist.
+     * @throws IllegalAccessException
+     *             if the field can't be read.
+     */
+    private Object getField(final Object object, final Class<?> declaringClass, final String name)
+            throws NoSuchFieldException, IllegalAccessException {
+        final Field field = declaringClass.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+
+    /**
+     * The heap retained after garbage collection.
+     *
+     * @return the used heap, in bytes.
+     */
+    private long getRetainedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_RUNS; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
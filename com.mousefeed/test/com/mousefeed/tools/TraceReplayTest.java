@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.mousefeed.client.FeedbackOutcome;
+import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.client.OnWrongInvocationModeRules;
+import com.mousefeed.client.collector.AbstractActionDesc;
+import com.mousefeed.client.collector.TraceEvent;
+import com.mousefeed.client.feedback.FeedbackPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class TraceReplayTest {
+    @Test public void policyDecider() {
+        final Map<String, OnWrongInvocationMode> rules = new HashMap<String, OnWrongInvocationMode>();
+        rules.put("org.eclipse.ui.edit.*", OnWrongInvocationMode.ENFORCE);
+        final TraceReplay.PolicyDecider decider = new TraceReplay.PolicyDecider(new FeedbackPolicy(true,
+                OnWrongInvocationMode.REMIND, new OnWrongInvocationModeRules(rules), true, 1));
+
+        assertEquals(FeedbackOutcome.ENFORCE, decider.decide(event("org.eclipse.ui.edit.copy", true)));
+        assertEquals(FeedbackOutcome.REMIND, decider.decide(event("org.eclipse.ui.file.save", true)));
+        assertEquals(FeedbackOutcome.UNDESCRIBED, decider.decide(event(null, true)));
+        assertEquals(FeedbackOutcome.IGNORED,
+                decider.decide(event("com.mousefeed.commands.configureActionInvocation", true)));
+        // above the threshold on the second invocation
+        assertEquals(FeedbackOutcome.COUNTED, decider.decide(event("refresh", false)));
+        assertEquals(FeedbackOutcome.CONFIGURE_SHORTCUT, decider.decide(event("refresh", false)));
+        // the label-only descriptions are never counted
+        assertEquals(FeedbackOutcome.COUNTED, decider.decide(event(AbstractActionDesc.LABEL_ONLY_ID, false)));
+        assertEquals(FeedbackOutcome.COUNTED, decider.decide(event(AbstractActionDesc.LABEL_ONLY_ID, false)));
+
+        final TraceReplay.PolicyDecider disabled = new TraceReplay.PolicyDecider(new FeedbackPolicy(false,
+                OnWrongInvocationMode.REMIND, OnWrongInvocationModeRules.EMPTY, true, 1));
+        assertEquals(FeedbackOutcome.CONTROL_DISABLED, disabled.decide(event("org.eclipse.ui.edit.copy", true)));
+    }
+
+    @Test public void replay() {
+        final List<TraceEvent> events = new ArrayList<TraceEvent>();
+        for (int i = 0; i < 10; i++) {
+            events.add(event("org.eclipse.ui.edit.copy", true));
+        }
+        final TraceReplay.Report report = TraceReplay.replay(events, new TraceReplay.PolicyDecider(
+                new FeedbackPolicy(true, OnWrongInvocationMode.ENFORCE, OnWrongInvocationModeRules.EMPTY, true, 2)));
+        assertEquals(10, report.getEventCount());
+        assertEquals(Collections.singletonMap("REMIND -> ENFORCE", 10), report.getDifferences());
+        assertEquals(10, report.getExamples().size());
+        assertTrue(report.getLatency(0.5) <= report.getLatency(1));
+
+        final TraceReplay.Report same = TraceReplay.replay(events, new TraceReplay.PolicyDecider(
+                new FeedbackPolicy(true, OnWrongInvocationMode.REMIND, OnWrongInvocationModeRules.EMPTY, true, 2)));
+        assertTrue(same.getDifferences().isEmpty());
+    }
+
+    /**
+     * Creates a menu event recorded with the remind outcome.
+     *
+     * @param actionId
+     *            the action id.
+     * @param accelerator
+     *            whether the action has an accelerator.
+     * @return the event.
+     */
+    private TraceEvent event(final String actionId, final boolean accelerator) {
+        return new TraceEvent(0, TraceEvent.Source.MENU_ITEM, TraceEvent.ItemType.COMMAND, actionId, null,
+                accelerator, false, true, FeedbackOutcome.REMIND);
+    }
+}
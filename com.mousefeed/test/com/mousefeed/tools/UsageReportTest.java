@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.tools;
+
+import static org.junit.Assert.assertEquals;
+
+import com.mousefeed.client.collector.AbstractActionDesc;
+import com.mousefeed.client.collector.UsageJournal;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author Rabea Gransberger (@rgransberger)
+ */
+public class UsageReportTest {
+    private final List<File> journals = new ArrayList<File>();
+
+    @After public void deleteJournals() {
+        for (File journal : journals) {
+            journal.delete();
+        }
+    }
+
+    @Test public void aggregate() throws IOException {
+        writeJournal("Copy", "Copy", "Paste", "Paste", "Paste");
+        writeJournal("Paste", "Save!");
+        writeJournal();
+
+        final List<UsageReport.ActionTotals> totals = new UsageReport(2).aggregate(journals);
+        assertEquals(3, totals.size());
+        final UsageReport.ActionTotals paste = totals.get(0);
+        assertEquals("Paste", paste.getActionId());
+        assertEquals(4, paste.getMouseCount());
+        assertEquals(2, paste.getUserCount());
+        final UsageReport.ActionTotals copy = totals.get(1);
+        assertEquals("Copy", copy.getActionId());
+        assertEquals(2, copy.getMouseCount());
+        assertEquals(1, copy.getUserCount());
+        final UsageReport.ActionTotals save = totals.get(2);
+        assertEquals(0, save.getMouseCount());
+        assertEquals(1, save.getKeyboardCount());
+    }
+
+    @Test public void writeCsv() throws IOException {
+        writeJournal("Say \"Hi\"", "Copy!");
+        final StringWriter out = new StringWriter();
+        UsageReport.writeCsv(new UsageReport(1).aggregate(journals), out);
+        assertEquals(Arrays.asList("rank,actionId,label,mouse,keyboard,mouseShare,users",
+                "1,\"Say \"\"Hi\"\"\",\"Say \"\"Hi\"\"\",1,0,1.0,1",
+                "2,\"Copy\",\"Copy\",0,1,0.0,1"), Arrays.asList(out.toString().split("\n")));
+    }
+
+    @Test public void json() {
+        assertEquals("\"a\\\"b\\\\c\\u000a\"", UsageReport.json("a\"b\\c\n"));
+    }
+
+    /**
+     * Writes a journal of the invocations.
+     * @param labels the labels of the invoked actions. The keyboard invocations
+     * end with "!".
+     */
+    private void writeJournal(final String... labels) throws IOException {
+        final File file = File.createTempFile("usage", UsageReport.JOURNAL_SUFFIX);
+        file.delete();
+        journals.add(file);
+        final UsageJournal journal = new UsageJournal(file);
+        for (String label : labels) {
+            final AbstractActionDesc action = new AbstractActionDesc() {};
+            action.setLabel(label.replace("!", ""));
+            journal.append(action, label.endsWith("!"), 0);
+        }
+        // the journal without records is not created by append
+        file.createNewFile();
+    }
+}